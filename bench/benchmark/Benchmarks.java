@@ -0,0 +1,37 @@
+package benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks with the GC profiler, so that every result comes
+ * with {@code gc.alloc.rate.norm}, the bytes allocated per operation.
+ * Accepts the usual JMH options, e.g. {@code TransformBenchmark.blur -p size=1920x1080}.
+ */
+public final class Benchmarks {
+
+  private Benchmarks() {
+  }
+
+  /**
+   * Runs the benchmarks selected by the arguments, or all of them.
+   *
+   * @param args JMH command line options.
+   * @throws RunnerException             if a benchmark fails.
+   * @throws CommandLineOptionException  if the options are invalid.
+   */
+  public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+    CommandLineOptions commandLine = new CommandLineOptions(args);
+    OptionsBuilder builder = new OptionsBuilder();
+    if (commandLine.getIncludes().isEmpty()) {
+      builder.include("benchmark\\..*Benchmark");
+    }
+    Options options = builder.parent(commandLine).addProfiler(GCProfiler.class).build();
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,104 @@
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import controller.ImageUtil;
+import model.CustomImage;
+
+/**
+ * Throughput of the {@code ImageUtil} codecs: decoding and encoding PNG, JPEG
+ * and ASCII PPM files of synthetic images of each size, in a temporary directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class CodecBenchmark {
+  @Param({"256x256", "1920x1080", "3840x2160", "7680x4320"})
+  private String size;
+
+  private final ImageUtil imageUtil = new ImageUtil();
+  private CustomImage image;
+  private File directory;
+  private String png;
+  private String jpg;
+  private String ppm;
+
+  /**
+   * Builds the image and writes one file of each format to decode.
+   *
+   * @throws IOException if the files cannot be written.
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    int[] dimensions = SyntheticImages.parseSize(size);
+    image = SyntheticImages.create(dimensions[0], dimensions[1], 42);
+    directory = Files.createTempDirectory("codec-benchmark").toFile();
+    png = new File(directory, "image.png").getPath();
+    jpg = new File(directory, "image.jpg").getPath();
+    ppm = new File(directory, "image.ppm").getPath();
+    imageUtil.saveImage(image, png);
+    imageUtil.saveImage(image, jpg);
+    imageUtil.savePPM(image, ppm);
+  }
+
+  /**
+   * Deletes the temporary files.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  @Benchmark
+  public CustomImage decodePng() throws IOException {
+    return imageUtil.loadImage(png);
+  }
+
+  @Benchmark
+  public CustomImage decodeJpg() throws IOException {
+    return imageUtil.loadImage(jpg);
+  }
+
+  @Benchmark
+  public CustomImage decodePpm() throws IOException {
+    return imageUtil.loadPPM(ppm);
+  }
+
+  @Benchmark
+  public void encodePng() throws IOException {
+    imageUtil.saveImage(image, new File(directory, "out.png").getPath());
+  }
+
+  @Benchmark
+  public void encodeJpg() throws IOException {
+    imageUtil.saveImage(image, new File(directory, "out.jpg").getPath());
+  }
+
+  @Benchmark
+  public void encodePpm() throws IOException {
+    imageUtil.savePPM(image, new File(directory, "out.ppm").getPath());
+  }
+}
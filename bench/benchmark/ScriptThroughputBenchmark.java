@@ -0,0 +1,280 @@
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import controller.Controller;
+import controller.ImageUtil;
+import model.CustomImage;
+
+/**
+ * Measures how many scripts a machine can run, end to end, through
+ * {@code Controller.executeScript}. It writes deterministic synthetic images
+ * and scripts of a chosen length and mix of operations to a temporary
+ * directory, runs a number of warmup scripts, then runs the measured scripts
+ * on one or more threads and reports latency percentiles, throughput and the
+ * peak resident memory of the process.
+ *
+ * <p>Options, all optional: {@code --scripts <n>} measured scripts (default 50),
+ * {@code --warmup <n>} warmup scripts (10), {@code --length <n>} operations per
+ * script (12), {@code --mix <op=weight,...>} the operations and how often each
+ * is picked (a mix like res/scriptfile.txt), {@code --size <w>x<h>} (640x480),
+ * {@code --images <n>} distinct input images (4), {@code --threads <n>} scripts
+ * run at once (1) and {@code --seed <n>} (1).
+ */
+public final class ScriptThroughputBenchmark {
+  private static final String DEFAULT_MIX = "grayscale=2,sepia=2,blur=2,sharpen=1,brighten=2,"
+          + "horizontal-flip=1,vertical-flip=1,red-component=1,luma-component=1,"
+          + "levels-adjust=1,color-correct=1,compress=1";
+
+  private ScriptThroughputBenchmark() {
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args the options described above.
+   * @throws Exception if the files cannot be written or a script fails.
+   */
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = parseOptions(args);
+    int scripts = Integer.parseInt(options.getOrDefault("scripts", "50"));
+    int warmup = Integer.parseInt(options.getOrDefault("warmup", "10"));
+    int length = Integer.parseInt(options.getOrDefault("length", "12"));
+    int[] size = SyntheticImages.parseSize(options.getOrDefault("size", "640x480"));
+    int images = Integer.parseInt(options.getOrDefault("images", "4"));
+    int threads = Integer.parseInt(options.getOrDefault("threads", "1"));
+    long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+    Map<String, Integer> mix = parseMix(options.getOrDefault("mix", DEFAULT_MIX));
+    if (scripts <= 0 || warmup < 0 || length <= 0 || images <= 0 || threads <= 0) {
+      throw new IllegalArgumentException("Counts must be positive.");
+    }
+
+    Path directory = Files.createTempDirectory("script-benchmark");
+    try {
+      List<String> inputs = new ArrayList<>();
+      ImageUtil imageUtil = new ImageUtil();
+      for (int i = 0; i < images; i++) {
+        String path = directory.resolve("input" + i + ".png").toString();
+        imageUtil.saveImage(SyntheticImages.create(size[0], size[1], seed + i), path);
+        inputs.add(path);
+      }
+      SplittableRandom random = new SplittableRandom(seed);
+      List<String> scriptPaths = new ArrayList<>();
+      for (int i = 0; i < warmup + scripts; i++) {
+        Path script = directory.resolve("script" + i + ".txt");
+        String output = directory.resolve("output" + i + ".png").toString();
+        Files.write(script, generateScript(inputs.get(i % images), output, length, mix, random));
+        scriptPaths.add(script.toString());
+      }
+
+      System.out.println(String.format(Locale.ROOT,
+              "%d warmup and %d measured scripts of %d operations on %dx%d images, %d thread(s)",
+              warmup, scripts, length, size[0], size[1], threads));
+      run(scriptPaths.subList(0, warmup), threads);
+      long start = System.nanoTime();
+      long[] latencies = run(scriptPaths.subList(warmup, scriptPaths.size()), threads);
+      double seconds = (System.nanoTime() - start) / 1e9;
+      report(latencies, seconds);
+    } finally {
+      deleteTree(directory.toFile());
+    }
+  }
+
+  /**
+   * Generates a script that loads an image, runs a chain of operations
+   * picked from the mix, and saves the result.
+   *
+   * @param input  the image file to load.
+   * @param output the file to save the result to.
+   * @param length the number of operations.
+   * @param mix    the operations and their weights.
+   * @param random the source of the picks.
+   * @return the lines of the script.
+   */
+  static List<String> generateScript(String input, String output, int length,
+                                     Map<String, Integer> mix, SplittableRandom random) {
+    int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+    List<String> lines = new ArrayList<>();
+    lines.add("load " + input + " i0");
+    for (int i = 0; i < length; i++) {
+      int pick = random.nextInt(total);
+      String operation = null;
+      for (Map.Entry<String, Integer> entry : mix.entrySet()) {
+        pick -= entry.getValue();
+        if (pick < 0) {
+          operation = entry.getKey();
+          break;
+        }
+      }
+      lines.add(command(operation, "i" + i, "i" + (i + 1), random));
+    }
+    lines.add("save " + output + " i" + length);
+    return lines;
+  }
+
+  /**
+   * Builds one command, with arguments for the operations that need them.
+   */
+  private static String command(String operation, String source, String destination,
+                                SplittableRandom random) {
+    switch (operation) {
+      case "brighten":
+        return "brighten " + (random.nextInt(81) - 40) + " " + source + " " + destination;
+      case "compress":
+        return "compress " + (10 + random.nextInt(81)) + " " + source + " " + destination;
+      case "levels-adjust":
+        return "levels-adjust 20 128 235 " + source + " " + destination;
+      default:
+        return operation + " " + source + " " + destination;
+    }
+  }
+
+  /**
+   * Runs scripts on a pool of threads, each thread with its own controller.
+   *
+   * @return the latency of each script in nanoseconds.
+   */
+  private static long[] run(List<String> scriptPaths, int threads) throws Exception {
+    long[] latencies = new long[scriptPaths.size()];
+    AtomicInteger next = new AtomicInteger();
+    PrintStream silent = new PrintStream(OutputStream.nullOutputStream());
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> workers = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        workers.add(pool.submit(() -> {
+          ImageUtil imageUtil = new ImageUtil();
+          for (int i = next.getAndIncrement(); i < latencies.length; i = next.getAndIncrement()) {
+            Map<String, CustomImage> imageMap = new HashMap<>();
+            Controller controller = new Controller(imageMap, imageUtil);
+            controller.setOutput(silent);
+            long start = System.nanoTime();
+            controller.executeScript(scriptPaths.get(i), imageUtil, imageMap);
+            latencies[i] = System.nanoTime() - start;
+          }
+          return null;
+        }));
+      }
+      for (Future<?> worker : workers) {
+        worker.get();
+      }
+    } finally {
+      pool.shutdown();
+    }
+    return latencies;
+  }
+
+  private static void report(long[] latencies, double seconds) {
+    long[] sorted = latencies.clone();
+    Arrays.sort(sorted);
+    System.out.println(String.format(Locale.ROOT,
+            "Latency ms: p50 %.1f, p90 %.1f, p99 %.1f, max %.1f",
+            percentile(sorted, 50) / 1e6, percentile(sorted, 90) / 1e6,
+            percentile(sorted, 99) / 1e6, sorted[sorted.length - 1] / 1e6));
+    System.out.println(String.format(Locale.ROOT,
+            "Throughput: %.2f scripts/s, %.1f scripts/min",
+            sorted.length / seconds, sorted.length / seconds * 60));
+    long peakResident = peakResidentBytes();
+    if (peakResident >= 0) {
+      System.out.println(String.format(Locale.ROOT, "Peak RSS: %.1f MB",
+              peakResident / (1024.0 * 1024.0)));
+    }
+    System.out.println(String.format(Locale.ROOT, "Peak heap: %.1f MB",
+            peakHeapBytes() / (1024.0 * 1024.0)));
+  }
+
+  /**
+   * Returns the value below which a percentage of sorted values fall,
+   * by the nearest-rank method.
+   */
+  static long percentile(long[] sorted, int percent) {
+    int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+    return sorted[Math.max(rank, 1) - 1];
+  }
+
+  /**
+   * Reads the peak resident set size of the process from /proc, or returns
+   * -1 where that is not available.
+   */
+  private static long peakResidentBytes() {
+    Path status = Paths.get("/proc/self/status");
+    try {
+      for (String line : Files.readAllLines(status)) {
+        if (line.startsWith("VmHWM:")) {
+          String[] fields = line.trim().split("\\s+");
+          return Long.parseLong(fields[1]) * 1024;
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      return -1;
+    }
+    return -1;
+  }
+
+  private static long peakHeapBytes() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    return peak;
+  }
+
+  private static Map<String, String> parseOptions(String[] args) {
+    Map<String, String> options = new HashMap<>();
+    for (int i = 0; i < args.length; i++) {
+      if (!args[i].startsWith("--") || i + 1 >= args.length) {
+        throw new IllegalArgumentException("Expected --<option> <value>: " + args[i]);
+      }
+      options.put(args[i].substring(2), args[++i]);
+    }
+    return options;
+  }
+
+  private static Map<String, Integer> parseMix(String mix) {
+    Map<String, Integer> weights = new LinkedHashMap<>();
+    for (String entry : mix.split(",")) {
+      String[] parts = entry.split("=");
+      int weight = parts.length > 1 ? Integer.parseInt(parts[1]) : 1;
+      if (weight > 0) {
+        weights.put(parts[0], weight);
+      }
+    }
+    if (weights.isEmpty()) {
+      throw new IllegalArgumentException("The mix has no operations: " + mix);
+    }
+    return weights;
+  }
+
+  private static void deleteTree(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        deleteTree(child);
+      }
+    }
+    file.delete();
+  }
+}
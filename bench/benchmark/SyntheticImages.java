@@ -0,0 +1,85 @@
+package benchmark;
+
+import java.util.SplittableRandom;
+
+import model.CustomImage;
+
+/**
+ * Builds deterministic synthetic images for benchmarks: smooth gradients with
+ * a few hard edges and some noise, so that kernels, histograms and codecs see
+ * content closer to a photo than a flat color or pure noise would be.
+ */
+public final class SyntheticImages {
+
+  private SyntheticImages() {
+  }
+
+  /**
+   * Creates a synthetic image.
+   *
+   * @param width  the width of the image.
+   * @param height the height of the image.
+   * @param seed   the seed of the noise, so the same seed gives the same image.
+   * @return the image.
+   */
+  public static CustomImage create(int width, int height, long seed) {
+    SplittableRandom random = new SplittableRandom(seed);
+    CustomImage image = new CustomImage(width, height);
+    int edgeX = width / 3 + random.nextInt(Math.max(width / 3, 1));
+    int edgeY = height / 3 + random.nextInt(Math.max(height / 3, 1));
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        int noise = random.nextInt(17) - 8;
+        int red = 255 * x / Math.max(width - 1, 1) + noise;
+        int green = 255 * y / Math.max(height - 1, 1) + noise;
+        int blue = (x < edgeX) == (y < edgeY) ? 200 + noise : 40 + noise;
+        image.setPixel(x, y, clamp(red), clamp(green), clamp(blue));
+      }
+    }
+    return image;
+  }
+
+  /**
+   * Creates a black and white mask that selects a centered rectangle.
+   *
+   * @param width  the width of the mask.
+   * @param height the height of the mask.
+   * @return the mask, black inside the rectangle and white outside it.
+   */
+  public static CustomImage mask(int width, int height) {
+    CustomImage mask = new CustomImage(width, height);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        boolean inside = x >= width / 4 && x < 3 * width / 4
+                && y >= height / 4 && y < 3 * height / 4;
+        int value = inside ? 0 : 255;
+        mask.setPixel(x, y, value, value, value);
+      }
+    }
+    return mask;
+  }
+
+  /**
+   * Parses a size such as {@code 1920x1080}.
+   *
+   * @param size the size.
+   * @return the width and height.
+   * @throws IllegalArgumentException if the size is not two positive numbers.
+   */
+  public static int[] parseSize(String size) {
+    String[] parts = size.split("x");
+    if (parts.length != 2) {
+      throw new IllegalArgumentException("Size must be <width>x<height>: " + size);
+    }
+    int width = Integer.parseInt(parts[0]);
+    int height = Integer.parseInt(parts[1]);
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("Size must be positive: " + size);
+    }
+    return new int[]{width, height};
+  }
+
+  private static int clamp(int value) {
+    return Math.max(0, Math.min(255, value));
+  }
+}
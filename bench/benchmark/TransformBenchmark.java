@@ -0,0 +1,237 @@
+package benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.AdvancedImageTransformations;
+import model.CompressUtil;
+import model.CustomImage;
+import model.GraphUtil;
+import model.KernelConvolution;
+
+/**
+ * Throughput of every operation of {@code Transform} and {@code AdvancedTransform},
+ * of channel compression and of histograms, on synthetic images of each size.
+ * Operations that change their input in place are given a copy, so every
+ * invocation sees the same image; since copies share their pixels until they
+ * are written, the cost of that first write is part of what is measured, as
+ * it is when the controller runs the same operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class TransformBenchmark {
+  private static final float[][] LENS_KERNEL = disc(15);
+
+  @Param({"256x256", "1920x1080", "3840x2160", "7680x4320"})
+  private String size;
+
+  private final AdvancedImageTransformations transformations = new AdvancedImageTransformations();
+  private CustomImage image;
+  private CustomImage mask;
+  private CustomImage[] channels;
+  private int[][] redChannel;
+
+  /**
+   * Builds the input images once per size.
+   */
+  @Setup(Level.Trial)
+  public void setUp() {
+    int[] dimensions = SyntheticImages.parseSize(size);
+    image = SyntheticImages.create(dimensions[0], dimensions[1], 42);
+    mask = SyntheticImages.mask(dimensions[0], dimensions[1]);
+    channels = transformations.splitRGB(image);
+    redChannel = image.getColorChannel(0);
+  }
+
+  /**
+   * A flat disc of a radius, the kernel of a lens blur.
+   */
+  private static float[][] disc(int radius) {
+    int side = 2 * radius + 1;
+    float[][] kernel = new float[side][side];
+    int count = 0;
+    for (int j = 0; j < side; j++) {
+      for (int i = 0; i < side; i++) {
+        int dx = i - radius;
+        int dy = j - radius;
+        if (dx * dx + dy * dy <= radius * radius) {
+          kernel[j][i] = 1;
+          count++;
+        }
+      }
+    }
+    for (float[] row : kernel) {
+      for (int i = 0; i < side; i++) {
+        row[i] /= count;
+      }
+    }
+    return kernel;
+  }
+
+  @Benchmark
+  public CustomImage grayscale() {
+    return transformations.applyGrayscale(image.copy());
+  }
+
+  @Benchmark
+  public CustomImage sepia() {
+    return transformations.applySepia(image.copy());
+  }
+
+  @Benchmark
+  public CustomImage brighten() {
+    return transformations.brighten(image.copy(), 20);
+  }
+
+  @Benchmark
+  public CustomImage adjustBrightness() {
+    return transformations.adjustBrightness(image.copy(), -20);
+  }
+
+  @Benchmark
+  public CustomImage flipHorizontal() {
+    return transformations.flipHorizontal(image);
+  }
+
+  @Benchmark
+  public CustomImage flipVertical() {
+    return transformations.flipVertical(image);
+  }
+
+  @Benchmark
+  public CustomImage blur() {
+    return transformations.blur(image);
+  }
+
+  @Benchmark
+  public CustomImage gaussianBlurExact() {
+    return transformations.blur(image, 4);
+  }
+
+  @Benchmark
+  public CustomImage gaussianBlurBoxes() {
+    return transformations.blur(image, 40);
+  }
+
+  @Benchmark
+  public CustomImage boxBlur() {
+    return transformations.boxBlur(image.copy(), 40);
+  }
+
+  @Benchmark
+  public CustomImage median() {
+    return transformations.median(image, 5);
+  }
+
+  @Benchmark
+  public CustomImage convolveLensBlur() {
+    return transformations.convolve(image, LENS_KERNEL);
+  }
+
+  @Benchmark
+  public CustomImage convolveLensBlurDirect() {
+    return KernelConvolution.convolve(image, LENS_KERNEL, KernelConvolution.Method.DIRECT);
+  }
+
+  @Benchmark
+  public CustomImage sharpen() {
+    return transformations.sharpen(image);
+  }
+
+  @Benchmark
+  public CustomImage visualizeRed() {
+    return transformations.visualizeRed(image.copy());
+  }
+
+  @Benchmark
+  public CustomImage visualizeGreen() {
+    return transformations.visualizeGreen(image.copy());
+  }
+
+  @Benchmark
+  public CustomImage visualizeBlue() {
+    return transformations.visualizeBlue(image.copy());
+  }
+
+  @Benchmark
+  public CustomImage visualizeValue() {
+    return transformations.visualizeValue(image.copy());
+  }
+
+  @Benchmark
+  public CustomImage visualizeIntensity() {
+    return transformations.visualizeIntensity(image.copy());
+  }
+
+  @Benchmark
+  public CustomImage visualizeLuma() {
+    return transformations.visualizeLuma(image.copy());
+  }
+
+  @Benchmark
+  public CustomImage[] splitRGB() {
+    return transformations.splitRGB(image);
+  }
+
+  @Benchmark
+  public CustomImage combineRGB() {
+    return transformations.combineRGB(channels[0], channels[1], channels[2]);
+  }
+
+  @Benchmark
+  public CustomImage levelsAdjust() {
+    return transformations.levelsAdjust(image.copy(), 20, 128, 235);
+  }
+
+  @Benchmark
+  public CustomImage colorCorrect() {
+    return transformations.colorCorrect(image.copy());
+  }
+
+  @Benchmark
+  public CustomImage compress() {
+    return transformations.compress(image, 50);
+  }
+
+  @Benchmark
+  public CustomImage splitViewBlur() {
+    return transformations.applySplitView(image, "blur", 50, new int[0]);
+  }
+
+  @Benchmark
+  public CustomImage splitViewSepia() {
+    return transformations.applySplitView(image, "sepia", 50, new int[0]);
+  }
+
+  @Benchmark
+  public CustomImage maskedBlur() {
+    return transformations.applyWithMask(image, mask, "blur");
+  }
+
+  @Benchmark
+  public int[][] compressChannel() {
+    return CompressUtil.compressChannel(redChannel, 50);
+  }
+
+  @Benchmark
+  public Map<String, int[]> generateHistogram() {
+    return GraphUtil.generateHistogram(image);
+  }
+}
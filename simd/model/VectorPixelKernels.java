@@ -0,0 +1,189 @@
+package model;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Point operations and convolution steps computed several values at a time
+ * with the Vector API.
+ * Channels are unpacked from the packed pixels into lanes, computed, and
+ * packed again; weighted sums are computed in doubles in the same order as
+ * the scalar kernels, so results are identical. Pixels left over after the
+ * last full vector are handed to the scalar kernels.
+ */
+final class VectorPixelKernels extends PixelKernels {
+  private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Integer> NARROW_INTS =
+          VectorSpecies.of(int.class, VectorShape.forBitSize(DOUBLES.length() * Integer.SIZE));
+
+  private final PixelKernels tail = PixelKernels.scalar();
+
+  @Override
+  public String getName() {
+    return "vector";
+  }
+
+  @Override
+  public void colorMatrix(int[] pixels, int from, int to, double[] redWeights,
+                          double[] greenWeights, double[] blueWeights) {
+    int i = from;
+    for (int bound = from + NARROW_INTS.loopBound(to - from); i < bound;
+         i += NARROW_INTS.length()) {
+      IntVector rgb = IntVector.fromArray(NARROW_INTS, pixels, i);
+      DoubleVector red = toDoubles(rgb.lanewise(VectorOperators.LSHR, 16).and(0xFF));
+      DoubleVector green = toDoubles(rgb.lanewise(VectorOperators.LSHR, 8).and(0xFF));
+      DoubleVector blue = toDoubles(rgb.and(0xFF));
+      pack(weighted(red, green, blue, redWeights), weighted(red, green, blue, greenWeights),
+              weighted(red, green, blue, blueWeights)).intoArray(pixels, i);
+    }
+    tail.colorMatrix(pixels, i, to, redWeights, greenWeights, blueWeights);
+  }
+
+  @Override
+  public void brighten(int[] pixels, int from, int to, int increment) {
+    int i = from;
+    for (int bound = from + INTS.loopBound(to - from); i < bound; i += INTS.length()) {
+      IntVector rgb = IntVector.fromArray(INTS, pixels, i);
+      pack(clamp(red(rgb).add(increment)), clamp(green(rgb).add(increment)),
+              clamp(blue(rgb).add(increment))).intoArray(pixels, i);
+    }
+    tail.brighten(pixels, i, to, increment);
+  }
+
+  @Override
+  public void lookup(int[] pixels, int from, int to, int[] table) {
+    int[] indexes = new int[INTS.length()];
+    int i = from;
+    for (int bound = from + INTS.loopBound(to - from); i < bound; i += INTS.length()) {
+      IntVector rgb = IntVector.fromArray(INTS, pixels, i);
+      red(rgb).intoArray(indexes, 0);
+      IntVector red = IntVector.fromArray(INTS, table, 0, indexes, 0);
+      green(rgb).intoArray(indexes, 0);
+      IntVector green = IntVector.fromArray(INTS, table, 0, indexes, 0);
+      blue(rgb).intoArray(indexes, 0);
+      IntVector blue = IntVector.fromArray(INTS, table, 0, indexes, 0);
+      pack(red, green, blue).intoArray(pixels, i);
+    }
+    tail.lookup(pixels, i, to, table);
+  }
+
+  @Override
+  public void channel(int[] pixels, int from, int to, int channel) {
+    int shift = 16 - 8 * channel;
+    int i = from;
+    for (int bound = from + INTS.loopBound(to - from); i < bound; i += INTS.length()) {
+      IntVector rgb = IntVector.fromArray(INTS, pixels, i);
+      gray(rgb.lanewise(VectorOperators.LSHR, shift).and(0xFF)).intoArray(pixels, i);
+    }
+    tail.channel(pixels, i, to, channel);
+  }
+
+  @Override
+  public void value(int[] pixels, int from, int to) {
+    int i = from;
+    for (int bound = from + INTS.loopBound(to - from); i < bound; i += INTS.length()) {
+      IntVector rgb = IntVector.fromArray(INTS, pixels, i);
+      gray(red(rgb).max(green(rgb).max(blue(rgb)))).intoArray(pixels, i);
+    }
+    tail.value(pixels, i, to);
+  }
+
+  @Override
+  public void intensity(int[] pixels, int from, int to) {
+    int i = from;
+    for (int bound = from + INTS.loopBound(to - from); i < bound; i += INTS.length()) {
+      IntVector rgb = IntVector.fromArray(INTS, pixels, i);
+      IntVector sum = red(rgb).add(green(rgb)).add(blue(rgb));
+      // sum * 21846 >> 16 equals sum / 3 for every sum up to 765.
+      gray(sum.mul(21846).lanewise(VectorOperators.LSHR, 16)).intoArray(pixels, i);
+    }
+    tail.intensity(pixels, i, to);
+  }
+
+  @Override
+  public void unpack(int[] pixels, int offset, int[] red, int[] green, int[] blue,
+                     int channelOffset, int length) {
+    int i = 0;
+    for (int bound = INTS.loopBound(length); i < bound; i += INTS.length()) {
+      IntVector rgb = IntVector.fromArray(INTS, pixels, offset + i);
+      red(rgb).intoArray(red, channelOffset + i);
+      green(rgb).intoArray(green, channelOffset + i);
+      blue(rgb).intoArray(blue, channelOffset + i);
+    }
+    tail.unpack(pixels, offset + i, red, green, blue, channelOffset + i, length - i);
+  }
+
+  @Override
+  public void pack(int[] red, int[] green, int[] blue, int channelOffset,
+                   int[] pixels, int offset, int length) {
+    int i = 0;
+    for (int bound = INTS.loopBound(length); i < bound; i += INTS.length()) {
+      pack(IntVector.fromArray(INTS, red, channelOffset + i),
+              IntVector.fromArray(INTS, green, channelOffset + i),
+              IntVector.fromArray(INTS, blue, channelOffset + i)).intoArray(pixels, offset + i);
+    }
+    tail.pack(red, green, blue, channelOffset + i, pixels, offset + i, length - i);
+  }
+
+  @Override
+  public void multiplyAdd(int[] target, int targetOffset, int[] source, int sourceOffset,
+                          int length, int weight) {
+    int i = 0;
+    for (int bound = INTS.loopBound(length); i < bound; i += INTS.length()) {
+      IntVector.fromArray(INTS, source, sourceOffset + i).mul(weight)
+              .add(IntVector.fromArray(INTS, target, targetOffset + i))
+              .intoArray(target, targetOffset + i);
+    }
+    tail.multiplyAdd(target, targetOffset + i, source, sourceOffset + i, length - i, weight);
+  }
+
+  @Override
+  public void roundShiftClamp(int[] values, int offset, int length, int shift) {
+    int half = shift > 0 ? 1 << (shift - 1) : 0;
+    int i = 0;
+    for (int bound = INTS.loopBound(length); i < bound; i += INTS.length()) {
+      clamp(IntVector.fromArray(INTS, values, offset + i).add(half)
+              .lanewise(VectorOperators.ASHR, shift)).intoArray(values, offset + i);
+    }
+    tail.roundShiftClamp(values, offset + i, length - i, shift);
+  }
+
+  private static IntVector red(IntVector rgb) {
+    return rgb.lanewise(VectorOperators.LSHR, 16).and(0xFF);
+  }
+
+  private static IntVector green(IntVector rgb) {
+    return rgb.lanewise(VectorOperators.LSHR, 8).and(0xFF);
+  }
+
+  private static IntVector blue(IntVector rgb) {
+    return rgb.and(0xFF);
+  }
+
+  private static IntVector clamp(IntVector channel) {
+    return channel.max(0).min(255);
+  }
+
+  private static IntVector pack(IntVector red, IntVector green, IntVector blue) {
+    return red.lanewise(VectorOperators.LSHL, 16)
+            .or(green.lanewise(VectorOperators.LSHL, 8)).or(blue);
+  }
+
+  private static IntVector gray(IntVector value) {
+    return pack(value, value, value);
+  }
+
+  private static DoubleVector toDoubles(IntVector channel) {
+    return (DoubleVector) channel.convertShape(VectorOperators.I2D, DOUBLES, 0);
+  }
+
+  private static IntVector weighted(DoubleVector red, DoubleVector green, DoubleVector blue,
+                                    double[] weights) {
+    DoubleVector sum = red.mul(weights[0]).add(green.mul(weights[1])).add(blue.mul(weights[2]));
+    return clamp((IntVector) sum.convertShape(VectorOperators.D2I, NARROW_INTS, 0));
+  }
+}
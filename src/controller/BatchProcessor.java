@@ -0,0 +1,312 @@
+package controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import model.CustomImage;
+import model.ImageHistory;
+
+/**
+ * Applies a script template to every image in a directory tree.
+ * The template may use {input} for the path of the image, {output} for the
+ * matching path under the output directory, {name} for the image's path
+ * relative to the input directory without its extension, and {output-dir}.
+ * The loads at the start of the template are run on an I/O pool, the saves
+ * at its end are run on the I/O pool as well, and everything in between is run
+ * on a CPU pool. At most a fixed number of images are in flight at once, so
+ * memory stays bounded however many files there are.
+ */
+public class BatchProcessor {
+  /**
+   * The file extensions of the images a batch picks up.
+   */
+  public static final Set<String> IMAGE_EXTENSIONS = Set.of("png", "jpg", "jpeg", "bmp", "ppm");
+
+  private static final PrintStream SILENT = new PrintStream(OutputStream.nullOutputStream());
+
+  private final CompiledScript template;
+  private final int firstProcess;
+  private final int firstEncode;
+  private final int ioThreads;
+  private final int cpuThreads;
+  private final int maxInFlight;
+  private ResultCache resultCache;
+  private CommandMetrics metrics;
+
+  private final AtomicLong processed = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+  private final AtomicLong pixels = new AtomicLong();
+  private final AtomicLong bytesRead = new AtomicLong();
+  private final AtomicLong bytesWritten = new AtomicLong();
+  private final AtomicLong decodeNanos = new AtomicLong();
+  private final AtomicLong processNanos = new AtomicLong();
+  private final AtomicLong encodeNanos = new AtomicLong();
+
+  /**
+   * Constructs a batch processor for a script template.
+   *
+   * @param template    the lines of the script template.
+   * @param ioThreads   the number of threads that read and write files.
+   * @param cpuThreads  the number of threads that transform images.
+   * @param maxInFlight the most images that may be loaded at once.
+   * @throws IllegalArgumentException if a count is not positive, or the template
+   *                                  is empty or has invalid commands.
+   */
+  public BatchProcessor(List<String> template, int ioThreads, int cpuThreads, int maxInFlight) {
+    if (ioThreads <= 0 || cpuThreads <= 0 || maxInFlight <= 0) {
+      throw new IllegalArgumentException("Thread and in-flight counts must be positive.");
+    }
+    this.template = ScriptCompiler.compile(template);
+    List<CompiledCommand> commands = this.template.getCommands();
+    if (commands.isEmpty()) {
+      throw new IllegalArgumentException("The script template has no commands.");
+    }
+    int process = 0;
+    while (process < commands.size() && command(process).startsWith("load")) {
+      process++;
+    }
+    int encode = commands.size();
+    while (encode > process && command(encode - 1).equals("save")) {
+      encode--;
+    }
+    this.firstProcess = process;
+    this.firstEncode = encode;
+    this.ioThreads = ioThreads;
+    this.cpuThreads = cpuThreads;
+    this.maxInFlight = maxInFlight;
+  }
+
+  /**
+   * Sets a cache of command results shared by every image of the batch.
+   *
+   * @param resultCache the cache to use, or null for none.
+   */
+  public void setResultCache(ResultCache resultCache) {
+    this.resultCache = resultCache;
+  }
+
+  /**
+   * Sets where the commands of every image of the batch are measured.
+   *
+   * @param metrics the metrics to record into, or null for none.
+   */
+  public void setMetrics(CommandMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Runs the template on every image under a directory and waits for all of them.
+   * Images that fail are reported and counted, and do not stop the batch.
+   *
+   * @param inputDirectory  the directory tree to read images from.
+   * @param outputDirectory the directory to write results under.
+   * @return a summary of the files processed and the throughput.
+   * @throws IOException          if the input directory cannot be listed.
+   * @throws InterruptedException if the batch is interrupted while waiting.
+   */
+  public String run(Path inputDirectory, Path outputDirectory)
+          throws IOException, InterruptedException {
+    List<Path> inputs;
+    try (Stream<Path> files = Files.walk(inputDirectory)) {
+      inputs = files.filter(Files::isRegularFile)
+              .filter(BatchProcessor::isImage)
+              .sorted()
+              .collect(Collectors.toList());
+    }
+
+    ExecutorService ioPool = Executors.newFixedThreadPool(ioThreads);
+    ExecutorService cpuPool = Executors.newFixedThreadPool(cpuThreads);
+    Semaphore inFlight = new Semaphore(maxInFlight);
+    long start = System.nanoTime();
+    try {
+      for (Path input : inputs) {
+        inFlight.acquire();
+        Job job = new Job(input, inputDirectory, outputDirectory);
+        ioPool.execute(() -> {
+          if (job.runStage(0, firstProcess, decodeNanos)) {
+            job.countInput();
+            cpuPool.execute(() -> {
+              if (job.runStage(firstProcess, firstEncode, processNanos)) {
+                ioPool.execute(() -> {
+                  if (job.runStage(firstEncode, template.getCommands().size(), encodeNanos)) {
+                    job.finish();
+                  }
+                  inFlight.release();
+                });
+              } else {
+                inFlight.release();
+              }
+            });
+          } else {
+            inFlight.release();
+          }
+        });
+      }
+      inFlight.acquire(maxInFlight);
+    } finally {
+      ioPool.shutdown();
+      cpuPool.shutdown();
+      ioPool.awaitTermination(1, TimeUnit.MINUTES);
+      cpuPool.awaitTermination(1, TimeUnit.MINUTES);
+    }
+    return summarize(System.nanoTime() - start);
+  }
+
+  /**
+   * Returns the number of images that were processed and saved.
+   *
+   * @return the processed count.
+   */
+  public long getProcessed() {
+    return processed.get();
+  }
+
+  /**
+   * Returns the number of images that failed.
+   *
+   * @return the failed count.
+   */
+  public long getFailed() {
+    return failed.get();
+  }
+
+  private String summarize(long elapsedNanos) {
+    double seconds = Math.max(elapsedNanos, 1) / 1e9;
+    return String.format(Locale.ROOT,
+            "Processed %d images (%d failed) in %.2f s: %.1f images/s, %.1f MP/s, "
+                    + "%.1f MB/s read, %.1f MB/s written%n"
+                    + "Busy time: decode %.2f s on %d I/O threads, process %.2f s on %d CPU threads, "
+                    + "encode %.2f s",
+            processed.get(), failed.get(), seconds, processed.get() / seconds,
+            pixels.get() / 1e6 / seconds,
+            bytesRead.get() / (1024.0 * 1024.0) / seconds,
+            bytesWritten.get() / (1024.0 * 1024.0) / seconds,
+            decodeNanos.get() / 1e9, ioThreads, processNanos.get() / 1e9, cpuThreads,
+            encodeNanos.get() / 1e9);
+  }
+
+  private String command(int index) {
+    return template.getCommands().get(index).getStep().getCommand();
+  }
+
+  private static boolean isImage(Path path) {
+    String name = path.getFileName().toString();
+    int dot = name.lastIndexOf('.');
+    return dot > 0 && IMAGE_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+  }
+
+  /**
+   * The template applied to one image, with its own images and controller.
+   */
+  private class Job {
+    private final Path input;
+    private final Map<String, String> placeholders;
+    private final Map<String, CustomImage> imageMap;
+    private final Controller controller;
+    private final List<String> outputs;
+
+    /**
+     * Prepares the template for one image.
+     */
+    Job(Path input, Path inputDirectory, Path outputDirectory) {
+      this.input = input;
+      String relative = inputDirectory.relativize(input).toString();
+      int dot = relative.lastIndexOf('.');
+      this.placeholders = new HashMap<>();
+      placeholders.put("{input}", input.toString());
+      placeholders.put("{output}", outputDirectory.resolve(relative).toString());
+      placeholders.put("{name}", relative.substring(0, dot));
+      placeholders.put("{output-dir}", outputDirectory.toString());
+      this.imageMap = new HashMap<>();
+      this.controller = new Controller(imageMap, new ImageUtil());
+      controller.setOutput(SILENT);
+      controller.setHistory(new ImageHistory(0));
+      controller.setResultCache(resultCache);
+      controller.setMetrics(metrics);
+      this.outputs = new ArrayList<>();
+    }
+
+    /**
+     * Runs some of the template's commands on this image.
+     *
+     * @return true if they all succeeded.
+     */
+    boolean runStage(int from, int to, AtomicLong busyNanos) {
+      long start = System.nanoTime();
+      try {
+        for (int i = from; i < to; i++) {
+          ScriptStep step = template.getCommands().get(i).getStep();
+          if (step.getCommand().equals("save")) {
+            String output = expand(step.getParts()[1]);
+            File parent = new File(output).getAbsoluteFile().getParentFile();
+            if (parent != null) {
+              parent.mkdirs();
+            }
+            outputs.add(output);
+          }
+        }
+        template.run(controller, placeholders, from, to);
+        return true;
+      } catch (Exception e) {
+        failed.incrementAndGet();
+        System.out.println("Failed " + input + ": " + e);
+        imageMap.clear();
+        return false;
+      } finally {
+        busyNanos.addAndGet(System.nanoTime() - start);
+      }
+    }
+
+    /**
+     * Counts the bytes and pixels read for this image.
+     */
+    void countInput() {
+      bytesRead.addAndGet(input.toFile().length());
+      for (CustomImage image : imageMap.values()) {
+        pixels.addAndGet((long) image.getWidth() * image.getHeight());
+      }
+    }
+
+    /**
+     * Counts this image as processed, along with the bytes written for it, or
+     * as failed if a save did not write its file, and frees its images.
+     */
+    void finish() {
+      imageMap.clear();
+      for (String output : outputs) {
+        File file = new File(output);
+        if (!file.isFile()) {
+          failed.incrementAndGet();
+          System.out.println("Failed " + input + ": " + output + " was not written");
+          return;
+        }
+        bytesWritten.addAndGet(file.length());
+      }
+      processed.incrementAndGet();
+    }
+
+    private String expand(String argument) {
+      for (Map.Entry<String, String> placeholder : placeholders.entrySet()) {
+        argument = argument.replace(placeholder.getKey(), placeholder.getValue());
+      }
+      return argument;
+    }
+  }
+}
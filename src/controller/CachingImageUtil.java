@@ -0,0 +1,61 @@
+package controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import model.CustomImage;
+
+/**
+ * An ImageUtil that remembers decoded images in a result cache, keyed by the
+ * file's path, size and modification time, so that loading a file again
+ * returns a copy of the decoded image until the file changes.
+ */
+public class CachingImageUtil extends ImageUtil {
+  private final ResultCache cache;
+
+  /**
+   * Constructs an ImageUtil that keeps decoded images in a cache.
+   *
+   * @param cache the cache to keep decoded images in.
+   */
+  public CachingImageUtil(ResultCache cache) {
+    this.cache = cache;
+  }
+
+  @Override
+  public CustomImage loadImage(String filePath) throws IOException {
+    String key = fileKey("load", filePath);
+    CustomImage[] cached = cache.get(key);
+    if (cached != null) {
+      return cached[0];
+    }
+    CustomImage image = super.loadImage(filePath);
+    cache.put(key, new CustomImage[]{image});
+    return image;
+  }
+
+  @Override
+  public CustomImage loadPPM(String filePath) throws IOException {
+    String key = fileKey("load-ppm", filePath);
+    CustomImage[] cached = cache.get(key);
+    if (cached != null) {
+      return cached[0];
+    }
+    CustomImage image = super.loadPPM(filePath);
+    cache.put(key, new CustomImage[]{image});
+    return image;
+  }
+
+  /**
+   * Builds the cache key of a file from its absolute path, size and modification time.
+   */
+  private static String fileKey(String command, String filePath) throws IOException {
+    File file = new File(filePath).getAbsoluteFile();
+    if (!file.isFile()) {
+      throw new IOException("File not found: " + filePath);
+    }
+    return ResultCache.key(List.of(command, file.getPath(),
+            String.valueOf(file.length()), String.valueOf(file.lastModified())));
+  }
+}
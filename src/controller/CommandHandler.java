@@ -0,0 +1,19 @@
+package controller;
+
+/**
+ * Runs one command on a controller, given the command split into its name
+ * and arguments. Each command name is resolved to its handler once, so that
+ * compiled scripts can run without looking it up again.
+ */
+@FunctionalInterface
+interface CommandHandler {
+
+  /**
+   * Runs the command.
+   *
+   * @param controller the controller whose images the command works on.
+   * @param parts      the command split into its name and arguments.
+   * @throws Exception if an error occurs while running the command.
+   */
+  void handle(ControllerAbstract controller, String[] parts) throws Exception;
+}
@@ -0,0 +1,204 @@
+package controller;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Records, for each command and each image decode and encode, how many times
+ * it ran, its wall and CPU time, the bytes it allocated, the megapixels it
+ * produced per second and the most image memory held after it.
+ * CPU time and allocation are measured on the thread that runs the command,
+ * so commands running on several threads at once are measured separately.
+ * Measurements that the JVM does not support are recorded as zero.
+ * All methods are safe to call from several threads.
+ */
+public class CommandMetrics implements CommandMetricsMXBean {
+  /**
+   * The name the metrics are registered under with {@link #register()}.
+   */
+  public static final String OBJECT_NAME = "controller:type=CommandMetrics";
+
+  private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+  private final Map<String, Stats> stats = new TreeMap<>();
+  private long peakImageMemory;
+
+  /**
+   * Starts measuring something on the current thread.
+   *
+   * @return the measurements at the start, to pass to {@link #stop}.
+   */
+  public Sample start() {
+    return new Sample(System.nanoTime(), cpuTime(), allocatedBytes());
+  }
+
+  /**
+   * Finishes measuring something started on the current thread and records it.
+   *
+   * @param name        the name of the command or operation.
+   * @param start       the measurements returned by {@link #start()}.
+   * @param pixels      the number of pixels the command produced or consumed.
+   * @param imageMemory the bytes held by images once it finished, or -1 if unknown.
+   */
+  public void stop(String name, Sample start, long pixels, long imageMemory) {
+    long wall = System.nanoTime() - start.wallNanos;
+    long cpu = start.cpuNanos < 0 ? 0 : Math.max(cpuTime() - start.cpuNanos, 0);
+    long allocated = start.allocatedBytes < 0 ? 0
+            : Math.max(allocatedBytes() - start.allocatedBytes, 0);
+    synchronized (this) {
+      Stats entry = stats.computeIfAbsent(name, k -> new Stats());
+      entry.count++;
+      entry.wallNanos += wall;
+      entry.maxWallNanos = Math.max(entry.maxWallNanos, wall);
+      entry.cpuNanos += cpu;
+      entry.allocatedBytes += allocated;
+      entry.pixels += pixels;
+      entry.peakImageMemory = Math.max(entry.peakImageMemory, imageMemory);
+      peakImageMemory = Math.max(peakImageMemory, imageMemory);
+    }
+  }
+
+  /**
+   * Registers these metrics with the platform MBean server under {@link #OBJECT_NAME}.
+   *
+   * @throws JMException if metrics are already registered under that name.
+   */
+  public void register() throws JMException {
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+  }
+
+  @Override
+  public synchronized String[] getCommandNames() {
+    return stats.keySet().toArray(new String[0]);
+  }
+
+  @Override
+  public synchronized long getCount() {
+    long count = 0;
+    for (Stats entry : stats.values()) {
+      count += entry.count;
+    }
+    return count;
+  }
+
+  @Override
+  public synchronized double getTotalWallMillis() {
+    long wall = 0;
+    for (Stats entry : stats.values()) {
+      wall += entry.wallNanos;
+    }
+    return wall / 1e6;
+  }
+
+  @Override
+  public synchronized long getPeakImageMemory() {
+    return peakImageMemory;
+  }
+
+  @Override
+  public synchronized String getTable() {
+    StringBuilder table = new StringBuilder(String.format(Locale.ROOT,
+            "%-20s %6s %10s %10s %10s %10s %10s %9s%n", "command", "count", "wall ms",
+            "max ms", "cpu ms", "alloc MB", "MP/s", "peak MB"));
+    for (Map.Entry<String, Stats> entry : stats.entrySet()) {
+      Stats s = entry.getValue();
+      table.append(String.format(Locale.ROOT,
+              "%-20s %6d %10.1f %10.1f %10.1f %10.1f %10.1f %9.1f%n", entry.getKey(), s.count,
+              s.wallNanos / 1e6, s.maxWallNanos / 1e6, s.cpuNanos / 1e6,
+              megabytes(s.allocatedBytes), s.megapixelsPerSecond(),
+              megabytes(s.peakImageMemory)));
+    }
+    table.append(String.format(Locale.ROOT, "Peak image memory: %.1f MB",
+            megabytes(peakImageMemory)));
+    return table.toString();
+  }
+
+  @Override
+  public synchronized String getJson() {
+    StringBuilder json = new StringBuilder("{\"commands\":{");
+    boolean first = true;
+    for (Map.Entry<String, Stats> entry : stats.entrySet()) {
+      Stats s = entry.getValue();
+      if (!first) {
+        json.append(',');
+      }
+      first = false;
+      json.append('"').append(escape(entry.getKey())).append("\":")
+              .append(String.format(Locale.ROOT,
+                      "{\"count\":%d,\"wallMillis\":%.3f,\"maxWallMillis\":%.3f,"
+                              + "\"cpuMillis\":%.3f,\"allocatedBytes\":%d,\"pixels\":%d,"
+                              + "\"megapixelsPerSecond\":%.3f,\"peakImageMemoryBytes\":%d}",
+                      s.count, s.wallNanos / 1e6, s.maxWallNanos / 1e6, s.cpuNanos / 1e6,
+                      s.allocatedBytes, s.pixels, s.megapixelsPerSecond(),
+                      Math.max(s.peakImageMemory, 0)));
+    }
+    return json.append("},\"peakImageMemoryBytes\":").append(peakImageMemory).append('}')
+            .toString();
+  }
+
+  @Override
+  public synchronized void reset() {
+    stats.clear();
+    peakImageMemory = 0;
+  }
+
+  private static long cpuTime() {
+    return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+  }
+
+  private static long allocatedBytes() {
+    if (THREADS instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+      if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+    }
+    return -1;
+  }
+
+  private static double megabytes(long bytes) {
+    return Math.max(bytes, 0) / (1024.0 * 1024.0);
+  }
+
+  private static String escape(String text) {
+    return text.replace("\\", "\\\\").replace("\"", "\\\"");
+  }
+
+  /**
+   * The clock, CPU time and allocation counter of a thread when a measurement started.
+   */
+  public static final class Sample {
+    private final long wallNanos;
+    private final long cpuNanos;
+    private final long allocatedBytes;
+
+    private Sample(long wallNanos, long cpuNanos, long allocatedBytes) {
+      this.wallNanos = wallNanos;
+      this.cpuNanos = cpuNanos;
+      this.allocatedBytes = allocatedBytes;
+    }
+  }
+
+  /**
+   * The totals recorded for one command.
+   */
+  private static class Stats {
+    private long count;
+    private long wallNanos;
+    private long maxWallNanos;
+    private long cpuNanos;
+    private long allocatedBytes;
+    private long pixels;
+    private long peakImageMemory = -1;
+
+    double megapixelsPerSecond() {
+      return wallNanos == 0 ? 0 : pixels / 1e6 / (wallNanos / 1e9);
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package controller;
+
+/**
+ * The management interface of {@link CommandMetrics}, through which a running
+ * server's command statistics can be read with JMX tools such as JConsole.
+ */
+public interface CommandMetricsMXBean {
+
+  /**
+   * Returns the names of the commands and I/O operations recorded so far.
+   *
+   * @return the names, sorted.
+   */
+  String[] getCommandNames();
+
+  /**
+   * Returns the number of commands and I/O operations recorded so far.
+   *
+   * @return the count.
+   */
+  long getCount();
+
+  /**
+   * Returns the total wall time of everything recorded, in milliseconds.
+   *
+   * @return the total wall time.
+   */
+  double getTotalWallMillis();
+
+  /**
+   * Returns the most memory held by images after any command, in bytes.
+   *
+   * @return the peak image memory.
+   */
+  long getPeakImageMemory();
+
+  /**
+   * Returns the statistics as a text table with one row per name.
+   *
+   * @return the table.
+   */
+  String getTable();
+
+  /**
+   * Returns the statistics as a JSON object.
+   *
+   * @return the JSON text.
+   */
+  String getJson();
+
+  /**
+   * Forgets everything recorded so far.
+   */
+  void reset();
+}
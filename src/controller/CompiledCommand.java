@@ -0,0 +1,76 @@
+package controller;
+
+import java.util.Map;
+
+/**
+ * One validated command of a compiled script, with its handler already
+ * resolved. Arguments may hold placeholders such as {input}, which are
+ * replaced each time the command runs.
+ */
+public class CompiledCommand {
+  private final ScriptStep step;
+  private final CommandHandler handler;
+  private final int[] boundPositions;
+  private final int[] intPositions;
+
+  /**
+   * Constructs a compiled command.
+   *
+   * @param step           the parsed command.
+   * @param handler        the handler that runs it.
+   * @param boundPositions the argument positions that hold placeholders.
+   * @param intPositions   the argument positions that must hold integers.
+   */
+  CompiledCommand(ScriptStep step, CommandHandler handler, int[] boundPositions,
+                  int[] intPositions) {
+    this.step = step;
+    this.handler = handler;
+    this.boundPositions = boundPositions;
+    this.intPositions = intPositions;
+  }
+
+  /**
+   * Returns the parsed command, with any placeholders left in place.
+   *
+   * @return the step.
+   */
+  public ScriptStep getStep() {
+    return step;
+  }
+
+  /**
+   * Runs the command on a controller.
+   *
+   * @param controller the controller whose images the command works on.
+   * @param bindings   the values of placeholders, by placeholder such as "{input}".
+   * @throws IllegalArgumentException if a placeholder is replaced by something
+   *                                  that is not an integer where one is needed.
+   * @throws Exception                if the command fails.
+   */
+  void run(ControllerAbstract controller, Map<String, String> bindings) throws Exception {
+    String[] parts = step.getParts();
+    if (boundPositions.length > 0) {
+      parts = bind(parts, bindings);
+    }
+    controller.execute(parts[0], parts, handler, step);
+  }
+
+  /**
+   * Replaces the placeholders in a copy of the command's parts.
+   */
+  private String[] bind(String[] parts, Map<String, String> bindings) {
+    String[] bound = parts.clone();
+    for (int position : boundPositions) {
+      for (Map.Entry<String, String> binding : bindings.entrySet()) {
+        bound[position] = bound[position].replace(binding.getKey(), binding.getValue());
+      }
+    }
+    for (int position : intPositions) {
+      if (!ScriptCompiler.isInteger(bound[position])) {
+        throw new IllegalArgumentException(step + ": expected an integer for argument "
+                + position + ", got '" + bound[position] + "'");
+      }
+    }
+    return bound;
+  }
+}
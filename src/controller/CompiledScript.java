@@ -0,0 +1,73 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A script that has been parsed and validated once, and can be run any number
+ * of times, on different controllers and with different placeholder values,
+ * without parsing it again.
+ */
+public class CompiledScript {
+  private final List<CompiledCommand> commands;
+
+  /**
+   * Constructs a compiled script.
+   *
+   * @param commands the compiled commands in order.
+   */
+  CompiledScript(List<CompiledCommand> commands) {
+    this.commands = Collections.unmodifiableList(commands);
+  }
+
+  /**
+   * Returns the commands of the script in order.
+   *
+   * @return the compiled commands.
+   */
+  public List<CompiledCommand> getCommands() {
+    return commands;
+  }
+
+  /**
+   * Returns the script as a plan, for pruning or scheduling.
+   *
+   * @return a plan holding the steps of the script.
+   */
+  public ScriptPlan toPlan() {
+    List<ScriptStep> steps = new ArrayList<>();
+    for (CompiledCommand command : commands) {
+      steps.add(command.getStep());
+    }
+    return ScriptPlan.of(steps);
+  }
+
+  /**
+   * Runs every command of the script on a controller.
+   *
+   * @param controller the controller whose images the script works on.
+   * @param bindings   the values of placeholders, by placeholder such as "{input}".
+   * @throws Exception if a command fails.
+   */
+  public void run(ControllerAbstract controller, Map<String, String> bindings) throws Exception {
+    run(controller, bindings, 0, commands.size());
+  }
+
+  /**
+   * Runs some of the commands of the script on a controller.
+   *
+   * @param controller the controller whose images the script works on.
+   * @param bindings   the values of placeholders, by placeholder such as "{input}".
+   * @param from       the index of the first command to run.
+   * @param to         the index after the last command to run.
+   * @throws Exception if a command fails.
+   */
+  public void run(ControllerAbstract controller, Map<String, String> bindings, int from, int to)
+          throws Exception {
+    for (int i = from; i < to; i++) {
+      commands.get(i).run(controller, bindings);
+    }
+  }
+}
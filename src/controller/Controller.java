@@ -1,12 +1,24 @@
 package controller;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Scanner;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import model.CustomImage;
 
@@ -16,6 +28,8 @@ import model.CustomImage;
  * batch commands from a script file.
  */
 public class Controller extends ControllerAbstract {
+  private static final int STREAM_QUEUE = 1024;
+  private static final int STREAM_PREFETCH = 2;
 
   /**
    * Constructs a Controller instance with the specified image map and image utility.
@@ -37,6 +51,16 @@ public class Controller extends ControllerAbstract {
   public static void main(String[] args) throws Exception {
 
     Map<String, CustomImage> imageMap = new HashMap<>();
+    for (int i = 0; i + 1 < args.length; i++) {
+      if (args[i].equals("-memory")) {
+        imageMap = new ImageStore(Long.parseLong(args[i + 1]) * 1024 * 1024);
+      }
+    }
+    if (Arrays.asList(args).contains("-stream")) {
+      new Controller(imageMap, new ImageUtil()).runStream(System.in, System.out,
+              Arrays.asList(args).contains("-quiet"));
+      return;
+    }
     ImageUtil imageUtil = new ImageUtil();
     Scanner scanner = new Scanner(System.in);
     ControllerAbstract controller = new Controller(imageMap, imageUtil);
@@ -61,6 +85,115 @@ public class Controller extends ControllerAbstract {
     scanner.close();
   }
 
+  /**
+   * Runs commands read from a stream, for use by other programs. Each command
+   * gets one tab-separated response line: {@code ok}, its line number, the time
+   * taken in milliseconds and its messages joined by " | ", or {@code error},
+   * its line number, the time taken and the error, for a command that threw or
+   * could not be carried out, such as an unknown command or a missing image.
+   * Input is read on a separate thread, which starts decoding the files of
+   * upcoming loads while the current command runs. Responses are buffered and
+   * flushed whenever no more input is waiting. The stream ends at end of input
+   * or an {@code exit} command.
+   *
+   * @param input  the stream to read commands from, one per line.
+   * @param output the stream to write responses to.
+   * @param quiet  whether to write responses only for commands that fail.
+   * @throws InterruptedException if interrupted while waiting for input.
+   */
+  public void runStream(InputStream input, OutputStream output, boolean quiet)
+          throws InterruptedException {
+    PrefetchingImageUtil prefetcher = new PrefetchingImageUtil(STREAM_PREFETCH);
+    imageUtil = prefetcher;
+    BlockingQueue<String[]> lines = new LinkedBlockingQueue<>(STREAM_QUEUE);
+    Thread reader = new Thread(() -> readStream(input, lines, prefetcher), "stream-reader");
+    reader.setDaemon(true);
+    reader.start();
+
+    PrintStream out = new PrintStream(new BufferedOutputStream(output, 1 << 16), false,
+            StandardCharsets.UTF_8);
+    try {
+      while (true) {
+        String[] line = lines.poll();
+        if (line == null) {
+          out.flush();
+          line = lines.take();
+        }
+        if (line.length == 0) {
+          break;
+        }
+        String[] parts = line[1].split(" ");
+        if (parts[0].equalsIgnoreCase("exit")) {
+          break;
+        }
+        long start = System.nanoTime();
+        String error = null;
+        takeFailure();
+        beginCapture();
+        try {
+          processCommand(parts[0], parts);
+          error = takeFailure();
+        } catch (Exception e) {
+          error = e.toString();
+        }
+        String messages = endCapture().trim().replace(System.lineSeparator(), " | ");
+        double millis = (System.nanoTime() - start) / 1e6;
+        if (error != null) {
+          out.println(String.format(Locale.ROOT, "error\t%s\t%.1f\t%s", line[0], millis, error));
+        } else if (!quiet) {
+          out.println(String.format(Locale.ROOT, "ok\t%s\t%.1f\t%s", line[0], millis, messages));
+        }
+      }
+    } finally {
+      out.flush();
+      prefetcher.shutdown();
+    }
+  }
+
+  /**
+   * Reads commands into a queue, starting to decode the files of loads early.
+   * Loads of files that an earlier command saves, and every load after a nested
+   * script, are not decoded early, since the file may change before they run.
+   * An empty entry marks the end of the input.
+   */
+  private static void readStream(InputStream input, BlockingQueue<String[]> lines,
+                                 PrefetchingImageUtil prefetcher) {
+    Set<String> savedPaths = new HashSet<>();
+    boolean prefetching = true;
+    try (BufferedReader reader = new BufferedReader(
+            new InputStreamReader(input, StandardCharsets.UTF_8))) {
+      String line;
+      int lineNumber = 0;
+      while ((line = reader.readLine()) != null) {
+        lineNumber++;
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#")) {
+          continue;
+        }
+        String[] parts = line.split(" ");
+        if (parts[0].equals("script")) {
+          prefetching = false;
+        } else if (parts[0].equals("save") && parts.length > 1) {
+          savedPaths.add(parts[1]);
+        } else if (prefetching && parts[0].startsWith("load") && parts.length > 1
+                && !savedPaths.contains(parts[1])) {
+          prefetcher.prefetch(parts[0], parts[1]);
+        }
+        lines.put(new String[]{String.valueOf(lineNumber), line});
+      }
+    } catch (IOException e) {
+      // End of input: the commands read so far still run.
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+    try {
+      lines.put(new String[0]);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
   /**
    * Method for executing the contents of a given script and filepath.
    *
@@ -72,15 +205,67 @@ public class Controller extends ControllerAbstract {
   @Override
   public void executeScript(String scriptPath, ImageUtil imageUtil, Map<String,
           CustomImage> imageMap) throws Exception {
-    List<String> commands = Files.readAllLines(Paths.get(scriptPath));
-    for (String command : commands) {
-      command = command.trim();
-      if (command.isEmpty() || command.startsWith("#")) {
-        continue;
+    ScriptCompiler.compileFile(scriptPath).run(this, Collections.emptyMap());
+  }
+
+  /**
+   * Executes only the commands of a script that contribute to a save, freeing
+   * each image the script creates right after its last use. Scripts that use
+   * undo, redo or nested scripts are run in full.
+   *
+   * @param scriptPath The file path of a given script that will be executed.
+   * @throws Exception if the file is unable to load in or a command fails.
+   */
+  public void executeScriptLazily(String scriptPath) throws Exception {
+    ScriptPlan pruned = planLazily(scriptPath);
+    Set<String> existing = new HashSet<>(imageMap.keySet());
+
+    List<ScriptStep> steps = pruned.getSteps();
+    for (int i = 0; i < steps.size(); i++) {
+      ScriptStep step = steps.get(i);
+      processCommand(step.getCommand(), step.getParts());
+      for (String imageName : pruned.getReleases(i)) {
+        if (!existing.contains(imageName)) {
+          releaseImage(imageName);
+        }
+      }
+    }
+  }
+
+  /**
+   * Executes the commands of a script concurrently, running commands that do
+   * not depend on each other at the same time. Messages are printed in script order.
+   *
+   * @param scriptPath The file path of a given script that will be executed.
+   * @param threads    The maximum number of commands to run at once.
+   * @param lazy       Whether to run only the commands that contribute to a save.
+   * @throws Exception if the file is unable to load in or a command fails.
+   */
+  public void executeScriptInParallel(String scriptPath, int threads, boolean lazy)
+          throws Exception {
+    ScriptPlan plan = lazy
+            ? planLazily(scriptPath)
+            : ScriptCompiler.compileFile(scriptPath).toPlan();
+    new ScriptScheduler(this, threads).run(plan);
+  }
+
+  /**
+   * Parses a script and removes the commands whose results are never saved,
+   * reporting each one that is skipped.
+   *
+   * @param scriptPath The file path of the script.
+   * @return the pruned plan.
+   * @throws IOException if the file is unable to load in.
+   */
+  private ScriptPlan planLazily(String scriptPath) throws IOException {
+    ScriptPlan plan = ScriptCompiler.compileFile(scriptPath).toPlan();
+    ScriptPlan pruned = plan.prune();
+    Set<ScriptStep> kept = new HashSet<>(pruned.getSteps());
+    for (ScriptStep step : plan.getSteps()) {
+      if (!kept.contains(step)) {
+        report("Skipped " + step + " (result is never saved)");
       }
-      String[] parts = command.split(" ");
-      String action = parts[0];
-      processCommand(action, parts);
     }
+    return pruned;
   }
 }
\ No newline at end of file
@@ -2,11 +2,19 @@ package controller;
 
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 import model.AdvancedImageTransformations;
 import model.CustomImage;
 import model.GraphUtil;
+import model.ImageHistory;
+import model.ImageOperationEvent;
 
 /**
  * Abstract class to handle image manipulation commands.
@@ -14,108 +22,384 @@ import model.GraphUtil;
  * and apply various image transformations.
  */
 public abstract class ControllerAbstract implements Command {
+  private static final Map<String, CommandHandler> HANDLERS = createHandlers();
+
   protected ImageUtil imageUtil;
   protected Map<String, CustomImage> imageMap;
+  protected ImageHistory history;
+  private ResultCache resultCache;
+  private CommandMetrics metrics;
+  private PrintStream output;
+  private final ThreadLocal<StringBuilder> capturedOutput;
+  private final ThreadLocal<String> failure;
 
   /**
    * Constructs a ControllerAbstract with a map of images and an image utility.
+   * The map is accessed through a synchronized view, so that independent
+   * commands may run on several threads at once; an {@link ImageStore} is
+   * already thread-safe and is used as is.
    *
    * @param imageMap  A map to store images by name.
    * @param imageUtil Utility class for performing image manipulations.
    */
   public ControllerAbstract(Map<String, CustomImage> imageMap, ImageUtil imageUtil) {
-    this.imageMap = imageMap;
+    this.imageMap = imageMap instanceof ImageStore
+            ? imageMap : Collections.synchronizedMap(imageMap);
     this.imageUtil = imageUtil;
+    this.history = new ImageHistory(ImageHistory.DEFAULT_MEMORY_BUDGET);
+    this.output = System.out;
+    this.capturedOutput = new ThreadLocal<>();
+    this.failure = new ThreadLocal<>();
+  }
+
+  /**
+   * Sets where command messages are printed.
+   *
+   * @param output the stream to print messages to.
+   */
+  public void setOutput(PrintStream output) {
+    this.output = output;
+  }
+
+  /**
+   * Prints a message about a command, or keeps it if the current thread is
+   * capturing its output.
+   *
+   * @param message the message to print.
+   */
+  protected void report(String message) {
+    StringBuilder captured = capturedOutput.get();
+    if (captured != null) {
+      captured.append(message).append(System.lineSeparator());
+    } else {
+      output.println(message);
+    }
+  }
+
+  /**
+   * Prints a message about a command that could not be carried out, and keeps
+   * it as the current thread's failure until {@link #takeFailure()} is called.
+   *
+   * @param message the message to print.
+   */
+  protected void fail(String message) {
+    failure.set(message);
+    report(message);
+  }
+
+  /**
+   * Returns the message of the last command on the current thread that could
+   * not be carried out, and clears it.
+   *
+   * @return the failure message, or null if no command failed since the last call.
+   */
+  String takeFailure() {
+    String message = failure.get();
+    failure.remove();
+    return message;
+  }
+
+  /**
+   * Starts keeping the messages printed by commands on the current thread.
+   */
+  void beginCapture() {
+    capturedOutput.set(new StringBuilder());
+  }
+
+  /**
+   * Stops keeping messages on the current thread.
+   *
+   * @return the messages kept since {@link #beginCapture()}.
+   */
+  String endCapture() {
+    StringBuilder captured = capturedOutput.get();
+    capturedOutput.remove();
+    return captured == null ? "" : captured.toString();
+  }
+
+  /**
+   * Prints messages that were captured earlier, in one piece.
+   *
+   * @param messages the messages to print.
+   */
+  void printCaptured(String messages) {
+    output.print(messages);
+    output.flush();
+  }
+
+  /**
+   * Replaces the undo history, e.g. to change its memory budget or spill directory.
+   *
+   * @param history the history to record image changes in.
+   */
+  public void setHistory(ImageHistory history) {
+    this.history = history;
+  }
+
+  /**
+   * Sets the cache used to reuse the results of commands run before on the
+   * same images, or null to always compute them.
+   *
+   * @param resultCache the cache to look results up in.
+   */
+  public void setResultCache(ResultCache resultCache) {
+    this.resultCache = resultCache;
+  }
+
+  /**
+   * Sets where the time, allocation and throughput of each command are
+   * recorded, along with the decoding and encoding done by the image utility.
+   *
+   * @param metrics the metrics to record into, or null for none.
+   */
+  public void setMetrics(CommandMetrics metrics) {
+    this.metrics = metrics;
+    imageUtil.setMetrics(metrics);
   }
 
   /**
    * Processes a command and executes the corresponding image manipulation method.
+   * If a result cache is set and the command only transforms images, a result
+   * computed before from images with the same contents is reused.
    *
    * @param command      The command action to perform.
    * @param commandParts The arguments associated with the command.
    * @throws Exception if an error occurs during command processing.
    */
   public void processCommand(String command, String[] commandParts) throws Exception {
-    String[] parts = commandParts;
-    String action = command;
-
-    switch (action) {
-      case "load":
-        loadImage(parts);
-        break;
-      case "load-ppm":
-        loadPpmImage(parts);
-        break;
-      case "save":
-        saveImage(parts);
-        break;
-      case "levels-adjust":
-        handleLevelAdjust(parts);
-        break;
-      case "histogram":
-        handleHistogram(parts);
-        break;
-      case "color-correct":
-        handleColorCorrect(parts);
-        break;
-      case "compress":
-        handleCompression(parts);
-        break;
-      case "split":
-        handleSplitView(parts);
-        break;
-      case "grayscale":
-        handleGrayscale(parts);
-        break;
-      case "value-component":
-        handleValueComponent(parts);
-        break;
-      case "sepia":
-        handleSepia(parts);
-        break;
-      case "brighten":
-        handleBrighten(parts);
-        break;
-      case "horizontal-flip":
-        handleHorizontalFlip(parts);
-        break;
-      case "vertical-flip":
-        handleVerticalFlip(parts);
-        break;
-      case "blur":
-        handleBlur(parts);
-        break;
-      case "sharpen":
-        handleSharpen(parts);
-        break;
-      case "rgb-split":
-        handleRgbSplit(parts);
-        break;
-      case "rgb-combine":
-        handleRgbCombine(parts);
-        break;
-      case "red-component":
-        handleVisualizeRed(parts);
-        break;
-      case "green-component":
-        handleVisualizeGreen(parts);
-        break;
-      case "blue-component":
-        handleVisualizeBlue(parts);
-        break;
-      case "intensity-component":
-        handleVisualizeIntensity(parts);
-        break;
-      case "luma-component":
-        handleVisualizeLuma(parts);
-        break;
-      case "script":
-        handleScript(parts);
-        break;
-      default:
-        System.out.println("Unknown command: " + action);
-        break;
+    ScriptStep step = resultCache != null && command.equals(commandParts[0])
+            ? new ScriptStep(0, commandParts) : null;
+    execute(command, commandParts, HANDLERS.get(command), step);
+  }
+
+  /**
+   * Returns the handler that runs a command.
+   *
+   * @param command The command name.
+   * @return the handler, or null if there is no such command.
+   */
+  static CommandHandler handlerFor(String command) {
+    return HANDLERS.get(command);
+  }
+
+  /**
+   * Runs a command with a handler that was already looked up.
+   *
+   * @param command The command action to perform.
+   * @param parts   The command split into its name and arguments.
+   * @param handler The handler of the command, or null if the command is unknown.
+   * @param step    The parsed command, used to reuse cached results, or null
+   *                to always run the handler.
+   * @throws Exception if an error occurs during command processing.
+   */
+  void execute(String command, String[] parts, CommandHandler handler, ScriptStep step)
+          throws Exception {
+    if (handler == null) {
+      fail("Unknown command: " + command);
+      return;
+    }
+    CommandMetrics metrics = this.metrics;
+    ImageOperationEvent event = ImageOperationEvent.begin("controller", command, null);
+    if (metrics == null && !event.isEnabled()) {
+      run(command, parts, handler, step);
+      return;
+    }
+    CommandMetrics.Sample start = metrics == null ? null : metrics.start();
+    run(command, parts, handler, step);
+    ScriptStep measured = step != null ? step : new ScriptStep(0, parts);
+    if (event.isEnabled()) {
+      event.setImage(imageOf(measured, parts));
+      event.commit();
+    }
+    if (metrics != null) {
+      metrics.stop(command, start, pixelsOf(measured, parts), imageMemory());
+    }
+  }
+
+  /**
+   * Runs a command, reusing a cached result if there is one.
+   */
+  private void run(String command, String[] parts, CommandHandler handler, ScriptStep step)
+          throws Exception {
+    ResultCache cache = resultCache;
+    String key = cache == null || step == null ? null : cacheKey(step, parts);
+    if (key == null) {
+      handler.handle(this, parts);
+      return;
+    }
+
+    int[] writes = step.getWritePositions();
+    String[] outputs = new String[writes.length];
+    for (int i = 0; i < writes.length; i++) {
+      outputs[i] = parts[writes[i]];
+    }
+    CustomImage[] cached = cache.get(key);
+    if (cached != null) {
+      for (int i = 0; i < outputs.length; i++) {
+        storeImage(outputs[i], cached[i], command);
+      }
+      report("Reused cached result of " + String.join(" ", parts));
+      return;
+    }
+
+    CustomImage[] before = new CustomImage[outputs.length];
+    for (int i = 0; i < outputs.length; i++) {
+      before[i] = imageMap.get(outputs[i]);
+    }
+    handler.handle(this, parts);
+    CustomImage[] results = new CustomImage[outputs.length];
+    for (int i = 0; i < outputs.length; i++) {
+      results[i] = imageMap.get(outputs[i]);
+      if (results[i] == null || results[i] == before[i]) {
+        return;
+      }
+    }
+    cache.put(key, results);
+  }
+
+  /**
+   * Counts the pixels of the images a command wrote, or of the images it read
+   * if it wrote none, such as a save.
+   */
+  private long pixelsOf(ScriptStep step, String[] parts) {
+    int[] positions = step.getWritePositions();
+    if (positions.length == 0) {
+      positions = step.getReadPositions();
+    }
+    long pixels = 0;
+    for (int position : positions) {
+      CustomImage image = imageMap.get(parts[position]);
+      if (image != null) {
+        pixels += (long) image.getWidth() * image.getHeight();
+      }
+    }
+    return pixels;
+  }
+
+  /**
+   * Returns the first image a command wrote, or read if it wrote none.
+   */
+  private CustomImage imageOf(ScriptStep step, String[] parts) {
+    int[] positions = step.getWritePositions();
+    if (positions.length == 0) {
+      positions = step.getReadPositions();
+    }
+    return positions.length == 0 ? null : imageMap.get(parts[positions[0]]);
+  }
+
+  /**
+   * Returns the bytes held by the images of this controller.
+   */
+  private long imageMemory() {
+    if (imageMap instanceof ImageStore) {
+      return ((ImageStore) imageMap).getMemoryUsed();
+    }
+    long bytes = 0;
+    synchronized (imageMap) {
+      for (CustomImage image : imageMap.values()) {
+        bytes += 4L * image.getWidth() * image.getHeight();
+      }
     }
+    return bytes;
+  }
+
+  /**
+   * Builds the result cache key of a command: its name and arguments, with the
+   * images it reads replaced by their content hashes and the images it writes
+   * replaced by their position, so that the key does not depend on image names.
+   *
+   * @param step  The parsed command, giving the positions of the images.
+   * @param parts The command split into its name and arguments.
+   * @return the key, or null if the command's results cannot be cached.
+   */
+  private String cacheKey(ScriptStep step, String[] parts) {
+    if (!step.isPure()) {
+      return null;
+    }
+    List<String> key = new ArrayList<>(List.of(parts));
+    for (int position : step.getReadPositions()) {
+      CustomImage image = imageMap.get(parts[position]);
+      if (image == null) {
+        return null;
+      }
+      key.set(position, "#" + image.getContentHash());
+    }
+    int[] writes = step.getWritePositions();
+    for (int i = 0; i < writes.length; i++) {
+      key.set(writes[i], "@" + i);
+    }
+    return ResultCache.key(key);
+  }
+
+  /**
+   * Maps each command name to the method that handles it.
+   *
+   * @return the handlers by command name.
+   */
+  private static Map<String, CommandHandler> createHandlers() {
+    Map<String, CommandHandler> handlers = new HashMap<>();
+    handlers.put("load", ControllerAbstract::loadImage);
+    handlers.put("load-ppm", ControllerAbstract::loadPpmImage);
+    handlers.put("save", ControllerAbstract::saveImage);
+    handlers.put("levels-adjust", ControllerAbstract::handleLevelAdjust);
+    handlers.put("histogram", ControllerAbstract::handleHistogram);
+    handlers.put("color-correct", ControllerAbstract::handleColorCorrect);
+    handlers.put("compress", ControllerAbstract::handleCompression);
+    handlers.put("split", ControllerAbstract::handleSplitView);
+    handlers.put("grayscale", ControllerAbstract::handleGrayscale);
+    handlers.put("value-component", ControllerAbstract::handleValueComponent);
+    handlers.put("sepia", ControllerAbstract::handleSepia);
+    handlers.put("brighten", ControllerAbstract::handleBrighten);
+    handlers.put("downscale", ControllerAbstract::handleDownscale);
+    handlers.put("horizontal-flip", ControllerAbstract::handleHorizontalFlip);
+    handlers.put("vertical-flip", ControllerAbstract::handleVerticalFlip);
+    handlers.put("blur", ControllerAbstract::handleBlur);
+    handlers.put("gaussian-blur", ControllerAbstract::handleGaussianBlur);
+    handlers.put("box-blur", ControllerAbstract::handleBoxBlur);
+    handlers.put("median", ControllerAbstract::handleMedian);
+    handlers.put("sharpen", ControllerAbstract::handleSharpen);
+    handlers.put("rgb-split", ControllerAbstract::handleRgbSplit);
+    handlers.put("rgb-combine", ControllerAbstract::handleRgbCombine);
+    handlers.put("red-component", ControllerAbstract::handleVisualizeRed);
+    handlers.put("green-component", ControllerAbstract::handleVisualizeGreen);
+    handlers.put("blue-component", ControllerAbstract::handleVisualizeBlue);
+    handlers.put("intensity-component", ControllerAbstract::handleVisualizeIntensity);
+    handlers.put("luma-component", ControllerAbstract::handleVisualizeLuma);
+    handlers.put("script", ControllerAbstract::handleScript);
+    handlers.put("undo", ControllerAbstract::handleUndo);
+    handlers.put("redo", ControllerAbstract::handleRedo);
+    handlers.put("memory", (controller, parts) -> controller.handleMemory());
+    handlers.put("drop", ControllerAbstract::handleDrop);
+    return Collections.unmodifiableMap(handlers);
+  }
+
+  /**
+   * Stores an image under a name, recording the change in the undo history.
+   * An image that an {@link ImageStore} has spilled to disk is not read back
+   * just to record the change; its history is dropped instead, so the change
+   * cannot be undone.
+   *
+   * @param imageName The name to store the image under.
+   * @param image     The image to store.
+   * @param operation The command that produced the image.
+   */
+  private void storeImage(String imageName, CustomImage image, String operation) {
+    if (imageMap instanceof ImageStore && ((ImageStore) imageMap).isSpilled(imageName)) {
+      history.forget(imageName);
+    } else {
+      history.record(imageName, operation, imageMap.get(imageName), image);
+    }
+    imageMap.put(imageName, image);
+  }
+
+  /**
+   * Removes an image that is no longer needed, along with its undo history.
+   *
+   * @param imageName The name the image is stored under.
+   */
+  protected void releaseImage(String imageName) {
+    imageMap.remove(imageName);
+    history.forget(imageName);
   }
 
   /**
@@ -128,8 +412,8 @@ public abstract class ControllerAbstract implements Command {
     String filePath = parts[1];
     String imageName = parts[2];
     CustomImage image = imageUtil.loadImage(filePath);
-    imageMap.put(imageName, image);
-    System.out.println("Loaded image from " + filePath + " as " + imageName);
+    storeImage(imageName, image, parts[0]);
+    report("Loaded image from " + filePath + " as " + imageName);
   }
 
   /**
@@ -143,10 +427,10 @@ public abstract class ControllerAbstract implements Command {
     String ppmImageName = parts[2];
     try {
       CustomImage image = imageUtil.loadPPM(ppmFilePath);
-      imageMap.put(ppmImageName, image);
-      System.out.println("Loaded PPM image from " + ppmFilePath + " as " + ppmImageName);
+      storeImage(ppmImageName, image, parts[0]);
+      report("Loaded PPM image from " + ppmFilePath + " as " + ppmImageName);
     } catch (IOException e) {
-      System.out.println("Error loading PPM file from " + ppmFilePath + ": " + e.getMessage());
+      fail("Error loading PPM file from " + ppmFilePath + ": " + e.getMessage());
     }
   }
 
@@ -160,23 +444,22 @@ public abstract class ControllerAbstract implements Command {
     String savePath = parts[1];
     String imageToSave = parts[2];
 
-    if (!imageMap.containsKey(imageToSave)) {
-      System.out.println("Image not found: " + imageToSave);
+    CustomImage image = imageMap.get(imageToSave);
+    if (image == null) {
+      fail("Image not found: " + imageToSave);
       return;
     }
 
-    CustomImage image = imageMap.get(imageToSave);
-
     try {
       if (savePath.toLowerCase().endsWith(".ppm")) {
         imageUtil.savePPM(image, savePath);
-        System.out.println("Saved image " + imageToSave + " as PPM to " + savePath);
+        report("Saved image " + imageToSave + " as PPM to " + savePath);
       } else {
         imageUtil.saveImage(image, savePath);
-        System.out.println("Saved image " + imageToSave + " to " + savePath);
+        report("Saved image " + imageToSave + " to " + savePath);
       }
     } catch (IOException e) {
-      System.out.println("Error saving file " + savePath + ": " + e.getMessage());
+      fail("Error saving file " + savePath + ": " + e.getMessage());
     }
   }
 
@@ -190,30 +473,29 @@ public abstract class ControllerAbstract implements Command {
     String sourceImage = parts[1];
     String outputImageName = parts[2];
     CustomImage originalImage = imageMap.get(sourceImage);
-    if (imageMap.containsKey(sourceImage)) {
-      if (parts.length == 5) {
+    if (originalImage != null) {
+      if (parts.length == 5 && !isSoftMasked(parts)) {
         handleSplitView(parts);
       }
-      else if (parts.length == 4) {
-        originalImage = imageMap.get(sourceImage);
+      else if (parts.length == 4 || isSoftMasked(parts)) {
         CustomImage originalCopy = originalImage.copy();
         AdvancedImageTransformations transformer = new AdvancedImageTransformations();
         CustomImage grayscale = transformer.applyWithMask(originalCopy, imageMap.get(parts[2]),
-                "grayscale");
+                "grayscale", isSoftMasked(parts));
         outputImageName = parts[3];
-        imageMap.put(outputImageName, grayscale);
-        System.out.println("Applied grayscale to " + sourceImage
+        storeImage(outputImageName, grayscale, parts[0]);
+        report("Applied grayscale to " + sourceImage
                 + " and stored as " + outputImageName
-                + " using mask ");
+                + " using mask " + softMaskNote(parts));
       } else {
         CustomImage grayscaleImage = originalImage.copy();
         CustomImage finalGrayscaleImage = imageUtil.applyGrayscale(grayscaleImage);
-        imageMap.put(outputImageName, finalGrayscaleImage);
-        System.out.println("Applied grayscale to "
+        storeImage(outputImageName, finalGrayscaleImage, parts[0]);
+        report("Applied grayscale to "
                 + sourceImage + " and stored as " + outputImageName);
       }
     } else {
-      System.out.println("Image not found: " + sourceImage);
+      fail("Image not found: " + sourceImage);
     }
   }
 
@@ -225,15 +507,15 @@ public abstract class ControllerAbstract implements Command {
   private void handleValueComponent(String[] parts) {
     String sourceImage = parts[1];
     String outputImageName = parts[2];
-    if (imageMap.containsKey(sourceImage)) {
-      CustomImage originalImage = imageMap.get(sourceImage);
+    CustomImage originalImage = imageMap.get(sourceImage);
+    if (originalImage != null) {
       CustomImage valueImageCopy = originalImage.copy();
       CustomImage valueImage = imageUtil.applyValueVisualization(valueImageCopy);
-      imageMap.put(outputImageName, valueImage);
-      System.out.println("Created value component image for "
+      storeImage(outputImageName, valueImage, parts[0]);
+      report("Created value component image for "
               + sourceImage + " and stored as " + outputImageName);
     } else {
-      System.out.println("Image not found: " + sourceImage);
+      fail("Image not found: " + sourceImage);
     }
   }
 
@@ -245,31 +527,54 @@ public abstract class ControllerAbstract implements Command {
   private void handleSepia(String[] parts) {
     String sourceImage = parts[1];
     String outputImageName = parts[2];
-    if (imageMap.containsKey(sourceImage)) {
-      if (parts.length == 5) {
+    CustomImage originalImage = imageMap.get(sourceImage);
+    if (originalImage != null) {
+      if (parts.length == 5 && !isSoftMasked(parts)) {
         handleSplitView(parts);
       }
-      else if (parts.length == 4) {
-        CustomImage originalImage = imageMap.get(sourceImage);
+      else if (parts.length == 4 || isSoftMasked(parts)) {
         CustomImage originalCopy = originalImage.copy();
         AdvancedImageTransformations transformer = new AdvancedImageTransformations();
         CustomImage sepiaImage = transformer.applyWithMask(originalCopy, imageMap.get(parts[2]),
-                "sepia");
+                "sepia", isSoftMasked(parts));
         outputImageName = parts[3];
-        imageMap.put(outputImageName, sepiaImage);
-        System.out.println("Applied sepia to " + sourceImage
+        storeImage(outputImageName, sepiaImage, parts[0]);
+        report("Applied sepia to " + sourceImage
                 + " and stored as " + outputImageName
-                + " using mask " + parts[2]);
+                + " using mask " + parts[2] + softMaskNote(parts));
       } else {
-        CustomImage originalImage = imageMap.get(sourceImage);
         CustomImage sepiaImageCopy = originalImage.copy();
         CustomImage sepiaImage = imageUtil.applySepia(sepiaImageCopy);
-        imageMap.put(outputImageName, sepiaImage);
-        System.out.println("Applied sepia to "
+        storeImage(outputImageName, sepiaImage, parts[0]);
+        report("Applied sepia to "
                 + sourceImage + " and stored as " + outputImageName);
       }
     } else {
-      System.out.println("Image not found: " + sourceImage);
+      fail("Image not found: " + sourceImage);
+    }
+  }
+
+  /**
+   * Handles the downscale command, resizing an image with a resampling filter.
+   *
+   * @param parts Contains the new width and height, the source image name,
+   *              the output image name and optionally the filter.
+   */
+  private void handleDownscale(String[] parts) {
+    int newWidth = Integer.parseInt(parts[1]);
+    int newHeight = Integer.parseInt(parts[2]);
+    String sourceImage = parts[3];
+    String outputImageName = parts[4];
+    String filter = parts.length > 5 ? parts[5] : "area";
+    CustomImage originalImage = imageMap.get(sourceImage);
+    if (originalImage != null) {
+      CustomImage downscaledImage = imageUtil.downscale(originalImage, newWidth, newHeight,
+              filter);
+      storeImage(outputImageName, downscaledImage, parts[0]);
+      report("Downscaled " + sourceImage + " to " + newWidth + "x" + newHeight
+              + " with " + filter + " filter and stored as " + outputImageName);
+    } else {
+      fail("Image not found: " + sourceImage);
     }
   }
 
@@ -282,15 +587,15 @@ public abstract class ControllerAbstract implements Command {
     int increment = Integer.parseInt(parts[1]);
     String sourceImage = parts[2];
     String outputImageName = parts[3];
-    if (imageMap.containsKey(sourceImage)) {
-      CustomImage originalImage = imageMap.get(sourceImage);
+    CustomImage originalImage = imageMap.get(sourceImage);
+    if (originalImage != null) {
       CustomImage originalCopy = originalImage.copy();
       CustomImage brightenedImage = imageUtil.adjustBrightness(originalCopy, increment);
-      imageMap.put(outputImageName, brightenedImage);
-      System.out.println("Brightened " + sourceImage + " by "
+      storeImage(outputImageName, brightenedImage, parts[0]);
+      report("Brightened " + sourceImage + " by "
               + increment + " and stored as " + outputImageName);
     } else {
-      System.out.println("Image not found: " + sourceImage);
+      fail("Image not found: " + sourceImage);
     }
   }
 
@@ -302,15 +607,15 @@ public abstract class ControllerAbstract implements Command {
   private void handleHorizontalFlip(String[] parts) {
     String sourceImage = parts[1];
     String outputImageName = parts[2];
-    if (imageMap.containsKey(sourceImage)) {
-      CustomImage originalImage = imageMap.get(sourceImage);
+    CustomImage originalImage = imageMap.get(sourceImage);
+    if (originalImage != null) {
       CustomImage originalCopy = originalImage.copy();
       CustomImage flippedImage = imageUtil.flipHorizontal(originalCopy);
-      imageMap.put(outputImageName, flippedImage);
-      System.out.println("Applied horizontal flip to "
+      storeImage(outputImageName, flippedImage, parts[0]);
+      report("Applied horizontal flip to "
               + sourceImage + " and stored as " + outputImageName);
     } else {
-      System.out.println("Image not found: " + sourceImage);
+      fail("Image not found: " + sourceImage);
     }
   }
 
@@ -322,15 +627,75 @@ public abstract class ControllerAbstract implements Command {
   private void handleVerticalFlip(String[] parts) {
     String sourceImage = parts[1];
     String outputImageName = parts[2];
-    if (imageMap.containsKey(sourceImage)) {
-      CustomImage originalImage = imageMap.get(sourceImage);
+    CustomImage originalImage = imageMap.get(sourceImage);
+    if (originalImage != null) {
       CustomImage originalCopy = originalImage.copy();
       CustomImage flippedImage = imageUtil.flipVertical(originalCopy);
-      imageMap.put(outputImageName, flippedImage);
-      System.out.println("Applied vertical flip to "
+      storeImage(outputImageName, flippedImage, parts[0]);
+      report("Applied vertical flip to "
               + sourceImage + " and stored as " + outputImageName);
     } else {
-      System.out.println("Image not found: " + sourceImage);
+      fail("Image not found: " + sourceImage);
+    }
+  }
+
+  /**
+   * Applies a Gaussian blur of a given radius to an image.
+   *
+   * @param parts Contains the radius, source image name, and output image name.
+   */
+  private void handleGaussianBlur(String[] parts) {
+    int radius = Integer.parseInt(parts[1]);
+    String sourceImage = parts[2];
+    String outputImageName = parts[3];
+    CustomImage originalImage = imageMap.get(sourceImage);
+    if (originalImage != null) {
+      CustomImage blurredImage = imageUtil.blur(originalImage, radius);
+      storeImage(outputImageName, blurredImage, parts[0]);
+      report("Applied gaussian blur of radius " + radius + " to " + sourceImage
+              + " and stored as " + outputImageName);
+    } else {
+      fail("Image not found: " + sourceImage);
+    }
+  }
+
+  /**
+   * Applies a box blur of a given radius to an image.
+   *
+   * @param parts Contains the radius, source image name, and output image name.
+   */
+  private void handleBoxBlur(String[] parts) {
+    int radius = Integer.parseInt(parts[1]);
+    String sourceImage = parts[2];
+    String outputImageName = parts[3];
+    CustomImage originalImage = imageMap.get(sourceImage);
+    if (originalImage != null) {
+      CustomImage blurredImage = imageUtil.boxBlur(originalImage, radius);
+      storeImage(outputImageName, blurredImage, parts[0]);
+      report("Applied box blur of radius " + radius + " to " + sourceImage
+              + " and stored as " + outputImageName);
+    } else {
+      fail("Image not found: " + sourceImage);
+    }
+  }
+
+  /**
+   * Applies a median filter of a given radius to an image.
+   *
+   * @param parts Contains the radius, source image name, and output image name.
+   */
+  private void handleMedian(String[] parts) {
+    int radius = Integer.parseInt(parts[1]);
+    String sourceImage = parts[2];
+    String outputImageName = parts[3];
+    CustomImage originalImage = imageMap.get(sourceImage);
+    if (originalImage != null) {
+      CustomImage filteredImage = imageUtil.median(originalImage, radius);
+      storeImage(outputImageName, filteredImage, parts[0]);
+      report("Applied median filter of radius " + radius + " to " + sourceImage
+              + " and stored as " + outputImageName);
+    } else {
+      fail("Image not found: " + sourceImage);
     }
   }
 
@@ -342,31 +707,30 @@ public abstract class ControllerAbstract implements Command {
   private void handleBlur(String[] parts) throws IOException {
     String sourceImage = parts[1];
     String outputImageName = parts[2];
-    if (imageMap.containsKey(sourceImage)) {
-      if (parts.length == 5) {
+    CustomImage originalImage = imageMap.get(sourceImage);
+    if (originalImage != null) {
+      if (parts.length == 5 && !isSoftMasked(parts)) {
         handleSplitView(parts);
       }
-      else if (parts.length == 4) {
-        CustomImage originalImage = imageMap.get(sourceImage);
+      else if (parts.length == 4 || isSoftMasked(parts)) {
         CustomImage originalCopy = originalImage.copy();
         AdvancedImageTransformations transformer = new AdvancedImageTransformations();
         CustomImage blurredImage = transformer.applyWithMask(originalCopy, imageMap.get(parts[2]),
-                "blur");
+                "blur", isSoftMasked(parts));
         outputImageName = parts[3];
-        imageMap.put(outputImageName, blurredImage);
-        System.out.println("Applied blur to " + sourceImage
+        storeImage(outputImageName, blurredImage, parts[0]);
+        report("Applied blur to " + sourceImage
                 + " and stored as " + outputImageName
-                + " using mask " + parts[2]);
+                + " using mask " + parts[2] + softMaskNote(parts));
       }
       else {
-        CustomImage originalImage = imageMap.get(sourceImage);
         CustomImage originalCopy = originalImage.copy();
         CustomImage blurredImage = imageUtil.blur(originalCopy);
-        imageMap.put(outputImageName, blurredImage);
-        System.out.println("Applied blur to " + sourceImage + " and stored as " + outputImageName);
+        storeImage(outputImageName, blurredImage, parts[0]);
+        report("Applied blur to " + sourceImage + " and stored as " + outputImageName);
       }
     } else {
-      System.out.println("Image not found: " + sourceImage);
+      fail("Image not found: " + sourceImage);
     }
   }
 
@@ -378,32 +742,31 @@ public abstract class ControllerAbstract implements Command {
   private void handleSharpen(String[] parts) {
     String sourceImage = parts[1];
     String outputImageName = parts[2];
-    if (imageMap.containsKey(sourceImage)) {
-      if (parts.length == 5) {
+    CustomImage originalImage = imageMap.get(sourceImage);
+    if (originalImage != null) {
+      if (parts.length == 5 && !isSoftMasked(parts)) {
         handleSplitView(parts);
       }
-      else if (parts.length == 4) {
-        CustomImage originalImage = imageMap.get(sourceImage);
+      else if (parts.length == 4 || isSoftMasked(parts)) {
         CustomImage originalCopy = originalImage.copy();
         AdvancedImageTransformations transformer = new AdvancedImageTransformations();
         CustomImage sharpenedImage = transformer.applyWithMask(originalCopy, imageMap.get(parts[2]),
-                "sharpen");
+                "sharpen", isSoftMasked(parts));
         outputImageName = parts[3];
-        imageMap.put(outputImageName, sharpenedImage);
-        System.out.println("Applied sharpen to " + sourceImage
+        storeImage(outputImageName, sharpenedImage, parts[0]);
+        report("Applied sharpen to " + sourceImage
                 + " and stored as " + outputImageName
-                + " using mask");
+                + " using mask" + softMaskNote(parts));
       } else {
-        CustomImage originalImage = imageMap.get(sourceImage);
         CustomImage originalCopy = originalImage.copy();
         CustomImage sharpenedImage = imageUtil.sharpen(originalCopy);
-        imageMap.put(outputImageName, sharpenedImage);
-        System.out.println("Applied sharpen to " + sourceImage
+        storeImage(outputImageName, sharpenedImage, parts[0]);
+        report("Applied sharpen to " + sourceImage
                 + " and stored as " + outputImageName);
       }
 
     } else {
-      System.out.println("Image not found: " + sourceImage);
+      fail("Image not found: " + sourceImage);
     }
   }
 
@@ -417,17 +780,17 @@ public abstract class ControllerAbstract implements Command {
     String outputImageName = parts[2];
     String outputImageName1 = parts[3];
     String outputImageName2 = parts[4];
-    if (imageMap.containsKey(sourceImage)) {
-      CustomImage originalImage = imageMap.get(sourceImage);
+    CustomImage originalImage = imageMap.get(sourceImage);
+    if (originalImage != null) {
       CustomImage originalCopy = originalImage.copy();
       CustomImage[] rgbSplitImages = imageUtil.splitRGB(originalCopy);
-      imageMap.put(outputImageName, rgbSplitImages[0]);
-      imageMap.put(outputImageName1, rgbSplitImages[1]);
-      imageMap.put(outputImageName2, rgbSplitImages[2]);
-      System.out.println("Applied RGB split to " + sourceImage
+      storeImage(outputImageName, rgbSplitImages[0], parts[0]);
+      storeImage(outputImageName1, rgbSplitImages[1], parts[0]);
+      storeImage(outputImageName2, rgbSplitImages[2], parts[0]);
+      report("Applied RGB split to " + sourceImage
               + " and stored as " + outputImageName);
     } else {
-      System.out.println("Image not found: " + sourceImage);
+      fail("Image not found: " + sourceImage);
     }
   }
 
@@ -441,14 +804,15 @@ public abstract class ControllerAbstract implements Command {
     String greenImage = parts[2];
     String blueImage = parts[3];
     String outputImageName = parts[4];
-    if (imageMap.containsKey(redImage) && imageMap.containsKey(greenImage)
-            && imageMap.containsKey(blueImage)) {
-      CustomImage combinedImage = imageUtil.combineRGB(imageMap.get(redImage),
-              imageMap.get(greenImage), imageMap.get(blueImage));
-      imageMap.put(outputImageName, combinedImage);
-      System.out.println("Combined RGB channels into " + outputImageName);
+    CustomImage red = imageMap.get(redImage);
+    CustomImage green = imageMap.get(greenImage);
+    CustomImage blue = imageMap.get(blueImage);
+    if (red != null && green != null && blue != null) {
+      CustomImage combinedImage = imageUtil.combineRGB(red, green, blue);
+      storeImage(outputImageName, combinedImage, parts[0]);
+      report("Combined RGB channels into " + outputImageName);
     } else {
-      System.out.println("One or more images not found.");
+      fail("One or more images not found.");
     }
   }
 
@@ -460,28 +824,27 @@ public abstract class ControllerAbstract implements Command {
   private void handleVisualizeRed(String[] parts) {
     String sourceImage = parts[1];
     String outputImageName = parts[2];
-    if (parts.length == 4) {
-      CustomImage originalImage = imageMap.get(sourceImage);
+    CustomImage originalImage = imageMap.get(sourceImage);
+    if (parts.length == 4 || isSoftMasked(parts)) {
       CustomImage originalCopy = originalImage.copy();
       AdvancedImageTransformations transformer = new AdvancedImageTransformations();
       CustomImage redImage = transformer.applyWithMask(originalCopy, imageMap.get(parts[2]),
-              "red-component");
+              "red-component", isSoftMasked(parts));
       outputImageName = parts[3];
-      imageMap.put(outputImageName, redImage);
-      System.out.println("Visualized red channel for " + sourceImage
+      storeImage(outputImageName, redImage, parts[0]);
+      report("Visualized red channel for " + sourceImage
               + " and stored as " + outputImageName
-              + " using mask ");
+              + " using mask " + softMaskNote(parts));
     }
-    else if (imageMap.containsKey(sourceImage)) {
-      CustomImage originalImage = imageMap.get(sourceImage);
+    else if (originalImage != null) {
       CustomImage originalCopy = originalImage.copy();
       CustomImage redVisualization = imageUtil.applyRedVisualization(originalCopy);
-      imageMap.put(outputImageName, redVisualization);
-      System.out.println("Visualized red channel for "
+      storeImage(outputImageName, redVisualization, parts[0]);
+      report("Visualized red channel for "
               + sourceImage + " and stored as " + outputImageName);
     }
     else {
-      System.out.println("Image not found: " + sourceImage);
+      fail("Image not found: " + sourceImage);
     }
   }
 
@@ -493,27 +856,26 @@ public abstract class ControllerAbstract implements Command {
   private void handleVisualizeGreen(String[] parts) {
     String sourceImage = parts[1];
     String outputImageName = parts[2];
-    if (parts.length == 4) {
-      CustomImage originalImage = imageMap.get(sourceImage);
+    CustomImage originalImage = imageMap.get(sourceImage);
+    if (parts.length == 4 || isSoftMasked(parts)) {
       CustomImage originalCopy = originalImage.copy();
       AdvancedImageTransformations transformer = new AdvancedImageTransformations();
       CustomImage greenImage = transformer.applyWithMask(originalCopy, imageMap.get(parts[2]),
-              "green-component");
+              "green-component", isSoftMasked(parts));
       outputImageName = parts[3];
-      imageMap.put(outputImageName, greenImage);
-      System.out.println("Visualized green channel for " + sourceImage
+      storeImage(outputImageName, greenImage, parts[0]);
+      report("Visualized green channel for " + sourceImage
               + " and stored as " + outputImageName
-              + " using mask ");
+              + " using mask " + softMaskNote(parts));
     }
-    else if (imageMap.containsKey(sourceImage)) {
-      CustomImage originalImage = imageMap.get(sourceImage);
+    else if (originalImage != null) {
       CustomImage originalCopy = originalImage.copy();
       CustomImage greenVisualization = imageUtil.applyGreenVisualization(originalCopy);
-      imageMap.put(outputImageName, greenVisualization);
-      System.out.println("Visualized green channel for "
+      storeImage(outputImageName, greenVisualization, parts[0]);
+      report("Visualized green channel for "
               + sourceImage + " and stored as " + outputImageName);
     } else {
-      System.out.println("Image not found: " + sourceImage);
+      fail("Image not found: " + sourceImage);
     }
   }
 
@@ -525,27 +887,26 @@ public abstract class ControllerAbstract implements Command {
   private void handleVisualizeBlue(String[] parts) {
     String sourceImage = parts[1];
     String outputImageName = parts[2];
-    if (parts.length == 4) {
-      CustomImage originalImage = imageMap.get(sourceImage);
+    CustomImage originalImage = imageMap.get(sourceImage);
+    if (parts.length == 4 || isSoftMasked(parts)) {
       CustomImage originalCopy = originalImage.copy();
       AdvancedImageTransformations transformer = new AdvancedImageTransformations();
       CustomImage blueImage = transformer.applyWithMask(originalCopy, imageMap.get(parts[2]),
-              "blue-component");
+              "blue-component", isSoftMasked(parts));
       outputImageName = parts[3];
-      imageMap.put(outputImageName, blueImage);
-      System.out.println("Visualized blue channel for " + sourceImage
+      storeImage(outputImageName, blueImage, parts[0]);
+      report("Visualized blue channel for " + sourceImage
               + " and stored as " + outputImageName
-              + " using mask ");
+              + " using mask " + softMaskNote(parts));
     }
-    else if (imageMap.containsKey(sourceImage)) {
-      CustomImage originalImage = imageMap.get(sourceImage);
+    else if (originalImage != null) {
       CustomImage originalCopy = originalImage.copy();
       CustomImage blueVisualization = imageUtil.applyBlueVisualization(originalCopy);
-      imageMap.put(outputImageName, blueVisualization);
-      System.out.println("Visualized blue channel for "
+      storeImage(outputImageName, blueVisualization, parts[0]);
+      report("Visualized blue channel for "
               + sourceImage + " and stored as " + outputImageName);
     } else {
-      System.out.println("Image not found: " + sourceImage);
+      fail("Image not found: " + sourceImage);
     }
   }
 
@@ -557,15 +918,15 @@ public abstract class ControllerAbstract implements Command {
   private void handleVisualizeIntensity(String[] parts) {
     String sourceImage = parts[1];
     String outputImageName = parts[2];
-    if (imageMap.containsKey(sourceImage)) {
-      CustomImage originalImage = imageMap.get(sourceImage);
+    CustomImage originalImage = imageMap.get(sourceImage);
+    if (originalImage != null) {
       CustomImage originalCopy = originalImage.copy();
       CustomImage intensityVisualization = imageUtil.applyIntensityVisualization(originalCopy);
-      imageMap.put(outputImageName, intensityVisualization);
-      System.out.println("Visualized intensity for "
+      storeImage(outputImageName, intensityVisualization, parts[0]);
+      report("Visualized intensity for "
               + sourceImage + " and stored as " + outputImageName);
     } else {
-      System.out.println("Image not found: " + sourceImage);
+      fail("Image not found: " + sourceImage);
     }
   }
 
@@ -577,18 +938,33 @@ public abstract class ControllerAbstract implements Command {
   private void handleVisualizeLuma(String[] parts) {
     String sourceImage = parts[1];
     String outputImageName = parts[2];
-    if (imageMap.containsKey(sourceImage)) {
-      CustomImage originalImage = imageMap.get(sourceImage);
+    CustomImage originalImage = imageMap.get(sourceImage);
+    if (originalImage != null) {
       CustomImage originalCopy = originalImage.copy();
       CustomImage lumaVisualization = imageUtil.applyLumaVisualization(originalCopy);
-      imageMap.put(outputImageName, lumaVisualization);
-      System.out.println("Visualized luma for "
+      storeImage(outputImageName, lumaVisualization, parts[0]);
+      report("Visualized luma for "
               + sourceImage + " and stored as " + outputImageName);
     } else {
-      System.out.println("Image not found: " + sourceImage);
+      fail("Image not found: " + sourceImage);
     }
   }
 
+  /**
+   * Whether a masked command asks for its mask to be applied softly, blending
+   * by mask intensity, with a trailing "soft".
+   *
+   * @param parts the command split into its name and arguments.
+   * @return true for a soft masked command.
+   */
+  private static boolean isSoftMasked(String[] parts) {
+    return parts.length == 5 && parts[4].equals("soft");
+  }
+
+  private static String softMaskNote(String[] parts) {
+    return isSoftMasked(parts) ? " (soft)" : "";
+  }
+
   private void handleMaskOperation(CustomImage img, CustomImage mask, String transformation) {
     AdvancedImageTransformations transformer = new AdvancedImageTransformations();
     transformer.applyWithMask(img, mask, transformation);
@@ -602,17 +978,17 @@ public abstract class ControllerAbstract implements Command {
   private void handleHistogram(String[] parts) {
     String sourceImage = parts[1];
     String outputImageName = parts[2];
-    if (imageMap.containsKey(sourceImage)) {
-      CustomImage originalImage = imageMap.get(sourceImage);
+    CustomImage originalImage = imageMap.get(sourceImage);
+    if (originalImage != null) {
       CustomImage originalCopy = originalImage.copy();
       GraphUtil gUtil = new GraphUtil();
       Map<String, int[]> histograms = gUtil.generateHistogram(originalCopy);
       BufferedImage histogram = gUtil.createHistogramImage(histograms);
-      imageMap.put(outputImageName, CustomImage.fromBufferedImage(histogram));
-      System.out.println("Created histogram of "
+      storeImage(outputImageName, CustomImage.fromBufferedImage(histogram), parts[0]);
+      report("Created histogram of "
               + sourceImage + " and stored as " + outputImageName);
     } else {
-      System.out.println("Image not found: " + sourceImage);
+      fail("Image not found: " + sourceImage);
     }
   }
 
@@ -624,15 +1000,15 @@ public abstract class ControllerAbstract implements Command {
   private void handleColorCorrect(String[] parts) {
     String sourceImage = parts[1];
     String outputImageName = parts[2];
-    if (imageMap.containsKey(sourceImage)) {
-      CustomImage originalImage = imageMap.get(sourceImage);
+    CustomImage originalImage = imageMap.get(sourceImage);
+    if (originalImage != null) {
       CustomImage originalCopy = originalImage.copy();
       CustomImage colorCorrectedImg = imageUtil.colorCorrect(originalCopy);
-      imageMap.put(outputImageName, colorCorrectedImg);
-      System.out.println("Color corrected "
+      storeImage(outputImageName, colorCorrectedImg, parts[0]);
+      report("Color corrected "
               + sourceImage + " and stored as " + outputImageName);
     } else {
-      System.out.println("Image not found: " + sourceImage);
+      fail("Image not found: " + sourceImage);
     }
   }
 
@@ -648,20 +1024,20 @@ public abstract class ControllerAbstract implements Command {
     int w = Integer.parseInt(parts[3]);
     String sourceImage = parts[4];
     String outputImageName = parts[5];
-    if (imageMap.containsKey(sourceImage)) {
+    CustomImage originalImage = imageMap.get(sourceImage);
+    if (originalImage != null) {
       if (parts.length == 8) {
         handleSplitView(parts);
       } else {
-        CustomImage originalImage = imageMap.get(sourceImage);
         CustomImage originalCopy = originalImage.copy();
         CustomImage levelAdjustedImg = imageUtil.levelsAdjust(originalCopy, b, m, w);
-        imageMap.put(outputImageName, levelAdjustedImg);
-        System.out.println("Applied level adjustment to "
+        storeImage(outputImageName, levelAdjustedImg, parts[0]);
+        report("Applied level adjustment to "
                 + sourceImage + " and stored as " + outputImageName);
       }
 
     } else {
-      System.out.println("Image not found: " + sourceImage);
+      fail("Image not found: " + sourceImage);
     }
   }
 
@@ -672,7 +1048,7 @@ public abstract class ControllerAbstract implements Command {
    */
   private void handleCompression(String[] parts) {
     if (parts.length != 4) {
-      System.out.println("Invalid command. Usage: " +
+      fail("Invalid command. Usage: " +
               "compress <sourceImage> <percentage> <outputImage>");
       return;
     }
@@ -681,24 +1057,25 @@ public abstract class ControllerAbstract implements Command {
     try {
       compressPercentage = Integer.parseInt(parts[1]);
     } catch (NumberFormatException e) {
-      System.out.println("Invalid percentage value: " + parts[2]);
+      fail("Invalid percentage value: " + parts[2]);
       return;
     }
     String compressOutput = parts[3];
-    if (!imageMap.containsKey(compressSource)) {
-      System.out.println("Image not found: " + compressSource);
+    CustomImage originalImage = imageMap.get(compressSource);
+    if (originalImage == null) {
+      fail("Image not found: " + compressSource);
       return;
     }
-    CustomImage originalImage = imageMap.get(compressSource);
     CustomImage originalCopy = originalImage.copy();
     CustomImage compressedImage = imageUtil.compress(originalCopy, compressPercentage);
-    imageMap.put(compressOutput, compressedImage);
-    System.out.println("Compressed " + compressSource + " by " + compressPercentage +
+    storeImage(compressOutput, compressedImage, parts[0]);
+    report("Compressed " + compressSource + " by " + compressPercentage +
             "% and stored as " + compressOutput);
   }
 
   /**
-   * Applies a split view transformation to an image.
+   * Applies a split view transformation to an image, either as a form of an
+   * operation's own command or as the split command, which names the operation.
    *
    * @param parts Contains the operation, source image, split position, and output image name.
    */
@@ -710,7 +1087,10 @@ public abstract class ControllerAbstract implements Command {
 
     int[] additionalArguments = new int[0];
 
-    if (operation.equals("levels-adjust")) {
+    if (operation.equals("split")) {
+      operation = parts[3];
+      position = Integer.parseInt(parts[4]);
+    } else if (operation.equals("levels-adjust")) {
       additionalArguments = new int[]{Integer.parseInt(parts[1]),
               Integer.parseInt(parts[2]), Integer.parseInt(parts[3])};
       splitSource = parts[4];
@@ -720,18 +1100,92 @@ public abstract class ControllerAbstract implements Command {
       position = Integer.parseInt(parts[4]);
     }
 
-    if (imageMap.containsKey(splitSource)) {
-      CustomImage originalImage = imageMap.get(splitSource);
+    CustomImage originalImage = imageMap.get(splitSource);
+    if (originalImage != null) {
       CustomImage originalCopy = originalImage.copy();
       CustomImage splitImage = imageUtil.applySplitView(
               originalCopy, operation, position, additionalArguments);
-      imageMap.put(splitOutput, splitImage);
-      System.out.println("Applied split view on " + splitSource +
+      storeImage(splitOutput, splitImage, parts[0]);
+      report("Applied split view on " + splitSource +
               " with operation " + operation + " at position " + position +
               " and stored as " + splitOutput);
     } else {
-      System.out.println("Image not found: " + splitSource);
+      fail("Image not found: " + splitSource);
+    }
+  }
+
+  /**
+   * Removes an image that is no longer needed, freeing its memory.
+   *
+   * @param parts Contains the name of the image to remove.
+   */
+  private void handleDrop(String[] parts) {
+    String imageName = parts[1];
+    if (imageMap.containsKey(imageName)) {
+      releaseImage(imageName);
+      report("Dropped " + imageName);
+    } else {
+      fail("Image not found: " + imageName);
+    }
+  }
+
+  /**
+   * Reports the memory taken by each stored image and in total.
+   */
+  private void handleMemory() {
+    if (imageMap instanceof ImageStore) {
+      report(((ImageStore) imageMap).getMemoryReport());
+      return;
+    }
+    Map<String, CustomImage> images;
+    synchronized (imageMap) {
+      images = new TreeMap<>(imageMap);
+    }
+    long total = 0;
+    for (Map.Entry<String, CustomImage> entry : images.entrySet()) {
+      CustomImage image = entry.getValue();
+      total += 4L * image.getWidth() * image.getHeight();
+      report(ImageStore.describe(entry.getKey(), image.getWidth(), image.getHeight(),
+              "in memory"));
+    }
+    report(String.format("Total: %.1f MB in memory", total / (1024.0 * 1024.0)));
+  }
+
+  /**
+   * Reverts the most recent change to an image.
+   *
+   * @param parts Contains the name of the image to revert.
+   */
+  private void handleUndo(String[] parts) {
+    String imageName = parts[1];
+    String operation = history.getUndoOperation(imageName);
+    if (operation == null) {
+      report("Nothing to undo for " + imageName);
+      return;
+    }
+    CustomImage restored = history.undo(imageName, imageMap.get(imageName));
+    if (restored == null) {
+      imageMap.remove(imageName);
+    } else {
+      imageMap.put(imageName, restored);
+    }
+    report("Undid " + operation + " on " + imageName);
+  }
+
+  /**
+   * Reapplies the most recently undone change to an image.
+   *
+   * @param parts Contains the name of the image to reapply the change to.
+   */
+  private void handleRedo(String[] parts) {
+    String imageName = parts[1];
+    String operation = history.getRedoOperation(imageName);
+    if (operation == null) {
+      report("Nothing to redo for " + imageName);
+      return;
     }
+    imageMap.put(imageName, history.redo(imageName, imageMap.get(imageName)));
+    report("Redid " + operation + " on " + imageName);
   }
 
   /**
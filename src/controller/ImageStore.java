@@ -0,0 +1,379 @@
+package controller;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import model.CustomImage;
+
+/**
+ * A map of images by name that keeps the images it holds within a memory budget.
+ * When the images in memory go over the budget, the least recently used ones
+ * are written to spill files and dropped from memory; they are read back the
+ * next time they are looked up. All methods are safe to call from several threads.
+ * Images should not be modified after they are stored, since changes made to an
+ * image after it was spilled are not seen when it is read back.
+ */
+public class ImageStore extends AbstractMap<String, CustomImage> {
+  /**
+   * The default memory budget, in bytes.
+   */
+  public static final long DEFAULT_MEMORY_BUDGET = 512L * 1024 * 1024;
+
+  private final long memoryBudget;
+  private final LinkedHashMap<String, CustomImage> resident;
+  private final Map<String, File> spilled;
+  private final Set<String> names;
+  private final Map<String, int[]> dimensions;
+  private File spillDirectory;
+  private long memoryUsed;
+  private long spills;
+  private long reloads;
+
+  /**
+   * Constructs a store that spills to a new temporary directory.
+   *
+   * @param memoryBudget the most bytes of images to keep in memory.
+   */
+  public ImageStore(long memoryBudget) {
+    this(memoryBudget, null);
+  }
+
+  /**
+   * Constructs a store that spills to the given directory.
+   *
+   * @param memoryBudget   the most bytes of images to keep in memory.
+   * @param spillDirectory the directory for spill files, or null for a temporary one.
+   * @throws IllegalArgumentException if the budget is negative.
+   */
+  public ImageStore(long memoryBudget, File spillDirectory) {
+    if (memoryBudget < 0) {
+      throw new IllegalArgumentException("Memory budget cannot be negative.");
+    }
+    this.memoryBudget = memoryBudget;
+    this.spillDirectory = spillDirectory;
+    this.resident = new LinkedHashMap<>(16, 0.75f, true);
+    this.spilled = new HashMap<>();
+    this.names = new LinkedHashSet<>();
+    this.dimensions = new HashMap<>();
+  }
+
+  @Override
+  public synchronized int size() {
+    return names.size();
+  }
+
+  @Override
+  public synchronized boolean containsKey(Object name) {
+    return names.contains(name);
+  }
+
+  /**
+   * Returns the image stored under a name, reading it back from its spill
+   * file if it is not in memory.
+   *
+   * @param name the name of the image.
+   * @return the image, or null if there is none.
+   * @throws UncheckedIOException if the spill file cannot be read.
+   */
+  @Override
+  public synchronized CustomImage get(Object name) {
+    CustomImage image = resident.get(name);
+    if (image != null || !names.contains(name)) {
+      return image;
+    }
+    image = readSpillFile((String) name);
+    resident.put((String) name, image);
+    memoryUsed += sizeOf(image);
+    evict((String) name);
+    return image;
+  }
+
+  /**
+   * Stores an image under a name, spilling other images if memory goes over budget.
+   *
+   * @param name  the name of the image.
+   * @param image the image.
+   * @return the image stored under the name before, or null if there was none
+   *         or it was spilled, since a replaced image is not read back.
+   * @throws IllegalArgumentException if the name or image is null.
+   */
+  @Override
+  public synchronized CustomImage put(String name, CustomImage image) {
+    if (name == null || image == null) {
+      throw new IllegalArgumentException("Image name and image cannot be null.");
+    }
+    CustomImage previous = resident.get(name);
+    discard(name);
+    names.add(name);
+    dimensions.put(name, new int[]{image.getWidth(), image.getHeight()});
+    resident.put(name, image);
+    memoryUsed += sizeOf(image);
+    evict(name);
+    return previous;
+  }
+
+  /**
+   * Removes the image stored under a name and deletes its spill file.
+   *
+   * @param name the name of the image.
+   * @return the removed image, or null if there was none or it was spilled,
+   *         since a removed image is not read back.
+   */
+  @Override
+  public synchronized CustomImage remove(Object name) {
+    if (!names.contains(name)) {
+      return null;
+    }
+    CustomImage previous = resident.get(name);
+    discard((String) name);
+    return previous;
+  }
+
+  @Override
+  public synchronized void clear() {
+    for (String name : new ArrayList<>(names)) {
+      discard(name);
+    }
+  }
+
+  @Override
+  public synchronized Set<String> keySet() {
+    return new LinkedHashSet<>(names);
+  }
+
+  /**
+   * Returns a snapshot of the entries in the store. An entry's image is read
+   * back from its spill file only when it is asked for.
+   *
+   * @return the entries.
+   */
+  @Override
+  public synchronized Set<Entry<String, CustomImage>> entrySet() {
+    List<String> snapshot = new ArrayList<>(names);
+    return new AbstractSet<Entry<String, CustomImage>>() {
+      @Override
+      public Iterator<Entry<String, CustomImage>> iterator() {
+        Iterator<String> keys = snapshot.iterator();
+        return new Iterator<Entry<String, CustomImage>>() {
+          private String current;
+
+          @Override
+          public boolean hasNext() {
+            return keys.hasNext();
+          }
+
+          @Override
+          public Entry<String, CustomImage> next() {
+            current = keys.next();
+            String name = current;
+            return new SimpleEntry<String, CustomImage>(name, null) {
+              @Override
+              public CustomImage getValue() {
+                return get(name);
+              }
+
+              @Override
+              public CustomImage setValue(CustomImage image) {
+                return put(name, image);
+              }
+            };
+          }
+
+          @Override
+          public void remove() {
+            ImageStore.this.remove(current);
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return snapshot.size();
+      }
+    };
+  }
+
+  /**
+   * Returns the most bytes of images kept in memory.
+   *
+   * @return the memory budget.
+   */
+  public long getMemoryBudget() {
+    return memoryBudget;
+  }
+
+  /**
+   * Returns the bytes of images currently held in memory.
+   *
+   * @return the memory in use.
+   */
+  public synchronized long getMemoryUsed() {
+    return memoryUsed;
+  }
+
+  /**
+   * Whether an image is currently held only in its spill file.
+   *
+   * @param name the name of the image.
+   * @return true if the image is stored but not in memory.
+   */
+  public synchronized boolean isSpilled(String name) {
+    return names.contains(name) && !resident.containsKey(name);
+  }
+
+  /**
+   * Returns how many times an image was written out to make room.
+   *
+   * @return the spill count.
+   */
+  public synchronized long getSpillCount() {
+    return spills;
+  }
+
+  /**
+   * Returns how many times a spilled image was read back.
+   *
+   * @return the reload count.
+   */
+  public synchronized long getReloadCount() {
+    return reloads;
+  }
+
+  /**
+   * Describes every image in the store, sorted by name, with its size,
+   * the memory it takes and whether it is in memory or spilled, followed by totals.
+   *
+   * @return one line per image and a total line.
+   */
+  public synchronized String getMemoryReport() {
+    StringBuilder report = new StringBuilder();
+    long spilledBytes = 0;
+    for (String name : new TreeSet<>(names)) {
+      int[] size = dimensions.get(name);
+      boolean inMemory = resident.containsKey(name);
+      if (!inMemory) {
+        spilledBytes += 4L * size[0] * size[1];
+      }
+      report.append(describe(name, size[0], size[1], inMemory ? "in memory" : "spilled"))
+              .append(System.lineSeparator());
+    }
+    report.append("Total: ").append(megabytes(memoryUsed)).append(" MB in memory of ")
+            .append(megabytes(memoryBudget)).append(" MB budget, ")
+            .append(megabytes(spilledBytes)).append(" MB spilled");
+    return report.toString();
+  }
+
+  /**
+   * Describes the memory used by one image.
+   *
+   * @param name   the name of the image.
+   * @param width  the width of the image.
+   * @param height the height of the image.
+   * @param where  where the image is held.
+   * @return a one line description.
+   */
+  static String describe(String name, int width, int height, String where) {
+    return name + ": " + width + "x" + height + ", "
+            + megabytes(4L * width * height) + " MB " + where;
+  }
+
+  /**
+   * Spills the least recently used images until memory is within budget,
+   * never spilling the image that was just stored or read.
+   */
+  private void evict(String keep) {
+    Iterator<Entry<String, CustomImage>> oldest = resident.entrySet().iterator();
+    while (memoryUsed > memoryBudget && oldest.hasNext()) {
+      Entry<String, CustomImage> entry = oldest.next();
+      if (entry.getKey().equals(keep)) {
+        continue;
+      }
+      if (!spilled.containsKey(entry.getKey())) {
+        spilled.put(entry.getKey(), writeSpillFile(entry.getKey(), entry.getValue()));
+        spills++;
+      }
+      oldest.remove();
+      memoryUsed -= sizeOf(entry.getValue());
+    }
+  }
+
+  /**
+   * Reads a spilled image back from its file.
+   */
+  private CustomImage readSpillFile(String name) {
+    try (DataInputStream in = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(spilled.get(name))))) {
+      reloads++;
+      return CustomImage.readFrom(in);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot read spilled image " + name, e);
+    }
+  }
+
+  /**
+   * Writes an image to a new spill file. A spilled image that is read back
+   * keeps its file until it is replaced or removed, so it is written only once.
+   */
+  private File writeSpillFile(String name, CustomImage image) {
+    try {
+      if (spillDirectory == null) {
+        spillDirectory = Files.createTempDirectory("image-store").toFile();
+        spillDirectory.deleteOnExit();
+      } else if (!spillDirectory.isDirectory()) {
+        Files.createDirectories(spillDirectory.toPath());
+      }
+      File file = File.createTempFile("image", ".spill", spillDirectory);
+      file.deleteOnExit();
+      try (DataOutputStream out = new DataOutputStream(
+              new BufferedOutputStream(new FileOutputStream(file)))) {
+        image.writeTo(out);
+      }
+      return file;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot spill image " + name, e);
+    }
+  }
+
+  /**
+   * Drops an image from memory and deletes its spill file.
+   */
+  private void discard(String name) {
+    names.remove(name);
+    dimensions.remove(name);
+    CustomImage image = resident.remove(name);
+    if (image != null) {
+      memoryUsed -= sizeOf(image);
+    }
+    File file = spilled.remove(name);
+    if (file != null) {
+      file.delete();
+    }
+  }
+
+  private static long sizeOf(CustomImage image) {
+    return 4L * image.getWidth() * image.getHeight();
+  }
+
+  private static String megabytes(long bytes) {
+    return String.format("%.1f", bytes / (1024.0 * 1024.0));
+  }
+}
@@ -12,6 +12,7 @@ import java.io.IOException;
 
 import model.AdvancedImageTransformations;
 import model.CustomImage;
+import model.ImageOperationEvent;
 
 /**
  * Provides basic image utility functions such as,
@@ -21,6 +22,7 @@ import model.CustomImage;
  */
 public class ImageUtil {
   private AdvancedImageTransformations imageTransformations;
+  private CommandMetrics metrics;
 
   /**
    * Initializes the ImageUtil with an instance of AdvancedImageTransformations.
@@ -29,6 +31,16 @@ public class ImageUtil {
     imageTransformations = new AdvancedImageTransformations();
   }
 
+  /**
+   * Sets where the time and allocation of decoding and encoding files are
+   * recorded, as "decode", "decode-ppm", "encode" and "encode-ppm".
+   *
+   * @param metrics the metrics to record into, or null for none.
+   */
+  public void setMetrics(CommandMetrics metrics) {
+    this.metrics = metrics;
+  }
+
   /**
    * Load an image from file and convert it into CustomImage format.
    *
@@ -37,24 +49,17 @@ public class ImageUtil {
    * @throws IOException If the file is invalid.
    */
   public CustomImage loadImage(String filePath) throws IOException {
+    CommandMetrics metrics = this.metrics;
+    CommandMetrics.Sample start = metrics == null ? null : metrics.start();
+    ImageOperationEvent event = ImageOperationEvent.begin("io", "decode", null);
     BufferedImage bufferedImage = ImageIO.read(new File(filePath));
-    int width = bufferedImage.getWidth();
-    int height = bufferedImage.getHeight();
-    CustomImage customImage = new CustomImage(width, height);
-
-    for (int x = 0; x < width; x++) {
-      for (int y = 0; y < height; y++) {
-        int rgb = bufferedImage.getRGB(x, y);
-
-        int red = (rgb >> 16) & 0xFF;
-        int green = (rgb >> 8) & 0xFF;
-        int blue = rgb & 0xFF;
-
-        customImage.setPixel(x, y, red, green, blue);
-      }
+    CustomImage image = CustomImage.fromBufferedImage(bufferedImage);
+    event.setImage(image);
+    event.commit();
+    if (metrics != null) {
+      metrics.stop("decode", start, pixelsOf(image), -1);
     }
-
-    return customImage;
+    return image;
   }
 
   /**
@@ -65,6 +70,9 @@ public class ImageUtil {
    * @throws IOException if the file is invalid.
    */
   public CustomImage loadPPM(String filePath) throws IOException {
+    CommandMetrics metrics = this.metrics;
+    CommandMetrics.Sample start = metrics == null ? null : metrics.start();
+    ImageOperationEvent event = ImageOperationEvent.begin("io", "decode-ppm", null);
     BufferedReader reader = new BufferedReader(new FileReader(filePath));
     String magicNumber = reader.readLine();
 
@@ -89,6 +97,11 @@ public class ImageUtil {
     }
 
     reader.close();
+    event.setImage(ppmImage);
+    event.commit();
+    if (metrics != null) {
+      metrics.stop("decode-ppm", start, pixelsOf(ppmImage), -1);
+    }
     return ppmImage;
   }
 
@@ -103,20 +116,10 @@ public class ImageUtil {
     if (outputPath.endsWith(".ppm")) {
       savePPM(customImage, outputPath);
     } else {
-      int width = customImage.getWidth();
-      int height = customImage.getHeight();
-      BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-
-      for (int x = 0; x < width; x++) {
-        for (int y = 0; y < height; y++) {
-          int[] rgb = customImage.getPixel(x, y);
-          int red = rgb[0];
-          int green = rgb[1];
-          int blue = rgb[2];
-          int pixelValue = (red << 16) | (green << 8) | blue;
-          bufferedImage.setRGB(x, y, pixelValue);
-        }
-      }
+      CommandMetrics metrics = this.metrics;
+      CommandMetrics.Sample start = metrics == null ? null : metrics.start();
+      ImageOperationEvent event = ImageOperationEvent.begin("io", "encode", customImage);
+      BufferedImage bufferedImage = customImage.toBufferedImage();
 
       int lastDotIndex = outputPath.lastIndexOf(".");
       if (lastDotIndex == -1) {
@@ -125,6 +128,10 @@ public class ImageUtil {
 
       String fileExtension = outputPath.substring(lastDotIndex + 1);
       ImageIO.write(bufferedImage, fileExtension, new File(outputPath));
+      event.commit();
+      if (metrics != null) {
+        metrics.stop("encode", start, pixelsOf(customImage), -1);
+      }
     }
   }
 
@@ -137,6 +144,9 @@ public class ImageUtil {
    * @throws IOException If the file is invalid.
    */
   public void savePPM(CustomImage customImage, String filePath) throws IOException {
+    CommandMetrics metrics = this.metrics;
+    CommandMetrics.Sample start = metrics == null ? null : metrics.start();
+    ImageOperationEvent event = ImageOperationEvent.begin("io", "encode-ppm", customImage);
     int width = customImage.getWidth();
     int height = customImage.getHeight();
 
@@ -148,14 +158,35 @@ public class ImageUtil {
 
     for (int y = 0; y < height; y++) {
       for (int x = 0; x < width; x++) {
-        int[] rgb = customImage.getPixel(x, y);
-        writer.write(rgb[0] + "\n");
-        writer.write(rgb[1] + "\n");
-        writer.write(rgb[2] + "\n");
+        int rgb = customImage.getRGB(x, y);
+        writer.write(((rgb >> 16) & 0xFF) + "\n");
+        writer.write(((rgb >> 8) & 0xFF) + "\n");
+        writer.write((rgb & 0xFF) + "\n");
       }
     }
 
     writer.close();
+    event.commit();
+    if (metrics != null) {
+      metrics.stop("encode-ppm", start, pixelsOf(customImage), -1);
+    }
+  }
+
+  private static long pixelsOf(CustomImage image) {
+    return (long) image.getWidth() * image.getHeight();
+  }
+
+  /**
+   * Downscale an image with a resampling filter.
+   *
+   * @param img       Image file that is being downscaled.
+   * @param newWidth  the width of the result.
+   * @param newHeight the height of the result.
+   * @param filter    area, bilinear or lanczos.
+   * @return a downscaled image.
+   */
+  public CustomImage downscale(CustomImage img, int newWidth, int newHeight, String filter) {
+    return imageTransformations.downscale(img, newWidth, newHeight, filter);
   }
 
   /**
@@ -219,6 +250,50 @@ public class ImageUtil {
     return imageTransformations.blur(img);
   }
 
+  /**
+   * Apply a Gaussian blur of any radius to the image.
+   *
+   * @param img    Image file that is being edited.
+   * @param radius how far the blur reaches, in pixels.
+   * @return a blurred image.
+   */
+  public CustomImage blur(CustomImage img, int radius) {
+    return imageTransformations.blur(img, radius);
+  }
+
+  /**
+   * Apply a box blur to the image, averaging the square around each pixel.
+   *
+   * @param img    Image file that is being edited.
+   * @param radius how far the square reaches, in pixels.
+   * @return a blurred image.
+   */
+  public CustomImage boxBlur(CustomImage img, int radius) {
+    return imageTransformations.boxBlur(img, radius);
+  }
+
+  /**
+   * Apply a median filter to the image, to reduce noise.
+   *
+   * @param img    Image file that is being edited.
+   * @param radius how far the square around each pixel reaches, in pixels.
+   * @return a filtered image.
+   */
+  public CustomImage median(CustomImage img, int radius) {
+    return imageTransformations.median(img, radius);
+  }
+
+  /**
+   * Convolves the image with a kernel of any odd width and height.
+   *
+   * @param img    Image file that is being edited.
+   * @param kernel the weights, row by row.
+   * @return a convolved image.
+   */
+  public CustomImage convolve(CustomImage img, float[][] kernel) {
+    return imageTransformations.convolve(img, kernel);
+  }
+
   /**
    * Apply a sharpen modification to the image.
    *
@@ -1,5 +1,8 @@
 package controller;
 
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -9,6 +12,21 @@ import view.ImageEditorGUI;
 /**
  * Main Controller class, changes text mode or gui mode depending on flags,
  * that are passed through i.e, -text, or -file for passing in files.
+ * Adding -lazy to -file runs only the commands that contribute to a save,
+ * and -parallel [threads] runs independent commands at the same time.
+ * -cache [MB] reuses the results of commands repeated on unchanged images,
+ * and -cache-dir <path> keeps those results on disk between runs.
+ * -memory <MB> caps the memory taken by loaded images, spilling the least
+ * recently used ones to disk.
+ * -batch <template> <inputDir> <outputDir> applies a script template to every
+ * image in a directory tree, using -parallel [threads] CPU threads and
+ * -io-threads <threads> threads for reading and writing files.
+ * -server tcp:<port> or -server unix:<path> keeps running and serves commands
+ * sent over a local socket, sharing any -memory budget among its sessions.
+ * -stream reads commands from standard input and writes one tab-separated
+ * response per command, with -quiet for errors only.
+ * -metrics [table|json] prints the time, allocation and throughput of each
+ * command once a script or batch finishes.
  */
 public class MainController {
 
@@ -21,25 +39,94 @@ public class MainController {
   public static void main(String[] args) throws Exception {
     boolean isTextMode = false;
     boolean isScriptMode = false;
+    boolean isLazy = false;
+    int threads = 1;
+    long cacheMegabytes = 0;
+    File cacheDirectory = null;
+    long memoryMegabytes = 0;
+    int ioThreads = 2;
+    String[] batch = null;
+    String serverAddress = null;
     String scriptPath = null;
+    String metricsFormat = null;
 
-    for (String arg : args) {
-      if (arg.equals("-text")) {
+    for (int i = 0; i < args.length; i++) {
+      String arg = args[i];
+      if (arg.equals("-text") || arg.equals("-stream")) {
         isTextMode = true;
         break;
       }
-      if (arg.equals("-file")) {
+      if (arg.equals("-file") && i + 1 < args.length) {
         isScriptMode = true;
-        scriptPath = args[1];
-        break;
+        scriptPath = args[++i];
+      } else if (arg.equals("-lazy")) {
+        isLazy = true;
+      } else if (arg.equals("-parallel")) {
+        threads = Runtime.getRuntime().availableProcessors();
+        if (i + 1 < args.length && args[i + 1].matches("\\d+")) {
+          threads = Integer.parseInt(args[++i]);
+        }
+      } else if (arg.equals("-cache")) {
+        cacheMegabytes = ResultCache.DEFAULT_MEMORY_BUDGET / (1024 * 1024);
+        if (i + 1 < args.length && args[i + 1].matches("\\d+")) {
+          cacheMegabytes = Long.parseLong(args[++i]);
+        }
+      } else if (arg.equals("-cache-dir") && i + 1 < args.length) {
+        cacheDirectory = new File(args[++i]);
+      } else if (arg.equals("-memory") && i + 1 < args.length) {
+        memoryMegabytes = Long.parseLong(args[++i]);
+      } else if (arg.equals("-batch") && i + 3 < args.length) {
+        batch = new String[]{args[i + 1], args[i + 2], args[i + 3]};
+        i += 3;
+      } else if (arg.equals("-io-threads") && i + 1 < args.length) {
+        ioThreads = Integer.parseInt(args[++i]);
+      } else if (arg.equals("-server") && i + 1 < args.length) {
+        serverAddress = args[++i];
+      } else if (arg.equals("-metrics")) {
+        metricsFormat = "table";
+        if (i + 1 < args.length && args[i + 1].matches("table|json")) {
+          metricsFormat = args[++i];
+        }
       }
     }
 
+    ResultCache cache = null;
+    if (cacheMegabytes > 0 || cacheDirectory != null) {
+      long budget = cacheMegabytes > 0 ? cacheMegabytes * 1024 * 1024
+              : ResultCache.DEFAULT_MEMORY_BUDGET;
+      cache = new ResultCache(budget, cacheDirectory, ResultCache.DEFAULT_DISK_BUDGET);
+    }
+
+    CommandMetrics metrics = metricsFormat != null ? new CommandMetrics() : null;
+
     if (isTextMode) {
       Controller.main(args);
+    } else if (serverAddress != null) {
+      new ScriptServer(cache != null ? cache
+              : new ResultCache(ResultCache.DEFAULT_MEMORY_BUDGET),
+              ScriptServer.DEFAULT_MAX_SESSIONS, memoryMegabytes * 1024 * 1024)
+              .serve(serverAddress);
+    } else if (batch != null) {
+      int cpuThreads = threads > 1 ? threads : Runtime.getRuntime().availableProcessors();
+      BatchProcessor processor = new BatchProcessor(
+              Files.readAllLines(Paths.get(batch[0])), ioThreads, cpuThreads,
+              2 * (ioThreads + cpuThreads));
+      processor.setResultCache(cache);
+      processor.setMetrics(metrics);
+      System.out.println(processor.run(Paths.get(batch[1]), Paths.get(batch[2])));
+      if (cache != null) {
+        System.out.println(cache.getSummary());
+      }
+      printMetrics(metrics, metricsFormat);
     } else if (isScriptMode) {
       if (scriptPath != null) {
-        processScript(scriptPath);
+        Map<String, CustomImage> imageMap = memoryMegabytes > 0
+                ? new ImageStore(memoryMegabytes * 1024 * 1024) : new HashMap<>();
+        processScript(scriptPath, isLazy, threads, cache, metrics, imageMap);
+        if (cache != null) {
+          System.out.println(cache.getSummary());
+        }
+        printMetrics(metrics, metricsFormat);
       }
     } else {
       ImageEditorGUI.main(args);
@@ -49,12 +136,38 @@ public class MainController {
   /**
    * Processes script files if the -file flag is passed through.
    * @param scriptPath the string containing the path of the script to be used.
+   * @param isLazy     whether to run only the commands that contribute to a save.
+   * @param threads    the number of commands that may run at once.
+   * @param cache      the cache of command results to use, or null for none.
+   * @param metrics    the metrics to record commands into, or null for none.
+   * @param imageMap   the map to store the script's images in.
    * @throws Exception if there is an invalid path.
    */
-  private static void processScript(String scriptPath) throws Exception {
+  private static void processScript(String scriptPath, boolean isLazy, int threads,
+                                    ResultCache cache, CommandMetrics metrics,
+                                    Map<String, CustomImage> imageMap)
+          throws Exception {
     ImageUtil imageUtil = new ImageUtil();
-    Map<String, CustomImage> imageMap = new HashMap<>();
     Controller controller = new Controller(imageMap, imageUtil);
-    controller.executeScript(scriptPath, imageUtil, imageMap);
+    controller.setResultCache(cache);
+    controller.setMetrics(metrics);
+    if (threads > 1) {
+      controller.executeScriptInParallel(scriptPath, threads, isLazy);
+    } else if (isLazy) {
+      controller.executeScriptLazily(scriptPath);
+    } else {
+      controller.executeScript(scriptPath, imageUtil, imageMap);
+    }
+  }
+
+  /**
+   * Prints the metrics recorded by a run, if they were asked for.
+   * @param metrics the recorded metrics, or null if none were asked for.
+   * @param format  "table" or "json".
+   */
+  private static void printMetrics(CommandMetrics metrics, String format) {
+    if (metrics != null) {
+      System.out.println(format.equals("json") ? metrics.getJson() : metrics.getTable());
+    }
   }
 }
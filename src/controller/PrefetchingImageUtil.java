@@ -0,0 +1,127 @@
+package controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import model.CustomImage;
+
+/**
+ * An ImageUtil that can start decoding a file before it is loaded, so that
+ * reading the next image overlaps with the command currently running.
+ * A prefetched image is used only if the file's size and modification time
+ * are unchanged when it is loaded; otherwise the file is decoded again.
+ */
+public class PrefetchingImageUtil extends ImageUtil {
+  private final int maxPending;
+  private final ExecutorService decoder;
+  private final Map<String, Future<Prefetched>> pending;
+
+  /**
+   * Constructs an ImageUtil that decodes ahead on one background thread.
+   *
+   * @param maxPending the most decoded images to hold before they are loaded.
+   */
+  public PrefetchingImageUtil(int maxPending) {
+    this.maxPending = maxPending;
+    this.decoder = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "image-prefetch");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.pending = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Starts decoding a file that a later load or load-ppm command will read.
+   *
+   * @param command  "load" or "load-ppm".
+   * @param filePath the file the command will read.
+   * @return true if decoding was started, false if too many images are pending.
+   */
+  public boolean prefetch(String command, String filePath) {
+    if (pending.size() >= maxPending) {
+      return false;
+    }
+    boolean ppm = command.equals("load-ppm");
+    pending.computeIfAbsent(command + " " + filePath, key -> decoder.submit(() -> {
+      File file = new File(filePath);
+      long length = file.length();
+      long lastModified = file.lastModified();
+      try {
+        CustomImage image = ppm ? super.loadPPM(filePath) : super.loadImage(filePath);
+        return new Prefetched(image, length, lastModified);
+      } catch (IOException | RuntimeException e) {
+        return null;
+      }
+    }));
+    return true;
+  }
+
+  @Override
+  public CustomImage loadImage(String filePath) throws IOException {
+    CustomImage image = take("load", filePath);
+    return image != null ? image : super.loadImage(filePath);
+  }
+
+  @Override
+  public CustomImage loadPPM(String filePath) throws IOException {
+    CustomImage image = take("load-ppm", filePath);
+    return image != null ? image : super.loadPPM(filePath);
+  }
+
+  /**
+   * Stops the background thread, dropping any images that were not loaded.
+   */
+  public void shutdown() {
+    decoder.shutdownNow();
+    pending.clear();
+  }
+
+  /**
+   * Waits for a prefetched image and returns it if the file has not changed since.
+   *
+   * @return the image, or null if it was not prefetched, failed or is out of date.
+   */
+  private CustomImage take(String command, String filePath) throws IOException {
+    Future<Prefetched> future = pending.remove(command + " " + filePath);
+    if (future == null) {
+      return null;
+    }
+    Prefetched prefetched;
+    try {
+      prefetched = future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while loading " + filePath, e);
+    } catch (ExecutionException e) {
+      return null;
+    }
+    File file = new File(filePath);
+    if (prefetched == null || file.length() != prefetched.length
+            || file.lastModified() != prefetched.lastModified) {
+      return null;
+    }
+    return prefetched.image;
+  }
+
+  /**
+   * A decoded image with the size and modification time its file had.
+   */
+  private static class Prefetched {
+    private final CustomImage image;
+    private final long length;
+    private final long lastModified;
+
+    Prefetched(CustomImage image, long length, long lastModified) {
+      this.image = image;
+      this.length = length;
+      this.lastModified = lastModified;
+    }
+  }
+}
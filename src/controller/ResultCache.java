@@ -0,0 +1,335 @@
+package controller;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import model.CustomImage;
+
+/**
+ * Remembers the images produced by commands, keyed by the command, its
+ * arguments and the content hashes of the images it reads, so that repeating
+ * a command on unchanged images does not compute it again.
+ * Results are kept in memory up to a size cap, least recently used first out.
+ * With a directory, results are also written there, up to a second cap, so
+ * that results pushed out of memory and results of earlier runs are found again.
+ */
+public class ResultCache {
+  /**
+   * The default cap on the results kept in memory, in bytes.
+   */
+  public static final long DEFAULT_MEMORY_BUDGET = 256L * 1024 * 1024;
+
+  /**
+   * The default cap on the results kept on disk, in bytes.
+   */
+  public static final long DEFAULT_DISK_BUDGET = 1024L * 1024 * 1024;
+
+  private static final int FILE_MAGIC = 0x52434831;
+  private static final String FILE_SUFFIX = ".result";
+
+  private final long memoryBudget;
+  private final File directory;
+  private final long diskBudget;
+  private final LinkedHashMap<String, CustomImage[]> memory;
+  private final LinkedHashMap<String, Long> disk;
+  private long memoryUsed;
+  private long diskUsed;
+  private long hits;
+  private long diskHits;
+  private long misses;
+  private long evictions;
+
+  /**
+   * Constructs a cache that keeps results in memory only.
+   *
+   * @param memoryBudget the most bytes of results to keep in memory.
+   */
+  public ResultCache(long memoryBudget) {
+    this(memoryBudget, null, 0);
+  }
+
+  /**
+   * Constructs a cache that moves results out of memory into a directory.
+   * Results already in the directory from earlier runs are picked up.
+   *
+   * @param memoryBudget the most bytes of results to keep in memory.
+   * @param directory    the directory to keep results in, or null for none.
+   * @param diskBudget   the most bytes of results to keep in the directory.
+   * @throws IllegalArgumentException if a budget is negative or the directory
+   *                                  cannot be created.
+   */
+  public ResultCache(long memoryBudget, File directory, long diskBudget) {
+    if (memoryBudget < 0 || diskBudget < 0) {
+      throw new IllegalArgumentException("Cache budgets cannot be negative.");
+    }
+    if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+      throw new IllegalArgumentException("Cannot create cache directory " + directory);
+    }
+    this.memoryBudget = memoryBudget;
+    this.directory = directory;
+    this.diskBudget = diskBudget;
+    this.memory = new LinkedHashMap<>(16, 0.75f, true);
+    this.disk = new LinkedHashMap<>(16, 0.75f, true);
+    if (directory != null) {
+      indexDirectory();
+    }
+  }
+
+  /**
+   * Looks up the results of a command.
+   *
+   * @param key the key describing the command and its inputs.
+   * @return copies of the result images, or null if they are not cached.
+   */
+  public synchronized CustomImage[] get(String key) {
+    CustomImage[] images = memory.get(key);
+    if (images != null) {
+      hits++;
+      return copies(images);
+    }
+    images = directory == null ? null : readFromDisk(key);
+    if (images == null) {
+      misses++;
+      return null;
+    }
+    diskHits++;
+    putInMemory(key, images);
+    return copies(images);
+  }
+
+  /**
+   * Remembers the results of a command.
+   *
+   * @param key    the key describing the command and its inputs.
+   * @param images the images the command produced.
+   */
+  public synchronized void put(String key, CustomImage[] images) {
+    CustomImage[] kept = copies(images);
+    writeToDisk(key, kept);
+    putInMemory(key, kept);
+  }
+
+  /**
+   * Returns the number of lookups answered from memory.
+   *
+   * @return the memory hit count.
+   */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * Returns the number of lookups answered from the directory.
+   *
+   * @return the disk hit count.
+   */
+  public synchronized long getDiskHits() {
+    return diskHits;
+  }
+
+  /**
+   * Returns the number of lookups that found nothing.
+   *
+   * @return the miss count.
+   */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * Returns the number of results pushed out of memory to stay in budget.
+   *
+   * @return the eviction count.
+   */
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * Returns the bytes of results held in memory.
+   *
+   * @return the memory in use.
+   */
+  public synchronized long getMemoryUsed() {
+    return memoryUsed;
+  }
+
+  /**
+   * Returns the bytes of results held in the directory.
+   *
+   * @return the disk space in use.
+   */
+  public synchronized long getDiskUsed() {
+    return diskUsed;
+  }
+
+  /**
+   * Describes the hits, misses and space used by the cache.
+   *
+   * @return a one line summary.
+   */
+  public synchronized String getSummary() {
+    return "Result cache: " + (hits + diskHits) + " hits (" + diskHits + " from disk), "
+            + misses + " misses, " + evictions + " evictions, "
+            + megabytes(memoryUsed) + " MB in memory, " + megabytes(diskUsed) + " MB on disk";
+  }
+
+  /**
+   * Builds a cache key from the parts that identify a computation.
+   *
+   * @param parts the command, its arguments and the hashes of its inputs.
+   * @return the key.
+   */
+  public static String key(List<String> parts) {
+    return String.join("\u0000", parts);
+  }
+
+  private void putInMemory(String key, CustomImage[] images) {
+    long size = sizeOf(images);
+    CustomImage[] previous = memory.remove(key);
+    if (previous != null) {
+      memoryUsed -= sizeOf(previous);
+    }
+    if (size > memoryBudget) {
+      return;
+    }
+    memory.put(key, images);
+    memoryUsed += size;
+    Iterator<Map.Entry<String, CustomImage[]>> oldest = memory.entrySet().iterator();
+    while (memoryUsed > memoryBudget && oldest.hasNext()) {
+      Map.Entry<String, CustomImage[]> entry = oldest.next();
+      oldest.remove();
+      memoryUsed -= sizeOf(entry.getValue());
+      evictions++;
+    }
+  }
+
+  /**
+   * Writes a result to the directory if there is one and it is not there yet,
+   * then deletes the oldest files until the directory is back in budget.
+   */
+  private void writeToDisk(String key, CustomImage[] images) {
+    if (directory == null) {
+      return;
+    }
+    String name = fileName(key);
+    if (disk.containsKey(name)) {
+      return;
+    }
+    File file = new File(directory, name);
+    try (DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(file)))) {
+      out.writeInt(FILE_MAGIC);
+      out.writeUTF(key);
+      out.writeInt(images.length);
+      for (CustomImage image : images) {
+        image.writeTo(out);
+      }
+    } catch (IOException e) {
+      file.delete();
+      return;
+    }
+    disk.put(name, file.length());
+    diskUsed += file.length();
+    Iterator<Map.Entry<String, Long>> oldest = disk.entrySet().iterator();
+    while (diskUsed > diskBudget && oldest.hasNext()) {
+      Map.Entry<String, Long> entry = oldest.next();
+      oldest.remove();
+      diskUsed -= entry.getValue();
+      new File(directory, entry.getKey()).delete();
+    }
+  }
+
+  /**
+   * Reads a result from the directory, or returns null if it is not there
+   * or the file does not hold the expected key.
+   */
+  private CustomImage[] readFromDisk(String key) {
+    String name = fileName(key);
+    if (disk.get(name) == null) {
+      return null;
+    }
+    File file = new File(directory, name);
+    try (DataInputStream in = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(file)))) {
+      if (in.readInt() != FILE_MAGIC || !in.readUTF().equals(key)) {
+        return null;
+      }
+      CustomImage[] images = new CustomImage[in.readInt()];
+      for (int i = 0; i < images.length; i++) {
+        images[i] = CustomImage.readFrom(in);
+      }
+      file.setLastModified(System.currentTimeMillis());
+      return images;
+    } catch (IOException e) {
+      diskUsed -= disk.remove(name);
+      file.delete();
+      return null;
+    }
+  }
+
+  /**
+   * Adds the result files already in the directory, oldest first,
+   * so that the least recently used are deleted first.
+   */
+  private void indexDirectory() {
+    File[] files = directory.listFiles((dir, name) -> name.endsWith(FILE_SUFFIX));
+    if (files == null) {
+      return;
+    }
+    Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+    for (File file : files) {
+      disk.put(file.getName(), file.length());
+      diskUsed += file.length();
+    }
+  }
+
+  private static String fileName(String key) {
+    try {
+      byte[] hash = MessageDigest.getInstance("SHA-256")
+              .digest(key.getBytes(StandardCharsets.UTF_8));
+      StringBuilder hex = new StringBuilder();
+      for (byte b : hash) {
+        hex.append(String.format("%02x", b));
+      }
+      return hex + FILE_SUFFIX;
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  private static CustomImage[] copies(CustomImage[] images) {
+    CustomImage[] copies = new CustomImage[images.length];
+    for (int i = 0; i < images.length; i++) {
+      copies[i] = images[i].copy();
+    }
+    return copies;
+  }
+
+  private static long sizeOf(CustomImage[] images) {
+    long size = 0;
+    for (CustomImage image : images) {
+      size += 4L * image.getWidth() * image.getHeight();
+    }
+    return size;
+  }
+
+  private static String megabytes(long bytes) {
+    return String.format("%.1f", bytes / (1024.0 * 1024.0));
+  }
+}
@@ -0,0 +1,267 @@
+package controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiles scripts into validated commands with their handlers resolved.
+ * Every command is checked against the forms it accepts, so that unknown
+ * commands, wrong numbers of arguments and non-integer values are all reported,
+ * with their line numbers, before any command runs. Compiled script files are
+ * kept and reused until the file changes.
+ */
+public class ScriptCompiler {
+  private static final Map<String, List<String[]>> FORMS = createForms();
+  private static final Map<String, Compiled> FILES = new ConcurrentHashMap<>();
+
+  /**
+   * Compiles the lines of a script, skipping blank lines and comments.
+   *
+   * @param lines the lines of the script.
+   * @return the compiled script.
+   * @throws IllegalArgumentException listing every invalid command, if there are any.
+   */
+  public static CompiledScript compile(List<String> lines) {
+    List<CompiledCommand> commands = new ArrayList<>();
+    List<String> errors = new ArrayList<>();
+    for (ScriptStep step : ScriptPlan.parse(lines).getSteps()) {
+      try {
+        commands.add(compile(step));
+      } catch (IllegalArgumentException e) {
+        errors.add(e.getMessage());
+      }
+    }
+    if (!errors.isEmpty()) {
+      throw new IllegalArgumentException("Invalid script:" + System.lineSeparator()
+              + String.join(System.lineSeparator(), errors));
+    }
+    return new CompiledScript(commands);
+  }
+
+  /**
+   * Compiles a script file, reusing the result of an earlier compile if the
+   * file has not changed since.
+   *
+   * @param scriptPath the path of the script.
+   * @return the compiled script.
+   * @throws IOException              if the file cannot be read.
+   * @throws IllegalArgumentException listing every invalid command, if there are any.
+   */
+  public static CompiledScript compileFile(String scriptPath) throws IOException {
+    File file = new File(scriptPath).getAbsoluteFile();
+    Compiled compiled = FILES.get(file.getPath());
+    if (compiled != null && compiled.length == file.length()
+            && compiled.lastModified == file.lastModified()) {
+      return compiled.script;
+    }
+    long length = file.length();
+    long lastModified = file.lastModified();
+    CompiledScript script = compile(Files.readAllLines(Paths.get(scriptPath)));
+    FILES.put(file.getPath(), new Compiled(script, length, lastModified));
+    return script;
+  }
+
+  /**
+   * Whether an argument is a whole number.
+   *
+   * @param argument the argument.
+   * @return true if it parses as an int.
+   */
+  static boolean isInteger(String argument) {
+    try {
+      Integer.parseInt(argument);
+      return true;
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Works out which arguments of a command hold the images it reads and the
+   * images it writes, from the form its arguments fit, or its first form if
+   * they fit none. Positions missing from a short command are left out, so that
+   * a malformed command fails when it runs rather than when it is parsed.
+   *
+   * @param parts the command split into its name and arguments.
+   * @return the read positions followed by the write positions, both empty for
+   *         commands that have no forms.
+   */
+  static int[][] imageSlots(String[] parts) {
+    List<String[]> forms = FORMS.get(parts[0]);
+    if (forms == null) {
+      return new int[][]{new int[0], new int[0]};
+    }
+    String[] form = forms.get(0);
+    for (String[] candidate : forms) {
+      if (fits(candidate, parts)) {
+        form = candidate;
+        break;
+      }
+    }
+    List<Integer> reads = new ArrayList<>();
+    List<Integer> writes = new ArrayList<>();
+    for (int i = 0; i < form.length && i + 1 < parts.length; i++) {
+      String word = form[i];
+      if (word.equals("<image>") || word.equals("<mask>") || word.endsWith("-image>")
+              || word.equals("<target>")) {
+        reads.add(i + 1);
+      }
+      if (word.equals("<output>") || word.endsWith("-output>") || word.equals("<target>")) {
+        writes.add(i + 1);
+      }
+    }
+    return new int[][]{toArray(reads), toArray(writes)};
+  }
+
+  /**
+   * Checks one command against the forms of its command name.
+   */
+  private static CompiledCommand compile(ScriptStep step) {
+    String[] parts = step.getParts();
+    CommandHandler handler = ControllerAbstract.handlerFor(step.getCommand());
+    List<String[]> forms = FORMS.get(step.getCommand());
+    if (handler == null || forms == null) {
+      throw new IllegalArgumentException(step + ": unknown command '" + step.getCommand() + "'");
+    }
+    List<Integer> bound = new ArrayList<>();
+    for (int i = 1; i < parts.length; i++) {
+      if (parts[i].contains("{")) {
+        bound.add(i);
+      }
+    }
+    for (String[] form : forms) {
+      int[] ints = matchInts(form, parts);
+      if (ints != null) {
+        return new CompiledCommand(step, handler, toArray(bound), ints);
+      }
+    }
+    List<String> usages = new ArrayList<>();
+    for (String[] form : forms) {
+      usages.add(step.getCommand() + " " + String.join(" ", form));
+    }
+    throw new IllegalArgumentException(step + ": expected " + String.join(" or ", usages));
+  }
+
+  /**
+   * Matches the arguments of a command against a form.
+   *
+   * @return the positions that must hold integers, or null if the arguments
+   *         do not fit the form.
+   */
+  private static int[] matchInts(String[] form, String[] parts) {
+    if (!fits(form, parts)) {
+      return null;
+    }
+    List<Integer> ints = new ArrayList<>();
+    for (int i = 0; i < form.length; i++) {
+      String actual = parts[i + 1];
+      if (form[i].equals("<int>")) {
+        if (!actual.contains("{") && !isInteger(actual)) {
+          return null;
+        }
+        ints.add(i + 1);
+      }
+    }
+    return toArray(ints);
+  }
+
+  /**
+   * Whether a command has as many arguments as a form and the same words
+   * wherever the form has a word rather than an argument.
+   */
+  private static boolean fits(String[] form, String[] parts) {
+    if (parts.length != form.length + 1) {
+      return false;
+    }
+    for (int i = 0; i < form.length; i++) {
+      if (!form[i].startsWith("<") && !form[i].equals(parts[i + 1])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int[] toArray(List<Integer> values) {
+    return values.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  /**
+   * Lists the forms each command accepts. Words in angle brackets are
+   * arguments, and {@code <int>} arguments must be whole numbers. Image
+   * arguments also say how the command uses them, which is where
+   * {@link ScriptStep} learns what a command reads and writes:
+   * {@code <image>}, {@code <mask>} and {@code <...-image>} are read,
+   * {@code <output>} and {@code <...-output>} are written, and
+   * {@code <target>} is both read and written.
+   */
+  private static Map<String, List<String[]>> createForms() {
+    Map<String, List<String[]>> forms = new HashMap<>();
+    String twoImages = "<image> <output>";
+    String masked = "<image> <mask> <output>";
+    String softMasked = masked + " soft";
+    String split = "<image> <output> split <int>";
+    addForms(forms, "load", "<file> <output>");
+    addForms(forms, "load-ppm", "<file> <output>");
+    addForms(forms, "save", "<file> <image>");
+    for (String command : Arrays.asList("grayscale", "sepia", "blur", "sharpen")) {
+      addForms(forms, command, twoImages, masked, softMasked, split);
+    }
+    for (String command : Arrays.asList("red-component", "green-component", "blue-component")) {
+      addForms(forms, command, twoImages, masked, softMasked);
+    }
+    for (String command : Arrays.asList("value-component", "intensity-component",
+            "luma-component", "horizontal-flip", "vertical-flip", "histogram", "color-correct")) {
+      addForms(forms, command, twoImages);
+    }
+    addForms(forms, "brighten", "<int> " + twoImages);
+    addForms(forms, "compress", "<int> " + twoImages);
+    addForms(forms, "gaussian-blur", "<int> " + twoImages);
+    addForms(forms, "box-blur", "<int> " + twoImages);
+    addForms(forms, "median", "<int> " + twoImages);
+    addForms(forms, "levels-adjust", "<int> <int> <int> " + twoImages,
+            "<int> <int> <int> " + split);
+    addForms(forms, "downscale", "<int> <int> " + twoImages, "<int> <int> " + twoImages + " area",
+            "<int> <int> " + twoImages + " bilinear", "<int> <int> " + twoImages + " lanczos");
+    addForms(forms, "split", "<image> <output> <operation> <int>");
+    addForms(forms, "rgb-split", "<image> <red-output> <green-output> <blue-output>");
+    addForms(forms, "rgb-combine", "<red-image> <green-image> <blue-image> <output>");
+    addForms(forms, "script", "<file>");
+    addForms(forms, "undo", "<target>");
+    addForms(forms, "redo", "<target>");
+    addForms(forms, "drop", "<target>");
+    addForms(forms, "memory", "");
+    return forms;
+  }
+
+  private static void addForms(Map<String, List<String[]>> forms, String command,
+                               String... usages) {
+    List<String[]> list = new ArrayList<>();
+    for (String usage : usages) {
+      list.add(usage.isEmpty() ? new String[0] : usage.split(" "));
+    }
+    forms.put(command, list);
+  }
+
+  /**
+   * A compiled script file with the size and modification time it had.
+   */
+  private static class Compiled {
+    private final CompiledScript script;
+    private final long length;
+    private final long lastModified;
+
+    Compiled(CompiledScript script, long length, long lastModified) {
+      this.script = script;
+      this.length = length;
+      this.lastModified = lastModified;
+    }
+  }
+}
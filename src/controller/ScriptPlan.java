@@ -0,0 +1,142 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A script parsed into steps, with the dependency information needed to skip
+ * commands whose results are never saved and to free images after their last use.
+ */
+public class ScriptPlan {
+  private final List<ScriptStep> steps;
+  private final List<List<String>> releases;
+
+  private ScriptPlan(List<ScriptStep> steps, List<List<String>> releases) {
+    this.steps = steps;
+    this.releases = releases;
+  }
+
+  /**
+   * Parses the lines of a script, skipping blank lines and comments.
+   *
+   * @param lines the lines of the script.
+   * @return a plan that runs every command in order.
+   */
+  public static ScriptPlan parse(List<String> lines) {
+    List<ScriptStep> steps = new ArrayList<>();
+    for (int i = 0; i < lines.size(); i++) {
+      String command = lines.get(i).trim();
+      if (command.isEmpty() || command.startsWith("#")) {
+        continue;
+      }
+      steps.add(new ScriptStep(i + 1, command.split(" ")));
+    }
+    return of(steps);
+  }
+
+  /**
+   * Builds a plan that runs steps that were already parsed, in order.
+   *
+   * @param steps the steps of the plan.
+   * @return a plan that runs every step in order.
+   */
+  static ScriptPlan of(List<ScriptStep> steps) {
+    return new ScriptPlan(steps, Collections.nCopies(steps.size(), Collections.emptyList()));
+  }
+
+  /**
+   * Returns the steps of the plan in the order they run.
+   *
+   * @return the steps.
+   */
+  public List<ScriptStep> getSteps() {
+    return steps;
+  }
+
+  /**
+   * Returns the images that are no longer needed once a step has run.
+   *
+   * @param index the position of the step in the plan.
+   * @return the names of the images to free after the step.
+   */
+  public List<String> getReleases(int index) {
+    return releases.get(index);
+  }
+
+  /**
+   * Whether the plan's dependencies are fully known from the command arguments.
+   * Nested scripts, undo or redo and memory depend on state the arguments don't show.
+   *
+   * @return true if the plan can be pruned.
+   */
+  public boolean isAnalyzable() {
+    for (ScriptStep step : steps) {
+      if (step.isBarrier()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Builds a plan holding only the steps that contribute to a save, where each
+   * image written by the script is released right after its last use.
+   * A plan that is not analyzable is returned unchanged.
+   *
+   * @return the pruned plan.
+   */
+  public ScriptPlan prune() {
+    if (!isAnalyzable()) {
+      return this;
+    }
+    boolean[] live = new boolean[steps.size()];
+    Set<String> needed = new HashSet<>();
+    for (int i = steps.size() - 1; i >= 0; i--) {
+      ScriptStep step = steps.get(i);
+      boolean used = step.isSink();
+      for (String name : step.getWrites()) {
+        used |= needed.contains(name);
+      }
+      if (used) {
+        live[i] = true;
+        needed.removeAll(Arrays.asList(step.getWrites()));
+        needed.addAll(Arrays.asList(step.getReads()));
+      }
+    }
+
+    List<ScriptStep> kept = new ArrayList<>();
+    Set<String> written = new HashSet<>();
+    Map<String, Integer> lastUse = new LinkedHashMap<>();
+    for (int i = 0; i < steps.size(); i++) {
+      if (!live[i]) {
+        continue;
+      }
+      ScriptStep step = steps.get(i);
+      for (String name : step.getReads()) {
+        lastUse.put(name, kept.size());
+      }
+      for (String name : step.getWrites()) {
+        lastUse.put(name, kept.size());
+        written.add(name);
+      }
+      kept.add(step);
+    }
+
+    List<List<String>> keptReleases = new ArrayList<>();
+    for (int i = 0; i < kept.size(); i++) {
+      keptReleases.add(new ArrayList<>());
+    }
+    for (Map.Entry<String, Integer> entry : lastUse.entrySet()) {
+      if (written.contains(entry.getKey())) {
+        keptReleases.get(entry.getValue()).add(entry.getKey());
+      }
+    }
+    return new ScriptPlan(kept, keptReleases);
+  }
+}
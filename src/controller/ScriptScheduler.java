@@ -0,0 +1,250 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the steps of a script plan concurrently on a bounded thread pool.
+ * A step starts once every earlier step it conflicts with has finished:
+ * steps that write an image or file wait for earlier readers and writers of it,
+ * and steps that read one wait for its earlier writer. Nested scripts, undo
+ * and redo wait for everything before them and block everything after them.
+ * Messages are printed in script order, so output matches a sequential run.
+ */
+public class ScriptScheduler {
+  private final ControllerAbstract controller;
+  private final int threads;
+
+  private List<ScriptStep> steps;
+  private List<List<Integer>> dependents;
+  private int[] waitingOn;
+  private String[] messages;
+  private boolean[] finished;
+  private int nextToPrint;
+  private int running;
+  private Exception failure;
+  private int failedStep;
+  private Map<String, Integer> remainingUses;
+  private Set<String> releasable;
+  private ExecutorService pool;
+
+  /**
+   * Constructs a scheduler that runs commands through a controller.
+   *
+   * @param controller the controller to run commands with.
+   * @param threads    the maximum number of commands to run at once.
+   * @throws IllegalArgumentException if threads is not positive.
+   */
+  public ScriptScheduler(ControllerAbstract controller, int threads) {
+    if (threads <= 0) {
+      throw new IllegalArgumentException("Thread count must be positive.");
+    }
+    this.controller = controller;
+    this.threads = threads;
+  }
+
+  /**
+   * Runs every step of a plan and waits for them to finish. Images the plan
+   * releases are freed once every step that uses them has finished.
+   *
+   * @param plan the plan to run.
+   * @throws Exception the failure of the earliest failing step, once the
+   *                   steps already running have finished.
+   */
+  public synchronized void run(ScriptPlan plan) throws Exception {
+    steps = plan.getSteps();
+    int count = steps.size();
+    dependents = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      dependents.add(new ArrayList<>());
+    }
+    waitingOn = new int[count];
+    messages = new String[count];
+    finished = new boolean[count];
+    nextToPrint = 0;
+    running = 0;
+    failure = null;
+    failedStep = count;
+    buildDependencies();
+    collectReleases(plan);
+
+    pool = Executors.newFixedThreadPool(threads);
+    try {
+      for (int i = 0; i < count; i++) {
+        if (waitingOn[i] == 0) {
+          submit(i);
+        }
+      }
+      while (running > 0) {
+        wait();
+      }
+    } finally {
+      pool.shutdown();
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Links each step to the earlier steps it has to wait for.
+   */
+  private void buildDependencies() {
+    Map<String, Integer> lastWriter = new HashMap<>();
+    Map<String, List<Integer>> readersSinceWrite = new HashMap<>();
+    int lastBarrier = -1;
+    for (int i = 0; i < steps.size(); i++) {
+      ScriptStep step = steps.get(i);
+      Set<Integer> before = new HashSet<>();
+      if (step.isBarrier()) {
+        for (int j = lastBarrier + 1; j < i; j++) {
+          before.add(j);
+        }
+        lastBarrier = i;
+      }
+      if (lastBarrier >= 0 && lastBarrier != i) {
+        before.add(lastBarrier);
+      }
+      for (String resource : resourcesRead(step)) {
+        Integer writer = lastWriter.get(resource);
+        if (writer != null) {
+          before.add(writer);
+        }
+        readersSinceWrite.computeIfAbsent(resource, k -> new ArrayList<>()).add(i);
+      }
+      for (String resource : resourcesWritten(step)) {
+        Integer writer = lastWriter.get(resource);
+        if (writer != null) {
+          before.add(writer);
+        }
+        List<Integer> readers = readersSinceWrite.remove(resource);
+        if (readers != null) {
+          before.addAll(readers);
+        }
+        lastWriter.put(resource, i);
+      }
+      before.remove(i);
+      for (int dependency : before) {
+        dependents.get(dependency).add(i);
+      }
+      waitingOn[i] = before.size();
+    }
+  }
+
+  /**
+   * Counts how many steps use each image the plan releases.
+   */
+  private void collectReleases(ScriptPlan plan) {
+    releasable = new HashSet<>();
+    for (int i = 0; i < steps.size(); i++) {
+      for (String imageName : plan.getReleases(i)) {
+        if (!controller.imageMap.containsKey(imageName)) {
+          releasable.add(imageName);
+        }
+      }
+    }
+    remainingUses = new HashMap<>();
+    for (ScriptStep step : steps) {
+      for (String imageName : imageNames(step)) {
+        remainingUses.merge(imageName, 1, Integer::sum);
+      }
+    }
+  }
+
+  private Set<String> imageNames(ScriptStep step) {
+    Set<String> names = new HashSet<>(List.of(step.getReads()));
+    names.addAll(List.of(step.getWrites()));
+    return names;
+  }
+
+  private List<String> resourcesRead(ScriptStep step) {
+    List<String> resources = new ArrayList<>();
+    for (String imageName : step.getReads()) {
+      resources.add("image:" + imageName);
+    }
+    String[] parts = step.getParts();
+    if (step.getCommand().startsWith("load") && parts.length > 1) {
+      resources.add("file:" + parts[1]);
+    }
+    return resources;
+  }
+
+  private List<String> resourcesWritten(ScriptStep step) {
+    List<String> resources = new ArrayList<>();
+    for (String imageName : step.getWrites()) {
+      resources.add("image:" + imageName);
+    }
+    String[] parts = step.getParts();
+    if (step.getCommand().equals("save") && parts.length > 1) {
+      resources.add("file:" + parts[1]);
+    }
+    return resources;
+  }
+
+  private void submit(int index) {
+    running++;
+    pool.execute(() -> execute(index));
+  }
+
+  /**
+   * Runs one step on a pool thread, keeping the messages it prints.
+   */
+  private void execute(int index) {
+    ScriptStep step = steps.get(index);
+    Exception error = null;
+    controller.beginCapture();
+    try {
+      controller.processCommand(step.getCommand(), step.getParts());
+    } catch (Exception e) {
+      error = e;
+    } finally {
+      String output = controller.endCapture();
+      complete(index, output, error);
+    }
+  }
+
+  /**
+   * Records a finished step, prints any messages that are now in order,
+   * frees images nobody needs any more and starts the steps that were waiting.
+   */
+  private synchronized void complete(int index, String output, Exception error) {
+    running--;
+    messages[index] = output;
+    finished[index] = true;
+    if (error != null && index < failedStep) {
+      failure = error;
+      failedStep = index;
+    }
+    StringBuilder ready = new StringBuilder();
+    while (nextToPrint <= failedStep && nextToPrint < steps.size() && finished[nextToPrint]) {
+      ready.append(messages[nextToPrint]);
+      messages[nextToPrint] = null;
+      nextToPrint++;
+    }
+    if (ready.length() > 0) {
+      controller.printCaptured(ready.toString());
+    }
+
+    for (String imageName : imageNames(steps.get(index))) {
+      if (remainingUses.merge(imageName, -1, Integer::sum) == 0
+              && releasable.contains(imageName)) {
+        controller.releaseImage(imageName);
+      }
+    }
+
+    if (failure == null) {
+      for (int dependent : dependents.get(index)) {
+        if (--waitingOn[dependent] == 0) {
+          submit(dependent);
+        }
+      }
+    }
+    notifyAll();
+  }
+}
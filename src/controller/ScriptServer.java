@@ -0,0 +1,259 @@
+package controller;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+
+import model.CustomImage;
+import model.ImageHistory;
+
+/**
+ * Serves script commands over a local socket, so that many scripts can be run
+ * by one warm JVM instead of starting a new one for each.
+ * Each connection is a session with its own images and undo history. At most
+ * a given number of sessions run at once; as many more connections wait for
+ * one to end, and further ones are turned away. When a memory budget is given,
+ * each session keeps its images and history within an equal share of it,
+ * spilling the least recently used images to disk. A client sends one command
+ * per line, such as {@code load dog.png dog} or {@code script path/to/script.txt},
+ * and gets back the messages the command printed followed by a status line,
+ * {@code OK <time> ms} or {@code ERROR <time> ms <message>} for a command that
+ * threw or could not be carried out. Sending {@code quit}
+ * ends the session. Decoded files and command results are kept in a cache shared
+ * by every session. Relative paths are resolved against the server's directory.
+ * The time, allocation and throughput of every command are recorded and
+ * published over JMX as {@value CommandMetrics#OBJECT_NAME}.
+ */
+public class ScriptServer {
+  /**
+   * The default number of sessions that run at once.
+   */
+  public static final int DEFAULT_MAX_SESSIONS = 16;
+
+  private final ResultCache cache;
+  private final ThreadPoolExecutor sessions;
+  private final long sessionMemoryBudget;
+  private final AtomicLong requests;
+  private final CommandMetrics metrics;
+
+  /**
+   * Constructs a server whose sessions share a cache, with the default number
+   * of sessions and no memory budget.
+   *
+   * @param cache the cache of decoded files and command results.
+   */
+  public ScriptServer(ResultCache cache) {
+    this(cache, DEFAULT_MAX_SESSIONS, 0);
+  }
+
+  /**
+   * Constructs a server whose sessions share a cache.
+   *
+   * @param cache        the cache of decoded files and command results.
+   * @param maxSessions  the most sessions that run at once.
+   * @param memoryBudget the most bytes of images and history kept in memory by
+   *                     all sessions together, or 0 for no limit.
+   * @throws IllegalArgumentException if there are no sessions or the budget is negative.
+   */
+  public ScriptServer(ResultCache cache, int maxSessions, long memoryBudget) {
+    if (maxSessions < 1) {
+      throw new IllegalArgumentException("A server needs at least one session.");
+    }
+    if (memoryBudget < 0) {
+      throw new IllegalArgumentException("Memory budget cannot be negative.");
+    }
+    this.cache = cache;
+    this.sessions = new ThreadPoolExecutor(maxSessions, maxSessions, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(maxSessions));
+    this.sessionMemoryBudget = memoryBudget / maxSessions;
+    this.requests = new AtomicLong();
+    this.metrics = new CommandMetrics();
+  }
+
+  /**
+   * Accepts connections until the process is stopped.
+   *
+   * @param address {@code tcp:<port>} to listen on the loopback interface,
+   *                or {@code unix:<path>} to listen on a Unix domain socket.
+   * @throws IOException if the address cannot be listened on.
+   * @throws JMException if the metrics cannot be published over JMX.
+   */
+  public void serve(String address) throws IOException, JMException {
+    metrics.register();
+    try (ServerSocketChannel server = open(address)) {
+      System.out.println("Listening on " + server.getLocalAddress());
+      serve(server);
+    }
+  }
+
+  /**
+   * Accepts connections on a bound channel until it is closed, then stops
+   * taking new sessions.
+   *
+   * @param server the channel to accept connections on.
+   * @throws IOException if a connection cannot be accepted.
+   */
+  public void serve(ServerSocketChannel server) throws IOException {
+    try {
+      while (true) {
+        SocketChannel channel = server.accept();
+        try {
+          sessions.execute(() -> session(channel));
+        } catch (RejectedExecutionException e) {
+          refuse(channel);
+        }
+      }
+    } catch (ClosedChannelException e) {
+      // The server was stopped.
+    } finally {
+      sessions.shutdown();
+    }
+  }
+
+  /**
+   * Returns the number of commands served so far.
+   *
+   * @return the request count.
+   */
+  public long getRequestCount() {
+    return requests.get();
+  }
+
+  /**
+   * Returns the metrics of the commands served so far.
+   *
+   * @return the metrics.
+   */
+  public CommandMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Opens a server channel for an address.
+   *
+   * @param address {@code tcp:<port>} or {@code unix:<path>}.
+   * @return the bound channel.
+   * @throws IOException if the channel cannot be bound.
+   * @throws IllegalArgumentException if the address has neither prefix.
+   */
+  public static ServerSocketChannel open(String address) throws IOException {
+    if (address.startsWith("tcp:")) {
+      int port = Integer.parseInt(address.substring(4));
+      ServerSocketChannel server = ServerSocketChannel.open();
+      server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+      return server;
+    }
+    if (address.startsWith("unix:")) {
+      Path path = Paths.get(address.substring(5));
+      Files.deleteIfExists(path);
+      ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+      server.bind(UnixDomainSocketAddress.of(path));
+      path.toFile().deleteOnExit();
+      return server;
+    }
+    throw new IllegalArgumentException("Server address must be tcp:<port> or unix:<path>: "
+            + address);
+  }
+
+  /**
+   * Runs the commands sent over one connection until the client quits or disconnects.
+   */
+  private void session(SocketChannel channel) {
+    Map<String, CustomImage> images = sessionMemoryBudget > 0
+            ? new ImageStore(sessionMemoryBudget) : new HashMap<>();
+    ImageHistory history = new ImageHistory(sessionMemoryBudget > 0
+            ? Math.min(sessionMemoryBudget, ImageHistory.DEFAULT_MEMORY_BUDGET)
+            : ImageHistory.DEFAULT_MEMORY_BUDGET);
+    try (channel;
+         BufferedReader in = new BufferedReader(new InputStreamReader(
+                 Channels.newInputStream(channel), StandardCharsets.UTF_8));
+         PrintStream out = new PrintStream(Channels.newOutputStream(channel), false,
+                 StandardCharsets.UTF_8)) {
+      Controller controller = new Controller(images, new CachingImageUtil(cache));
+      controller.setHistory(history);
+      controller.setResultCache(cache);
+      controller.setMetrics(metrics);
+      controller.setOutput(out);
+      String line;
+      while ((line = in.readLine()) != null) {
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#")) {
+          continue;
+        }
+        if (line.equals("quit")) {
+          break;
+        }
+        respond(controller, line.split(" "), out);
+      }
+    } catch (IOException e) {
+      System.out.println("Session ended: " + e.getMessage());
+    } finally {
+      images.clear();
+      history.clear();
+    }
+  }
+
+  /**
+   * Tells a client that the server has no room for another session, and
+   * closes its connection.
+   */
+  private static void refuse(SocketChannel channel) {
+    try (channel;
+         PrintStream out = new PrintStream(Channels.newOutputStream(channel), false,
+                 StandardCharsets.UTF_8)) {
+      out.println("ERROR 0.0 ms Too many sessions");
+      out.flush();
+    } catch (IOException e) {
+      System.out.println("Session refused: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Runs one command and sends back its messages and a status line.
+   */
+  private void respond(Controller controller, String[] parts, PrintStream out) {
+    requests.incrementAndGet();
+    long start = System.nanoTime();
+    String error = null;
+    controller.takeFailure();
+    controller.beginCapture();
+    try {
+      controller.processCommand(parts[0], parts);
+      error = controller.takeFailure();
+    } catch (Exception e) {
+      error = e.toString();
+    }
+    String messages = controller.endCapture();
+    double millis = (System.nanoTime() - start) / 1e6;
+    out.print(messages);
+    if (error == null) {
+      out.println(String.format(Locale.ROOT, "OK %.1f ms", millis));
+    } else {
+      out.println(String.format(Locale.ROOT, "ERROR %.1f ms %s", millis, error));
+    }
+    out.flush();
+  }
+}
@@ -0,0 +1,141 @@
+package controller;
+
+/**
+ * A single parsed script command together with the image names it reads and writes.
+ * The positions of the names within the command come from the forms the
+ * command accepts, as listed by {@link ScriptCompiler}.
+ */
+public class ScriptStep {
+  private final int lineNumber;
+  private final String[] parts;
+  private final int[] readSlots;
+  private final int[] writeSlots;
+
+  /**
+   * Parses a command into a step.
+   *
+   * @param lineNumber the line of the script the command came from, starting at 1.
+   * @param parts      the command split into its name and arguments.
+   */
+  public ScriptStep(int lineNumber, String[] parts) {
+    this.lineNumber = lineNumber;
+    this.parts = parts;
+    int[][] slots = ScriptCompiler.imageSlots(parts);
+    this.readSlots = slots[0];
+    this.writeSlots = slots[1];
+  }
+
+  /**
+   * Returns the line of the script the command came from.
+   *
+   * @return the line number, starting at 1.
+   */
+  public int getLineNumber() {
+    return lineNumber;
+  }
+
+  /**
+   * Returns the name of the command.
+   *
+   * @return the command name.
+   */
+  public String getCommand() {
+    return parts[0];
+  }
+
+  /**
+   * Returns the command split into its name and arguments.
+   *
+   * @return the command parts.
+   */
+  public String[] getParts() {
+    return parts;
+  }
+
+  /**
+   * Returns the names of the images the command reads.
+   *
+   * @return the image names read, in argument order.
+   */
+  public String[] getReads() {
+    return names(readSlots);
+  }
+
+  /**
+   * Returns the names of the images the command writes.
+   *
+   * @return the image names written, in argument order.
+   */
+  public String[] getWrites() {
+    return names(writeSlots);
+  }
+
+  /**
+   * Returns the argument positions of the images the command reads.
+   *
+   * @return the positions within {@link #getParts()}.
+   */
+  public int[] getReadPositions() {
+    return readSlots.clone();
+  }
+
+  /**
+   * Returns the argument positions of the images the command writes.
+   *
+   * @return the positions within {@link #getParts()}.
+   */
+  public int[] getWritePositions() {
+    return writeSlots.clone();
+  }
+
+  /**
+   * Whether the command has an effect outside the image map, so that it must
+   * run even if none of the images it writes are used.
+   *
+   * @return true for saves and for commands whose effects are not known.
+   */
+  public boolean isSink() {
+    return getCommand().equals("save") || !isKnown();
+  }
+
+  /**
+   * Whether the images the command touches depend on more than its arguments,
+   * so that the script around it cannot be reordered or pruned.
+   *
+   * @return true for nested scripts, for undo and redo, which depend on history,
+   *         and for memory, which reports every stored image.
+   */
+  public boolean isBarrier() {
+    String command = getCommand();
+    return command.equals("script") || command.equals("undo") || command.equals("redo")
+            || command.equals("memory");
+  }
+
+  /**
+   * Whether the images the command writes depend only on the images it reads
+   * and its other arguments, so that its results can be reused.
+   *
+   * @return true for commands that compute new images from existing ones.
+   */
+  public boolean isPure() {
+    return readSlots.length > 0 && writeSlots.length > 0 && !isSink() && !isBarrier()
+            && !getCommand().equals("drop");
+  }
+
+  private boolean isKnown() {
+    return readSlots.length > 0 || writeSlots.length > 0 || isBarrier();
+  }
+
+  private String[] names(int[] slots) {
+    String[] names = new String[slots.length];
+    for (int i = 0; i < slots.length; i++) {
+      names[i] = parts[slots[i]];
+    }
+    return names;
+  }
+
+  @Override
+  public String toString() {
+    return "line " + lineNumber + ": " + String.join(" ", parts);
+  }
+}
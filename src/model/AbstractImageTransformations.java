@@ -14,15 +14,16 @@ public abstract class AbstractImageTransformations implements Transform {
    * @return an image with the specified transformations.
    */
   protected CustomImage applyTransformation(CustomImage img, Transformations transformer) {
-    int width = img.getWidth();
-    int height = img.getHeight();
+    int[] pixels = img.writablePixels();
+    int[] rgb = new int[3];
 
-    for (int x = 0; x < width; x++) {
-      for (int y = 0; y < height; y++) {
-        int[] rgb = img.getPixel(x, y);
-        int[] transformedRGB = transformer.transform(rgb);
-        img.setPixel(x, y, transformedRGB);
-      }
+    for (int i = 0; i < pixels.length; i++) {
+      rgb[0] = (pixels[i] >> 16) & 0xFF;
+      rgb[1] = (pixels[i] >> 8) & 0xFF;
+      rgb[2] = pixels[i] & 0xFF;
+      int[] transformedRGB = transformer.transform(rgb);
+      pixels[i] = (clamp(transformedRGB[0]) << 16) | (clamp(transformedRGB[1]) << 8)
+              | clamp(transformedRGB[2]);
     }
     return img;
   }
@@ -38,7 +39,8 @@ public abstract class AbstractImageTransformations implements Transform {
   }
 
   /**
-   * This method will apply a color transformation onto an image.
+   * This method will apply a color transformation onto an image, through
+   * the SIMD kernels when they are available.
    *
    * @param img          the image file that is being edited.
    * @param redWeights   weights to the red rgb value.
@@ -50,59 +52,54 @@ public abstract class AbstractImageTransformations implements Transform {
                                                  double[] redWeights,
                                                  double[] greenWeights,
                                                  double[] blueWeights) {
-    return applyTransformation(img, rgb -> {
-      int red = rgb[0];
-      int green = rgb[1];
-      int blue = rgb[2];
-
-      int newRed = clamp((int) (redWeights[0] * red + redWeights[1] *
-              green + redWeights[2] * blue));
-      int newGreen = clamp((int) (greenWeights[0] * red + greenWeights[1] *
-              green + greenWeights[2] * blue));
-      int newBlue = clamp((int) (blueWeights[0] * red + blueWeights[1] *
-              green + blueWeights[2] * blue));
-
-      return new int[]{newRed, newGreen, newBlue};
-    });
+    PixelKernels.get().colorMatrix(img.writablePixels(), 0, img.getWidth() * img.getHeight(),
+            redWeights, greenWeights, blueWeights);
+    return img;
   }
 
   /**
    * This method will apply kernel to images for when needing a full transformation.
+   * Kernels whose weights are multiples of a small power of two, such as blur
+   * and sharpen, are applied in integer arithmetic with the same result.
    *
    * @param img       the image file that is being edited.
    * @param kernel    the matrix representing the kernel.
    * @return the modified image file.
    */
   protected CustomImage applyKernel(CustomImage img, float[][] kernel) {
+    Convolution convolution = Convolution.of(kernel);
+    if (convolution != null) {
+      return convolution.apply(img);
+    }
     int width = img.getWidth();
     int height = img.getHeight();
-    CustomImage transformedImg = new CustomImage(width, height);
+    int[] source = img.readPixels();
+    int[] transformed = new int[width * height];
 
-    for (int x = 1; x < width - 1; x++) {
-      for (int y = 1; y < height - 1; y++) {
-        float[] newPixel = {0f, 0f, 0f};
+    for (int y = 1; y < height - 1; y++) {
+      for (int x = 1; x < width - 1; x++) {
+        float red = 0f;
+        float green = 0f;
+        float blue = 0f;
 
         for (int i = -1; i <= 1; i++) {
           for (int j = -1; j <= 1; j++) {
-            int[] rgb = img.getPixel(x + i, y + j);
+            int rgb = source[(y + j) * width + x + i];
             float kernelValue = kernel[i + 1][j + 1];
 
             // Accumulate the weighted RGB values
-            newPixel[0] += rgb[0] * kernelValue;
-            newPixel[1] += rgb[1] * kernelValue;
-            newPixel[2] += rgb[2] * kernelValue;
+            red += ((rgb >> 16) & 0xFF) * kernelValue;
+            green += ((rgb >> 8) & 0xFF) * kernelValue;
+            blue += (rgb & 0xFF) * kernelValue;
           }
         }
 
         // Set the new pixel values, clamped to the valid range
-        transformedImg.setPixel(x, y, new int[]{
-                clamp(Math.round(newPixel[0])), // Convert float to int
-                clamp(Math.round(newPixel[1])),
-                clamp(Math.round(newPixel[2]))
-        });
+        transformed[y * width + x] = (clamp(Math.round(red)) << 16)
+                | (clamp(Math.round(green)) << 8) | clamp(Math.round(blue));
       }
     }
-    return transformedImg;
+    return new CustomImage(width, height, transformed, false);
   }
 }
 
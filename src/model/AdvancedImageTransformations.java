@@ -1,6 +1,7 @@
 package model;
 
 import java.util.Map;
+import java.util.function.UnaryOperator;
 
 /**
  * Class that provides advanced image transformations, including compression,
@@ -22,6 +23,7 @@ public class AdvancedImageTransformations
    */
   @Override
   public CustomImage compress(CustomImage img, int percentage) {
+    ImageOperationEvent event = ImageOperationEvent.begin("model", "compress", img);
     int width = img.getWidth();
     int height = img.getHeight();
     CustomImage compressedImage = new CustomImage(width, height);
@@ -35,101 +37,116 @@ public class AdvancedImageTransformations
     compressedImage.setColorChannel(2,
             CompressUtil.compressChannel(blueChannel, percentage));
 
+    event.commit();
     return compressedImage;
   }
 
 
   /**
    * Applies an operation to a portion of the image based on the specified position.
+   * Pixels left of the split keep their original values and pixels from the
+   * split onwards show the operation's result. Only the shown part, widened by
+   * as many columns as the operation reads around each pixel, is processed,
+   * except for operations that depend on the whole image, such as color-correct.
    *
    * @param img            The image to be transformed.
    * @param operation      The operation apply (e.g., "blur", "sharpen", "levels-adjust").
    * @param position       The percentage position for split view.
    * @param additionalArgs Additional arguments for specific operations.
    * @return The transformed image with the specified operation applied partially.
+   * @throws IllegalArgumentException if the operation is unknown or is missing arguments.
    */
   public CustomImage applySplitView(CustomImage img,
                                     String operation,
                                     int position,
                                     int[] additionalArgs) {
-    CustomImage splitImage = new CustomImage(img.getWidth(), img.getHeight());
-    CustomImage processedImage = null;
-
-    if (operation.equals("blur")
-            || operation.equals("sharpen")
-            || operation.equals("levels-adjust")) {
-      switch (operation) {
-        case "blur":
-          processedImage = blur(img);
-          break;
-        case "sharpen":
-          processedImage = sharpen(img);
-          break;
-        case "levels-adjust":
-          CustomImage copyImg = img.copy();
-          processedImage = levelsAdjust(copyImg, additionalArgs[0],
-                  additionalArgs[1],
-                  additionalArgs[2]);
-          break;
-        default:
-          break;
-      }
+    ImageOperationEvent event = ImageOperationEvent.begin("model", operation + "-split", img);
+    SplitOperation splitOperation = splitOperationFor(operation, additionalArgs);
+    int width = img.getWidth();
+    int height = img.getHeight();
+    int splitPosition = Math.max(0, Math.min(width, width * position / 100));
+    int from = splitOperation.halo < 0 ? 0 : Math.max(0, splitPosition - splitOperation.halo);
+
+    int regionWidth = width - from;
+    int[] source = img.readPixels();
+    int[] region = new int[regionWidth * height];
+    for (int y = 0; y < height; y++) {
+      System.arraycopy(source, y * width + from, region, y * regionWidth, regionWidth);
     }
-
-    int splitPosition = img.getWidth() * position / 100;
-
-    for (int y = 0; y < img.getHeight(); y++) {
-      for (int x = 0; x < img.getWidth(); x++) {
-        if (x < splitPosition) {
-          splitImage.setPixel(x, y, img.getPixel(x, y));
-        } else {
-          if (processedImage != null) {
-            splitImage.setPixel(x, y, processedImage.getPixel(x, y));
-          } else {
-            int[] pixel = img.getPixel(x, y);
-            switch (operation) {
-              case "sepia":
-                splitImage.setPixel(x, y, applySepiaPixel(pixel));
-                break;
-              case "grayscale":
-                splitImage.setPixel(x, y, applyGrayscalePixel(pixel));
-                break;
-              default:
-                throw new IllegalArgumentException("Unknown operation: " + operation);
-            }
-          }
-        }
-      }
+    CustomImage processed = splitOperation.operator.apply(
+            new CustomImage(regionWidth, height, region, false));
+
+    CustomImage splitImage = img.copy();
+    int[] target = splitImage.writablePixels();
+    int[] result = processed.readPixels();
+    int shown = width - splitPosition;
+    for (int y = 0; y < height; y++) {
+      System.arraycopy(result, y * regionWidth + splitPosition - from,
+              target, y * width + splitPosition, shown);
     }
 
+    event.commit();
     return splitImage;
   }
 
   /**
-   * Applies a sepia tone transformation to a single pixel.
+   * Looks up the operation a split view applies, with its arguments bound.
    *
-   * @param pixel The RGB array of the pixel.
-   * @return The transformed pixel in sepia tones.
+   * @param operation      the name of the operation.
+   * @param additionalArgs the arguments of the operation, if it takes any.
+   * @return the operation and the columns it reads on either side of a pixel.
+   * @throws IllegalArgumentException if the operation is unknown or is missing arguments.
    */
-  private int[] applySepiaPixel(int[] pixel) {
-    int red = (int) (pixel[0] * 0.393 + pixel[1] * 0.769 + pixel[2] * 0.189);
-    int green = (int) (pixel[0] * 0.349 + pixel[1] * 0.686 + pixel[2] * 0.168);
-    int blue = (int) (pixel[0] * 0.272 + pixel[1] * 0.534 + pixel[2] * 0.131);
-    return new int[]{Math.min(255, red), Math.min(255, green), Math.min(255, blue)};
+  private SplitOperation splitOperationFor(String operation, int[] additionalArgs) {
+    switch (operation) {
+      case "grayscale":
+        return new SplitOperation(0, this::applyGrayscale);
+      case "sepia":
+        return new SplitOperation(0, this::applySepia);
+      case "red-component":
+        return new SplitOperation(0, this::visualizeRed);
+      case "green-component":
+        return new SplitOperation(0, this::visualizeGreen);
+      case "blue-component":
+        return new SplitOperation(0, this::visualizeBlue);
+      case "value-component":
+        return new SplitOperation(0, this::visualizeValue);
+      case "intensity-component":
+        return new SplitOperation(0, this::visualizeIntensity);
+      case "luma-component":
+        return new SplitOperation(0, this::visualizeLuma);
+      case "vertical-flip":
+        return new SplitOperation(0, this::flipVertical);
+      case "blur":
+        return new SplitOperation(1, this::blur);
+      case "sharpen":
+        return new SplitOperation(1, this::sharpen);
+      case "brighten":
+        requireArguments(operation, additionalArgs, 1);
+        return new SplitOperation(0, image -> adjustBrightness(image, additionalArgs[0]));
+      case "levels-adjust":
+        requireArguments(operation, additionalArgs, 3);
+        return new SplitOperation(0, image -> levelsAdjust(image, additionalArgs[0],
+                additionalArgs[1], additionalArgs[2]));
+      case "horizontal-flip":
+        return new SplitOperation(-1, this::flipHorizontal);
+      case "color-correct":
+        return new SplitOperation(-1, this::colorCorrect);
+      case "compress":
+        requireArguments(operation, additionalArgs, 1);
+        return new SplitOperation(-1, image -> compress(image, additionalArgs[0]));
+      default:
+        throw new IllegalArgumentException("Unknown operation: " + operation);
+    }
   }
 
-  /**
-   * Applies a grayscale transformation to a single pixel.
-   *
-   * @param pixel The RGB array of the pixel.
-   * @return The grayscale-transformed pixel.
-   */
-  private int[] applyGrayscalePixel(int[] pixel) {
-    int gray = (int) (pixel[0] * 0.2126 + pixel[1] * 0.7152 + pixel[2] * 0.0722);
-    return new int[]{gray, gray, gray};
+  private static void requireArguments(String operation, int[] additionalArgs, int count) {
+    if (additionalArgs == null || additionalArgs.length < count) {
+      throw new IllegalArgumentException("Operation " + operation + " needs " + count
+              + (count == 1 ? " argument." : " arguments."));
+    }
   }
 
-
   /**
    * Performs the color-correct operation on the CustomImage,
    * aligning the histogram peak values.
@@ -138,6 +155,7 @@ public class AdvancedImageTransformations
    * @return a color corrected image.
    */
   public CustomImage colorCorrect(CustomImage img) {
+    ImageOperationEvent event = ImageOperationEvent.begin("model", "color-correct", img);
     GraphUtil graphUtil = new GraphUtil();
     Map<String, int[]> histograms = graphUtil.generateHistogram(img);
 
@@ -150,10 +168,12 @@ public class AdvancedImageTransformations
     int greenOffset = averagePeak - greenPeak;
     int blueOffset = averagePeak - bluePeak;
 
-    return applyTransformation(img, rgb -> new int[]{
+    CustomImage result = applyTransformation(img, rgb -> new int[]{
             clamp(rgb[0] + redOffset),
             clamp(rgb[1] + greenOffset),
             clamp(rgb[2] + blueOffset)});
+    event.commit();
+    return result;
   }
 
   /**
@@ -166,22 +186,21 @@ public class AdvancedImageTransformations
    * @return a level adjusted image.
    */
   public CustomImage levelsAdjust(CustomImage image, int b, int m, int w) {
+    ImageOperationEvent event = ImageOperationEvent.begin("model", "levels-adjust", image);
     if (b >= m || m >= w || b < 0 || w > 255) {
       throw new IllegalArgumentException("Invalid black, mid, and white values.");
     }
-    CustomImage adjustedImage = new CustomImage(image.getWidth(), image.getHeight());
-    for (int x = 0; x < image.getWidth(); x++) {
-      for (int y = 0; y < image.getHeight(); y++) {
-        int[] rgb = image.getPixel(x, y);
-        for (int i = 0; i < 3; i++) {
-          int originalValue = rgb[i];
-          int transformedValue = applyLinearAdjustment(originalValue, b, m, w);
-          rgb[i] = Math.min(255, Math.max(0, transformedValue));
-        }
-        adjustedImage.setPixel(x, y, rgb);
-      }
+    int[] levels = new int[256];
+    for (int i = 0; i < 256; i++) {
+      levels[i] = Math.min(255, Math.max(0, applyLinearAdjustment(i, b, m, w)));
     }
-    return adjustedImage;
+    // Adjusts the given image in place, as the other transformations do,
+    // and returns a separate copy of the result.
+    PixelKernels.get().lookup(image.writablePixels(), 0, image.getWidth() * image.getHeight(),
+            levels);
+    CustomImage result = image.copy();
+    event.commit();
+    return result;
   }
 
   /**
@@ -205,5 +224,17 @@ public class AdvancedImageTransformations
     }
   }
 
-}
+  /**
+   * An operation a split view applies, with the number of columns it reads on
+   * either side of each pixel, or -1 if it depends on the whole image.
+   */
+  private static final class SplitOperation {
+    private final int halo;
+    private final UnaryOperator<CustomImage> operator;
 
+    SplitOperation(int halo, UnaryOperator<CustomImage> operator) {
+      this.halo = halo;
+      this.operator = operator;
+    }
+  }
+}
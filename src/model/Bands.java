@@ -0,0 +1,82 @@
+package model;
+
+import java.util.stream.IntStream;
+
+/**
+ * Runs work over an image a band of rows or columns at a time, on several
+ * threads for images large enough for that to pay off. Each band is one task,
+ * so a band should be wide enough to outweigh the cost of scheduling it.
+ */
+final class Bands {
+  /**
+   * Images with at least this many pixels are worked on by several threads.
+   */
+  static final int MIN_PARALLEL_PIXELS = 1 << 16;
+  /**
+   * The rows in a band of rows.
+   */
+  static final int ROWS_PER_TASK = 16;
+  /**
+   * The columns in a band of columns.
+   */
+  static final int COLUMNS_PER_TASK = 256;
+
+  private Bands() {
+  }
+
+  /**
+   * Whether an image is large enough to be worked on by several threads.
+   *
+   * @param pixels the number of pixels.
+   * @return true if it has at least {@link #MIN_PARALLEL_PIXELS} pixels.
+   */
+  static boolean isParallel(long pixels) {
+    return pixels >= MIN_PARALLEL_PIXELS;
+  }
+
+  /**
+   * Runs a task over bands of {@link #ROWS_PER_TASK} rows.
+   *
+   * @param rows     the number of rows.
+   * @param parallel whether to run the bands on several threads.
+   * @param band     the work on one band.
+   */
+  static void ofRows(int rows, boolean parallel, Band band) {
+    forEach(rows, ROWS_PER_TASK, parallel, band);
+  }
+
+  /**
+   * Runs a task over bands of {@link #COLUMNS_PER_TASK} columns.
+   *
+   * @param columns  the number of columns.
+   * @param parallel whether to run the bands on several threads.
+   * @param band     the work on one band.
+   */
+  static void ofColumns(int columns, boolean parallel, Band band) {
+    forEach(columns, COLUMNS_PER_TASK, parallel, band);
+  }
+
+  /**
+   * Runs a task over bands of a given size; the last band may be smaller.
+   *
+   * @param count    the number of rows or columns.
+   * @param perTask  the number of rows or columns in a band.
+   * @param parallel whether to run the bands on several threads.
+   * @param band     the work on one band.
+   */
+  static void forEach(int count, int perTask, boolean parallel, Band band) {
+    int tasks = (count + perTask - 1) / perTask;
+    IntStream indices = IntStream.range(0, tasks);
+    if (parallel) {
+      indices = indices.parallel();
+    }
+    indices.forEach(task -> band.run(task * perTask, Math.min(count, (task + 1) * perTask)));
+  }
+
+  /**
+   * Work on the rows or columns from one index up to another.
+   */
+  interface Band {
+    void run(int from, int to);
+  }
+}
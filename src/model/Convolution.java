@@ -0,0 +1,276 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Applies a 3x3 convolution kernel whose weights are all multiples of a small
+ * power of two, such as the blur and sharpen kernels, in integer arithmetic on
+ * rows of separate channel values through {@link PixelKernels}, so the SIMD
+ * kernels are used when they are available. A kernel that is the product of a
+ * horizontal and a vertical kernel, like blur, is applied in two passes of
+ * three taps rather than one of nine.
+ *
+ * <p>The result is the same as summing the weighted pixels in floats and
+ * rounding, as {@link AbstractImageTransformations#applyKernel} does: every
+ * partial sum of such a kernel is a whole number of its smallest step and
+ * small enough to be exact in a float. As there, the pixels along the edges of
+ * the image are left black, and the kernel is indexed by the horizontal
+ * offset first. Large images are filtered on several threads, a band of rows
+ * per task.
+ *
+ * <p>Masked blur and sharpen convolve only runs of a row, with a square
+ * kernel of any odd size prepared by {@link #forRuns}; there the pixels beyond
+ * the edges repeat the nearest edge pixel and the sums are rounded down.
+ */
+final class Convolution {
+  private static final int MAX_SHIFT = 12;
+  private static final int MAX_EXACT_SUM = 1 << 24;
+
+  private final int shift;
+  private final int[][] weights;
+  private final int[] horizontal;
+  private final int[] vertical;
+
+  private Convolution(int shift, int[][] weights, int[] horizontal, int[] vertical) {
+    this.shift = shift;
+    this.weights = weights;
+    this.horizontal = horizontal;
+    this.vertical = vertical;
+  }
+
+  /**
+   * Prepares a kernel for integer convolution, if its weights allow it.
+   *
+   * @param kernel the kernel, of which the first three rows and columns are used.
+   * @return the convolution, or null if the kernel needs float arithmetic.
+   */
+  static Convolution of(float[][] kernel) {
+    return of(kernel, 3, false);
+  }
+
+  /**
+   * Prepares a square kernel of odd size for convolving runs of pixels with
+   * {@link #applyRun}, if its weights allow integer arithmetic. The kernel is
+   * indexed by row first, and all of it is used.
+   *
+   * @param kernel the kernel, with as many rows as columns.
+   * @return the convolution, or null if the kernel needs float arithmetic.
+   */
+  static Convolution forRuns(float[][] kernel) {
+    return of(kernel, kernel.length, true);
+  }
+
+  private static Convolution of(float[][] kernel, int size, boolean byRow) {
+    for (int shift = 0; shift <= MAX_SHIFT; shift++) {
+      int[][] weights = new int[size][size];
+      long total = 0;
+      boolean whole = true;
+      for (int a = 0; a < size && whole; a++) {
+        for (int b = 0; b < size && whole; b++) {
+          double scaled = (double) (byRow ? kernel[b][a] : kernel[a][b]) * (1 << shift);
+          whole = scaled == Math.rint(scaled);
+          weights[a][b] = (int) scaled;
+          total += Math.abs(weights[a][b]);
+        }
+      }
+      if (whole) {
+        if (255 * total >= MAX_EXACT_SUM) {
+          return null;
+        }
+        int[][] factors = factor(weights);
+        return factors == null ? new Convolution(shift, weights, null, null)
+                : new Convolution(shift, weights, factors[0], factors[1]);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Splits whole number weights into a horizontal and a vertical kernel whose
+   * product they are.
+   *
+   * @return the horizontal and vertical kernels, or null if there are none.
+   */
+  private static int[][] factor(int[][] weights) {
+    int size = weights.length;
+    int pivotA = -1;
+    int pivotB = -1;
+    for (int a = 0; a < size && pivotA < 0; a++) {
+      for (int b = 0; b < size; b++) {
+        if (weights[a][b] != 0) {
+          pivotA = a;
+          pivotB = b;
+          break;
+        }
+      }
+    }
+    if (pivotA < 0) {
+      return null;
+    }
+    int pivot = weights[pivotA][pivotB];
+    int[] horizontal = new int[size];
+    int[] vertical = new int[size];
+    for (int a = 0; a < size; a++) {
+      horizontal[a] = weights[a][pivotB];
+    }
+    for (int b = 0; b < size; b++) {
+      if (weights[pivotA][b] % pivot != 0) {
+        return null;
+      }
+      vertical[b] = weights[pivotA][b] / pivot;
+    }
+    for (int a = 0; a < size; a++) {
+      for (int b = 0; b < size; b++) {
+        if (weights[a][b] != horizontal[a] * vertical[b]) {
+          return null;
+        }
+      }
+    }
+    return new int[][]{horizontal, vertical};
+  }
+
+  /**
+   * Whether the kernel is applied in a horizontal and a vertical pass.
+   *
+   * @return true for a separable kernel.
+   */
+  boolean isSeparable() {
+    return horizontal != null;
+  }
+
+  /**
+   * Convolves an image with the kernel.
+   *
+   * @param img the image to convolve, which is not changed.
+   * @return a new image; its edge pixels are black.
+   */
+  CustomImage apply(CustomImage img) {
+    int width = img.getWidth();
+    int height = img.getHeight();
+    int[] result = new int[width * height];
+    if (width >= 3 && height >= 3) {
+      int[] source = img.readPixels();
+      Bands.ofRows(height - 2, Bands.isParallel((long) width * height), (from, to) -> {
+        if (isSeparable()) {
+          applySeparable(source, result, width, from + 1, to + 1);
+        } else {
+          applyFull(source, result, width, from + 1, to + 1);
+        }
+      });
+    }
+    return new CustomImage(width, height, result, false);
+  }
+
+  /**
+   * Filters the rows of a band horizontally, keeping the last three, and
+   * combines each three vertically into a row of the result.
+   */
+  private void applySeparable(int[] source, int[] result, int width, int from, int to) {
+    PixelKernels kernels = PixelKernels.get();
+    int inner = width - 2;
+    int[][] channels = new int[3][width];
+    int[][][] filtered = new int[3][3][inner];
+    int[][] sums = new int[3][inner];
+    for (int y = from - 1; y <= to; y++) {
+      kernels.unpack(source, y * width, channels[0], channels[1], channels[2], 0, width);
+      int[][] row = filtered[Math.floorMod(y, 3)];
+      for (int c = 0; c < 3; c++) {
+        Arrays.fill(row[c], 0);
+        for (int a = 0; a < 3; a++) {
+          kernels.multiplyAdd(row[c], 0, channels[c], a, inner, horizontal[a]);
+        }
+      }
+      int outputRow = y - 1;
+      if (outputRow < from) {
+        continue;
+      }
+      for (int c = 0; c < 3; c++) {
+        Arrays.fill(sums[c], 0);
+        for (int b = 0; b < 3; b++) {
+          kernels.multiplyAdd(sums[c], 0, filtered[Math.floorMod(outputRow - 1 + b, 3)][c], 0,
+                  inner, vertical[b]);
+        }
+        kernels.roundShiftClamp(sums[c], 0, inner, shift);
+      }
+      kernels.pack(sums[0], sums[1], sums[2], 0, result, outputRow * width + 1, inner);
+    }
+  }
+
+  /**
+   * Sums all nine weighted neighbours of each pixel of a band, keeping the
+   * last three rows of separate channel values.
+   */
+  private void applyFull(int[] source, int[] result, int width, int from, int to) {
+    PixelKernels kernels = PixelKernels.get();
+    int inner = width - 2;
+    int[][][] channels = new int[3][3][width];
+    int[][] sums = new int[3][inner];
+    for (int y = from - 1; y <= to; y++) {
+      int[][] row = channels[Math.floorMod(y, 3)];
+      kernels.unpack(source, y * width, row[0], row[1], row[2], 0, width);
+      int outputRow = y - 1;
+      if (outputRow < from) {
+        continue;
+      }
+      for (int c = 0; c < 3; c++) {
+        Arrays.fill(sums[c], 0);
+        for (int b = 0; b < 3; b++) {
+          int[] neighbours = channels[Math.floorMod(outputRow - 1 + b, 3)][c];
+          for (int a = 0; a < 3; a++) {
+            kernels.multiplyAdd(sums[c], 0, neighbours, a, inner, weights[a][b]);
+          }
+        }
+        kernels.roundShiftClamp(sums[c], 0, inner, shift);
+      }
+      kernels.pack(sums[0], sums[1], sums[2], 0, result, outputRow * width + 1, inner);
+    }
+  }
+
+  /**
+   * Convolves a run of pixels of one row with a kernel from {@link #forRuns},
+   * taking the pixels beyond the edges of the image to repeat the nearest edge
+   * pixel. The sums are rounded down and clamped to 0-255.
+   *
+   * @param source the pixels of the image, which are not changed.
+   * @param result receives the convolved pixels of the run.
+   * @param width  the width of the image.
+   * @param height the height of the image.
+   * @param y      the row of the run.
+   * @param start  the first column of the run.
+   * @param end    the column after the last of the run.
+   */
+  void applyRun(int[] source, int[] result, int width, int height, int y, int start, int end) {
+    PixelKernels kernels = PixelKernels.get();
+    int size = weights.length;
+    int reach = size / 2;
+    int length = end - start;
+    int span = length + size - 1;
+    int from = Math.max(0, start - reach);
+    int to = Math.min(width, end + reach);
+    int left = from - (start - reach);
+    int right = left + to - from;
+    int[][] channels = new int[3][span];
+    int[][] sums = new int[3][length];
+    // Starting the sums half a step low makes rounding halves up round down.
+    int bias = shift > 0 ? -(1 << (shift - 1)) : 0;
+    for (int c = 0; c < 3; c++) {
+      Arrays.fill(sums[c], bias);
+    }
+    for (int b = 0; b < size; b++) {
+      int row = Math.max(0, Math.min(height - 1, y + b - reach)) * width;
+      kernels.unpack(source, row + from, channels[0], channels[1], channels[2], left, to - from);
+      for (int c = 0; c < 3; c++) {
+        int[] values = channels[c];
+        Arrays.fill(values, 0, left, values[left]);
+        Arrays.fill(values, right, span, values[right - 1]);
+        for (int a = 0; a < size; a++) {
+          kernels.multiplyAdd(sums[c], 0, values, a, length, weights[a][b]);
+        }
+      }
+    }
+    for (int c = 0; c < 3; c++) {
+      kernels.roundShiftClamp(sums[c], 0, length, shift);
+    }
+    kernels.pack(sums[0], sums[1], sums[2], 0, result, y * width + start, length);
+  }
+}
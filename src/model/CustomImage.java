@@ -1,14 +1,34 @@
 package model;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 
 /**
  * CustomImage class represents an image with pixels, width, and height,
  * supporting basic pixel manipulation and PPM file operations.
+ * Pixels are stored row by row as packed 0xRRGGBB ints. Copies share that
+ * storage until one of them is modified, at which point the modified image
+ * takes a private copy (copy-on-write), so copying an image is cheap.
+ * An image may also hold a mip pyramid of smaller copies of itself, used to
+ * resize it quickly, the summed-area table of its channels, used for box
+ * filters and region averages, and, when used as a mask, the runs of pixels
+ * it selects; modifying the image drops all of them.
  */
 public class CustomImage implements Image {
-  private int[][][] pixels;
+  private int[] pixels;
+  private volatile boolean shared;
+  private volatile String contentHash;
+  private volatile MipPyramid pyramid;
+  private volatile MaskRuns maskRuns;
+  private volatile MaskRuns softMaskRuns;
+  private volatile SummedAreaTable summedAreaTable;
   private int width;
   private int height;
 
@@ -21,7 +41,23 @@ public class CustomImage implements Image {
   public CustomImage(int width, int height) {
     this.width = width;
     this.height = height;
-    this.pixels = new int[height][width][3];
+    this.pixels = new int[width * height];
+  }
+
+  /**
+   * Constructor for a CustomImage around existing packed pixel data.
+   * The image takes ownership of the array.
+   *
+   * @param width  width of the image as an int value.
+   * @param height height of the image as an int value.
+   * @param pixels packed 0xRRGGBB pixels, row by row.
+   * @param shared whether the array is also referenced by another image.
+   */
+  CustomImage(int width, int height, int[] pixels, boolean shared) {
+    this.width = width;
+    this.height = height;
+    this.pixels = pixels;
+    this.shared = shared;
   }
 
   /**
@@ -49,13 +85,27 @@ public class CustomImage implements Image {
    *          in an array that represents the image.
    * @param y the Y coordinate int value of an index,
    *          in an array that represents the image.
-   * @return the pixel at the given indices.
+   * @return a new array holding the pixel at the given indices.
    */
   public int[] getPixel(int x, int y) {
+    int rgb = getRGB(x, y);
+    return new int[]{(rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF};
+  }
+
+  /**
+   * Gets the packed value of a pixel given a certain coordinate.
+   *
+   * @param x the X coordinate int value of an index,
+   *          in an array that represents the image.
+   * @param y the Y coordinate int value of an index,
+   *          in an array that represents the image.
+   * @return the pixel as a packed 0xRRGGBB int.
+   */
+  public int getRGB(int x, int y) {
     if (x < 0 || x >= width || y < 0 || y >= height) {
       throw new IndexOutOfBoundsException("Pixel coordinates are out of bounds");
     }
-    return pixels[y][x];
+    return pixels[y * width + x];
   }
 
 
@@ -70,10 +120,7 @@ public class CustomImage implements Image {
    *            at the index.
    */
   public void setPixel(int x, int y, int[] rgb) {
-    if (x < 0 || x >= width || y < 0 || y >= height) {
-      throw new IndexOutOfBoundsException("Pixel coordinates are out of bounds");
-    }
-    this.pixels[y][x] = rgb;
+    setRGB(x, y, pack(rgb[0], rgb[1], rgb[2]));
   }
 
   /**
@@ -88,12 +135,23 @@ public class CustomImage implements Image {
    * @param blue  The blue value in rgb.
    */
   public void setPixel(int x, int y, int red, int green, int blue) {
+    setRGB(x, y, pack(red, green, blue));
+  }
+
+  /**
+   * Sets the pixel at an index to a packed value.
+   *
+   * @param x   the X coordinate int value of an index,
+   *            in an array that represents the image.
+   * @param y   the Y coordinate int value of an index,
+   *            in an array that represents the image.
+   * @param rgb the pixel as a packed 0xRRGGBB int.
+   */
+  public void setRGB(int x, int y, int rgb) {
     if (x < 0 || x >= width || y < 0 || y >= height) {
       throw new IndexOutOfBoundsException("Pixel coordinates are out of bounds");
     }
-    this.pixels[y][x][0] = red;
-    this.pixels[y][x][1] = green;
-    this.pixels[y][x][2] = blue;
+    writablePixels()[y * width + x] = rgb;
   }
 
   /**
@@ -105,10 +163,15 @@ public class CustomImage implements Image {
   public void setColorChannel(int channelIndex, int[][] newChannel) {
     int height = this.getHeight();
     int width = this.getWidth();
+    int shift = 16 - 8 * channelIndex;
+    int keepMask = ~(0xFF << shift);
+    int[] data = writablePixels();
 
     for (int y = 0; y < height; y++) {
+      int row = y * width;
       for (int x = 0; x < width; x++) {
-        this.pixels[y][x][channelIndex] = newChannel[y][x];
+        int value = Math.max(0, Math.min(255, newChannel[y][x]));
+        data[row + x] = (data[row + x] & keepMask) | (value << shift);
       }
     }
   }
@@ -123,10 +186,12 @@ public class CustomImage implements Image {
     int height = this.getHeight();
     int width = this.getWidth();
     int[][] channel = new int[height][width];
+    int shift = 16 - 8 * rgbChannel;
 
     for (int i = 0; i < height; i++) {
+      int row = i * width;
       for (int j = 0; j < width; j++) {
-        channel[i][j] = this.pixels[i][j][rgbChannel];
+        channel[i][j] = (this.pixels[row + j] >> shift) & 0xFF;
       }
     }
 
@@ -142,34 +207,97 @@ public class CustomImage implements Image {
   public static CustomImage fromBufferedImage(BufferedImage bufferedImage) {
     int width = bufferedImage.getWidth();
     int height = bufferedImage.getHeight();
-    CustomImage customImage = new CustomImage(width, height);
-    for (int y = 0; y < height; y++) {
-      for (int x = 0; x < width; x++) {
-        int rgb = bufferedImage.getRGB(x, y);
-        int red = (rgb >> 16) & 0xFF;
-        int green = (rgb >> 8) & 0xFF;
-        int blue = rgb & 0xFF;
-        customImage.setPixel(x, y, red, green, blue);
-      }
+    int[] data = bufferedImage.getRGB(0, 0, width, height, null, 0, width);
+    for (int i = 0; i < data.length; i++) {
+      data[i] &= 0xFFFFFF;
     }
-    return customImage;
+    return new CustomImage(width, height, data, false);
   }
 
   /**
-   * Creates a deep copy of the current CustomImage.
+   * Creates a copy of the current CustomImage. The copy shares pixel storage
+   * with this image until either of them is modified.
    *
    * @return A new CustomImage instance with identical pixel data.
    */
   public CustomImage copy() {
-    CustomImage copy = new CustomImage(this.width, this.height);
-    for (int x = 0; x < width; x++) {
+    shared = true;
+    CustomImage copy = new CustomImage(this.width, this.height, this.pixels, true);
+    copy.contentHash = contentHash;
+    return copy;
+  }
+
+  /**
+   * Returns a SHA-256 hash of the image size and pixels, as hex. The hash is
+   * remembered until the image is next modified, and copies inherit it.
+   *
+   * @return the content hash of the image.
+   */
+  public String getContentHash() {
+    String hash = contentHash;
+    if (hash == null) {
+      MessageDigest digest;
+      try {
+        digest = MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException("SHA-256 is not available", e);
+      }
+      ByteBuffer row = ByteBuffer.allocate(Math.max(8, width * 4));
+      row.putInt(width).putInt(height).flip();
+      digest.update(row);
       for (int y = 0; y < height; y++) {
-        int[] originalPixel = this.getPixel(x, y);
-        int[] clonedPixel = originalPixel.clone();
-        copy.setPixel(x, y, clonedPixel);
+        row.clear();
+        row.asIntBuffer().put(pixels, y * width, width);
+        row.limit(width * 4);
+        digest.update(row);
+      }
+      StringBuilder hex = new StringBuilder();
+      for (byte b : digest.digest()) {
+        hex.append(String.format("%02x", b));
       }
+      hash = hex.toString();
+      contentHash = hash;
     }
-    return copy;
+    return hash;
+  }
+
+  /**
+   * Writes the image size and pixels in a compact binary form.
+   *
+   * @param out the stream to write to.
+   * @throws IOException if the stream cannot be written.
+   */
+  public void writeTo(DataOutputStream out) throws IOException {
+    out.writeInt(width);
+    out.writeInt(height);
+    ByteBuffer row = ByteBuffer.allocate(width * 4);
+    for (int y = 0; y < height; y++) {
+      row.clear();
+      row.asIntBuffer().put(pixels, y * width, width);
+      out.write(row.array(), 0, width * 4);
+    }
+  }
+
+  /**
+   * Reads an image written by {@link #writeTo(DataOutputStream)}.
+   *
+   * @param in the stream to read from.
+   * @return the image that was read.
+   * @throws IOException if the stream cannot be read or is malformed.
+   */
+  public static CustomImage readFrom(DataInputStream in) throws IOException {
+    int width = in.readInt();
+    int height = in.readInt();
+    if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE) {
+      throw new IOException("Invalid image size " + width + "x" + height);
+    }
+    int[] data = new int[width * height];
+    byte[] row = new byte[width * 4];
+    for (int y = 0; y < height; y++) {
+      in.readFully(row);
+      ByteBuffer.wrap(row).asIntBuffer().get(data, y * width, width);
+    }
+    return new CustomImage(width, height, data, false);
   }
 
   /**
@@ -179,13 +307,124 @@ public class CustomImage implements Image {
    */
   public BufferedImage toBufferedImage() {
     BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-    for (int y = 0; y < height; y++) {
-      for (int x = 0; x < width; x++) {
-        int[] rgb = pixels[y][x];
-        int color = (rgb[0] << 16) | (rgb[1] << 8) | rgb[2];
-        image.setRGB(x, y, color);
-      }
-    }
+    int[] target = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    System.arraycopy(pixels, 0, target, 0, pixels.length);
     return image;
   }
+
+  /**
+   * Returns the mip pyramid of this image, creating it the first time.
+   * The pyramid is dropped when the image is next modified.
+   *
+   * @return the pyramid, whose levels are built as resizes need them.
+   */
+  public synchronized MipPyramid getPyramid() {
+    if (pyramid == null) {
+      pyramid = new MipPyramid(this);
+    }
+    return pyramid;
+  }
+
+  /**
+   * Returns the runs of pixels this image selects when used as a mask,
+   * finding them the first time. They are dropped when the image is next modified.
+   *
+   * @return the mask runs of this image.
+   */
+  public MaskRuns getMaskRuns() {
+    MaskRuns runs = maskRuns;
+    if (runs == null) {
+      runs = MaskRuns.scan(this, false);
+      maskRuns = runs;
+    }
+    return runs;
+  }
+
+  /**
+   * Returns the runs of pixels this image weights when used as a soft mask,
+   * finding them the first time. They are dropped when the image is next modified.
+   *
+   * @return the soft mask runs of this image.
+   */
+  public MaskRuns getSoftMaskRuns() {
+    MaskRuns runs = softMaskRuns;
+    if (runs == null) {
+      runs = MaskRuns.scan(this, true);
+      softMaskRuns = runs;
+    }
+    return runs;
+  }
+
+  /**
+   * Returns the summed-area table of this image's channels, building it the
+   * first time. It is dropped when the image is next modified.
+   *
+   * @return the summed-area table of this image.
+   */
+  public SummedAreaTable getSummedAreaTable() {
+    SummedAreaTable table = summedAreaTable;
+    if (table == null) {
+      table = SummedAreaTable.build(this);
+      summedAreaTable = table;
+    }
+    return table;
+  }
+
+  private synchronized void dropPyramid() {
+    if (pyramid != null) {
+      pyramid.release();
+      pyramid = null;
+    }
+  }
+
+  /**
+   * Returns the packed pixel storage for reading. The array may be shared
+   * with other images and must not be modified.
+   *
+   * @return packed 0xRRGGBB pixels, row by row.
+   */
+  int[] readPixels() {
+    return pixels;
+  }
+
+  /**
+   * Returns the packed pixel storage for writing, first taking a private
+   * copy if the storage is shared with another image.
+   *
+   * @return packed 0xRRGGBB pixels, row by row.
+   */
+  int[] writablePixels() {
+    if (contentHash != null) {
+      contentHash = null;
+    }
+    if (pyramid != null) {
+      dropPyramid();
+    }
+    if (maskRuns != null || softMaskRuns != null) {
+      maskRuns = null;
+      softMaskRuns = null;
+    }
+    if (summedAreaTable != null) {
+      summedAreaTable = null;
+    }
+    if (shared) {
+      pixels = pixels.clone();
+      shared = false;
+    }
+    return pixels;
+  }
+
+  /**
+   * Packs three channel values, clamped to 0-255, into a 0xRRGGBB int.
+   *
+   * @param red   The red value in rgb.
+   * @param green The green value in rgb.
+   * @param blue  The blue value in rgb.
+   * @return the packed pixel.
+   */
+  private static int pack(int red, int green, int blue) {
+    return (Math.max(0, Math.min(255, red)) << 16)
+            | (Math.max(0, Math.min(255, green)) << 8)
+            | Math.max(0, Math.min(255, blue));
+  }
 }
@@ -0,0 +1,237 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Blurs images with a Gaussian of a given radius, whose standard deviation is
+ * half the radius. Small radii use the exact Gaussian, applied as a horizontal
+ * and a vertical pass of whole number weights through {@link PixelKernels}.
+ * Larger radii approximate it with three box filters of nearly equal widths,
+ * each a horizontal and a vertical pass keeping a running sum over a sliding
+ * window, so their cost does not grow with the radius.
+ *
+ * <p>Pixels beyond the edges of the image are taken to repeat the nearest
+ * edge pixel, so the edges are blurred rather than darkened. Large images are
+ * blurred on several threads, a band of rows or columns per task.
+ */
+final class GaussianBlur {
+  static final int MAX_EXACT_RADIUS = 4;
+  private static final int BOX_PASSES = 3;
+  private static final int WEIGHT_BITS = 11;
+
+  private GaussianBlur() {
+  }
+
+  /**
+   * Blurs an image.
+   *
+   * @param image  the image to blur, which is not changed.
+   * @param radius how far the blur reaches, in pixels; 0 leaves the image as it is.
+   * @return a new blurred image.
+   * @throws IllegalArgumentException if the radius is negative.
+   */
+  static CustomImage apply(CustomImage image, int radius) {
+    if (radius < 0) {
+      throw new IllegalArgumentException("Radius must not be negative.");
+    }
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int count = width * height;
+    if (radius == 0 || count == 0) {
+      return image.copy();
+    }
+    PixelKernels kernels = PixelKernels.get();
+    int[][] planes = new int[3][count];
+    int[][] buffers = new int[3][count];
+    kernels.unpack(image.readPixels(), 0, planes[0], planes[1], planes[2], 0, count);
+    boolean parallel = Bands.isParallel(count);
+    double sigma = radius / 2.0;
+    if (radius <= MAX_EXACT_RADIUS) {
+      int[] weights = weights(sigma);
+      Bands.ofRows(height, parallel, (from, to) ->
+              gaussianRows(planes, buffers, width, weights, from, to));
+      Bands.ofRows(height, parallel, (from, to) ->
+              gaussianColumns(buffers, planes, width, height, weights, from, to));
+    } else {
+      for (int boxRadius : boxRadii(sigma)) {
+        Bands.ofRows(height, parallel, (from, to) ->
+                boxRows(planes, buffers, width, boxRadius, from, to));
+        Bands.ofColumns(width, parallel, (from, to) ->
+                boxColumns(buffers, planes, width, height, boxRadius, from, to));
+      }
+    }
+    int[] result = new int[count];
+    kernels.pack(planes[0], planes[1], planes[2], 0, result, 0, count);
+    return new CustomImage(width, height, result, false);
+  }
+
+  /**
+   * Works out the weights of a sampled Gaussian reaching three standard
+   * deviations either side, scaled to whole numbers that add up to exactly
+   * {@code 1 << WEIGHT_BITS}.
+   *
+   * @param sigma the standard deviation.
+   * @return the weights, from the furthest pixel on one side to the other.
+   */
+  static int[] weights(double sigma) {
+    int reach = (int) Math.ceil(3 * sigma);
+    double[] values = new double[2 * reach + 1];
+    double total = 0;
+    for (int t = -reach; t <= reach; t++) {
+      values[t + reach] = Math.exp(-t * t / (2 * sigma * sigma));
+      total += values[t + reach];
+    }
+    int[] weights = new int[values.length];
+    int sum = 0;
+    for (int i = 0; i < values.length; i++) {
+      weights[i] = (int) Math.round(values[i] / total * (1 << WEIGHT_BITS));
+      sum += weights[i];
+    }
+    weights[reach] += (1 << WEIGHT_BITS) - sum;
+    return weights;
+  }
+
+  /**
+   * Works out the radii of box filters whose repeated application has close
+   * to the variance of a Gaussian: the box widths are the two odd numbers
+   * either side of the ideal width, as many of each as brings the total closest.
+   *
+   * @param sigma the standard deviation of the Gaussian.
+   * @return the radius of each box pass.
+   */
+  static int[] boxRadii(double sigma) {
+    double variance = sigma * sigma;
+    long lower = (long) Math.floor(Math.sqrt(12 * variance / BOX_PASSES + 1));
+    if (lower % 2 == 0) {
+      lower--;
+    }
+    long upper = lower + 2;
+    long lowerCount = Math.round((12 * variance - BOX_PASSES * (double) lower * lower
+            - 4.0 * BOX_PASSES * lower - 3 * BOX_PASSES) / (-4.0 * lower - 4));
+    int[] radii = new int[BOX_PASSES];
+    for (int i = 0; i < BOX_PASSES; i++) {
+      radii[i] = (int) (((i < lowerCount ? lower : upper) - 1) / 2);
+    }
+    return radii;
+  }
+
+  /**
+   * Filters rows of each channel with the Gaussian weights, keeping the sums
+   * unrounded for the vertical pass.
+   */
+  private static void gaussianRows(int[][] source, int[][] target, int width, int[] weights,
+                                   int from, int to) {
+    PixelKernels kernels = PixelKernels.get();
+    int reach = weights.length / 2;
+    int[] padded = new int[width + 2 * reach];
+    for (int c = 0; c < 3; c++) {
+      for (int y = from; y < to; y++) {
+        int row = y * width;
+        for (int i = 0; i < padded.length; i++) {
+          padded[i] = source[c][row + clamp(i - reach, width)];
+        }
+        Arrays.fill(target[c], row, row + width, 0);
+        for (int t = 0; t < weights.length; t++) {
+          kernels.multiplyAdd(target[c], row, padded, t, width, weights[t]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Combines the horizontally filtered rows of each channel with the Gaussian
+   * weights and rounds the result back to 0-255.
+   */
+  private static void gaussianColumns(int[][] source, int[][] target, int width, int height,
+                                      int[] weights, int from, int to) {
+    PixelKernels kernels = PixelKernels.get();
+    int reach = weights.length / 2;
+    for (int c = 0; c < 3; c++) {
+      for (int y = from; y < to; y++) {
+        int row = y * width;
+        Arrays.fill(target[c], row, row + width, 0);
+        for (int t = 0; t < weights.length; t++) {
+          kernels.multiplyAdd(target[c], row, source[c], clamp(y + t - reach, height) * width,
+                  width, weights[t]);
+        }
+        kernels.roundShiftClamp(target[c], row, width, 2 * WEIGHT_BITS);
+      }
+    }
+  }
+
+  /**
+   * Averages each pixel of some rows with its neighbours on either side,
+   * sliding a running sum along each row.
+   */
+  private static void boxRows(int[][] source, int[][] target, int width, int radius,
+                              int from, int to) {
+    long size = 2L * radius + 1;
+    long half = size / 2;
+    for (int c = 0; c < 3; c++) {
+      int[] in = source[c];
+      int[] out = target[c];
+      for (int y = from; y < to; y++) {
+        int row = y * width;
+        long sum = windowSum(in, row, 1, width, radius);
+        for (int x = 0; x < width; x++) {
+          out[row + x] = (int) ((sum + half) / size);
+          sum += in[row + clamp(x + radius + 1, width)] - in[row + clamp(x - radius, width)];
+        }
+      }
+    }
+  }
+
+  /**
+   * Averages each pixel of some columns with its neighbours above and below,
+   * sliding a running sum per column down the image a row at a time.
+   */
+  private static void boxColumns(int[][] source, int[][] target, int width, int height,
+                                 int radius, int from, int to) {
+    long size = 2L * radius + 1;
+    long half = size / 2;
+    long[] sums = new long[to - from];
+    for (int c = 0; c < 3; c++) {
+      int[] in = source[c];
+      int[] out = target[c];
+      for (int x = from; x < to; x++) {
+        sums[x - from] = windowSum(in, x, width, height, radius);
+      }
+      for (int y = 0; y < height; y++) {
+        int row = y * width;
+        int entering = clamp(y + radius + 1, height) * width;
+        int leaving = clamp(y - radius, height) * width;
+        for (int x = from; x < to; x++) {
+          long sum = sums[x - from];
+          out[row + x] = (int) ((sum + half) / size);
+          sums[x - from] = sum + in[entering + x] - in[leaving + x];
+        }
+      }
+    }
+  }
+
+  /**
+   * Sums the window around the first pixel of a row or column: the pixels
+   * beyond the edges repeat the edge pixels, so they are counted by
+   * multiplying rather than one at a time, and the time does not depend on
+   * the radius.
+   *
+   * @param in     the values of a channel.
+   * @param start  the index of the first pixel.
+   * @param step   the distance between neighbouring pixels.
+   * @param length the number of pixels in the row or column.
+   * @param radius how far the window reaches either side.
+   * @return the sum of the window.
+   */
+  private static long windowSum(int[] in, int start, int step, int length, int radius) {
+    int last = Math.min(radius, length - 1);
+    long sum = (long) radius * in[start] + (long) (radius - last) * in[start + (length - 1) * step];
+    for (int t = 0; t <= last; t++) {
+      sum += in[start + t * step];
+    }
+    return sum;
+  }
+
+  private static int clamp(int index, int size) {
+    return Math.max(0, Math.min(size - 1, index));
+  }
+}
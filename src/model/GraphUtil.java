@@ -20,22 +20,15 @@ public class GraphUtil {
    * @return An array of int values representing the value.
    */
   public static Map<String, int[]> generateHistogram(CustomImage customImage) {
-    int width = customImage.getWidth();
-    int height = customImage.getHeight();
+    int[] pixels = customImage.readPixels();
     int[] redHistogram = new int[256];
     int[] greenHistogram = new int[256];
     int[] blueHistogram = new int[256];
 
-    for (int y = 0; y < height; y++) {
-      for (int x = 0; x < width; x++) {
-        int[] rgb = customImage.getPixel(x, y);
-        int red = rgb[0];
-        int green = rgb[1];
-        int blue = rgb[2];
-        redHistogram[red]++;
-        greenHistogram[green]++;
-        blueHistogram[blue]++;
-      }
+    for (int rgb : pixels) {
+      redHistogram[(rgb >> 16) & 0xFF]++;
+      greenHistogram[(rgb >> 8) & 0xFF]++;
+      blueHistogram[rgb & 0xFF]++;
     }
 
     Map<String, int[]> rgbHistograms = new HashMap<>();
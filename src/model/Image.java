@@ -42,7 +42,7 @@ public interface Image {
   void setPixel(int x, int y, int[] rgb);
 
   /**
-   * Creates a deep copy of the image.
+   * Creates a copy of the image. Changes to the copy never affect the original.
    *
    * @return a new {@code Image} instance that is an exact copy of the current image
    */
@@ -0,0 +1,532 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Undo and redo history of image states kept under a memory budget.
+ * Each recorded step stores the operation name and the earlier pixels of only
+ * the tiles that changed, rather than full snapshots. The later pixels are
+ * taken from the current image when the step is undone, and kept for redo.
+ * States are tracked per key (an image name in scripts, a single key in the GUI).
+ * When the retained steps exceed the budget, the oldest ones are spilled to
+ * disk, or dropped if no spill directory was given.
+ */
+public class ImageHistory {
+  /**
+   * Edge length in pixels of the square tiles that are diffed.
+   */
+  public static final int TILE_SIZE = 64;
+
+  /**
+   * Default memory budget of 64 MB.
+   */
+  public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+  private final long memoryBudget;
+  private final File spillDirectory;
+  private final LinkedList<Entry> undoEntries;
+  private final LinkedList<Entry> redoEntries;
+  private long memoryUsed;
+
+  /**
+   * Constructs a history that drops the oldest steps once over budget.
+   *
+   * @param memoryBudget the number of bytes the retained steps may occupy.
+   */
+  public ImageHistory(long memoryBudget) {
+    this(memoryBudget, null);
+  }
+
+  /**
+   * Constructs a history that spills the oldest steps to disk once over budget.
+   *
+   * @param memoryBudget   the number of bytes the retained steps may occupy.
+   * @param spillDirectory the directory spilled steps are written to,
+   *                       or null to drop them instead.
+   * @throws IllegalArgumentException if the budget is negative.
+   */
+  public ImageHistory(long memoryBudget, File spillDirectory) {
+    if (memoryBudget < 0) {
+      throw new IllegalArgumentException("Memory budget must not be negative.");
+    }
+    this.memoryBudget = memoryBudget;
+    this.spillDirectory = spillDirectory;
+    this.undoEntries = new LinkedList<>();
+    this.redoEntries = new LinkedList<>();
+  }
+
+  /**
+   * Records that an operation replaced the image stored under a key.
+   * Any steps that could have been redone for the key are discarded.
+   *
+   * @param key       the name the image is stored under.
+   * @param operation the name of the operation that produced the new image.
+   * @param before    the image before the operation, or null if the key was empty.
+   * @param after     the image after the operation.
+   * @return true if a step was recorded, false if the images were identical.
+   */
+  public synchronized boolean record(String key, String operation,
+                                     CustomImage before, CustomImage after) {
+    discard(redoEntries, key);
+    Entry entry = new Entry(key, operation);
+    if (before == null) {
+      entry.created = true;
+    } else if (before.getWidth() == after.getWidth()
+            && before.getHeight() == after.getHeight()) {
+      entry.width = after.getWidth();
+      entry.height = after.getHeight();
+      entry.tiles = diffTiles(before, after);
+      if (entry.tiles.isEmpty()) {
+        return false;
+      }
+    } else {
+      entry.width = before.getWidth();
+      entry.height = before.getHeight();
+      entry.beforePixels = packRegion(before, 0, 0, entry.width, entry.height);
+      entry.afterWidth = after.getWidth();
+      entry.afterHeight = after.getHeight();
+      entry.afterPixels = packRegion(after, 0, 0, entry.afterWidth, entry.afterHeight);
+    }
+    entry.bytes = entry.measure();
+    memoryUsed += entry.bytes;
+    undoEntries.addLast(entry);
+    enforceBudget();
+    return true;
+  }
+
+  /**
+   * Returns the operation that would be undone next for a key.
+   *
+   * @param key the name the image is stored under.
+   * @return the operation name, or null if there is nothing to undo.
+   */
+  public synchronized String getUndoOperation(String key) {
+    Entry entry = findLast(undoEntries, key);
+    return entry == null ? null : entry.operation;
+  }
+
+  /**
+   * Returns the operation that would be redone next for a key.
+   *
+   * @param key the name the image is stored under.
+   * @return the operation name, or null if there is nothing to redo.
+   */
+  public synchronized String getRedoOperation(String key) {
+    Entry entry = findLast(redoEntries, key);
+    return entry == null ? null : entry.operation;
+  }
+
+  /**
+   * Undoes the most recent step recorded for a key.
+   *
+   * @param key     the name the image is stored under.
+   * @param current the image currently stored under the key.
+   * @return the image before the step, or null if the step created the key.
+   * @throws IllegalStateException if there is nothing to undo for the key.
+   */
+  public synchronized CustomImage undo(String key, CustomImage current) {
+    Entry entry = findLast(undoEntries, key);
+    if (entry == null) {
+      throw new IllegalStateException("Nothing to undo for " + key);
+    }
+    undoEntries.remove(entry);
+    entry.restore();
+    CustomImage result;
+    if (entry.created) {
+      entry.afterWidth = current.getWidth();
+      entry.afterHeight = current.getHeight();
+      entry.afterPixels = packRegion(current, 0, 0, entry.afterWidth, entry.afterHeight);
+      result = null;
+    } else if (entry.tiles != null) {
+      for (Tile tile : entry.tiles) {
+        tile.after = packRegion(current, tile.x, tile.y, tile.width, tile.height);
+      }
+      result = applyTiles(current, entry.tiles, true);
+    } else {
+      result = unpack(entry.beforePixels, entry.width, entry.height);
+    }
+    memoryUsed += entry.remeasure();
+    redoEntries.addLast(entry);
+    enforceBudget();
+    return result;
+  }
+
+  /**
+   * Redoes the most recently undone step for a key.
+   *
+   * @param key     the name the image is stored under.
+   * @param current the image currently stored under the key, or null if there is none.
+   * @return the image after the step.
+   * @throws IllegalStateException if there is nothing to redo for the key.
+   */
+  public synchronized CustomImage redo(String key, CustomImage current) {
+    Entry entry = findLast(redoEntries, key);
+    if (entry == null) {
+      throw new IllegalStateException("Nothing to redo for " + key);
+    }
+    redoEntries.remove(entry);
+    entry.restore();
+    CustomImage result;
+    if (entry.created) {
+      result = unpack(entry.afterPixels, entry.afterWidth, entry.afterHeight);
+      entry.afterPixels = null;
+    } else if (entry.tiles != null) {
+      result = applyTiles(current, entry.tiles, false);
+      for (Tile tile : entry.tiles) {
+        tile.after = null;
+      }
+    } else {
+      result = unpack(entry.afterPixels, entry.afterWidth, entry.afterHeight);
+    }
+    memoryUsed += entry.remeasure();
+    undoEntries.addLast(entry);
+    enforceBudget();
+    return result;
+  }
+
+  /**
+   * Discards the recorded steps for a key, e.g. once its image is no longer needed.
+   *
+   * @param key the name the image is stored under.
+   */
+  public synchronized void forget(String key) {
+    discard(undoEntries, key);
+    discard(redoEntries, key);
+  }
+
+  /**
+   * Discards every recorded step and any files they were spilled to.
+   */
+  public synchronized void clear() {
+    discard(undoEntries, null);
+    discard(redoEntries, null);
+  }
+
+  /**
+   * Returns the number of bytes currently held in memory by the history.
+   *
+   * @return the in-memory size of the retained steps.
+   */
+  public synchronized long getMemoryUsed() {
+    return memoryUsed;
+  }
+
+  /**
+   * Spills or drops the oldest in-memory steps until the history fits its budget.
+   * Undo steps are released before redo steps, oldest first. A dropped step
+   * takes the older steps for its key in the same list with it, since they
+   * could no longer be reached in order.
+   */
+  private void enforceBudget() {
+    List<Entry> candidates = new ArrayList<>(undoEntries);
+    candidates.addAll(redoEntries);
+    for (Entry entry : candidates) {
+      if (memoryUsed <= memoryBudget) {
+        return;
+      }
+      if (entry.spillFile != null || entry.bytes == 0) {
+        continue;
+      }
+      if (spillDirectory != null) {
+        memoryUsed -= entry.bytes;
+        entry.spill(spillDirectory);
+      } else {
+        dropThrough(undoEntries.contains(entry) ? undoEntries : redoEntries, entry);
+      }
+    }
+  }
+
+  /**
+   * Removes an entry and the entries for its key that come before it.
+   *
+   * @param entries the list holding the entry.
+   * @param last    the entry to remove up to.
+   */
+  private void dropThrough(LinkedList<Entry> entries, Entry last) {
+    Iterator<Entry> iterator = entries.iterator();
+    while (iterator.hasNext()) {
+      Entry entry = iterator.next();
+      if (entry.key.equals(last.key)) {
+        discardEntry(entry);
+        iterator.remove();
+      }
+      if (entry == last) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Removes the entries for a key, or every entry if the key is null.
+   *
+   * @param entries the list to remove from.
+   * @param key     the key to match, or null to match all.
+   */
+  private void discard(LinkedList<Entry> entries, String key) {
+    Iterator<Entry> iterator = entries.iterator();
+    while (iterator.hasNext()) {
+      Entry entry = iterator.next();
+      if (key == null || entry.key.equals(key)) {
+        discardEntry(entry);
+        iterator.remove();
+      }
+    }
+  }
+
+  private void discardEntry(Entry entry) {
+    if (entry.spillFile == null) {
+      memoryUsed -= entry.bytes;
+    } else {
+      entry.spillFile.delete();
+    }
+  }
+
+  private Entry findLast(LinkedList<Entry> entries, String key) {
+    Iterator<Entry> iterator = entries.descendingIterator();
+    while (iterator.hasNext()) {
+      Entry entry = iterator.next();
+      if (entry.key.equals(key)) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Compares two images of equal size tile by tile.
+   *
+   * @param before the image before the operation.
+   * @param after  the image after the operation.
+   * @return the tiles whose pixels differ, holding their pixels before the operation.
+   */
+  private List<Tile> diffTiles(CustomImage before, CustomImage after) {
+    List<Tile> tiles = new ArrayList<>();
+    int width = before.getWidth();
+    int height = before.getHeight();
+    int[] beforePixels = before.readPixels();
+    int[] afterPixels = after.readPixels();
+    for (int tileY = 0; tileY < height; tileY += TILE_SIZE) {
+      for (int tileX = 0; tileX < width; tileX += TILE_SIZE) {
+        int tileWidth = Math.min(TILE_SIZE, width - tileX);
+        int tileHeight = Math.min(TILE_SIZE, height - tileY);
+        for (int row = tileY; row < tileY + tileHeight; row++) {
+          int start = row * width + tileX;
+          if (!Arrays.equals(beforePixels, start, start + tileWidth,
+                  afterPixels, start, start + tileWidth)) {
+            tiles.add(new Tile(tileX, tileY, tileWidth, tileHeight,
+                    packRegion(before, tileX, tileY, tileWidth, tileHeight)));
+            break;
+          }
+        }
+      }
+    }
+    return tiles;
+  }
+
+  /**
+   * Writes one side of a list of tiles over a copy of an image.
+   *
+   * @param image  the image the tiles are applied to.
+   * @param tiles  the tiles to apply.
+   * @param before true to write the before pixels, false for the after pixels.
+   * @return a new image with the tiles applied.
+   */
+  private CustomImage applyTiles(CustomImage image, List<Tile> tiles, boolean before) {
+    CustomImage result = image.copy();
+    for (Tile tile : tiles) {
+      int[] pixels = before ? tile.before : tile.after;
+      int[] target = result.writablePixels();
+      for (int row = 0; row < tile.height; row++) {
+        System.arraycopy(pixels, row * tile.width, target,
+                (tile.y + row) * result.getWidth() + tile.x, tile.width);
+      }
+    }
+    return result;
+  }
+
+  private static int[] packRegion(CustomImage image, int x0, int y0, int width, int height) {
+    int[] packed = new int[width * height];
+    int[] source = image.readPixels();
+    for (int row = 0; row < height; row++) {
+      System.arraycopy(source, (y0 + row) * image.getWidth() + x0, packed, row * width, width);
+    }
+    return packed;
+  }
+
+  private static CustomImage unpack(int[] packed, int width, int height) {
+    return new CustomImage(width, height, packed.clone(), false);
+  }
+
+  /**
+   * A rectangular region that changed, with its pixels before the operation
+   * and, while the step is undone, after it.
+   */
+  private static class Tile {
+    private final int x;
+    private final int y;
+    private final int width;
+    private final int height;
+    private int[] before;
+    private int[] after;
+
+    private Tile(int x, int y, int width, int height, int[] before) {
+      this.x = x;
+      this.y = y;
+      this.width = width;
+      this.height = height;
+      this.before = before;
+    }
+  }
+
+  /**
+   * One recorded step. A step either created its key, changed some tiles of an
+   * image of the same size, or replaced the image with one of a different size.
+   */
+  private static class Entry {
+    private final String key;
+    private final String operation;
+    private boolean created;
+    private int width;
+    private int height;
+    private int afterWidth;
+    private int afterHeight;
+    private List<Tile> tiles;
+    private int[] beforePixels;
+    private int[] afterPixels;
+    private long bytes;
+    private File spillFile;
+
+    private Entry(String key, String operation) {
+      this.key = key;
+      this.operation = operation;
+    }
+
+    /**
+     * Estimates the bytes held by this entry's pixel data.
+     *
+     * @return the size estimate in bytes.
+     */
+    private long measure() {
+      long size = 0;
+      if (tiles != null) {
+        for (Tile tile : tiles) {
+          size += 4L * tile.before.length + 32;
+          if (tile.after != null) {
+            size += 4L * tile.after.length;
+          }
+        }
+      }
+      if (beforePixels != null) {
+        size += 4L * beforePixels.length;
+      }
+      if (afterPixels != null) {
+        size += 4L * afterPixels.length;
+      }
+      return size;
+    }
+
+    /**
+     * Updates the size estimate after the entry's pixel data changed.
+     *
+     * @return the change in bytes.
+     */
+    private long remeasure() {
+      long previous = bytes;
+      bytes = measure();
+      return bytes - previous;
+    }
+
+    /**
+     * Writes the entry's pixel data to a file and releases it from memory.
+     *
+     * @param directory the directory to write the file in.
+     */
+    private void spill(File directory) {
+      try {
+        File file = File.createTempFile("history", ".bin", directory);
+        file.deleteOnExit();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)))) {
+          writeArray(out, beforePixels);
+          writeArray(out, afterPixels);
+          out.writeInt(tiles == null ? -1 : tiles.size());
+          if (tiles != null) {
+            for (Tile tile : tiles) {
+              writeArray(out, tile.before);
+              writeArray(out, tile.after);
+              tile.before = null;
+              tile.after = null;
+            }
+          }
+        }
+        beforePixels = null;
+        afterPixels = null;
+        spillFile = file;
+      } catch (IOException e) {
+        throw new UncheckedIOException("Unable to spill history to " + directory, e);
+      }
+    }
+
+    /**
+     * Reads back the pixel data of a spilled entry. Does nothing if the
+     * entry is still in memory.
+     */
+    private void restore() {
+      if (spillFile == null) {
+        return;
+      }
+      try (DataInputStream in = new DataInputStream(
+              new BufferedInputStream(new FileInputStream(spillFile)))) {
+        beforePixels = readArray(in);
+        afterPixels = readArray(in);
+        int tileCount = in.readInt();
+        for (int i = 0; i < tileCount; i++) {
+          Tile tile = tiles.get(i);
+          tile.before = readArray(in);
+          tile.after = readArray(in);
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException("Unable to restore history from " + spillFile, e);
+      }
+      spillFile.delete();
+      spillFile = null;
+      bytes = 0;
+    }
+
+    private static void writeArray(DataOutputStream out, int[] values) throws IOException {
+      if (values == null) {
+        out.writeInt(-1);
+        return;
+      }
+      out.writeInt(values.length);
+      for (int value : values) {
+        out.writeInt(value);
+      }
+    }
+
+    private static int[] readArray(DataInputStream in) throws IOException {
+      int length = in.readInt();
+      if (length < 0) {
+        return null;
+      }
+      int[] values = new int[length];
+      for (int i = 0; i < length; i++) {
+        values[i] = in.readInt();
+      }
+      return values;
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package model;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event for one image operation, so that a recording
+ * shows which operations and which image sizes take the time. Events are
+ * emitted by the model's transformations, by file decoding and encoding, and
+ * by the controller for each command, told apart by their layer. JFR records
+ * the thread and duration of each event. When no recording is running,
+ * beginning and committing an event does no work beyond a check.
+ */
+@Name("imaging.ImageOperation")
+@Label("Image Operation")
+@Category({"Image Processing"})
+@Description("An image command, transformation, decode or encode")
+@StackTrace(false)
+public class ImageOperationEvent extends Event {
+  @Label("Layer")
+  @Description("controller, io or model")
+  private String layer;
+
+  @Label("Operation")
+  private String operation;
+
+  @Label("Width")
+  private int width;
+
+  @Label("Height")
+  private int height;
+
+  @Label("Pixels")
+  private long pixels;
+
+  /**
+   * Starts timing an operation.
+   *
+   * @param layer     the layer the operation runs in: controller, io or model.
+   * @param operation the name of the operation, such as a command name.
+   * @param image     the image the operation works on, or null if not yet known.
+   * @return the event, to {@link #commit()} when the operation finishes.
+   */
+  public static ImageOperationEvent begin(String layer, String operation, CustomImage image) {
+    ImageOperationEvent event = new ImageOperationEvent();
+    if (event.isEnabled()) {
+      event.layer = layer;
+      event.operation = operation;
+      event.setImage(image);
+      event.begin();
+    }
+    return event;
+  }
+
+  /**
+   * Sets the image the operation works on, for operations that only know
+   * it once they finish, such as a decode.
+   *
+   * @param image the image, or null to leave the size unset.
+   */
+  public void setImage(CustomImage image) {
+    if (image != null) {
+      width = image.getWidth();
+      height = image.getHeight();
+      pixels = (long) width * height;
+    }
+  }
+}
@@ -1,5 +1,8 @@
 package model;
 
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
 /**
  * Class ImageTransformations extending the,
  * abstracted class AbstractImageTransformations for,
@@ -14,8 +17,11 @@ public class ImageTransformations extends AbstractImageTransformations {
    * @return a grayscale image.
    */
   public CustomImage applyGrayscale(CustomImage img) {
+    ImageOperationEvent event = ImageOperationEvent.begin("model", "grayscale", img);
     double[] grayWeights = {0.2126, 0.7152, 0.0722};
-    return applyColorTransformation(img, grayWeights, grayWeights, grayWeights);
+    CustomImage result = applyColorTransformation(img, grayWeights, grayWeights, grayWeights);
+    event.commit();
+    return result;
   }
 
   /**
@@ -25,10 +31,13 @@ public class ImageTransformations extends AbstractImageTransformations {
    * @return a sepia-toned image.
    */
   public CustomImage applySepia(CustomImage img) {
+    ImageOperationEvent event = ImageOperationEvent.begin("model", "sepia", img);
     double[] redWeights = {0.393, 0.769, 0.189};
     double[] greenWeights = {0.349, 0.686, 0.168};
     double[] blueWeights = {0.272, 0.534, 0.131};
-    return applyColorTransformation(img, redWeights, greenWeights, blueWeights);
+    CustomImage result = applyColorTransformation(img, redWeights, greenWeights, blueWeights);
+    event.commit();
+    return result;
   }
 
   /**
@@ -39,12 +48,11 @@ public class ImageTransformations extends AbstractImageTransformations {
    * @return a brighter or dimmer image.
    */
   public CustomImage brighten(CustomImage img, int increment) {
-    return applyTransformation(img, rgb -> {
-      int red = clamp(rgb[0] + increment);
-      int green = clamp(rgb[1] + increment);
-      int blue = clamp(rgb[2] + increment);
-      return new int[]{red, green, blue};
-    });
+    ImageOperationEvent event = ImageOperationEvent.begin("model", "brighten", img);
+    PixelKernels.get().brighten(img.writablePixels(), 0, img.getWidth() * img.getHeight(),
+            increment);
+    event.commit();
+    return img;
 
   }
 
@@ -55,17 +63,21 @@ public class ImageTransformations extends AbstractImageTransformations {
    * @return a horizontally flipped image.
    */
   public CustomImage flipHorizontal(CustomImage img) {
+    ImageOperationEvent event = ImageOperationEvent.begin("model", "horizontal-flip", img);
     int width = img.getWidth();
     int height = img.getHeight();
-    CustomImage flippedImg = new CustomImage(width, height);
+    int[] source = img.readPixels();
+    int[] flipped = new int[width * height];
 
-    for (int x = 0; x < width; x++) {
-      for (int y = 0; y < height; y++) {
-        flippedImg.setPixel(width - 1 - x, y, img.getPixel(x, y));
+    for (int y = 0; y < height; y++) {
+      int row = y * width;
+      for (int x = 0; x < width; x++) {
+        flipped[row + width - 1 - x] = source[row + x];
       }
     }
 
-    return flippedImg;
+    event.commit();
+    return new CustomImage(width, height, flipped, false);
   }
 
   /**
@@ -75,17 +87,18 @@ public class ImageTransformations extends AbstractImageTransformations {
    * @return a vertically flipped image.
    */
   public CustomImage flipVertical(CustomImage img) {
+    ImageOperationEvent event = ImageOperationEvent.begin("model", "vertical-flip", img);
     int width = img.getWidth();
     int height = img.getHeight();
-    CustomImage flippedImg = new CustomImage(width, height);
+    int[] source = img.readPixels();
+    int[] flipped = new int[width * height];
 
-    for (int x = 0; x < width; x++) {
-      for (int y = 0; y < height; y++) {
-        flippedImg.setPixel(x, height - 1 - y, img.getPixel(x, y));
-      }
+    for (int y = 0; y < height; y++) {
+      System.arraycopy(source, y * width, flipped, (height - 1 - y) * width, width);
     }
 
-    return flippedImg;
+    event.commit();
+    return new CustomImage(width, height, flipped, false);
   }
 
   /**
@@ -95,12 +108,115 @@ public class ImageTransformations extends AbstractImageTransformations {
    * @return a blurred image.
    */
   public CustomImage blur(CustomImage img) {
+    ImageOperationEvent event = ImageOperationEvent.begin("model", "blur", img);
     float[][] kernel = {
             {1 / 16f, 1 / 8f, 1 / 16f},
             {1 / 8f, 1 / 4f, 1 / 8f},
             {1 / 16f, 1 / 8f, 1 / 16f}
     };
-    return applyKernel(img, kernel);
+    CustomImage result = applyKernel(img, kernel);
+    event.commit();
+    return result;
+  }
+
+  /**
+   * Apply a Gaussian blur of any radius to the image. Its cost does not grow
+   * with the radius: small radii use the exact Gaussian and larger ones three
+   * box filters with the same spread. Pixels beyond the edges repeat the edge.
+   *
+   * @param img    Image file that is being edited.
+   * @param radius how far the blur reaches, in pixels; 0 leaves the image as it is.
+   * @return a new blurred image.
+   * @throws IllegalArgumentException if the radius is negative.
+   */
+  public CustomImage blur(CustomImage img, int radius) {
+    ImageOperationEvent event = ImageOperationEvent.begin("model", "gaussian-blur", img);
+    CustomImage result = GaussianBlur.apply(img, radius);
+    event.commit();
+    return result;
+  }
+
+  /**
+   * Apply a box blur to the image: each pixel becomes the average of the
+   * square reaching radius pixels around it, clipped to the image. The
+   * averages come from the image's summed-area table, four lookups per
+   * channel whatever the radius.
+   *
+   * @param img    Image file that is being edited.
+   * @param radius how far the square reaches, in pixels; 0 leaves the image as it is.
+   * @return a new blurred image.
+   * @throws IllegalArgumentException if the radius is negative.
+   */
+  public CustomImage boxBlur(CustomImage img, int radius) {
+    if (radius < 0) {
+      throw new IllegalArgumentException("Radius must not be negative.");
+    }
+    ImageOperationEvent event = ImageOperationEvent.begin("model", "box-blur", img);
+    int width = img.getWidth();
+    int height = img.getHeight();
+    SummedAreaTable table = img.getSummedAreaTable();
+    int[] result = new int[width * height];
+    IntStream rows = IntStream.range(0, height);
+    if (Bands.isParallel((long) width * height)) {
+      rows = rows.parallel();
+    }
+    // A square reaching past every edge covers the whole image, so larger
+    // radii change nothing, and this keeps the bounds from overflowing.
+    int reach = Math.min(radius, Math.max(width, height));
+    rows.forEach(y -> {
+      int top = y - Math.min(reach, y);
+      int bottom = y + Math.min(reach, height - 1 - y) + 1;
+      for (int x = 0; x < width; x++) {
+        int left = x - Math.min(reach, x);
+        int right = x + Math.min(reach, width - 1 - x) + 1;
+        long area = (long) (right - left) * (bottom - top);
+        int pixel = 0;
+        for (int c = 0; c < 3; c++) {
+          pixel = (pixel << 8)
+                  | (int) ((table.sum(c, left, top, right, bottom) + area / 2) / area);
+        }
+        result[y * width + x] = pixel;
+      }
+    });
+    event.commit();
+    return new CustomImage(width, height, result, false);
+  }
+
+  /**
+   * Apply a median filter to the image, which removes noise such as stray
+   * specks while keeping edges: each channel of every pixel becomes its
+   * median over the square reaching radius pixels around it. The time per
+   * pixel does not depend on the radius. Pixels beyond the edges repeat the edge.
+   *
+   * @param img    Image file that is being edited.
+   * @param radius how far the square reaches, in pixels; 0 leaves the image as it is.
+   * @return a new filtered image.
+   * @throws IllegalArgumentException if the radius is negative or above 16383.
+   */
+  public CustomImage median(CustomImage img, int radius) {
+    ImageOperationEvent event = ImageOperationEvent.begin("model", "median", img);
+    CustomImage result = MedianFilter.apply(img, radius);
+    event.commit();
+    return result;
+  }
+
+  /**
+   * Convolves the image with a kernel of any odd width and height, such as a
+   * large motion or lens blur. Separable kernels are applied as two passes,
+   * small ones directly and large ones through the FFT; see
+   * {@link KernelConvolution}. Pixels beyond the edges repeat the edge.
+   *
+   * @param img    Image file that is being edited.
+   * @param kernel the weights, where {@code kernel[j][i]} applies to the pixel
+   *               {@code j} rows down and {@code i} columns right of the top-left corner.
+   * @return a new convolved image.
+   * @throws IllegalArgumentException if the kernel is not a rectangle of odd width and height.
+   */
+  public CustomImage convolve(CustomImage img, float[][] kernel) {
+    ImageOperationEvent event = ImageOperationEvent.begin("model", "convolve", img);
+    CustomImage result = KernelConvolution.convolve(img, kernel);
+    event.commit();
+    return result;
   }
 
   /**
@@ -110,6 +226,7 @@ public class ImageTransformations extends AbstractImageTransformations {
    * @return a sharpened image.
    */
   public CustomImage sharpen(CustomImage img) {
+    ImageOperationEvent event = ImageOperationEvent.begin("model", "sharpen", img);
     float[][] kernel = {
             {-1 / 8f, -1 / 8f, -1 / 8f, -1 / 8f, -1 / 8f},
             {-1 / 8f, 1 / 4f, 1 / 4f, 1 / 4f, -1 / 8f},
@@ -117,7 +234,9 @@ public class ImageTransformations extends AbstractImageTransformations {
             {-1 / 8f, 1 / 4f, 1 / 4f, 1 / 4f, -1 / 8f},
             {-1 / 8f, -1 / 8f, -1 / 8f, -1 / 8f, -1 / 8f}
     };
-    return applyKernel(img, kernel);
+    CustomImage result = applyKernel(img, kernel);
+    event.commit();
+    return result;
   }
 
   /**
@@ -127,7 +246,10 @@ public class ImageTransformations extends AbstractImageTransformations {
    * @return a red image.
    */
   public CustomImage visualizeRed(CustomImage img) {
-    return applyTransformation(img, rgb -> new int[]{rgb[0], rgb[0], rgb[0]});
+    ImageOperationEvent event = ImageOperationEvent.begin("model", "red-component", img);
+    PixelKernels.get().channel(img.writablePixels(), 0, img.getWidth() * img.getHeight(), 0);
+    event.commit();
+    return img;
   }
 
 
@@ -138,7 +260,10 @@ public class ImageTransformations extends AbstractImageTransformations {
    * @return a green image.
    */
   public CustomImage visualizeGreen(CustomImage img) {
-    return applyTransformation(img, rgb -> new int[]{rgb[1], rgb[1], rgb[1]});
+    ImageOperationEvent event = ImageOperationEvent.begin("model", "green-component", img);
+    PixelKernels.get().channel(img.writablePixels(), 0, img.getWidth() * img.getHeight(), 1);
+    event.commit();
+    return img;
   }
 
   /**
@@ -148,7 +273,10 @@ public class ImageTransformations extends AbstractImageTransformations {
    * @return a blue image.
    */
   public CustomImage visualizeBlue(CustomImage img) {
-    return applyTransformation(img, rgb -> new int[]{rgb[2], rgb[2], rgb[2]});
+    ImageOperationEvent event = ImageOperationEvent.begin("model", "blue-component", img);
+    PixelKernels.get().channel(img.writablePixels(), 0, img.getWidth() * img.getHeight(), 2);
+    event.commit();
+    return img;
   }
 
   /**
@@ -158,10 +286,10 @@ public class ImageTransformations extends AbstractImageTransformations {
    * @return an edited image.
    */
   public CustomImage visualizeValue(CustomImage img) {
-    return applyTransformation(img, rgb -> {
-      int value = Math.max(rgb[0], Math.max(rgb[1], rgb[2]));
-      return new int[]{value, value, value};
-    });
+    ImageOperationEvent event = ImageOperationEvent.begin("model", "value-component", img);
+    PixelKernels.get().value(img.writablePixels(), 0, img.getWidth() * img.getHeight());
+    event.commit();
+    return img;
   }
 
   /**
@@ -171,10 +299,10 @@ public class ImageTransformations extends AbstractImageTransformations {
    * @return an intensified image.
    */
   public CustomImage visualizeIntensity(CustomImage img) {
-    return applyTransformation(img, rgb -> {
-      int intensity = (rgb[0] + rgb[1] + rgb[2]) / 3;
-      return new int[]{intensity, intensity, intensity};
-    });
+    ImageOperationEvent event = ImageOperationEvent.begin("model", "intensity-component", img);
+    PixelKernels.get().intensity(img.writablePixels(), 0, img.getWidth() * img.getHeight());
+    event.commit();
+    return img;
   }
 
   /**
@@ -184,10 +312,11 @@ public class ImageTransformations extends AbstractImageTransformations {
    * @return an image with increased luma.
    */
   public CustomImage visualizeLuma(CustomImage img) {
-    return applyTransformation(img, rgb -> {
-      int luma = (int) (0.2126 * rgb[0] + 0.7152 * rgb[1] + 0.0722 * rgb[2]);
-      return new int[]{luma, luma, luma};
-    });
+    ImageOperationEvent event = ImageOperationEvent.begin("model", "luma-component", img);
+    double[] lumaWeights = {0.2126, 0.7152, 0.0722};
+    CustomImage result = applyColorTransformation(img, lumaWeights, lumaWeights, lumaWeights);
+    event.commit();
+    return result;
   }
 
   /**
@@ -198,12 +327,11 @@ public class ImageTransformations extends AbstractImageTransformations {
    * @return a brighter or dimmer image.
    */
   public CustomImage adjustBrightness(CustomImage img, int increment) {
-    return applyTransformation(img, rgb -> {
-      int red = Math.min(255, Math.max(0, rgb[0] + increment));
-      int green = Math.min(255, Math.max(0, rgb[1] + increment));
-      int blue = Math.min(255, Math.max(0, rgb[2] + increment));
-      return new int[]{red, green, blue};
-    });
+    ImageOperationEvent event = ImageOperationEvent.begin("model", "brighten", img);
+    PixelKernels.get().brighten(img.writablePixels(), 0, img.getWidth() * img.getHeight(),
+            increment);
+    event.commit();
+    return img;
   }
 
   /**
@@ -213,24 +341,28 @@ public class ImageTransformations extends AbstractImageTransformations {
    * @return one image file for each red, green, blue components.
    */
   public CustomImage[] splitRGB(CustomImage img) {
+    ImageOperationEvent event = ImageOperationEvent.begin("model", "rgb-split", img);
     int width = img.getWidth();
     int height = img.getHeight();
 
-    CustomImage redImage = new CustomImage(width, height);
-    CustomImage greenImage = new CustomImage(width, height);
-    CustomImage blueImage = new CustomImage(width, height);
-
-    for (int x = 0; x < width; x++) {
-      for (int y = 0; y < height; y++) {
-        int[] rgb = img.getPixel(x, y);
+    int[] source = img.readPixels();
+    int[] red = new int[width * height];
+    int[] green = new int[width * height];
+    int[] blue = new int[width * height];
 
-        redImage.setPixel(x, y, rgb[0], 0, 0);
-        greenImage.setPixel(x, y, 0, rgb[1], 0);
-        blueImage.setPixel(x, y, 0, 0, rgb[2]);
-      }
+    for (int i = 0; i < source.length; i++) {
+      red[i] = source[i] & 0xFF0000;
+      green[i] = source[i] & 0x00FF00;
+      blue[i] = source[i] & 0x0000FF;
     }
 
-    return new CustomImage[]{redImage, greenImage, blueImage};
+    CustomImage redImage = new CustomImage(width, height, red, false);
+    CustomImage greenImage = new CustomImage(width, height, green, false);
+    CustomImage blueImage = new CustomImage(width, height, blue, false);
+
+    CustomImage[] result = new CustomImage[]{redImage, greenImage, blueImage};
+    event.commit();
+    return result;
   }
 
   /**
@@ -243,33 +375,38 @@ public class ImageTransformations extends AbstractImageTransformations {
    */
   public CustomImage combineRGB(CustomImage redImage, CustomImage greenImage,
                                 CustomImage blueImage) {
+    ImageOperationEvent event = ImageOperationEvent.begin("model", "rgb-combine", redImage);
     int width = redImage.getWidth();
     int height = redImage.getHeight();
 
-    CustomImage colorImage = new CustomImage(width, height);
-
-    for (int x = 0; x < width; x++) {
-      for (int y = 0; y < height; y++) {
-        int[] redPixel = redImage.getPixel(x, y);
-        int[] greenPixel = greenImage.getPixel(x, y);
-        int[] bluePixel = blueImage.getPixel(x, y);
-
-        int red = redPixel[0];
-        int green = greenPixel[1];
-        int blue = bluePixel[2];
-
-        colorImage.setPixel(x, y, new int[]{red, green, blue});
+    if (greenImage.getWidth() < width || greenImage.getHeight() < height
+            || blueImage.getWidth() < width || blueImage.getHeight() < height) {
+      throw new IndexOutOfBoundsException("Pixel coordinates are out of bounds");
+    }
+    int[] red = redImage.readPixels();
+    int[] green = greenImage.readPixels();
+    int[] blue = blueImage.readPixels();
+    int greenWidth = greenImage.getWidth();
+    int blueWidth = blueImage.getWidth();
+    int[] combined = new int[width * height];
+
+    for (int y = 0; y < height; y++) {
+      int row = y * width;
+      int greenRow = y * greenWidth;
+      int blueRow = y * blueWidth;
+      for (int x = 0; x < width; x++) {
+        combined[row + x] = (red[row + x] & 0xFF0000) | (green[greenRow + x] & 0x00FF00)
+                | (blue[blueRow + x] & 0x0000FF);
       }
     }
 
-    return colorImage;
+    event.commit();
+    return new CustomImage(width, height, combined, false);
   }
 
   /**
-   * Downscales the given image to the specified width and height.
-   * This method reduces the dimensions of the input image while maintaining
-   * the aspect ratio and mapping original pixels to the new dimensions using
-   * proportional scaling.
+   * Downscales the given image to the specified width and height, averaging
+   * the source pixels that fall under each output pixel.
    *
    * @param img       the image to be downscaled
    * @param newWidth  the desired width of the downscaled image
@@ -278,107 +415,166 @@ public class ImageTransformations extends AbstractImageTransformations {
    * @throws IllegalArgumentException if the provided dimensions are invalid.
    */
   public CustomImage downscale(CustomImage img, int newWidth, int newHeight) {
+    return downscale(img, newWidth, newHeight, "area");
+  }
+
+  /**
+   * Downscales the given image to the specified width and height with a
+   * resampling filter: "area" averages the source pixels under each output
+   * pixel, "bilinear" interpolates between them and "lanczos" keeps edges sharpest.
+   * The image keeps a mip pyramid, so later downscales of it start from the
+   * nearest larger level instead of the full image.
+   *
+   * @param img       the image to be downscaled
+   * @param newWidth  the desired width of the downscaled image
+   * @param newHeight the desired height of the downscaled image
+   * @param filter    the name of the filter: area, bilinear or lanczos.
+   * @return a new instance representing the downscaled image
+   * @throws IllegalArgumentException if the provided dimensions or filter are invalid.
+   */
+  public CustomImage downscale(CustomImage img, int newWidth, int newHeight, String filter) {
     if (newWidth <= 0 || newHeight <= 0
             || newWidth > img.getWidth() || newHeight > img.getHeight()) {
       throw new IllegalArgumentException("Invalid dimensions. "
               + "Ensure they are positive and less than "
               + "or equal to the original dimensions.");
     }
-
-    int originalWidth = img.getWidth();
-    int originalHeight = img.getHeight();
-
-    CustomImage downscaledImage = new CustomImage(newWidth, newHeight);
-
-    for (int y = 0; y < newHeight; y++) {
-      for (int x = 0; x < newWidth; x++) {
-        int originalX = x * originalWidth / newWidth;
-        int originalY = y * originalHeight / newHeight;
-
-        int[] pixel = img.getPixel(originalX, originalY);
-        downscaledImage.setPixel(x, y, pixel);
-      }
-    }
-
+    Resampler.Filter resamplingFilter = Resampler.Filter.fromName(filter);
+    ImageOperationEvent event = ImageOperationEvent.begin("model", "downscale", img);
+    CustomImage downscaledImage = img.getPyramid().resize(newWidth, newHeight, resamplingFilter);
+    event.commit();
     return downscaledImage;
   }
 
   /**
    * Applies a specified transformation to the source image using a mask image.
    * Only the pixels where the mask is black (0, 0, 0) are transformed; other
-   * pixels retain their original values.
+   * pixels retain their original values. Only the runs of pixels the mask
+   * selects are visited, so the work grows with the selection rather than the image.
    *
    * @param source         the source image to be transformed
    * @param mask           the mask image specifying areas to apply the transformation
    * @param transformation the name of the transformation to apply.
    * @return a new {@code CustomImage} instance with the transformation applied to specified areas.
-   * @throws IllegalArgumentException if the source and mask images have different dimensions.
+   * @throws IllegalArgumentException if the source and mask images have different dimensions,
+   *                                  or the transformation is unknown.
    */
   public CustomImage applyWithMask(CustomImage source, CustomImage mask, String transformation) {
+    return applyWithMask(source, mask, transformation, false);
+  }
+
+  /**
+   * Applies a specified transformation to the source image using a hard or soft mask.
+   * A soft mask blends each transformed pixel with the original by how dark
+   * the mask is there: black takes the transformed pixel, white keeps the
+   * original and greys mix the two, so a feathered mask gives a smooth edge.
+   * Only pixels where the mask is neither black nor white are blended.
+   *
+   * @param source         the source image to be transformed
+   * @param mask           the mask image specifying areas to apply the transformation
+   * @param transformation the name of the transformation to apply.
+   * @param soft           whether to blend by mask intensity instead of
+   *                       transforming only the black pixels.
+   * @return a new {@code CustomImage} instance with the transformation applied to specified areas.
+   * @throws IllegalArgumentException if the source and mask images have different dimensions,
+   *                                  or the transformation is unknown.
+   */
+  public CustomImage applyWithMask(CustomImage source, CustomImage mask, String transformation,
+                                   boolean soft) {
+    ImageOperationEvent event = ImageOperationEvent.begin("model",
+            transformation + "-masked", source);
     if (source.getWidth() != mask.getWidth() || source.getHeight() != mask.getHeight()) {
       throw new IllegalArgumentException("Source and mask images must have the same dimensions.");
     }
+    RunTransformation runTransformation = runTransformationFor(transformation);
 
     CustomImage result = source.copy();
-
-    for (int y = 0; y < source.getHeight(); y++) {
-      for (int x = 0; x < source.getWidth(); x++) {
-        int[] maskPixel = mask.getPixel(x, y);
-
-        if (maskPixel[0] < 10 && maskPixel[1] < 10 && maskPixel[2] < 10) {
-          int[] transformedPixel = applyTransformationToPixel(source, x, y, transformation);
-          result.setPixel(x, y, transformedPixel);
-        }
+    MaskRuns runs = soft ? mask.getSoftMaskRuns() : mask.getMaskRuns();
+    if (!runs.isEmpty()) {
+      int width = source.getWidth();
+      int height = source.getHeight();
+      int[] sourcePixels = source.readPixels();
+      int[] maskPixels = mask.readPixels();
+      int[] resultPixels = result.writablePixels();
+      IntStream rows = IntStream.rangeClosed(runs.firstRow(), runs.lastRow());
+      if (Bands.isParallel(runs.getSelectedCount())) {
+        rows = rows.parallel();
       }
+      rows.forEach(y -> {
+        int[] rowRuns = runs.runs(y);
+        for (int i = 0; i < rowRuns.length; i += 2) {
+          runTransformation.apply(sourcePixels, resultPixels, width, height,
+                  y, rowRuns[i], rowRuns[i + 1]);
+        }
+        int[] partialRuns = runs.partialRuns(y);
+        for (int i = 0; i < partialRuns.length; i += 2) {
+          blendRun(sourcePixels, resultPixels, maskPixels, y * width,
+                  partialRuns[i], partialRuns[i + 1]);
+        }
+      });
     }
 
+    event.commit();
     return result;
   }
 
   /**
-   * Applies the specified pixel-level transformation to a single pixel
-   * based on the transformation type.
+   * Blends a run of transformed pixels with the originals, weighting the
+   * transformed pixel by the soft mask. Each channel is rounded to the nearest
+   * value of (transformed * weight + original * (255 - weight)) / 255, in integers.
+   */
+  private static void blendRun(int[] source, int[] result, int[] mask, int row,
+                               int start, int end) {
+    for (int index = row + start; index < row + end; index++) {
+      int weight = MaskRuns.softWeight(mask[index]);
+      int transformed = result[index];
+      int original = source[index];
+      result[index] = (blendChannel(red(transformed), red(original), weight) << 16)
+              | (blendChannel(green(transformed), green(original), weight) << 8)
+              | blendChannel(blue(transformed), blue(original), weight);
+    }
+  }
+
+  private static int blendChannel(int transformed, int original, int weight) {
+    int sum = transformed * weight + original * (255 - weight) + 128;
+    return (sum + (sum >> 8)) >> 8;
+  }
+
+  /**
+   * Looks up how a named transformation is applied to a run of pixels.
    *
-   * @param source         the source image as a {@code CustomImage}.
-   * @param x              the x-coordinate of the pixel to transform.
-   * @param y              the y-coordinate of the pixel to transform.
    * @param transformation the type of transformation to apply.
-   * @return an array representing the transformed pixel's RGB values.
+   * @return the transformation of a run.
    * @throws IllegalArgumentException if the transformation type is unknown.
    */
-  private int[] applyTransformationToPixel(CustomImage source,
-                                           int x, int y, String transformation) {
-    int[] pixel = source.getPixel(x, y);
-
+  private RunTransformation runTransformationFor(String transformation) {
     switch (transformation) {
       case "grayscale":
-        int gray = (int) (0.2126 * pixel[0] + 0.7152 * pixel[1] + 0.0722 * pixel[2]);
-        return new int[]{gray, gray, gray};
+        double[] grayWeights = {0.2126, 0.7152, 0.0722};
+        return colorMatrixRun(grayWeights, grayWeights, grayWeights);
 
       case "sepia":
-        int red = Math.min(255, (int) (pixel[0] * 0.393 + pixel[1] * 0.769 + pixel[2] * 0.189));
-        int green = Math.min(255, (int) (pixel[0] * 0.349 + pixel[1] * 0.686 + pixel[2] * 0.168));
-        int blue = Math.min(255, (int) (pixel[0] * 0.272 + pixel[1] * 0.534 + pixel[2] * 0.131));
-        return new int[]{red, green, blue};
+        return colorMatrixRun(new double[]{0.393, 0.769, 0.189},
+                new double[]{0.349, 0.686, 0.168}, new double[]{0.272, 0.534, 0.131});
 
       case "red-component":
-        return new int[]{pixel[0], 0, 0};
+        return pixelRun(rgb -> rgb & 0xFF0000);
 
       case "green-component":
-        return new int[]{0, pixel[1], 0};
+        return pixelRun(rgb -> rgb & 0x00FF00);
 
       case "blue-component":
-        return new int[]{0, 0, pixel[2]};
+        return pixelRun(rgb -> rgb & 0x0000FF);
 
       case "blur":
-        return applyKernelAtPixel(source, x, y, new float[][] {
+        return kernelRun(new float[][] {
                 {1 / 16f, 1 / 8f, 1 / 16f},
                 {1 / 8f, 1 / 4f, 1 / 8f},
                 {1 / 16f, 1 / 8f, 1 / 16f}
         });
 
       case "sharpen":
-        return applyKernelAtPixel(source, x, y, new float[][] {
+        return kernelRun(new float[][] {
                 {-1 / 8f, -1 / 8f, -1 / 8f, -1 / 8f, -1 / 8f},
                 {-1 / 8f, 1 / 4f, 1 / 4f, 1 / 4f, -1 / 8f},
                 {-1 / 8f, 1 / 4f, 1, 1 / 4f, -1 / 8f},
@@ -392,47 +588,93 @@ public class ImageTransformations extends AbstractImageTransformations {
   }
 
   /**
-   * Applies a convolution kernel to a specific pixel in the image.
-   * The kernel considers the pixel's neighbors, applies weights, and computes
-   * the resulting RGB values.
+   * Makes a run transformation that maps each pixel on its own.
    *
-   * @param source the source image as a CustomImage.
-   * @param x      the x-coordinate of the pixel to transform.
-   * @param y      the y-coordinate of the pixel to transform.
-   * @param kernel a 2D array representing the convolution kernel.
-   * @return an array representing the transformed pixel's RGB values.
+   * @param operator the mapping from a packed source pixel to a packed result pixel.
+   * @return the transformation of a run.
    */
-  private int[] applyKernelAtPixel(CustomImage source, int x, int y, float[][] kernel) {
-    int width = source.getWidth();
-    int height = source.getHeight();
+  private RunTransformation pixelRun(IntUnaryOperator operator) {
+    return (source, result, width, height, y, start, end) -> {
+      int row = y * width;
+      for (int x = start; x < end; x++) {
+        result[row + x] = operator.applyAsInt(source[row + x]);
+      }
+    };
+  }
 
-    float[] rgb = {0, 0, 0};
+  /**
+   * Makes a run transformation that replaces each channel with a weighted sum
+   * of the channels. The result starts as a copy of the source, so the run is
+   * transformed in place in the result.
+   *
+   * @param redWeights   the weights of red, green and blue in the new red.
+   * @param greenWeights the weights of red, green and blue in the new green.
+   * @param blueWeights  the weights of red, green and blue in the new blue.
+   * @return the transformation of a run.
+   */
+  private RunTransformation colorMatrixRun(double[] redWeights, double[] greenWeights,
+                                           double[] blueWeights) {
+    return (source, result, width, height, y, start, end) -> PixelKernels.get().colorMatrix(
+            result, y * width + start, y * width + end, redWeights, greenWeights, blueWeights);
+  }
+
+  /**
+   * Makes a run transformation that applies a convolution kernel to each pixel.
+   * Neighbours beyond the edges of the image repeat the nearest edge pixel,
+   * and the weighted sums are truncated and clamped to 0-255. Kernels whose
+   * weights are multiples of a small power of two, such as blur and sharpen,
+   * are applied a run at a time in integer arithmetic with the same result.
+   *
+   * @param kernel a 2D array representing the convolution kernel.
+   * @return the transformation of a run.
+   */
+  private RunTransformation kernelRun(float[][] kernel) {
+    Convolution convolution = kernel.length == kernel[0].length
+            ? Convolution.forRuns(kernel) : null;
+    if (convolution != null) {
+      return convolution::applyRun;
+    }
     int kernelHeight = kernel.length;
     int kernelWidth = kernel[0].length;
     int kernelOffsetY = kernelHeight / 2;
     int kernelOffsetX = kernelWidth / 2;
-
-    // Apply kernel
-    for (int ky = 0; ky < kernelHeight; ky++) {
-      for (int kx = 0; kx < kernelWidth; kx++) {
-        int neighborX = clampIndex(x + kx - kernelOffsetX, width);
-        int neighborY = clampIndex(y + ky - kernelOffsetY, height);
-
-        int[] neighborPixel = source.getPixel(neighborX, neighborY);
-        float weight = kernel[ky][kx];
-        rgb[0] += neighborPixel[0] * weight;
-        rgb[1] += neighborPixel[1] * weight;
-        rgb[2] += neighborPixel[2] * weight;
+    return (source, result, width, height, y, start, end) -> {
+      int[] rows = new int[kernelHeight];
+      for (int ky = 0; ky < kernelHeight; ky++) {
+        rows[ky] = clampIndex(y + ky - kernelOffsetY, height) * width;
+      }
+      for (int x = start; x < end; x++) {
+        float red = 0;
+        float green = 0;
+        float blue = 0;
+        for (int ky = 0; ky < kernelHeight; ky++) {
+          float[] weights = kernel[ky];
+          for (int kx = 0; kx < kernelWidth; kx++) {
+            int neighbor = source[rows[ky] + clampIndex(x + kx - kernelOffsetX, width)];
+            float weight = weights[kx];
+            red += red(neighbor) * weight;
+            green += green(neighbor) * weight;
+            blue += blue(neighbor) * weight;
+          }
+        }
+        result[y * width + x] = (clamp((int) red) << 16) | (clamp((int) green) << 8)
+                | clamp((int) blue);
       }
-    }
-
-    return new int[]{
-            clamp((int) rgb[0]),
-            clamp((int) rgb[1]),
-            clamp((int) rgb[2])
     };
   }
 
+  private static int red(int rgb) {
+    return (rgb >> 16) & 0xFF;
+  }
+
+  private static int green(int rgb) {
+    return (rgb >> 8) & 0xFF;
+  }
+
+  private static int blue(int rgb) {
+    return rgb & 0xFF;
+  }
+
   /**
    * Ensures that a pixel value remains within the valid range of 0 to 255.
    *
@@ -455,4 +697,11 @@ public class ImageTransformations extends AbstractImageTransformations {
     return Math.max(0, Math.min(index, max - 1));
   }
 
+  /**
+   * A transformation applied to one run of pixels of a row, reading packed
+   * pixels from the source and writing them to the result.
+   */
+  private interface RunTransformation {
+    void apply(int[] source, int[] result, int width, int height, int y, int start, int end);
+  }
 }
@@ -0,0 +1,501 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Convolves images with kernels of any odd width and height, choosing how by
+ * the kernel: a kernel that is the product of a column and a row is applied
+ * as a vertical and a horizontal pass, a small kernel by summing its weighted
+ * neighbours directly, and a large one in the frequency domain, where the
+ * cost per pixel hardly grows with the kernel.
+ *
+ * <p>The frequency-domain path cuts the image into tiles, pads each to a
+ * power-of-two square, transforms it, multiplies it by the kernel's spectrum
+ * and transforms it back; the results of neighbouring tiles overlap by the
+ * kernel's size less one and are added together (overlap-add). Channels are
+ * real, so red and green share one complex transform as its real and
+ * imaginary parts. Kernel spectra are cached for kernels used again.
+ *
+ * <p>Weights are laid out as the kernel is written: {@code kernel[j][i]}
+ * multiplies the pixel {@code j} rows below and {@code i} columns right of the
+ * kernel's top-left corner, when its centre is on the output pixel. Pixels
+ * beyond the edges of the image repeat the nearest edge pixel, and results
+ * are rounded and clamped to 0-255. Large images are convolved on several
+ * threads.
+ */
+public final class KernelConvolution {
+
+  /**
+   * The ways a kernel can be applied.
+   */
+  public enum Method {
+    /**
+     * Sums every weighted neighbour of each pixel.
+     */
+    DIRECT,
+    /**
+     * Applies a kernel that is the product of a column and a row as a
+     * horizontal and a vertical pass.
+     */
+    SEPARABLE,
+    /**
+     * Multiplies spectra of padded tiles and adds the overlapping results.
+     */
+    FFT
+  }
+
+  /**
+   * Kernels with at most this many weights that are not separable are
+   * applied directly; larger ones through the FFT.
+   */
+  static final int DIRECT_MAX_TAPS = 81;
+  private static final int MIN_FFT_SIZE = 64;
+  private static final double SEPARABLE_TOLERANCE = 1e-6;
+  private static final int SPECTRUM_CACHE_SIZE = 16;
+
+  private static final Map<SpectrumKey, double[][]> SPECTRA = Collections.synchronizedMap(
+          new LinkedHashMap<SpectrumKey, double[][]>(SPECTRUM_CACHE_SIZE, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SpectrumKey, double[][]> eldest) {
+              return size() > SPECTRUM_CACHE_SIZE;
+            }
+          });
+
+  private KernelConvolution() {
+  }
+
+  /**
+   * Picks the cheapest way to apply a kernel.
+   *
+   * @param kernel the kernel.
+   * @return SEPARABLE for the product of a column and a row, otherwise DIRECT
+   *         for kernels of up to 81 weights and FFT for larger ones.
+   * @throws IllegalArgumentException if the kernel is not a rectangle of odd width and height.
+   */
+  public static Method choose(float[][] kernel) {
+    validate(kernel);
+    if (factor(kernel) != null) {
+      return Method.SEPARABLE;
+    }
+    return kernel.length * kernel[0].length <= DIRECT_MAX_TAPS ? Method.DIRECT : Method.FFT;
+  }
+
+  /**
+   * Convolves an image with a kernel, in the way {@link #choose} picks.
+   *
+   * @param image  the image, which is not changed.
+   * @param kernel the kernel.
+   * @return a new convolved image.
+   * @throws IllegalArgumentException if the kernel is not a rectangle of odd width and height.
+   */
+  public static CustomImage convolve(CustomImage image, float[][] kernel) {
+    return convolve(image, kernel, choose(kernel));
+  }
+
+  /**
+   * Convolves an image with a kernel in a given way. All ways give the same
+   * result, up to rounding.
+   *
+   * @param image  the image, which is not changed.
+   * @param kernel the kernel.
+   * @param method how to apply the kernel.
+   * @return a new convolved image.
+   * @throws IllegalArgumentException if the kernel is not a rectangle of odd width and
+   *                                  height, or SEPARABLE is asked for a kernel that is not.
+   */
+  public static CustomImage convolve(CustomImage image, float[][] kernel, Method method) {
+    validate(kernel);
+    int width = image.getWidth();
+    int height = image.getHeight();
+    if (width == 0 || height == 0) {
+      return image.copy();
+    }
+    int[] source = image.readPixels();
+    float[][] planes = new float[3][width * height];
+    for (int i = 0; i < source.length; i++) {
+      planes[0][i] = (source[i] >> 16) & 0xFF;
+      planes[1][i] = (source[i] >> 8) & 0xFF;
+      planes[2][i] = source[i] & 0xFF;
+    }
+    boolean parallel = Bands.isParallel((long) width * height);
+    float[][] result;
+    switch (method) {
+      case SEPARABLE:
+        float[][] factors = factor(kernel);
+        if (factors == null) {
+          throw new IllegalArgumentException("Kernel is not separable.");
+        }
+        result = separable(planes, width, height, factors[0], factors[1], parallel);
+        break;
+      case FFT:
+        result = fft(planes, width, height, kernel, parallel);
+        break;
+      default:
+        result = direct(planes, width, height, kernel, parallel);
+        break;
+    }
+    int[] pixels = new int[width * height];
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = (toChannel(result[0][i]) << 16) | (toChannel(result[1][i]) << 8)
+              | toChannel(result[2][i]);
+    }
+    return new CustomImage(width, height, pixels, false);
+  }
+
+  private static void validate(float[][] kernel) {
+    if (kernel == null || kernel.length == 0 || kernel.length % 2 == 0
+            || kernel[0] == null || kernel[0].length % 2 == 0) {
+      throw new IllegalArgumentException("Kernel must have an odd number of rows and columns.");
+    }
+    for (float[] row : kernel) {
+      if (row == null || row.length != kernel[0].length) {
+        throw new IllegalArgumentException("Kernel rows must all have the same length.");
+      }
+    }
+  }
+
+  /**
+   * Splits a kernel into a column and a row whose product it is, to within
+   * a millionth of its largest weight.
+   *
+   * @return the column and the row, or null if there are none.
+   */
+  private static float[][] factor(float[][] kernel) {
+    int rows = kernel.length;
+    int cols = kernel[0].length;
+    int pivotRow = 0;
+    int pivotCol = 0;
+    for (int j = 0; j < rows; j++) {
+      for (int i = 0; i < cols; i++) {
+        if (Math.abs(kernel[j][i]) > Math.abs(kernel[pivotRow][pivotCol])) {
+          pivotRow = j;
+          pivotCol = i;
+        }
+      }
+    }
+    float pivot = kernel[pivotRow][pivotCol];
+    float[] column = new float[rows];
+    float[] row = new float[cols];
+    if (pivot == 0) {
+      return new float[][]{column, row};
+    }
+    for (int j = 0; j < rows; j++) {
+      column[j] = kernel[j][pivotCol];
+    }
+    for (int i = 0; i < cols; i++) {
+      row[i] = kernel[pivotRow][i] / pivot;
+    }
+    double tolerance = SEPARABLE_TOLERANCE * Math.abs(pivot);
+    for (int j = 0; j < rows; j++) {
+      for (int i = 0; i < cols; i++) {
+        if (Math.abs(kernel[j][i] - (double) column[j] * row[i]) > tolerance) {
+          return null;
+        }
+      }
+    }
+    return new float[][]{column, row};
+  }
+
+  private static float[][] direct(float[][] planes, int width, int height, float[][] kernel,
+                                  boolean parallel) {
+    int rows = kernel.length;
+    int cols = kernel[0].length;
+    float[][] result = new float[3][width * height];
+    Bands.ofRows(height, parallel, (from, to) -> {
+      float[] padded = new float[width + cols - 1];
+      for (int c = 0; c < 3; c++) {
+        for (int y = from; y < to; y++) {
+          int row = y * width;
+          for (int j = 0; j < rows; j++) {
+            pad(planes[c], clamp(y + j - rows / 2, height), width, cols / 2, padded);
+            for (int i = 0; i < cols; i++) {
+              addScaled(result[c], row, padded, i, width, kernel[j][i]);
+            }
+          }
+        }
+      }
+    });
+    return result;
+  }
+
+  private static float[][] separable(float[][] planes, int width, int height, float[] column,
+                                     float[] row, boolean parallel) {
+    float[][] horizontal = new float[3][width * height];
+    Bands.ofRows(height, parallel, (from, to) -> {
+      float[] padded = new float[width + row.length - 1];
+      for (int c = 0; c < 3; c++) {
+        for (int y = from; y < to; y++) {
+          pad(planes[c], y, width, row.length / 2, padded);
+          for (int i = 0; i < row.length; i++) {
+            addScaled(horizontal[c], y * width, padded, i, width, row[i]);
+          }
+        }
+      }
+    });
+    float[][] result = new float[3][width * height];
+    Bands.ofRows(height, parallel, (from, to) -> {
+      for (int c = 0; c < 3; c++) {
+        for (int y = from; y < to; y++) {
+          for (int j = 0; j < column.length; j++) {
+            int sourceRow = clamp(y + j - column.length / 2, height) * width;
+            addScaled(result[c], y * width, horizontal[c], sourceRow, width, column[j]);
+          }
+        }
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Convolves through the FFT, a row of tiles per task. The results of a
+   * row of tiles reach into the rows of the next, so even and odd rows of
+   * tiles are done in turn.
+   */
+  private static float[][] fft(float[][] planes, int width, int height, float[][] kernel,
+                               boolean parallel) {
+    int rows = kernel.length;
+    int cols = kernel[0].length;
+    int size = Math.max(MIN_FFT_SIZE, nextPowerOfTwo(4 * Math.max(rows, cols)));
+    int tileWidth = size - cols + 1;
+    int tileHeight = size - rows + 1;
+    int paddedWidth = width + cols - 1;
+    int paddedHeight = height + rows - 1;
+    int tileRows = (paddedHeight + tileHeight - 1) / tileHeight;
+    double[][] spectrum = spectrum(kernel, size);
+    Fft fft = new Fft(size);
+    float[][] result = new float[3][width * height];
+    for (int phase = 0; phase < 2; phase++) {
+      int first = phase;
+      IntStream tasks = IntStream.range(0, (tileRows + 1 - first) / 2).map(i -> 2 * i + first);
+      if (parallel) {
+        tasks = tasks.parallel();
+      }
+      tasks.forEach(tileRow -> {
+        double[] real = new double[size * size];
+        double[] imaginary = new double[size * size];
+        int top = tileRow * tileHeight;
+        int tileRowHeight = Math.min(tileHeight, paddedHeight - top);
+        for (int left = 0; left < paddedWidth; left += tileWidth) {
+          int tileColumnWidth = Math.min(tileWidth, paddedWidth - left);
+          for (int c = 0; c < 3; c += 2) {
+            Arrays.fill(real, 0);
+            Arrays.fill(imaginary, 0);
+            for (int b = 0; b < tileRowHeight; b++) {
+              int sourceRow = clamp(top + b - rows / 2, height) * width;
+              for (int a = 0; a < tileColumnWidth; a++) {
+                int index = sourceRow + clamp(left + a - cols / 2, width);
+                real[b * size + a] = planes[c][index];
+                imaginary[b * size + a] = c == 0 ? planes[1][index] : 0;
+              }
+            }
+            fft.transform2d(real, imaginary, tileRowHeight, false);
+            for (int i = 0; i < real.length; i++) {
+              double re = real[i] * spectrum[0][i] - imaginary[i] * spectrum[1][i];
+              imaginary[i] = real[i] * spectrum[1][i] + imaginary[i] * spectrum[0][i];
+              real[i] = re;
+            }
+            fft.transform2d(real, imaginary, size, true);
+            for (int b = 0; b < size; b++) {
+              int y = top + b - rows + 1;
+              if (y < 0 || y >= height) {
+                continue;
+              }
+              for (int a = 0; a < size; a++) {
+                int x = left + a - cols + 1;
+                if (x >= 0 && x < width) {
+                  result[c][y * width + x] += (float) real[b * size + a];
+                  if (c == 0) {
+                    result[1][y * width + x] += (float) imaginary[b * size + a];
+                  }
+                }
+              }
+            }
+          }
+        }
+      });
+    }
+    return result;
+  }
+
+  /**
+   * Returns the spectrum of the kernel padded to a square, flipped so that
+   * multiplying by it applies the weights as they are laid out, and scaled
+   * to undo the growth of the inverse transform.
+   */
+  private static double[][] spectrum(float[][] kernel, int size) {
+    SpectrumKey key = new SpectrumKey(kernel, size);
+    double[][] cached = SPECTRA.get(key);
+    if (cached != null) {
+      return cached;
+    }
+    int rows = kernel.length;
+    int cols = kernel[0].length;
+    double scale = 1.0 / ((double) size * size);
+    double[] real = new double[size * size];
+    double[] imaginary = new double[size * size];
+    for (int j = 0; j < rows; j++) {
+      for (int i = 0; i < cols; i++) {
+        real[(rows - 1 - j) * size + cols - 1 - i] = kernel[j][i] * scale;
+      }
+    }
+    new Fft(size).transform2d(real, imaginary, rows, false);
+    double[][] spectrum = {real, imaginary};
+    SPECTRA.put(key, spectrum);
+    return spectrum;
+  }
+
+  /**
+   * Copies a row of a channel with the edge values repeated on either side.
+   */
+  private static void pad(float[] plane, int y, int width, int margin, float[] padded) {
+    int row = y * width;
+    for (int i = 0; i < padded.length; i++) {
+      padded[i] = plane[row + clamp(i - margin, width)];
+    }
+  }
+
+  private static void addScaled(float[] target, int targetOffset, float[] source,
+                                int sourceOffset, int length, float weight) {
+    if (weight == 0) {
+      return;
+    }
+    for (int x = 0; x < length; x++) {
+      target[targetOffset + x] += weight * source[sourceOffset + x];
+    }
+  }
+
+  private static int nextPowerOfTwo(int value) {
+    return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+  }
+
+  private static int clamp(int index, int size) {
+    return Math.max(0, Math.min(size - 1, index));
+  }
+
+  private static int toChannel(float value) {
+    return Math.max(0, Math.min(255, Math.round(value)));
+  }
+
+  /**
+   * A radix-2 fast Fourier transform of one power-of-two size, on squares
+   * of complex values held as separate real and imaginary parts.
+   */
+  private static final class Fft {
+    private final int size;
+    private final int[] reversed;
+    private final double[] cos;
+    private final double[] sin;
+
+    Fft(int size) {
+      this.size = size;
+      int bits = Integer.numberOfTrailingZeros(size);
+      reversed = new int[size];
+      for (int i = 0; i < size; i++) {
+        reversed[i] = Integer.reverse(i) >>> (32 - bits);
+      }
+      cos = new double[size / 2];
+      sin = new double[size / 2];
+      for (int k = 0; k < size / 2; k++) {
+        cos[k] = Math.cos(2 * Math.PI * k / size);
+        sin[k] = Math.sin(2 * Math.PI * k / size);
+      }
+    }
+
+    /**
+     * Transforms a square, rows first and then columns. Rows from a given
+     * one onwards are known to be zero and skipped on the forward transform.
+     *
+     * @param real      the real parts, row by row, replaced by the result.
+     * @param imaginary the imaginary parts, row by row, replaced by the result.
+     * @param usedRows  the number of leading rows that may hold non-zero values.
+     * @param inverse   whether to transform back, without scaling.
+     */
+    void transform2d(double[] real, double[] imaginary, int usedRows, boolean inverse) {
+      for (int row = 0; row < Math.min(usedRows, size); row++) {
+        transform(real, imaginary, row * size, inverse);
+      }
+      double[] columnReal = new double[size];
+      double[] columnImaginary = new double[size];
+      for (int column = 0; column < size; column++) {
+        for (int row = 0; row < size; row++) {
+          columnReal[row] = real[row * size + column];
+          columnImaginary[row] = imaginary[row * size + column];
+        }
+        transform(columnReal, columnImaginary, 0, inverse);
+        for (int row = 0; row < size; row++) {
+          real[row * size + column] = columnReal[row];
+          imaginary[row * size + column] = columnImaginary[row];
+        }
+      }
+    }
+
+    private void transform(double[] real, double[] imaginary, int offset, boolean inverse) {
+      for (int i = 0; i < size; i++) {
+        int j = reversed[i];
+        if (i < j) {
+          double swap = real[offset + i];
+          real[offset + i] = real[offset + j];
+          real[offset + j] = swap;
+          swap = imaginary[offset + i];
+          imaginary[offset + i] = imaginary[offset + j];
+          imaginary[offset + j] = swap;
+        }
+      }
+      double sign = inverse ? 1 : -1;
+      for (int length = 2; length <= size; length <<= 1) {
+        int half = length / 2;
+        int step = size / length;
+        for (int start = 0; start < size; start += length) {
+          for (int k = 0; k < half; k++) {
+            double wr = cos[k * step];
+            double wi = sign * sin[k * step];
+            int a = offset + start + k;
+            int b = a + half;
+            double xr = real[b] * wr - imaginary[b] * wi;
+            double xi = real[b] * wi + imaginary[b] * wr;
+            real[b] = real[a] - xr;
+            imaginary[b] = imaginary[a] - xi;
+            real[a] += xr;
+            imaginary[a] += xi;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Identifies a kernel spectrum by the kernel's weights and the transform size.
+   */
+  private static final class SpectrumKey {
+    private final float[][] kernel;
+    private final int size;
+    private final int hash;
+
+    SpectrumKey(float[][] kernel, int size) {
+      this.kernel = new float[kernel.length][];
+      for (int j = 0; j < kernel.length; j++) {
+        this.kernel[j] = kernel[j].clone();
+      }
+      this.size = size;
+      this.hash = 31 * Arrays.deepHashCode(this.kernel) + size;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof SpectrumKey)) {
+        return false;
+      }
+      SpectrumKey key = (SpectrumKey) other;
+      return size == key.size && Arrays.deepEquals(kernel, key.kernel);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
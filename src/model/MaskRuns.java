@@ -0,0 +1,225 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * The pixels a mask selects, stored as runs of selected pixels per row within
+ * the bounding box of the selection. A mask pixel is selected when all three of
+ * its channels are below 10, that is when it is black or nearly so. Masked
+ * operations visit only these runs, so a small mask on a large image costs
+ * little beyond scanning the mask once; the runs are kept on the mask image
+ * until it is modified.
+ *
+ * <p>A soft mask instead weights each pixel by how dark the mask is there,
+ * from 255 where it is black to 0 where it is white. Its runs cover every
+ * pixel with a weight above 0, and a second set of runs marks the pixels with
+ * a weight below 255, the only ones that need blending.
+ */
+public final class MaskRuns {
+  private static final int[] NO_RUNS = new int[0];
+
+  private final int width;
+  private final int height;
+  private final int minX;
+  private final int minY;
+  private final int maxX;
+  private final int maxY;
+  private final int[][] rows;
+  private final int[][] partialRows;
+  private final long selectedCount;
+
+  private MaskRuns(int width, int height, int minX, int minY, int maxX, int maxY,
+                   int[][] rows, int[][] partialRows, long selectedCount) {
+    this.width = width;
+    this.height = height;
+    this.minX = minX;
+    this.minY = minY;
+    this.maxX = maxX;
+    this.maxY = maxY;
+    this.rows = rows;
+    this.partialRows = partialRows;
+    this.selectedCount = selectedCount;
+  }
+
+  /**
+   * Finds the runs of selected pixels in a mask image.
+   *
+   * @param mask the mask image.
+   * @param soft whether to weight pixels by the darkness of the mask rather
+   *             than select only the black ones.
+   * @return the runs of the mask.
+   */
+  static MaskRuns scan(CustomImage mask, boolean soft) {
+    int width = mask.getWidth();
+    int height = mask.getHeight();
+    int[] pixels = mask.readPixels();
+    int[][] rows = new int[height][];
+    int[][] partialRows = new int[height][];
+    int[] runs = new int[Math.max(2, width + 1)];
+    int[] partialRuns = soft ? new int[Math.max(2, width + 1)] : NO_RUNS;
+    int minX = width;
+    int minY = height;
+    int maxX = -1;
+    int maxY = -1;
+    long selectedCount = 0;
+    for (int y = 0; y < height; y++) {
+      int row = y * width;
+      int count = 0;
+      int partialCount = 0;
+      int x = 0;
+      while (x < width) {
+        while (x < width && weight(pixels[row + x], soft) == 0) {
+          x++;
+        }
+        if (x == width) {
+          break;
+        }
+        int start = x;
+        int partialStart = -1;
+        int weight;
+        while (x < width && (weight = weight(pixels[row + x], soft)) > 0) {
+          if (weight < 255 && partialStart < 0) {
+            partialStart = x;
+          } else if (weight == 255 && partialStart >= 0) {
+            partialRuns[partialCount++] = partialStart;
+            partialRuns[partialCount++] = x;
+            partialStart = -1;
+          }
+          x++;
+        }
+        if (partialStart >= 0) {
+          partialRuns[partialCount++] = partialStart;
+          partialRuns[partialCount++] = x;
+        }
+        runs[count++] = start;
+        runs[count++] = x;
+        selectedCount += x - start;
+      }
+      partialRows[y] = partialCount == 0 ? NO_RUNS : Arrays.copyOf(partialRuns, partialCount);
+      if (count == 0) {
+        rows[y] = NO_RUNS;
+        continue;
+      }
+      rows[y] = Arrays.copyOf(runs, count);
+      minX = Math.min(minX, runs[0]);
+      maxX = Math.max(maxX, runs[count - 1] - 1);
+      minY = Math.min(minY, y);
+      maxY = y;
+    }
+    return new MaskRuns(width, height, minX, minY, maxX, maxY, rows, partialRows,
+            selectedCount);
+  }
+
+  /**
+   * Whether a packed mask pixel selects the pixel under it.
+   *
+   * @param rgb the mask pixel as a packed 0xRRGGBB int.
+   * @return true if all three channels are below 10.
+   */
+  static boolean isSelected(int rgb) {
+    return ((rgb >> 16) & 0xFF) < 10 && ((rgb >> 8) & 0xFF) < 10 && (rgb & 0xFF) < 10;
+  }
+
+  /**
+   * Returns the weight a soft mask pixel gives the transformed pixel under it:
+   * 255 less the average of its channels.
+   *
+   * @param rgb the mask pixel as a packed 0xRRGGBB int.
+   * @return the weight, from 0 for white to 255 for black.
+   */
+  static int softWeight(int rgb) {
+    return 255 - (((rgb >> 16) & 0xFF) + ((rgb >> 8) & 0xFF) + (rgb & 0xFF)) / 3;
+  }
+
+  private static int weight(int rgb, boolean soft) {
+    if (soft) {
+      return softWeight(rgb);
+    }
+    return isSelected(rgb) ? 255 : 0;
+  }
+
+  /**
+   * Returns the width of the mask.
+   *
+   * @return the width in pixels.
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * Returns the height of the mask.
+   *
+   * @return the height in pixels.
+   */
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Whether the mask selects no pixels at all.
+   *
+   * @return true if there are no runs.
+   */
+  public boolean isEmpty() {
+    return selectedCount == 0;
+  }
+
+  /**
+   * Returns the number of pixels the mask selects.
+   *
+   * @return the selected pixel count.
+   */
+  public long getSelectedCount() {
+    return selectedCount;
+  }
+
+  /**
+   * Returns the bounding box of the selected pixels.
+   *
+   * @return the inclusive {minX, minY, maxX, maxY}, or null if nothing is selected.
+   */
+  public int[] getBounds() {
+    return isEmpty() ? null : new int[]{minX, minY, maxX, maxY};
+  }
+
+  /**
+   * Returns the first row with a selected pixel.
+   *
+   * @return the row, or the height of the mask if nothing is selected.
+   */
+  int firstRow() {
+    return minY;
+  }
+
+  /**
+   * Returns the last row with a selected pixel.
+   *
+   * @return the row, or -1 if nothing is selected.
+   */
+  int lastRow() {
+    return maxY;
+  }
+
+  /**
+   * Returns the runs of a row as start and end column pairs, the end exclusive.
+   *
+   * @param y the row.
+   * @return the runs of the row, possibly empty; must not be modified.
+   */
+  int[] runs(int y) {
+    return rows[y];
+  }
+
+  /**
+   * Returns the runs of a row whose pixels need blending, because a soft mask
+   * gives them a weight between 0 and 255, as start and end column pairs.
+   *
+   * @param y the row.
+   * @return the partial runs of the row, always empty for a hard mask;
+   *         must not be modified.
+   */
+  int[] partialRuns(int y) {
+    return partialRows[y];
+  }
+}
@@ -0,0 +1,184 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Replaces each channel of every pixel with its median over the square
+ * reaching a radius around the pixel, in time per pixel that does not depend
+ * on the radius (Perreault and Hebert, "Median Filtering in Constant Time").
+ *
+ * <p>Every column keeps a histogram of its values over the window's rows,
+ * which moves down a row by removing one value and adding another. Along a
+ * row, the window's histogram moves right by adding the histogram of the
+ * column entering it and subtracting the one leaving it. Histograms are kept
+ * at two levels: 16 coarse bins, always up to date, find which sixteenth of
+ * the range holds the median, and only that sixteenth's 16 fine bins are then
+ * brought up to date, from the columns that entered and left since they last
+ * were, or from scratch when that is cheaper.
+ *
+ * <p>Pixels beyond the edges of the image are taken to repeat the nearest
+ * edge pixel. Bands of rows are filtered on several threads for large
+ * images; each band starts its column histograms afresh, so bands are made
+ * tall enough for that to be a small part of their work.
+ */
+final class MedianFilter {
+  static final int MAX_RADIUS = 16383;
+  private static final int MIN_ROWS_PER_TASK = 32;
+  private static final int BINS = 256;
+  private static final int COARSE_BINS = 16;
+  private static final int FINE_PER_COARSE = BINS / COARSE_BINS;
+
+  private MedianFilter() {
+  }
+
+  /**
+   * Filters an image.
+   *
+   * @param image  the image to filter, which is not changed.
+   * @param radius how far the window reaches, in pixels; 0 leaves the image as it is.
+   * @return a new filtered image.
+   * @throws IllegalArgumentException if the radius is negative or too large.
+   */
+  static CustomImage apply(CustomImage image, int radius) {
+    if (radius < 0 || radius > MAX_RADIUS) {
+      throw new IllegalArgumentException("Radius must be from 0 to " + MAX_RADIUS + ".");
+    }
+    int width = image.getWidth();
+    int height = image.getHeight();
+    if (radius == 0 || width == 0 || height == 0) {
+      return image.copy();
+    }
+    int[] source = image.readPixels();
+    int[] result = new int[width * height];
+    int rowsPerTask = Math.max(MIN_ROWS_PER_TASK, 4 * radius);
+    Bands.forEach(height, rowsPerTask, Bands.isParallel((long) width * height), (from, to) -> {
+      Band band = new Band(source, width, height, radius);
+      for (int shift = 16; shift >= 0; shift -= 8) {
+        band.filter(result, shift, from, to);
+      }
+    });
+    return new CustomImage(width, height, result, false);
+  }
+
+  /**
+   * The histograms used to filter a band of rows, one channel at a time.
+   */
+  private static final class Band {
+    private final int[] source;
+    private final int width;
+    private final int height;
+    private final int radius;
+    private final int[] columnFine;
+    private final int[] columnCoarse;
+    private final int[] fine = new int[BINS];
+    private final int[] coarse = new int[COARSE_BINS];
+    private final int[] updatedAt = new int[COARSE_BINS];
+
+    Band(int[] source, int width, int height, int radius) {
+      this.source = source;
+      this.width = width;
+      this.height = height;
+      this.radius = radius;
+      this.columnFine = new int[width * BINS];
+      this.columnCoarse = new int[width * COARSE_BINS];
+    }
+
+    /**
+     * Filters one channel of the rows from one index up to another, adding
+     * the medians to the result at the channel's place.
+     */
+    void filter(int[] result, int shift, int from, int to) {
+      Arrays.fill(columnFine, 0);
+      Arrays.fill(columnCoarse, 0);
+      for (int t = from - radius; t <= from + radius; t++) {
+        int row = clamp(t, height) * width;
+        for (int x = 0; x < width; x++) {
+          addToColumn(x, (source[row + x] >> shift) & 0xFF, 1);
+        }
+      }
+      int half = ((2 * radius + 1) * (2 * radius + 1) + 1) / 2;
+      for (int y = from; y < to; y++) {
+        if (y > from) {
+          int leaving = clamp(y - radius - 1, height) * width;
+          int entering = clamp(y + radius, height) * width;
+          for (int x = 0; x < width; x++) {
+            addToColumn(x, (source[leaving + x] >> shift) & 0xFF, -1);
+            addToColumn(x, (source[entering + x] >> shift) & 0xFF, 1);
+          }
+        }
+        Arrays.fill(coarse, 0);
+        Arrays.fill(updatedAt, Integer.MIN_VALUE);
+        for (int t = -radius; t <= radius; t++) {
+          addCoarse(clamp(t, width), 1);
+        }
+        int row = y * width;
+        for (int x = 0; x < width; x++) {
+          if (x > 0) {
+            addCoarse(clamp(x + radius, width), 1);
+            addCoarse(clamp(x - radius - 1, width), -1);
+          }
+          result[row + x] |= median(x, half) << shift;
+        }
+      }
+    }
+
+    private void addToColumn(int x, int value, int count) {
+      columnFine[x * BINS + value] += count;
+      columnCoarse[x * COARSE_BINS + value / FINE_PER_COARSE] += count;
+    }
+
+    private void addCoarse(int column, int sign) {
+      int offset = column * COARSE_BINS;
+      for (int b = 0; b < COARSE_BINS; b++) {
+        coarse[b] += sign * columnCoarse[offset + b];
+      }
+    }
+
+    private void addFine(int column, int bin, int sign) {
+      int offset = column * BINS + bin * FINE_PER_COARSE;
+      int start = bin * FINE_PER_COARSE;
+      for (int i = 0; i < FINE_PER_COARSE; i++) {
+        fine[start + i] += sign * columnFine[offset + i];
+      }
+    }
+
+    /**
+     * Finds the median of the window centred on a column: the coarse bin
+     * holding it first, then the value within that bin. The fine bins are
+     * updated column by column when fewer columns have entered and left
+     * since their last update than the window is wide, and summed afresh otherwise.
+     */
+    private int median(int x, int half) {
+      int bin = 0;
+      int below = 0;
+      while (below + coarse[bin] < half) {
+        below += coarse[bin];
+        bin++;
+      }
+      int last = updatedAt[bin];
+      if (2L * x - 2L * last > 2 * radius + 1) {
+        Arrays.fill(fine, bin * FINE_PER_COARSE, (bin + 1) * FINE_PER_COARSE, 0);
+        for (int t = x - radius; t <= x + radius; t++) {
+          addFine(clamp(t, width), bin, 1);
+        }
+      } else {
+        for (int step = last + 1; step <= x; step++) {
+          addFine(clamp(step + radius, width), bin, 1);
+          addFine(clamp(step - radius - 1, width), bin, -1);
+        }
+      }
+      updatedAt[bin] = x;
+      int value = bin * FINE_PER_COARSE;
+      below += fine[value];
+      while (below < half) {
+        value++;
+        below += fine[value];
+      }
+      return value;
+    }
+  }
+
+  private static int clamp(int index, int size) {
+    return Math.max(0, Math.min(size - 1, index));
+  }
+}
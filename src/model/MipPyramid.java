@@ -0,0 +1,168 @@
+package model;
+
+import java.lang.ref.Cleaner;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A mip pyramid of an image: successive copies at half the width and height
+ * of the one before, each averaged from the previous level. Levels are built
+ * only when a resize first needs them, and a resize starts from the smallest
+ * level that is still at least as large as the result, so producing several
+ * thumbnails of one image shrinks the full image only once.
+ *
+ * <p>The memory held by all pyramids is counted against a shared budget; a
+ * level that would go over it is used once and not kept. A pyramid is dropped
+ * when its image is modified, and its memory is given back then, or when the
+ * pyramid is garbage collected.
+ */
+public final class MipPyramid {
+  /**
+   * The default budget for the levels held by all pyramids, in bytes.
+   */
+  public static final long DEFAULT_MEMORY_BUDGET = 128L * 1024 * 1024;
+
+  private static final Cleaner CLEANER = Cleaner.create();
+  private static final AtomicLong MEMORY_USED = new AtomicLong();
+  private static volatile long memoryBudget = DEFAULT_MEMORY_BUDGET;
+
+  private final List<CustomImage> levels;
+  private final Accounting accounting;
+  private final Cleaner.Cleanable cleanable;
+
+  /**
+   * Constructs the pyramid of an image, holding only the image itself.
+   *
+   * @param image the full-size image.
+   */
+  MipPyramid(CustomImage image) {
+    this.levels = new ArrayList<>();
+    levels.add(image);
+    this.accounting = new Accounting();
+    this.cleanable = CLEANER.register(this, accounting);
+  }
+
+  /**
+   * Sets the budget for the levels held by all pyramids.
+   *
+   * @param bytes the budget in bytes; 0 keeps no levels.
+   * @throws IllegalArgumentException if the budget is negative.
+   */
+  public static void setMemoryBudget(long bytes) {
+    if (bytes < 0) {
+      throw new IllegalArgumentException("Memory budget cannot be negative.");
+    }
+    memoryBudget = bytes;
+  }
+
+  /**
+   * Returns the bytes held by the levels of all pyramids.
+   *
+   * @return the memory in use.
+   */
+  public static long getMemoryUsed() {
+    return MEMORY_USED.get();
+  }
+
+  /**
+   * Resizes the image, starting from the smallest level at least as large as the result.
+   *
+   * @param newWidth  the width of the result.
+   * @param newHeight the height of the result.
+   * @param filter    the filter to resize with.
+   * @return a new image of the given size.
+   * @throws IllegalArgumentException if a dimension is not positive.
+   */
+  public CustomImage resize(int newWidth, int newHeight, Resampler.Filter filter) {
+    if (newWidth <= 0 || newHeight <= 0) {
+      throw new IllegalArgumentException("Dimensions must be positive.");
+    }
+    return Resampler.resize(levelFor(newWidth, newHeight), newWidth, newHeight, filter);
+  }
+
+  /**
+   * Returns the smallest level that is at least as wide and tall as a size,
+   * building the levels it needs.
+   *
+   * @param width  the width needed.
+   * @param height the height needed.
+   * @return a level of the pyramid; the image itself if the size is more than half of it.
+   */
+  public synchronized CustomImage levelFor(int width, int height) {
+    int index = levels.size() - 1;
+    while (index > 0 && (levels.get(index).getWidth() < width
+            || levels.get(index).getHeight() < height)) {
+      index--;
+    }
+    CustomImage level = levels.get(index);
+    if (index < levels.size() - 1) {
+      return level;
+    }
+    boolean keep = true;
+    while (level.getWidth() / 2 >= width && level.getHeight() / 2 >= height) {
+      level = Resampler.resize(level, level.getWidth() / 2, level.getHeight() / 2,
+              Resampler.Filter.AREA);
+      keep = keep && accounting.reserve(sizeOf(level));
+      if (keep) {
+        levels.add(level);
+      }
+    }
+    return level;
+  }
+
+  /**
+   * Returns the number of levels built so far, including the image itself.
+   *
+   * @return the level count.
+   */
+  public synchronized int getLevelCount() {
+    return levels.size();
+  }
+
+  /**
+   * Drops every level and gives back its memory.
+   */
+  void release() {
+    synchronized (this) {
+      while (levels.size() > 1) {
+        levels.remove(levels.size() - 1);
+      }
+    }
+    cleanable.clean();
+  }
+
+  private static long sizeOf(CustomImage image) {
+    return 4L * image.getWidth() * image.getHeight();
+  }
+
+  /**
+   * The memory a pyramid has counted, given back when the pyramid is
+   * released or collected. It does not refer to the pyramid, so that the
+   * pyramid can be collected.
+   */
+  private static final class Accounting implements Runnable {
+    private long bytes;
+    private boolean released;
+
+    synchronized boolean reserve(long size) {
+      if (released) {
+        return false;
+      }
+      long used = MEMORY_USED.addAndGet(size);
+      if (used > memoryBudget) {
+        MEMORY_USED.addAndGet(-size);
+        return false;
+      }
+      bytes += size;
+      return true;
+    }
+
+    @Override
+    public synchronized void run() {
+      MEMORY_USED.addAndGet(-bytes);
+      bytes = 0;
+      released = true;
+    }
+  }
+}
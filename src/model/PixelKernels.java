@@ -0,0 +1,180 @@
+package model;
+
+import java.util.Optional;
+
+/**
+ * Point operations on packed 0xRRGGBB pixels, each changing pixels in place and
+ * depending only on the pixel itself, and the steps of integer convolutions on
+ * rows of separate channel values. There is a scalar implementation, always
+ * available, and a SIMD one built on the incubating Vector API, which is compiled
+ * from the simd source root and used when the JVM runs with
+ * {@code --add-modules jdk.incubator.vector}. Both give identical results.
+ * Setting the system property {@code imaging.simd} to false keeps the scalar one.
+ */
+public abstract class PixelKernels {
+  private static final PixelKernels SCALAR = new ScalarPixelKernels();
+  private static final PixelKernels VECTOR = loadVector();
+  private static final PixelKernels ACTIVE =
+          VECTOR != null && !"false".equals(System.getProperty("imaging.simd")) ? VECTOR : SCALAR;
+
+  /**
+   * Returns the kernels the transformations use.
+   *
+   * @return the SIMD kernels when available and enabled, otherwise the scalar ones.
+   */
+  public static PixelKernels get() {
+    return ACTIVE;
+  }
+
+  /**
+   * Returns the scalar kernels.
+   *
+   * @return the scalar kernels.
+   */
+  public static PixelKernels scalar() {
+    return SCALAR;
+  }
+
+  /**
+   * Returns the SIMD kernels, whether or not they are enabled.
+   *
+   * @return the SIMD kernels, or empty if they are not compiled in or the
+   *         Vector API module is not loaded.
+   */
+  public static Optional<PixelKernels> vector() {
+    return Optional.ofNullable(VECTOR);
+  }
+
+  private static PixelKernels loadVector() {
+    if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+      return null;
+    }
+    try {
+      return (PixelKernels) Class.forName("model.VectorPixelKernels")
+              .getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns a short name for the implementation.
+   *
+   * @return "scalar" or "vector".
+   */
+  public abstract String getName();
+
+  /**
+   * Replaces each channel with a weighted sum of the red, green and blue
+   * channels, truncated and clamped to 0-255.
+   *
+   * @param pixels       the packed pixels to change.
+   * @param from         the first pixel to change.
+   * @param to           the pixel after the last one to change.
+   * @param redWeights   the weights of red, green and blue in the new red.
+   * @param greenWeights the weights of red, green and blue in the new green.
+   * @param blueWeights  the weights of red, green and blue in the new blue.
+   */
+  public abstract void colorMatrix(int[] pixels, int from, int to, double[] redWeights,
+                                   double[] greenWeights, double[] blueWeights);
+
+  /**
+   * Adds an increment to every channel, clamped to 0-255.
+   *
+   * @param pixels    the packed pixels to change.
+   * @param from      the first pixel to change.
+   * @param to        the pixel after the last one to change.
+   * @param increment the amount to add, negative to darken.
+   */
+  public abstract void brighten(int[] pixels, int from, int to, int increment);
+
+  /**
+   * Maps every channel through a table.
+   *
+   * @param pixels the packed pixels to change.
+   * @param from   the first pixel to change.
+   * @param to     the pixel after the last one to change.
+   * @param table  256 values from 0-255, indexed by the old channel value.
+   */
+  public abstract void lookup(int[] pixels, int from, int to, int[] table);
+
+  /**
+   * Sets all three channels to one of them.
+   *
+   * @param pixels  the packed pixels to change.
+   * @param from    the first pixel to change.
+   * @param to      the pixel after the last one to change.
+   * @param channel 0 for red, 1 for green or 2 for blue.
+   */
+  public abstract void channel(int[] pixels, int from, int to, int channel);
+
+  /**
+   * Sets all three channels to the largest of them.
+   *
+   * @param pixels the packed pixels to change.
+   * @param from   the first pixel to change.
+   * @param to     the pixel after the last one to change.
+   */
+  public abstract void value(int[] pixels, int from, int to);
+
+  /**
+   * Sets all three channels to their average, rounded down.
+   *
+   * @param pixels the packed pixels to change.
+   * @param from   the first pixel to change.
+   * @param to     the pixel after the last one to change.
+   */
+  public abstract void intensity(int[] pixels, int from, int to);
+
+  /**
+   * Splits packed pixels into separate red, green and blue values.
+   *
+   * @param pixels        the packed pixels.
+   * @param offset        the first pixel to split.
+   * @param red           receives the red values.
+   * @param green         receives the green values.
+   * @param blue          receives the blue values.
+   * @param channelOffset where the first values go.
+   * @param length        the number of pixels to split.
+   */
+  public abstract void unpack(int[] pixels, int offset, int[] red, int[] green, int[] blue,
+                              int channelOffset, int length);
+
+  /**
+   * Joins separate red, green and blue values, each already 0-255, into packed pixels.
+   *
+   * @param red           the red values.
+   * @param green         the green values.
+   * @param blue          the blue values.
+   * @param channelOffset the first value to join.
+   * @param pixels        receives the packed pixels.
+   * @param offset        the first pixel to write.
+   * @param length        the number of pixels to write.
+   */
+  public abstract void pack(int[] red, int[] green, int[] blue, int channelOffset,
+                            int[] pixels, int offset, int length);
+
+  /**
+   * Adds a multiple of one run of values to another: a step of a convolution.
+   *
+   * @param target       the values to add to.
+   * @param targetOffset the first value to add to.
+   * @param source       the values to add.
+   * @param sourceOffset the first value to add.
+   * @param length       the number of values.
+   * @param weight       the multiple of each source value to add.
+   */
+  public abstract void multiplyAdd(int[] target, int targetOffset, int[] source,
+                                   int sourceOffset, int length, int weight);
+
+  /**
+   * Divides fixed-point sums by a power of two, rounding halves up, and clamps
+   * them to 0-255, in place.
+   *
+   * @param values the sums.
+   * @param offset the first sum.
+   * @param length the number of sums.
+   * @param shift  the power of two to divide by.
+   */
+  public abstract void roundShiftClamp(int[] values, int offset, int length, int shift);
+}
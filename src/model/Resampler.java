@@ -0,0 +1,224 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Resizes images with a separable filter, in two passes: each row is first
+ * resized horizontally into a buffer, then each column of the buffer is
+ * resized vertically. The weights of every output column and row are worked
+ * out once per resize, so each pass is a short weighted sum per pixel.
+ * When shrinking, filters are stretched to cover every source pixel that
+ * falls under an output pixel, so fine detail is averaged rather than skipped.
+ * Large images are resized on several threads, a band of rows per task.
+ */
+public final class Resampler {
+  /**
+   * The filters an image can be resized with.
+   */
+  public enum Filter {
+    /**
+     * Averages the source pixels each output pixel covers, weighting each by
+     * how much of it is covered: the integral of the image over the output pixel.
+     */
+    AREA,
+    /**
+     * Interpolates linearly between neighbouring pixels (a tent filter).
+     */
+    BILINEAR,
+    /**
+     * A windowed sinc over three lobes, which keeps edges sharper than the others.
+     */
+    LANCZOS;
+
+    /**
+     * Returns the filter with a name, ignoring case.
+     *
+     * @param name area, bilinear or lanczos.
+     * @return the filter.
+     * @throws IllegalArgumentException if there is no filter with the name.
+     */
+    public static Filter fromName(String name) {
+      try {
+        return valueOf(name.toUpperCase(Locale.ROOT));
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("Unknown filter: " + name
+                + " (expected area, bilinear or lanczos)");
+      }
+    }
+  }
+
+  private Resampler() {
+  }
+
+  /**
+   * Resizes an image.
+   *
+   * @param image     the image to resize.
+   * @param newWidth  the width of the result.
+   * @param newHeight the height of the result.
+   * @param filter    the filter to resize with.
+   * @return a new image of the given size.
+   * @throws IllegalArgumentException if a dimension is not positive.
+   */
+  public static CustomImage resize(CustomImage image, int newWidth, int newHeight,
+                                   Filter filter) {
+    if (newWidth <= 0 || newHeight <= 0) {
+      throw new IllegalArgumentException("Dimensions must be positive.");
+    }
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int[] source = image.readPixels();
+    Weights columns = Weights.of(width, newWidth, filter);
+    Weights rows = Weights.of(height, newHeight, filter);
+    boolean parallel = Bands.isParallel((long) newWidth * height);
+
+    // Horizontal pass: one interleaved r, g, b float per output column of every source row.
+    float[] buffer = new float[3 * newWidth * height];
+    Bands.ofRows(height, parallel, (from, to) -> {
+      for (int y = from; y < to; y++) {
+        int sourceRow = y * width;
+        int bufferRow = 3 * y * newWidth;
+        for (int x = 0; x < newWidth; x++) {
+          int start = columns.start[x];
+          float[] weights = columns.weights[x];
+          float red = 0;
+          float green = 0;
+          float blue = 0;
+          for (int i = 0; i < weights.length; i++) {
+            int rgb = source[sourceRow + start + i];
+            float weight = weights[i];
+            red += ((rgb >> 16) & 0xFF) * weight;
+            green += ((rgb >> 8) & 0xFF) * weight;
+            blue += (rgb & 0xFF) * weight;
+          }
+          int index = bufferRow + 3 * x;
+          buffer[index] = red;
+          buffer[index + 1] = green;
+          buffer[index + 2] = blue;
+        }
+      }
+    });
+
+    // Vertical pass: each output row is a weighted sum of buffer rows.
+    int[] result = new int[newWidth * newHeight];
+    boolean parallelRows = Bands.isParallel((long) newWidth * newHeight);
+    Bands.ofRows(newHeight, parallelRows, (from, to) -> {
+      float[] row = new float[3 * newWidth];
+      for (int y = from; y < to; y++) {
+        Arrays.fill(row, 0);
+        int start = rows.start[y];
+        float[] weights = rows.weights[y];
+        for (int i = 0; i < weights.length; i++) {
+          float weight = weights[i];
+          int bufferRow = 3 * (start + i) * newWidth;
+          for (int j = 0; j < row.length; j++) {
+            row[j] += buffer[bufferRow + j] * weight;
+          }
+        }
+        int resultRow = y * newWidth;
+        for (int x = 0; x < newWidth; x++) {
+          result[resultRow + x] = (toChannel(row[3 * x]) << 16)
+                  | (toChannel(row[3 * x + 1]) << 8) | toChannel(row[3 * x + 2]);
+        }
+      }
+    });
+    return new CustomImage(newWidth, newHeight, result, false);
+  }
+
+  private static int toChannel(float value) {
+    return Math.max(0, Math.min(255, Math.round(value)));
+  }
+
+  /**
+   * The source pixels and weights that make up each output pixel along one axis.
+   */
+  private static final class Weights {
+    private final int[] start;
+    private final float[][] weights;
+
+    private Weights(int[] start, float[][] weights) {
+      this.start = start;
+      this.weights = weights;
+    }
+
+    /**
+     * Works out the weights for resizing one axis.
+     *
+     * @param sourceSize the number of source pixels along the axis.
+     * @param targetSize the number of output pixels along the axis.
+     * @param filter     the filter to resize with.
+     * @return the weights of every output pixel, which sum to one.
+     */
+    static Weights of(int sourceSize, int targetSize, Filter filter) {
+      double scale = (double) sourceSize / targetSize;
+      double stretch = Math.max(scale, 1.0);
+      double support = stretch * radius(filter);
+      int[] start = new int[targetSize];
+      float[][] weights = new float[targetSize][];
+      for (int i = 0; i < targetSize; i++) {
+        double center = (i + 0.5) * scale;
+        int first = Math.max(0, (int) Math.floor(center - support));
+        int last = Math.min(sourceSize - 1, (int) Math.ceil(center + support) - 1);
+        double[] values = new double[last - first + 1];
+        double total = 0;
+        for (int s = first; s <= last; s++) {
+          double value = filter == Filter.AREA
+                  ? overlap(s, center - support, center + support)
+                  : kernel(filter, (s + 0.5 - center) / stretch);
+          values[s - first] = value;
+          total += value;
+        }
+        if (total == 0) {
+          int nearest = Math.min(sourceSize - 1, (int) center);
+          start[i] = nearest;
+          weights[i] = new float[]{1f};
+          continue;
+        }
+        start[i] = first;
+        weights[i] = new float[values.length];
+        for (int k = 0; k < values.length; k++) {
+          weights[i][k] = (float) (values[k] / total);
+        }
+      }
+      return new Weights(start, weights);
+    }
+
+    private static double radius(Filter filter) {
+      switch (filter) {
+        case AREA:
+          return 0.5;
+        case BILINEAR:
+          return 1.0;
+        default:
+          return 3.0;
+      }
+    }
+
+    /**
+     * Returns how much of the source pixel starting at an index lies within a span.
+     */
+    private static double overlap(int pixel, double from, double to) {
+      return Math.max(0, Math.min(pixel + 1, to) - Math.max(pixel, from));
+    }
+
+    private static double kernel(Filter filter, double x) {
+      double distance = Math.abs(x);
+      if (filter == Filter.BILINEAR) {
+        return Math.max(0, 1 - distance);
+      }
+      if (distance >= 3) {
+        return 0;
+      }
+      return sinc(x) * sinc(x / 3);
+    }
+
+    private static double sinc(double x) {
+      if (x == 0) {
+        return 1;
+      }
+      double angle = Math.PI * x;
+      return Math.sin(angle) / angle;
+    }
+  }
+}
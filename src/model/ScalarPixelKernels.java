@@ -0,0 +1,117 @@
+package model;
+
+/**
+ * Point operations and convolution steps computed one value at a time.
+ */
+final class ScalarPixelKernels extends PixelKernels {
+
+  @Override
+  public String getName() {
+    return "scalar";
+  }
+
+  @Override
+  public void colorMatrix(int[] pixels, int from, int to, double[] redWeights,
+                          double[] greenWeights, double[] blueWeights) {
+    for (int i = from; i < to; i++) {
+      int rgb = pixels[i];
+      int red = (rgb >> 16) & 0xFF;
+      int green = (rgb >> 8) & 0xFF;
+      int blue = rgb & 0xFF;
+      int newRed = clamp((int) (redWeights[0] * red + redWeights[1] * green
+              + redWeights[2] * blue));
+      int newGreen = clamp((int) (greenWeights[0] * red + greenWeights[1] * green
+              + greenWeights[2] * blue));
+      int newBlue = clamp((int) (blueWeights[0] * red + blueWeights[1] * green
+              + blueWeights[2] * blue));
+      pixels[i] = (newRed << 16) | (newGreen << 8) | newBlue;
+    }
+  }
+
+  @Override
+  public void brighten(int[] pixels, int from, int to, int increment) {
+    for (int i = from; i < to; i++) {
+      int rgb = pixels[i];
+      pixels[i] = (clamp(((rgb >> 16) & 0xFF) + increment) << 16)
+              | (clamp(((rgb >> 8) & 0xFF) + increment) << 8)
+              | clamp((rgb & 0xFF) + increment);
+    }
+  }
+
+  @Override
+  public void lookup(int[] pixels, int from, int to, int[] table) {
+    for (int i = from; i < to; i++) {
+      int rgb = pixels[i];
+      pixels[i] = (table[(rgb >> 16) & 0xFF] << 16) | (table[(rgb >> 8) & 0xFF] << 8)
+              | table[rgb & 0xFF];
+    }
+  }
+
+  @Override
+  public void channel(int[] pixels, int from, int to, int channel) {
+    int shift = 16 - 8 * channel;
+    for (int i = from; i < to; i++) {
+      pixels[i] = gray((pixels[i] >> shift) & 0xFF);
+    }
+  }
+
+  @Override
+  public void value(int[] pixels, int from, int to) {
+    for (int i = from; i < to; i++) {
+      int rgb = pixels[i];
+      pixels[i] = gray(Math.max((rgb >> 16) & 0xFF, Math.max((rgb >> 8) & 0xFF, rgb & 0xFF)));
+    }
+  }
+
+  @Override
+  public void intensity(int[] pixels, int from, int to) {
+    for (int i = from; i < to; i++) {
+      int rgb = pixels[i];
+      pixels[i] = gray((((rgb >> 16) & 0xFF) + ((rgb >> 8) & 0xFF) + (rgb & 0xFF)) / 3);
+    }
+  }
+
+  @Override
+  public void unpack(int[] pixels, int offset, int[] red, int[] green, int[] blue,
+                     int channelOffset, int length) {
+    for (int i = 0; i < length; i++) {
+      int rgb = pixels[offset + i];
+      red[channelOffset + i] = (rgb >> 16) & 0xFF;
+      green[channelOffset + i] = (rgb >> 8) & 0xFF;
+      blue[channelOffset + i] = rgb & 0xFF;
+    }
+  }
+
+  @Override
+  public void pack(int[] red, int[] green, int[] blue, int channelOffset,
+                   int[] pixels, int offset, int length) {
+    for (int i = 0; i < length; i++) {
+      int channel = channelOffset + i;
+      pixels[offset + i] = (red[channel] << 16) | (green[channel] << 8) | blue[channel];
+    }
+  }
+
+  @Override
+  public void multiplyAdd(int[] target, int targetOffset, int[] source, int sourceOffset,
+                          int length, int weight) {
+    for (int i = 0; i < length; i++) {
+      target[targetOffset + i] += weight * source[sourceOffset + i];
+    }
+  }
+
+  @Override
+  public void roundShiftClamp(int[] values, int offset, int length, int shift) {
+    int half = shift > 0 ? 1 << (shift - 1) : 0;
+    for (int i = offset; i < offset + length; i++) {
+      values[i] = clamp((values[i] + half) >> shift);
+    }
+  }
+
+  private static int gray(int value) {
+    return (value << 16) | (value << 8) | value;
+  }
+
+  private static int clamp(int value) {
+    return Math.max(0, Math.min(255, value));
+  }
+}
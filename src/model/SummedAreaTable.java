@@ -0,0 +1,203 @@
+package model;
+
+/**
+ * The summed-area table (integral image) of each channel of an image: the
+ * entry for a position holds the sum of the channel over every pixel above
+ * and to the left of it. The sum or mean of any rectangle then takes four
+ * lookups, whatever its size, which is what box filters, local means and
+ * region averages need.
+ *
+ * <p>Entries are ints when the sum of a whole channel fits in one, that is
+ * for images of up to 8,421,504 pixels, and longs for larger images. The
+ * table is built on several threads for large images: first the running sum
+ * along each row, a band of rows per task, then the running sum down each
+ * column, a band of columns per task. It is kept on the image until the
+ * image is modified.
+ */
+public final class SummedAreaTable {
+  private final int width;
+  private final int height;
+  private final int stride;
+  private final int[][] narrow;
+  private final long[][] wide;
+
+  private SummedAreaTable(int width, int height, int[][] narrow, long[][] wide) {
+    this.width = width;
+    this.height = height;
+    this.stride = width + 1;
+    this.narrow = narrow;
+    this.wide = wide;
+  }
+
+  /**
+   * Builds the table of an image.
+   *
+   * @param image the image.
+   * @return the table of its red, green and blue channels.
+   */
+  static SummedAreaTable build(CustomImage image) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int[] pixels = image.readPixels();
+    int stride = width + 1;
+    int size = stride * (height + 1);
+    boolean parallel = Bands.isParallel((long) width * height);
+    if ((long) width * height * 255 <= Integer.MAX_VALUE) {
+      int[][] tables = new int[3][size];
+      Bands.ofRows(height, parallel, (from, to) -> {
+        for (int y = from; y < to; y++) {
+          int row = (y + 1) * stride + 1;
+          int red = 0;
+          int green = 0;
+          int blue = 0;
+          for (int x = 0; x < width; x++) {
+            int rgb = pixels[y * width + x];
+            red += (rgb >> 16) & 0xFF;
+            green += (rgb >> 8) & 0xFF;
+            blue += rgb & 0xFF;
+            tables[0][row + x] = red;
+            tables[1][row + x] = green;
+            tables[2][row + x] = blue;
+          }
+        }
+      });
+      Bands.ofColumns(width, parallel, (from, to) -> {
+        for (int[] table : tables) {
+          for (int y = 2; y <= height; y++) {
+            int row = y * stride + 1;
+            for (int x = from; x < to; x++) {
+              table[row + x] += table[row - stride + x];
+            }
+          }
+        }
+      });
+      return new SummedAreaTable(width, height, tables, null);
+    }
+    long[][] tables = new long[3][size];
+    Bands.ofRows(height, parallel, (from, to) -> {
+      for (int y = from; y < to; y++) {
+        int row = (y + 1) * stride + 1;
+        long red = 0;
+        long green = 0;
+        long blue = 0;
+        for (int x = 0; x < width; x++) {
+          int rgb = pixels[y * width + x];
+          red += (rgb >> 16) & 0xFF;
+          green += (rgb >> 8) & 0xFF;
+          blue += rgb & 0xFF;
+          tables[0][row + x] = red;
+          tables[1][row + x] = green;
+          tables[2][row + x] = blue;
+        }
+      }
+    });
+    Bands.ofColumns(width, parallel, (from, to) -> {
+      for (long[] table : tables) {
+        for (int y = 2; y <= height; y++) {
+          int row = y * stride + 1;
+          for (int x = from; x < to; x++) {
+            table[row + x] += table[row - stride + x];
+          }
+        }
+      }
+    });
+    return new SummedAreaTable(width, height, null, tables);
+  }
+
+  /**
+   * Returns the width of the image the table was built from.
+   *
+   * @return the width in pixels.
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * Returns the height of the image the table was built from.
+   *
+   * @return the height in pixels.
+   */
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Sums a channel over a rectangle. The rectangle is clipped to the image.
+   *
+   * @param channel 0 for red, 1 for green or 2 for blue.
+   * @param left    the first column of the rectangle.
+   * @param top     the first row of the rectangle.
+   * @param right   the column after the last one of the rectangle.
+   * @param bottom  the row after the last one of the rectangle.
+   * @return the sum, or 0 if the rectangle holds no pixels of the image.
+   */
+  public long sum(int channel, int left, int top, int right, int bottom) {
+    int x0 = clamp(left, width);
+    int y0 = clamp(top, height);
+    int x1 = clamp(right, width);
+    int y1 = clamp(bottom, height);
+    if (x0 >= x1 || y0 >= y1) {
+      return 0;
+    }
+    return at(channel, y1 * stride + x1) - at(channel, y0 * stride + x1)
+            - at(channel, y1 * stride + x0) + at(channel, y0 * stride + x0);
+  }
+
+  /**
+   * Averages a channel over a rectangle. The rectangle is clipped to the image.
+   *
+   * @param channel 0 for red, 1 for green or 2 for blue.
+   * @param left    the first column of the rectangle.
+   * @param top     the first row of the rectangle.
+   * @param right   the column after the last one of the rectangle.
+   * @param bottom  the row after the last one of the rectangle.
+   * @return the mean value, from 0 to 255.
+   * @throws IllegalArgumentException if the rectangle holds no pixels of the image.
+   */
+  public double mean(int channel, int left, int top, int right, int bottom) {
+    return (double) sum(channel, left, top, right, bottom) / area(left, top, right, bottom);
+  }
+
+  /**
+   * Averages the color of a rectangle, rounding each channel to the nearest
+   * whole value. The rectangle is clipped to the image.
+   *
+   * @param left   the first column of the rectangle.
+   * @param top    the first row of the rectangle.
+   * @param right  the column after the last one of the rectangle.
+   * @param bottom the row after the last one of the rectangle.
+   * @return the mean red, green and blue values.
+   * @throws IllegalArgumentException if the rectangle holds no pixels of the image.
+   */
+  public int[] meanColor(int left, int top, int right, int bottom) {
+    long area = area(left, top, right, bottom);
+    int[] rgb = new int[3];
+    for (int c = 0; c < 3; c++) {
+      rgb[c] = (int) ((sum(c, left, top, right, bottom) + area / 2) / area);
+    }
+    return rgb;
+  }
+
+  /**
+   * Counts the pixels of the image within a rectangle.
+   *
+   * @throws IllegalArgumentException if there are none.
+   */
+  private long area(int left, int top, int right, int bottom) {
+    long area = (long) Math.max(0, clamp(right, width) - clamp(left, width))
+            * Math.max(0, clamp(bottom, height) - clamp(top, height));
+    if (area == 0) {
+      throw new IllegalArgumentException("Rectangle holds no pixels of the image.");
+    }
+    return area;
+  }
+
+  private long at(int channel, int index) {
+    return narrow != null ? narrow[channel][index] : wide[channel][index];
+  }
+
+  private static int clamp(int value, int max) {
+    return Math.max(0, Math.min(max, value));
+  }
+}
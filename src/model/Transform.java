@@ -55,6 +55,42 @@ public interface Transform {
    */
   CustomImage blur(CustomImage img);
 
+  /**
+   * Apply a Gaussian blur of any radius to the image.
+   *
+   * @param img    Image file that is being edited.
+   * @param radius how far the blur reaches, in pixels.
+   * @return a blurred image.
+   */
+  CustomImage blur(CustomImage img, int radius);
+
+  /**
+   * Apply a box blur to the image, averaging the square around each pixel.
+   *
+   * @param img    Image file that is being edited.
+   * @param radius how far the square reaches, in pixels.
+   * @return a blurred image.
+   */
+  CustomImage boxBlur(CustomImage img, int radius);
+
+  /**
+   * Apply a median filter to the image, to reduce noise.
+   *
+   * @param img    Image file that is being edited.
+   * @param radius how far the square around each pixel reaches, in pixels.
+   * @return a filtered image.
+   */
+  CustomImage median(CustomImage img, int radius);
+
+  /**
+   * Convolves the image with a kernel of any odd width and height.
+   *
+   * @param img    Image file that is being edited.
+   * @param kernel the weights, row by row.
+   * @return a convolved image.
+   */
+  CustomImage convolve(CustomImage img, float[][] kernel);
+
   /**
    * Apply a sharpen modification to the image.
    *
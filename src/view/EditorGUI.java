@@ -45,6 +45,16 @@ public interface EditorGUI {
    */
   void resetToOriginal();
 
+  /**
+   * Reverts the most recent change to the displayed image.
+   */
+  void undo();
+
+  /**
+   * Reapplies the most recently undone change to the displayed image.
+   */
+  void redo();
+
   /**
    * Applies a certain transformation to the image based on button press.
    *
@@ -30,7 +30,9 @@ import controller.ImageUtil;
 import model.AdvancedImageTransformations;
 import model.CustomImage;
 import model.GraphUtil;
+import model.ImageHistory;
 import model.ImageTransformations;
+import model.Resampler;
 
 /**
  * A graphical user interface for an image editor application that supports
@@ -47,7 +49,11 @@ public class ImageEditorGUI extends JFrame implements EditorGUI {
   private AdvancedImageTransformations imageTransformations1;
   private boolean splitViewEnabled = false;
   private JSlider splitPercentageSlider;
-
+  private JComboBox<String> downscaleFilterDropdown;
+  private JCheckBox softMaskToggle;
+  private JSlider zoomSlider;
+  private final ImageHistory history;
+  private static final String HISTORY_KEY = "display";
 
 
   /**
@@ -58,6 +64,8 @@ public class ImageEditorGUI extends JFrame implements EditorGUI {
 
     imageTransformations = new ImageTransformations();
     imageTransformations1 = new AdvancedImageTransformations();
+    history = new ImageHistory(ImageHistory.DEFAULT_MEMORY_BUDGET,
+            new File(System.getProperty("java.io.tmpdir")));
 
     setTitle("Image Processor");
     setSize(1000, 800);
@@ -128,6 +136,8 @@ public class ImageEditorGUI extends JFrame implements EditorGUI {
     JButton importButton = new JButton("Import File");
     JButton saveButton = new JButton("Save File");
     JButton resetButton = new JButton("Reset to Original");
+    JButton undoButton = new JButton("Undo");
+    JButton redoButton = new JButton("Redo");
 
     // Transformation Buttons
     JButton verticalFlipButton = new JButton("Vertical-Flip");
@@ -155,7 +165,13 @@ public class ImageEditorGUI extends JFrame implements EditorGUI {
     splitPercentageSlider.setPaintLabels(true);
     JButton loadMaskButton = new JButton("Load Mask");
     JButton applyMaskButton = new JButton("Apply Mask Transformation");
+    softMaskToggle = new JCheckBox("Soft Mask");
     JButton applyDownscaleButton = new JButton("Apply Downscale");
+    zoomSlider = new JSlider(10, 100, 100);
+    zoomSlider.setMajorTickSpacing(30);
+    zoomSlider.setPaintTicks(true);
+    zoomSlider.setPaintLabels(true);
+    downscaleFilterDropdown = new JComboBox<>(new String[]{"area", "bilinear", "lanczos"});
 
     JTextField widthField = new JTextField();
     JTextField heightField = new JTextField();
@@ -270,8 +286,10 @@ public class ImageEditorGUI extends JFrame implements EditorGUI {
       }
 
       try {
+        CustomImage before = getDisplayedImage();
         transformedImage = imageTransformations1.levelsAdjust(
                 currentImage.copy(), black, mid, white);
+        history.record(HISTORY_KEY, "levels-adjust", before, transformedImage);
         updateHistogram(transformedImage);
         updateImageDisplay();
         JOptionPane.showMessageDialog(null,
@@ -294,6 +312,8 @@ public class ImageEditorGUI extends JFrame implements EditorGUI {
     importButton.addActionListener(e -> loadImage());
     saveButton.addActionListener(e -> saveImage());
     resetButton.addActionListener(e -> resetToOriginal());
+    undoButton.addActionListener(e -> undo());
+    redoButton.addActionListener(e -> redo());
     verticalFlipButton.addActionListener(e -> applyTransformation("flipVertical"));
     horizontalFlipButton.addActionListener(e -> applyTransformation("flipHorizontal"));
     blurButton.addActionListener(e -> applyTransformation("blur"));
@@ -334,10 +354,12 @@ public class ImageEditorGUI extends JFrame implements EditorGUI {
       }
 
       try {
+        CustomImage before = getDisplayedImage();
         transformedImage = imageTransformations1.compress(
                 currentImage.copy(),
                 percentage
         );
+        history.record(HISTORY_KEY, "compress", before, transformedImage);
         updateHistogram(transformedImage);
         updateImageDisplay();
         JOptionPane.showMessageDialog(this,
@@ -357,6 +379,68 @@ public class ImageEditorGUI extends JFrame implements EditorGUI {
     panel.add(compressLevelSlider);
     panel.add(applyCompressButton);
 
+    JSlider blurRadiusSlider = new JSlider(0, 50, 5);
+    blurRadiusSlider.setMajorTickSpacing(10);
+    blurRadiusSlider.setPaintTicks(true);
+    blurRadiusSlider.setPaintLabels(true);
+    JButton applyGaussianBlurButton = new JButton("Apply Gaussian Blur");
+    applyGaussianBlurButton.addActionListener(e -> {
+      if (currentImage == null) {
+        JOptionPane.showMessageDialog(this,
+                "No image loaded.",
+                "Error",
+                JOptionPane.ERROR_MESSAGE);
+        return;
+      }
+      try {
+        CustomImage before = getDisplayedImage();
+        transformedImage = imageTransformations.blur(currentImage,
+                blurRadiusSlider.getValue());
+        history.record(HISTORY_KEY, "gaussian-blur", before, transformedImage);
+        updateHistogram(transformedImage);
+        updateImageDisplay();
+      } catch (Exception ex) {
+        JOptionPane.showMessageDialog(this,
+                "Error applying gaussian blur: " + ex.getMessage(),
+                "Error",
+                JOptionPane.ERROR_MESSAGE);
+      }
+    });
+    panel.add(new JLabel("Blur radius:"));
+    panel.add(blurRadiusSlider);
+    panel.add(applyGaussianBlurButton);
+
+    JSlider medianRadiusSlider = new JSlider(0, 10, 1);
+    medianRadiusSlider.setMajorTickSpacing(2);
+    medianRadiusSlider.setPaintTicks(true);
+    medianRadiusSlider.setPaintLabels(true);
+    JButton applyMedianButton = new JButton("Apply Median Filter");
+    applyMedianButton.addActionListener(e -> {
+      if (currentImage == null) {
+        JOptionPane.showMessageDialog(this,
+                "No image loaded.",
+                "Error",
+                JOptionPane.ERROR_MESSAGE);
+        return;
+      }
+      try {
+        CustomImage before = getDisplayedImage();
+        transformedImage = imageTransformations.median(currentImage,
+                medianRadiusSlider.getValue());
+        history.record(HISTORY_KEY, "median", before, transformedImage);
+        updateHistogram(transformedImage);
+        updateImageDisplay();
+      } catch (Exception ex) {
+        JOptionPane.showMessageDialog(this,
+                "Error applying median filter: " + ex.getMessage(),
+                "Error",
+                JOptionPane.ERROR_MESSAGE);
+      }
+    });
+    panel.add(new JLabel("Median radius:"));
+    panel.add(medianRadiusSlider);
+    panel.add(applyMedianButton);
+
     splitViewToggle.addActionListener(e -> {
       splitViewEnabled = splitViewToggle.isSelected();
       updateImageDisplay();
@@ -366,6 +450,11 @@ public class ImageEditorGUI extends JFrame implements EditorGUI {
         updateImageDisplay();
       }
     });
+    zoomSlider.addChangeListener(e -> {
+      if (!zoomSlider.getValueIsAdjusting() && currentImage != null) {
+        updateImageDisplay();
+      }
+    });
 
     loadMaskButton.addActionListener(e -> loadMask());
     applyDownscaleButton.addActionListener(e -> {
@@ -413,8 +502,10 @@ public class ImageEditorGUI extends JFrame implements EditorGUI {
       }
 
       try {
+        CustomImage before = getDisplayedImage();
         transformedImage = imageTransformations.applyWithMask(
-                currentImage, maskImage, selectedTransformation);
+                currentImage, maskImage, selectedTransformation, softMaskToggle.isSelected());
+        history.record(HISTORY_KEY, selectedTransformation, before, transformedImage);
         updateHistogram(transformedImage);
         updateImageDisplay();
         JOptionPane.showMessageDialog(this,
@@ -437,6 +528,8 @@ public class ImageEditorGUI extends JFrame implements EditorGUI {
     panel.add(importButton);
     panel.add(saveButton);
     panel.add(resetButton);
+    panel.add(undoButton);
+    panel.add(redoButton);
     panel.add(verticalFlipButton);
     panel.add(horizontalFlipButton);
     panel.add(blurButton);
@@ -455,13 +548,18 @@ public class ImageEditorGUI extends JFrame implements EditorGUI {
     panel.add(splitPercentageSlider);
     panel.add(loadMaskButton);
     panel.add(applyMaskButton);
+    panel.add(softMaskToggle);
     panel.add(new JLabel("Mask Transformations:"));
     panel.add(transformationDropdown);
     panel.add(new JLabel("New Width:"));
     panel.add(widthField);
     panel.add(new JLabel("New Height:"));
     panel.add(heightField);
+    panel.add(new JLabel("Downscale Filter:"));
+    panel.add(downscaleFilterDropdown);
     panel.add(applyDownscaleButton);
+    panel.add(new JLabel("Zoom %:"));
+    panel.add(zoomSlider);
 
 
     return panel;
@@ -498,6 +596,7 @@ public class ImageEditorGUI extends JFrame implements EditorGUI {
           currentImage = imageUtil.loadImage(selectedFile.getAbsolutePath());
         }
         transformedImage = null;
+        history.clear();
         updateImageDisplay();
         updateHistogram();
         System.out.println("Image loaded successfully.");
@@ -609,6 +708,7 @@ public class ImageEditorGUI extends JFrame implements EditorGUI {
     }
 
     try {
+      CustomImage before = getDisplayedImage();
       switch (color.toLowerCase()) {
         case "red":
           transformedImage = imageTransformations1.visualizeRed(currentImage.copy());
@@ -625,6 +725,7 @@ public class ImageEditorGUI extends JFrame implements EditorGUI {
         default:
           throw new IllegalArgumentException("Unknown color visualization: " + color);
       }
+      history.record(HISTORY_KEY, color + "-component", before, transformedImage);
       updateImageDisplay();
     } catch (Exception ex) {
       ex.printStackTrace();
@@ -635,7 +736,8 @@ public class ImageEditorGUI extends JFrame implements EditorGUI {
   }
 
   /**
-   * Downscales the current image to the specified dimensions.
+   * Downscales the current image to the specified dimensions, with the
+   * filter selected in the downscale filter dropdown.
    *
    * @param newWidth  the target width
    * @param newHeight the target height
@@ -660,7 +762,11 @@ public class ImageEditorGUI extends JFrame implements EditorGUI {
     }
 
     try {
-      transformedImage = imageTransformations.downscale(currentImage, newWidth, newHeight);
+      CustomImage before = getDisplayedImage();
+      String filter = (String) downscaleFilterDropdown.getSelectedItem();
+      transformedImage = imageTransformations.downscale(currentImage, newWidth, newHeight,
+              filter != null ? filter : "area");
+      history.record(HISTORY_KEY, "downscale", before, transformedImage);
       updateImageDisplay();
       JOptionPane.showMessageDialog(this,
               "Image downscaled successfully to " + newWidth + "x" + newHeight + "!",
@@ -725,12 +831,56 @@ public class ImageEditorGUI extends JFrame implements EditorGUI {
       return;
     }
 
+    history.record(HISTORY_KEY, "reset", getDisplayedImage(), currentImage);
     transformedImage = null;
     updateImageDisplay();
     updateHistogram();
     System.out.println("Image reset to original.");
   }
 
+  /**
+   * Reverts the most recent change to the displayed image.
+   */
+  @Override
+  public void undo() {
+    if (currentImage == null || history.getUndoOperation(HISTORY_KEY) == null) {
+      JOptionPane.showMessageDialog(this,
+              "Nothing to undo.",
+              "Error", JOptionPane.ERROR_MESSAGE);
+      return;
+    }
+
+    transformedImage = history.undo(HISTORY_KEY, getDisplayedImage());
+    updateHistogram(transformedImage);
+    updateImageDisplay();
+  }
+
+  /**
+   * Reapplies the most recently undone change to the displayed image.
+   */
+  @Override
+  public void redo() {
+    if (currentImage == null || history.getRedoOperation(HISTORY_KEY) == null) {
+      JOptionPane.showMessageDialog(this,
+              "Nothing to redo.",
+              "Error", JOptionPane.ERROR_MESSAGE);
+      return;
+    }
+
+    transformedImage = history.redo(HISTORY_KEY, getDisplayedImage());
+    updateHistogram(transformedImage);
+    updateImageDisplay();
+  }
+
+  /**
+   * Returns the image currently shown, the transformed image if there is one.
+   *
+   * @return the displayed image.
+   */
+  private CustomImage getDisplayedImage() {
+    return (transformedImage != null) ? transformedImage : currentImage;
+  }
+
   /**
    * Applies the specified transformation to the currently loaded image.
    *
@@ -746,6 +896,7 @@ public class ImageEditorGUI extends JFrame implements EditorGUI {
     }
 
     try {
+      CustomImage before = getDisplayedImage();
       transformedImage = currentImage.copy();
 
       switch (transformation) {
@@ -796,6 +947,7 @@ public class ImageEditorGUI extends JFrame implements EditorGUI {
 
       }
 
+      history.record(HISTORY_KEY, transformation, before, transformedImage);
       updateImageDisplay();
     } catch (Exception ex) {
       ex.printStackTrace();
@@ -823,8 +975,8 @@ public class ImageEditorGUI extends JFrame implements EditorGUI {
       BufferedImage displayImage;
 
       if (splitViewEnabled && transformedImage != null) {
-        BufferedImage original = currentImage.toBufferedImage();
-        BufferedImage transformed = transformedImage.toBufferedImage();
+        BufferedImage original = toDisplayImage(currentImage);
+        BufferedImage transformed = toDisplayImage(transformedImage);
 
         int splitPercentage = splitPercentageSlider.getValue();
         int splitWidth = (original.getWidth() * splitPercentage) / 100;
@@ -848,9 +1000,8 @@ public class ImageEditorGUI extends JFrame implements EditorGUI {
         System.out.println("Split view updated successfully with "
                 + splitPercentage + "% split.");
       } else {
-        displayImage = (transformedImage != null)
-                ? transformedImage.toBufferedImage()
-                : currentImage.toBufferedImage();
+        displayImage = toDisplayImage(transformedImage != null
+                ? transformedImage : currentImage);
         System.out.println((transformedImage != null
                 ? "Displaying transformed image."
                 : "Displaying original image."));
@@ -869,6 +1020,24 @@ public class ImageEditorGUI extends JFrame implements EditorGUI {
   }
 
 
+  /**
+   * Converts an image for display at the zoom selected on the zoom slider.
+   * Zoomed out views are resized from the image's mip pyramid, so moving the
+   * slider back and forth reuses the levels already built.
+   *
+   * @param image the image to display.
+   * @return the image to show, at the zoomed size.
+   */
+  private BufferedImage toDisplayImage(CustomImage image) {
+    int zoom = zoomSlider == null ? 100 : zoomSlider.getValue();
+    if (zoom >= 100) {
+      return image.toBufferedImage();
+    }
+    int width = Math.max(1, image.getWidth() * zoom / 100);
+    int height = Math.max(1, image.getHeight() * zoom / 100);
+    return image.getPyramid().resize(width, height, Resampler.Filter.AREA).toBufferedImage();
+  }
+
   /**
    * Main method for the gui, if ran, will invoke java swing to open the gui interface.
    *
@@ -0,0 +1,52 @@
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import controller.BatchProcessor;
+import controller.ImageUtil;
+import model.CustomImage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for BatchProcessor, tests applying a template to a directory tree.
+ */
+public class BatchProcessorTest {
+
+  /**
+   * Tests that every image is processed, outputs mirror the input tree,
+   * and unreadable files are counted as failures.
+   */
+  @Test
+  public void testProcessesDirectoryTree() throws Exception {
+    Path input = Files.createTempDirectory("batch-in");
+    Path output = Files.createTempDirectory("batch-out");
+    Files.createDirectories(input.resolve("nested"));
+    ImageUtil imageUtil = new ImageUtil();
+    CustomImage image = new CustomImage(8, 6);
+    image.setPixel(2, 3, 10, 20, 30);
+    for (String name : Arrays.asList("a.png", "b.png", "nested/c.png")) {
+      imageUtil.saveImage(image, input.resolve(name).toString());
+    }
+    Files.write(input.resolve("broken.png"), new byte[]{1, 2, 3});
+
+    BatchProcessor processor = new BatchProcessor(Arrays.asList(
+            "load {input} img",
+            "horizontal-flip img flipped",
+            "save {output-dir}/{name}-flipped.png flipped"), 2, 2, 2);
+    String summary = processor.run(input, output);
+
+    assertEquals(3, processor.getProcessed());
+    assertEquals(1, processor.getFailed());
+    assertTrue(summary.startsWith("Processed 3 images (1 failed)"));
+    File flipped = output.resolve("nested/c-flipped.png").toFile();
+    assertTrue(flipped.isFile());
+    assertArrayEquals(new int[]{10, 20, 30},
+            imageUtil.loadImage(flipped.getPath()).getPixel(5, 3));
+  }
+}
@@ -0,0 +1,51 @@
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import controller.CommandMetrics;
+import controller.Controller;
+import controller.ImageUtil;
+import model.CustomImage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for CommandMetrics, tests recording commands run by a controller.
+ */
+public class CommandMetricsTest {
+
+  /**
+   * Tests that each command run through a controller is counted with its pixels
+   * and the image memory held after it.
+   */
+  @Test
+  public void testRecordsCommands() throws Exception {
+    Map<String, CustomImage> imageMap = new HashMap<>();
+    imageMap.put("dog", new CustomImage(20, 10));
+    Controller controller = new Controller(imageMap, new ImageUtil());
+    controller.setOutput(new PrintStream(OutputStream.nullOutputStream()));
+    CommandMetrics metrics = new CommandMetrics();
+    controller.setMetrics(metrics);
+
+    controller.processCommand("blur", "blur dog a".split(" "));
+    controller.processCommand("blur", "blur a b".split(" "));
+    controller.processCommand("sepia", "sepia b c".split(" "));
+
+    assertArrayEquals(new String[]{"blur", "sepia"}, metrics.getCommandNames());
+    assertEquals(3, metrics.getCount());
+    assertEquals(4L * 200 * 4, metrics.getPeakImageMemory());
+    String json = metrics.getJson();
+    assertTrue(json, json.contains("\"blur\":{\"count\":2,"));
+    assertTrue(json, json.contains("\"pixels\":400,"));
+    assertTrue(metrics.getTable().startsWith("command"));
+
+    metrics.reset();
+    assertEquals(0, metrics.getCount());
+    assertEquals("{\"commands\":{},\"peakImageMemoryBytes\":0}", metrics.getJson());
+  }
+}
@@ -1,14 +1,21 @@
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 
 import model.CustomImage;
+import controller.Controller;
 import controller.ImageUtil;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 
 /**
@@ -350,4 +357,54 @@ public class ControllerTest {
     int[] originalPixel = originalImage.getPixel(30, 40);
     validatePixelValues(vFlipImage, 30, height - 40 - 1, originalPixel);
   }
+
+  /**
+   * Tests that stream mode answers each command with one structured line,
+   * and that quiet mode only answers failures.
+   */
+  @Test
+  public void testStreamResponses() throws Exception {
+    HashMap<String, CustomImage> imageMap = new HashMap<>();
+    String commands = "load test/dogs.jpg dog\n\nhorizontal-flip dog flipped\n"
+            + "brighten x dog bright\ndrop dog\nexit\nsepia flipped never\n";
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    new Controller(imageMap, imageUtil).runStream(
+            new ByteArrayInputStream(commands.getBytes(StandardCharsets.UTF_8)), output, false);
+    String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+    assertEquals(4, lines.length);
+    assertTrue(lines[0].startsWith("ok\t1\t"));
+    assertTrue(lines[1].startsWith("ok\t3\t"));
+    assertTrue(lines[2].startsWith("error\t4\t"));
+    assertTrue(lines[3].endsWith("\tDropped dog"));
+    assertFalse(imageMap.containsKey("dog"));
+    assertFalse(imageMap.containsKey("never"));
+    validatePixelValues(imageMap.get("flipped"), originalImage.getWidth() - 1, 0,
+            originalImage.getPixel(0, 0));
+
+    ByteArrayOutputStream quiet = new ByteArrayOutputStream();
+    new Controller(new HashMap<>(), imageUtil).runStream(
+            new ByteArrayInputStream(commands.getBytes(StandardCharsets.UTF_8)), quiet, true);
+    assertTrue(quiet.toString(StandardCharsets.UTF_8).startsWith("error\t4\t"));
+  }
+
+  /**
+   * Tests that stream mode answers error, not ok, for commands that fail without
+   * throwing, such as a missing image or an unknown command.
+   */
+  @Test
+  public void testStreamReportsFailedCommands() throws Exception {
+    String commands = "blur nosuch out\nfrobnicate a b\nload test/dogs.jpg dog\n";
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    new Controller(new HashMap<>(), imageUtil).runStream(
+            new ByteArrayInputStream(commands.getBytes(StandardCharsets.UTF_8)), output, false);
+    String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+    assertEquals(3, lines.length);
+    assertTrue(lines[0].startsWith("error\t1\t"));
+    assertTrue(lines[0].endsWith("\tImage not found: nosuch"));
+    assertTrue(lines[1].startsWith("error\t2\t"));
+    assertTrue(lines[1].endsWith("\tUnknown command: frobnicate"));
+    assertTrue(lines[2].startsWith("ok\t3\t"));
+  }
 }
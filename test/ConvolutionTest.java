@@ -0,0 +1,95 @@
+import org.junit.Test;
+
+import model.CustomImage;
+import model.ImageTransformations;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test class for kernel convolution, tests that the integer paths used for
+ * blur, sharpen and other power-of-two kernels match summing in floats.
+ */
+public class ConvolutionTest {
+
+  /**
+   * Exposes kernel application to the tests.
+   */
+  private static class Kernels extends ImageTransformations {
+    CustomImage applyKernelTo(CustomImage img, float[][] kernel) {
+      return applyKernel(img, kernel);
+    }
+  }
+
+  /**
+   * Convolves in floats, pixel by pixel, as the reference.
+   */
+  private CustomImage reference(CustomImage img, float[][] kernel) {
+    int width = img.getWidth();
+    int height = img.getHeight();
+    CustomImage result = new CustomImage(width, height);
+    for (int x = 1; x < width - 1; x++) {
+      for (int y = 1; y < height - 1; y++) {
+        float[] sum = new float[3];
+        for (int i = -1; i <= 1; i++) {
+          for (int j = -1; j <= 1; j++) {
+            int[] rgb = img.getPixel(x + i, y + j);
+            for (int c = 0; c < 3; c++) {
+              sum[c] += rgb[c] * kernel[i + 1][j + 1];
+            }
+          }
+        }
+        result.setPixel(x, y, Math.round(sum[0]), Math.round(sum[1]), Math.round(sum[2]));
+      }
+    }
+    return result;
+  }
+
+  private void assertMatches(float[][] kernel) {
+    Kernels kernels = new Kernels();
+    int[][] sizes = {{1, 1}, {2, 5}, {3, 3}, {4, 7}, {37, 23}, {300, 260}};
+    for (int[] size : sizes) {
+      CustomImage image = TestImages.random(size[0], size[1], size[0] * 31L + size[1]);
+      assertEquals(size[0] + "x" + size[1], reference(image, kernel).getContentHash(),
+              kernels.applyKernelTo(image, kernel).getContentHash());
+    }
+  }
+
+  /**
+   * Tests the separable blur kernel.
+   */
+  @Test
+  public void testBlur() {
+    assertMatches(new float[][]{
+      {1 / 16f, 1 / 8f, 1 / 16f}, {1 / 8f, 1 / 4f, 1 / 8f}, {1 / 16f, 1 / 8f, 1 / 16f}});
+  }
+
+  /**
+   * Tests the sharpen kernel, which has negative weights and is not separable.
+   */
+  @Test
+  public void testSharpen() {
+    float e = -1 / 8f;
+    float q = 1 / 4f;
+    assertMatches(new float[][]{
+      {e, e, e, e, e}, {e, q, q, q, e}, {e, q, 1, q, e}, {e, q, q, q, e}, {e, e, e, e, e}});
+  }
+
+  /**
+   * Tests an asymmetric separable kernel, which shows whether the horizontal
+   * and vertical offsets are the right way round.
+   */
+  @Test
+  public void testAsymmetricKernel() {
+    assertMatches(new float[][]{{0, 0, 0}, {1 / 4f, 1 / 2f, 0}, {1 / 2f, 1, 0}});
+    assertMatches(new float[][]{{-1 / 2f, 0, 1 / 2f}, {-1, 0, 1}, {-1 / 2f, 0, 1 / 2f}});
+  }
+
+  /**
+   * Tests a kernel that needs float arithmetic.
+   */
+  @Test
+  public void testFloatKernel() {
+    assertMatches(new float[][]{
+      {0.1f, 0.1f, 0.1f}, {0.1f, 0.2f, 0.1f}, {0.1f, 0.1f, 0.1f}});
+  }
+}
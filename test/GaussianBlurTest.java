@@ -0,0 +1,171 @@
+import org.junit.Test;
+
+import model.CustomImage;
+import model.ImageTransformations;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for the Gaussian blur of any radius, tests the exact Gaussian
+ * used for small radii and the box filters used for larger ones.
+ */
+public class GaussianBlurTest {
+  private final ImageTransformations transformations = new ImageTransformations();
+
+  /**
+   * Blurs with a sampled Gaussian in doubles, repeating the edge pixels.
+   */
+  private double[][][] reference(CustomImage img, double sigma) {
+    int width = img.getWidth();
+    int height = img.getHeight();
+    int reach = (int) Math.ceil(4 * sigma);
+    double[] weights = new double[2 * reach + 1];
+    double total = 0;
+    for (int t = -reach; t <= reach; t++) {
+      weights[t + reach] = Math.exp(-t * t / (2 * sigma * sigma));
+      total += weights[t + reach];
+    }
+    double[][][] rows = new double[height][width][3];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        for (int t = -reach; t <= reach; t++) {
+          int[] rgb = img.getPixel(Math.max(0, Math.min(width - 1, x + t)), y);
+          for (int c = 0; c < 3; c++) {
+            rows[y][x][c] += rgb[c] * weights[t + reach] / total;
+          }
+        }
+      }
+    }
+    double[][][] result = new double[height][width][3];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        for (int t = -reach; t <= reach; t++) {
+          double[] row = rows[Math.max(0, Math.min(height - 1, y + t))][x];
+          for (int c = 0; c < 3; c++) {
+            result[y][x][c] += row[c] * weights[t + reach] / total;
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the largest difference from the reference away from the edges,
+   * and the average difference over the whole image.
+   */
+  private double[] difference(CustomImage blurred, double[][][] expected, int border) {
+    double largest = 0;
+    double sum = 0;
+    for (int y = 0; y < blurred.getHeight(); y++) {
+      for (int x = 0; x < blurred.getWidth(); x++) {
+        int[] rgb = blurred.getPixel(x, y);
+        for (int c = 0; c < 3; c++) {
+          double difference = Math.abs(rgb[c] - expected[y][x][c]);
+          if (x >= border && y >= border && x < blurred.getWidth() - border
+                  && y < blurred.getHeight() - border) {
+            largest = Math.max(largest, difference);
+          }
+          sum += difference;
+        }
+      }
+    }
+    return new double[]{largest, sum / (3.0 * blurred.getWidth() * blurred.getHeight())};
+  }
+
+  /**
+   * Tests that a flat image stays flat up to its edges, on both paths and on
+   * the multi-threaded path for large images.
+   */
+  @Test
+  public void testFlatImageStaysFlat() {
+    CustomImage image = new CustomImage(300, 260);
+    for (int y = 0; y < 260; y++) {
+      for (int x = 0; x < 300; x++) {
+        image.setPixel(x, y, 200, 17, 90);
+      }
+    }
+    for (int radius : new int[]{1, 4, 5, 40, 400}) {
+      CustomImage blurred = transformations.blur(image, radius);
+      assertEquals("radius " + radius, image.getContentHash(), blurred.getContentHash());
+    }
+  }
+
+  /**
+   * Tests that small radii match the Gaussian to within rounding.
+   */
+  @Test
+  public void testSmallRadiusIsExact() {
+    CustomImage image = TestImages.random(37, 23, 5);
+    for (int radius = 1; radius <= 4; radius++) {
+      double[] difference = difference(transformations.blur(image, radius),
+              reference(image, radius / 2.0), 0);
+      assertTrue("radius " + radius + " off by " + difference[0], difference[0] <= 1.0);
+    }
+  }
+
+  /**
+   * Tests that the box filters used for larger radii stay close to the Gaussian.
+   * Each box pass repeats the edge of its own input, so within a radius of
+   * the edges only the average difference is checked.
+   */
+  @Test
+  public void testLargeRadiusApproximatesGaussian() {
+    CustomImage image = TestImages.random(90, 70, 9);
+    for (int radius : new int[]{5, 12, 30}) {
+      double[] difference = difference(transformations.blur(image, radius),
+              reference(image, radius / 2.0), radius);
+      assertTrue("radius " + radius + " off by " + difference[0], difference[0] <= 4);
+      assertTrue("radius " + radius + " off by " + difference[1] + " on average",
+              difference[1] <= 1.5);
+    }
+  }
+
+  /**
+   * Tests that the source image is not changed, that radius 0 copies it and
+   * that tiny images are blurred without reading past their edges.
+   */
+  @Test
+  public void testEdgeCases() {
+    CustomImage image = TestImages.random(3, 2, 1);
+    String hash = image.getContentHash();
+    transformations.blur(image, 2);
+    transformations.blur(image, 9);
+    assertEquals(hash, image.getContentHash());
+    assertEquals(hash, transformations.blur(image, 0).getContentHash());
+
+    CustomImage pixel = new CustomImage(1, 1);
+    pixel.setPixel(0, 0, 10, 20, 30);
+    assertArrayEquals(new int[]{10, 20, 30}, transformations.blur(pixel, 7).getPixel(0, 0));
+  }
+
+  /**
+   * Tests that a radius far beyond the size of the image, up to the largest
+   * there is, keeps a flat image as it is and returns at once.
+   */
+  @Test
+  public void testHugeRadius() {
+    CustomImage flat = new CustomImage(10, 10);
+    for (int y = 0; y < 10; y++) {
+      for (int x = 0; x < 10; x++) {
+        flat.setPixel(x, y, 200, 200, 200);
+      }
+    }
+    long start = System.nanoTime();
+    for (int radius : new int[]{1_000_000, 20_000_000, Integer.MAX_VALUE}) {
+      assertEquals("radius " + radius, flat.getContentHash(),
+              transformations.blur(flat, radius).getContentHash());
+    }
+    assertTrue((System.nanoTime() - start) / 1e9 + " s", System.nanoTime() - start < 1e9);
+  }
+
+  /**
+   * Tests that a negative radius is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeRadius() {
+    transformations.blur(new CustomImage(4, 4), -1);
+  }
+}
@@ -0,0 +1,167 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import model.CustomImage;
+import model.ImageHistory;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for ImageHistory, tests undo, redo and the memory budget.
+ */
+public class ImageHistoryTest {
+  private CustomImage original;
+
+  @Before
+  public void setUp() {
+    original = new CustomImage(100, 80);
+    for (int y = 0; y < 80; y++) {
+      for (int x = 0; x < 100; x++) {
+        original.setPixel(x, y, x % 256, y % 256, (x + y) % 256);
+      }
+    }
+  }
+
+  /**
+   * Returns a copy of the original with one pixel changed.
+   */
+  private CustomImage editPixel(CustomImage image, int x, int y) {
+    CustomImage edited = image.copy();
+    edited.setPixel(x, y, 255, 255, 255);
+    return edited;
+  }
+
+  /**
+   * Asserts that two images hold the same pixels.
+   */
+  private void assertSameImage(CustomImage expected, CustomImage actual) {
+    assertEquals(expected.getWidth(), actual.getWidth());
+    assertEquals(expected.getHeight(), actual.getHeight());
+    for (int y = 0; y < expected.getHeight(); y++) {
+      for (int x = 0; x < expected.getWidth(); x++) {
+        assertArrayEquals(expected.getPixel(x, y), actual.getPixel(x, y));
+      }
+    }
+  }
+
+  /**
+   * Tests undoing and redoing a local edit.
+   */
+  @Test
+  public void testUndoRedo() {
+    ImageHistory history = new ImageHistory(ImageHistory.DEFAULT_MEMORY_BUDGET);
+    CustomImage edited = editPixel(original, 70, 10);
+    assertTrue(history.record("img", "edit", original, edited));
+    assertEquals("edit", history.getUndoOperation("img"));
+
+    CustomImage undone = history.undo("img", edited);
+    assertSameImage(original, undone);
+    assertNull(history.getUndoOperation("img"));
+    assertEquals("edit", history.getRedoOperation("img"));
+
+    CustomImage redone = history.redo("img", undone);
+    assertSameImage(edited, redone);
+  }
+
+  /**
+   * Tests that only the changed tile is retained for a local edit.
+   */
+  @Test
+  public void testStoresOnlyChangedTiles() {
+    ImageHistory history = new ImageHistory(ImageHistory.DEFAULT_MEMORY_BUDGET);
+    history.record("img", "edit", original, editPixel(original, 1, 1));
+    int tileBytes = 4 * ImageHistory.TILE_SIZE * ImageHistory.TILE_SIZE;
+    assertTrue(history.getMemoryUsed() <= tileBytes + 64);
+  }
+
+  /**
+   * Tests that a change to every pixel costs no more than one snapshot of the
+   * image, and that the later pixels taken on undo are redone.
+   */
+  @Test
+  public void testWholeImageChangeKeepsOneSide() {
+    ImageHistory history = new ImageHistory(ImageHistory.DEFAULT_MEMORY_BUDGET);
+    CustomImage inverted = new CustomImage(100, 80);
+    for (int y = 0; y < 80; y++) {
+      for (int x = 0; x < 100; x++) {
+        int[] rgb = original.getPixel(x, y);
+        inverted.setPixel(x, y, 255 - rgb[0], 255 - rgb[1], 255 - rgb[2]);
+      }
+    }
+    history.record("img", "invert", original, inverted);
+    assertTrue(history.getMemoryUsed() <= 4 * 100 * 80 + 4 * 64);
+
+    CustomImage undone = history.undo("img", inverted);
+    assertSameImage(original, undone);
+    assertSameImage(inverted, history.redo("img", undone));
+    assertTrue(history.getMemoryUsed() <= 4 * 100 * 80 + 4 * 64);
+  }
+
+  /**
+   * Tests undoing the step that created an image and redoing it.
+   */
+  @Test
+  public void testUndoCreation() {
+    ImageHistory history = new ImageHistory(ImageHistory.DEFAULT_MEMORY_BUDGET);
+    history.record("img", "load", null, original);
+    assertNull(history.undo("img", original));
+    assertSameImage(original, history.redo("img", null));
+  }
+
+  /**
+   * Tests that steps over budget are dropped when there is no spill directory.
+   */
+  @Test
+  public void testDropsOldestOverBudget() {
+    ImageHistory history = new ImageHistory(1);
+    CustomImage first = editPixel(original, 0, 0);
+    history.record("img", "first", original, first);
+    assertNull(history.getUndoOperation("img"));
+    assertEquals(0, history.getMemoryUsed());
+  }
+
+  /**
+   * Tests that dropping a step also drops the older steps of the same image,
+   * down to the one that created it, so undo never skips a state.
+   */
+  @Test
+  public void testDropsWholeChainOverBudget() {
+    CustomImage first = editPixel(original, 0, 0);
+    CustomImage second = editPixel(first, 99, 79);
+    ImageHistory probe = new ImageHistory(ImageHistory.DEFAULT_MEMORY_BUDGET);
+    probe.record("img", "first", original, first);
+    ImageHistory history = new ImageHistory(probe.getMemoryUsed());
+    history.record("img", "load", null, original);
+    history.record("img", "first", original, first);
+    history.record("img", "second", first, second);
+
+    assertSameImage(first, history.undo("img", second));
+    assertNull(history.getUndoOperation("img"));
+  }
+
+  /**
+   * Tests that steps over budget are spilled to disk and restored on undo.
+   */
+  @Test
+  public void testSpillsOverBudget() throws IOException {
+    File directory = Files.createTempDirectory("history").toFile();
+    ImageHistory history = new ImageHistory(1, directory);
+    CustomImage first = editPixel(original, 0, 0);
+    CustomImage second = editPixel(first, 99, 79);
+    history.record("img", "first", original, first);
+    history.record("img", "second", first, second);
+    assertEquals(0, history.getMemoryUsed());
+
+    CustomImage undone = history.undo("img", second);
+    assertSameImage(first, undone);
+    assertSameImage(original, history.undo("img", undone));
+    history.clear();
+  }
+}
@@ -0,0 +1,48 @@
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import model.CustomImage;
+import model.ImageTransformations;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test class for ImageOperationEvent, tests that transformations are recorded.
+ */
+public class ImageOperationEventTest {
+
+  /**
+   * Tests that a transformation run during a recording is recorded with its
+   * layer, name and image size.
+   */
+  @Test
+  public void testTransformationIsRecorded() throws Exception {
+    Path file = Files.createTempFile("operations", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable("imaging.ImageOperation").withThreshold(Duration.ZERO);
+      recording.start();
+      new ImageTransformations().blur(new CustomImage(8, 4));
+      recording.stop();
+      recording.dump(file);
+    }
+    List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+            .filter(e -> e.getEventType().getName().equals("imaging.ImageOperation"))
+            .collect(Collectors.toList());
+    Files.delete(file);
+    assertEquals(1, events.size());
+    RecordedEvent event = events.get(0);
+    assertEquals("model", event.getString("layer"));
+    assertEquals("blur", event.getString("operation"));
+    assertEquals(8, event.getInt("width"));
+    assertEquals(4, event.getInt("height"));
+    assertEquals(32, event.getLong("pixels"));
+  }
+}
@@ -0,0 +1,113 @@
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Map;
+
+import controller.Controller;
+import controller.ImageStore;
+import controller.ImageUtil;
+import model.CustomImage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for ImageStore, tests spilling, reloading and the memory report.
+ */
+public class ImageStoreTest {
+
+  /**
+   * Returns a 10x10 image filled with one color.
+   */
+  private CustomImage filled(int value) {
+    CustomImage image = new CustomImage(10, 10);
+    for (int y = 0; y < 10; y++) {
+      for (int x = 0; x < 10; x++) {
+        image.setPixel(x, y, value, value / 2, 255 - value);
+      }
+    }
+    return image;
+  }
+
+  /**
+   * Tests that the least recently used image is spilled and read back on access.
+   */
+  @Test
+  public void testSpillsLeastRecentlyUsed() {
+    ImageStore store = new ImageStore(2 * 400);
+    store.put("a", filled(10));
+    store.put("b", filled(20));
+    store.get("a");
+    store.put("c", filled(30));
+    assertTrue(store.isSpilled("b"));
+    assertFalse(store.isSpilled("a"));
+    assertEquals(800, store.getMemoryUsed());
+
+    assertArrayEquals(new int[]{20, 10, 235}, store.get("b").getPixel(5, 5));
+    assertEquals(1, store.getReloadCount());
+    assertEquals(800, store.getMemoryUsed());
+    assertEquals(3, store.size());
+  }
+
+  /**
+   * Tests that replacing and removing images frees their memory, without
+   * reading back the ones that were spilled.
+   */
+  @Test
+  public void testRemoveAndReplace() {
+    ImageStore store = new ImageStore(400);
+    store.put("a", filled(10));
+    store.put("b", filled(20));
+    assertArrayEquals(new int[]{20, 10, 235}, store.put("b", filled(30)).getPixel(0, 0));
+    assertTrue(store.isSpilled("a"));
+    assertNull(store.put("a", filled(40)));
+    assertTrue(store.isSpilled("b"));
+    assertNull(store.remove("b"));
+    assertEquals(0, store.getReloadCount());
+    assertNull(store.get("b"));
+    assertArrayEquals(new int[]{40, 20, 215}, store.remove("a").getPixel(0, 0));
+    store.put("a", filled(40));
+    assertEquals(400, store.getMemoryUsed());
+    for (Map.Entry<String, CustomImage> entry : store.entrySet()) {
+      assertEquals("a", entry.getKey());
+    }
+    store.clear();
+    assertEquals(0, store.getMemoryUsed());
+  }
+
+  /**
+   * Tests that the report lists every image and where it is held.
+   */
+  @Test
+  public void testMemoryReport() {
+    ImageStore store = new ImageStore(400);
+    store.put("a", filled(10));
+    store.put("b", filled(20));
+    String[] lines = store.getMemoryReport().split(System.lineSeparator());
+    assertEquals(3, lines.length);
+    assertEquals("a: 10x10, 0.0 MB spilled", lines[0]);
+    assertEquals("b: 10x10, 0.0 MB in memory", lines[1]);
+  }
+
+  /**
+   * Tests that overwriting or dropping a spilled image does not read it back.
+   */
+  @Test
+  public void testControllerDoesNotReadBackReplacedImages() throws Exception {
+    ImageStore store = new ImageStore(400);
+    Controller controller = new Controller(store, new ImageUtil());
+    controller.setOutput(new PrintStream(OutputStream.nullOutputStream()));
+    store.put("a", filled(10));
+    store.put("b", filled(20));
+    controller.processCommand("horizontal-flip", new String[]{"horizontal-flip", "b", "a"});
+    assertTrue(store.isSpilled("b"));
+    controller.processCommand("drop", new String[]{"drop", "b"});
+    assertEquals(0, store.getReloadCount());
+    assertFalse(store.containsKey("b"));
+    assertArrayEquals(new int[]{20, 10, 235}, store.get("a").getPixel(0, 0));
+  }
+}
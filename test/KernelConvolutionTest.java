@@ -0,0 +1,150 @@
+import org.junit.Test;
+
+import java.util.Random;
+
+import model.CustomImage;
+import model.ImageTransformations;
+import model.KernelConvolution;
+import model.KernelConvolution.Method;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for KernelConvolution, tests that the direct, separable and FFT
+ * paths agree and that the cheapest one is picked for each kernel.
+ */
+public class KernelConvolutionTest {
+
+  private float[][] randomKernel(int rows, int cols, long seed) {
+    Random random = new Random(seed);
+    float[][] kernel = new float[rows][cols];
+    for (int j = 0; j < rows; j++) {
+      for (int i = 0; i < cols; i++) {
+        kernel[j][i] = (random.nextFloat() - 0.3f) * 3 / (rows * cols);
+      }
+    }
+    return kernel;
+  }
+
+  private float[][] disc(int radius) {
+    int side = 2 * radius + 1;
+    float[][] kernel = new float[side][side];
+    for (int j = 0; j < side; j++) {
+      for (int i = 0; i < side; i++) {
+        int dx = i - radius;
+        int dy = j - radius;
+        kernel[j][i] = dx * dx + dy * dy <= radius * radius ? 1f / (side * side) * 1.2f : 0;
+      }
+    }
+    return kernel;
+  }
+
+  private float[][] outer(float[] column, float[] row) {
+    float[][] kernel = new float[column.length][row.length];
+    for (int j = 0; j < column.length; j++) {
+      for (int i = 0; i < row.length; i++) {
+        kernel[j][i] = column[j] * row[i];
+      }
+    }
+    return kernel;
+  }
+
+  private void assertClose(String message, CustomImage expected, CustomImage actual) {
+    for (int y = 0; y < expected.getHeight(); y++) {
+      for (int x = 0; x < expected.getWidth(); x++) {
+        int[] a = expected.getPixel(x, y);
+        int[] b = actual.getPixel(x, y);
+        for (int c = 0; c < 3; c++) {
+          assertTrue(message + " at " + x + "," + y, Math.abs(a[c] - b[c]) <= 1);
+        }
+      }
+    }
+  }
+
+  /**
+   * Tests which way is picked for separable, small and large kernels.
+   */
+  @Test
+  public void testChoose() {
+    assertEquals(Method.SEPARABLE, KernelConvolution.choose(
+            outer(new float[]{1, 2, 1}, new float[]{0.25f, 0.5f, 0.25f})));
+    assertEquals(Method.SEPARABLE, KernelConvolution.choose(new float[1][31]));
+    assertEquals(Method.DIRECT, KernelConvolution.choose(randomKernel(3, 3, 1)));
+    assertEquals(Method.DIRECT, KernelConvolution.choose(randomKernel(9, 9, 2)));
+    assertEquals(Method.FFT, KernelConvolution.choose(randomKernel(11, 9, 3)));
+    assertEquals(Method.FFT, KernelConvolution.choose(disc(15)));
+  }
+
+  /**
+   * Tests that the FFT matches summing directly, for kernels larger and
+   * smaller than the image, on images spanning one tile and several, on one
+   * thread and several.
+   */
+  @Test
+  public void testFftMatchesDirect() {
+    CustomImage[] images = {TestImages.random(5, 7, 1), TestImages.random(150, 41, 2),
+        TestImages.random(300, 260, 3)};
+    float[][][] kernels = {randomKernel(11, 13, 4), disc(15), randomKernel(3, 5, 5)};
+    for (CustomImage image : images) {
+      for (float[][] kernel : kernels) {
+        String message = image.getWidth() + "x" + image.getHeight() + " kernel "
+                + kernel.length + "x" + kernel[0].length;
+        assertClose(message, KernelConvolution.convolve(image, kernel, Method.DIRECT),
+                KernelConvolution.convolve(image, kernel, Method.FFT));
+      }
+    }
+  }
+
+  /**
+   * Tests that two passes match summing directly.
+   */
+  @Test
+  public void testSeparableMatchesDirect() {
+    CustomImage image = TestImages.random(60, 45, 6);
+    float[][] kernel = outer(new float[]{0.1f, -0.2f, 0.9f, 0.3f, 0.1f},
+            new float[]{0.05f, 0.2f, 0.5f, 0.2f, 0.05f, 0.1f, -0.1f});
+    assertClose("separable", KernelConvolution.convolve(image, kernel, Method.DIRECT),
+            KernelConvolution.convolve(image, kernel, Method.SEPARABLE));
+  }
+
+  /**
+   * Tests that an identity kernel keeps the image, and that an off-centre
+   * weight shifts it, repeating the edge.
+   */
+  @Test
+  public void testIdentityAndShift() {
+    CustomImage image = TestImages.random(20, 10, 7);
+    float[][] identity = new float[3][3];
+    identity[1][1] = 1;
+    float[][] shift = new float[13][13];
+    shift[6][7] = 1;
+    shift[0][0] = 1e-4f;
+    for (Method method : new Method[]{Method.DIRECT, Method.FFT}) {
+      assertEquals(method.toString(), image.getContentHash(),
+              KernelConvolution.convolve(image, identity, method).getContentHash());
+      CustomImage shifted = KernelConvolution.convolve(image, shift, method);
+      assertEquals(image.getPixel(5, 3)[0], shifted.getPixel(4, 3)[0]);
+      assertEquals(image.getPixel(19, 3)[1], shifted.getPixel(19, 3)[1]);
+    }
+  }
+
+  /**
+   * Tests that convolving through the transformations picks a way itself.
+   */
+  @Test
+  public void testTransformationsConvolve() {
+    CustomImage image = TestImages.random(40, 30, 8);
+    float[][] kernel = disc(7);
+    assertEquals(KernelConvolution.convolve(image, kernel, Method.FFT).getContentHash(),
+            new ImageTransformations().convolve(image, kernel).getContentHash());
+  }
+
+  /**
+   * Tests that a kernel of even width is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testEvenKernel() {
+    KernelConvolution.choose(new float[3][4]);
+  }
+}
@@ -0,0 +1,240 @@
+import org.junit.Test;
+
+import java.util.Random;
+
+import model.CustomImage;
+import model.ImageTransformations;
+import model.MaskRuns;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for MaskRuns and masked transformations, tests run finding,
+ * invalidation, soft blending and that masked results match transforming
+ * pixel by pixel.
+ */
+public class MaskRunsTest {
+  private static final String[] TRANSFORMATIONS = {"grayscale", "sepia", "red-component",
+    "green-component", "blue-component", "blur", "sharpen"};
+
+  private CustomImage blankMask(int width, int height) {
+    CustomImage mask = new CustomImage(width, height);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        mask.setPixel(x, y, 255, 255, 255);
+      }
+    }
+    return mask;
+  }
+
+  private CustomImage blackMask(int width, int height) {
+    return new CustomImage(width, height);
+  }
+
+  /**
+   * Tests that runs and bounds are found, nearly black pixels count as
+   * selected, and the runs are kept until the mask is modified.
+   */
+  @Test
+  public void testRunsAndBounds() {
+    CustomImage mask = blankMask(10, 6);
+    mask.setPixel(2, 1, 0, 0, 0);
+    mask.setPixel(3, 1, 9, 9, 9);
+    mask.setPixel(7, 1, 0, 0, 0);
+    mask.setPixel(5, 4, 0, 0, 0);
+    mask.setPixel(6, 4, 0, 10, 0);
+
+    MaskRuns runs = mask.getMaskRuns();
+    assertEquals(4, runs.getSelectedCount());
+    assertArrayEquals(new int[]{2, 1, 7, 4}, runs.getBounds());
+    assertSame(runs, mask.getMaskRuns());
+
+    mask.setPixel(0, 5, 0, 0, 0);
+    MaskRuns updated = mask.getMaskRuns();
+    assertNotSame(runs, updated);
+    assertEquals(5, updated.getSelectedCount());
+    assertArrayEquals(new int[]{0, 1, 7, 5}, updated.getBounds());
+
+    MaskRuns empty = blankMask(4, 4).getMaskRuns();
+    assertTrue(empty.isEmpty());
+    assertNull(empty.getBounds());
+  }
+
+  /**
+   * Tests that every masked transformation changes exactly the selected
+   * pixels, and to the same values as transforming them one at a time.
+   */
+  @Test
+  public void testMatchesPixelByPixel() {
+    int width = 37;
+    int height = 23;
+    CustomImage source = TestImages.random(width, height, 7);
+    CustomImage mask = TestImages.random(width, height, 11);
+    Random random = new Random(3);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        if (random.nextInt(3) == 0) {
+          mask.setPixel(x, y, random.nextInt(10), random.nextInt(10), random.nextInt(10));
+        }
+      }
+    }
+    ImageTransformations transformations = new ImageTransformations();
+    for (String transformation : TRANSFORMATIONS) {
+      CustomImage result = transformations.applyWithMask(source, mask, transformation);
+      for (int y = 0; y < height; y++) {
+        for (int x = 0; x < width; x++) {
+          int[] maskPixel = mask.getPixel(x, y);
+          int[] expected = maskPixel[0] < 10 && maskPixel[1] < 10 && maskPixel[2] < 10
+                  ? expectedPixel(source, x, y, transformation) : source.getPixel(x, y);
+          assertArrayEquals(transformation + " at " + x + "," + y,
+                  expected, result.getPixel(x, y));
+        }
+      }
+    }
+  }
+
+  /**
+   * Tests that blur and sharpen repeat the edge pixels on images no wider or
+   * taller than their kernels, where every run reaches past both edges.
+   */
+  @Test
+  public void testSmallImages() {
+    ImageTransformations transformations = new ImageTransformations();
+    int[][] sizes = {{1, 1}, {2, 5}, {3, 3}, {6, 2}};
+    for (int[] size : sizes) {
+      CustomImage source = TestImages.random(size[0], size[1], size[0] * 31L + size[1]);
+      for (String transformation : new String[]{"blur", "sharpen"}) {
+        CustomImage result = transformations.applyWithMask(source,
+                blackMask(size[0], size[1]), transformation);
+        for (int y = 0; y < size[1]; y++) {
+          for (int x = 0; x < size[0]; x++) {
+            assertArrayEquals(transformation + " at " + x + "," + y,
+                    expectedPixel(source, x, y, transformation), result.getPixel(x, y));
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Tests that a mask selecting nothing leaves the image as it was.
+   */
+  @Test
+  public void testEmptyMask() {
+    CustomImage source = TestImages.random(8, 8, 5);
+    CustomImage result = new ImageTransformations().applyWithMask(source, blankMask(8, 8),
+            "blur");
+    assertEquals(source.getContentHash(), result.getContentHash());
+  }
+
+  /**
+   * Tests that a soft mask takes the transformed pixel under black, keeps the
+   * original under white, blends with rounding under grey, and gives the same
+   * result as a hard mask when the mask is only black and white.
+   */
+  @Test
+  public void testSoftMask() {
+    int width = 29;
+    int height = 17;
+    CustomImage source = TestImages.random(width, height, 13);
+    CustomImage mask = TestImages.random(width, height, 17);
+    for (int x = 0; x < width; x++) {
+      mask.setPixel(x, 0, 0, 0, 0);
+      mask.setPixel(x, 1, 255, 255, 255);
+    }
+    ImageTransformations transformations = new ImageTransformations();
+    for (String transformation : TRANSFORMATIONS) {
+      CustomImage full = transformations.applyWithMask(source, blankMask(width, height),
+              transformation, false);
+      CustomImage all = transformations.applyWithMask(source, blackMask(width, height),
+              transformation, false);
+      CustomImage soft = transformations.applyWithMask(source, mask, transformation, true);
+      assertEquals(source.getContentHash(), full.getContentHash());
+      for (int y = 0; y < height; y++) {
+        for (int x = 0; x < width; x++) {
+          int[] maskPixel = mask.getPixel(x, y);
+          int weight = 255 - (maskPixel[0] + maskPixel[1] + maskPixel[2]) / 3;
+          int[] original = source.getPixel(x, y);
+          int[] transformed = all.getPixel(x, y);
+          int[] expected = new int[3];
+          for (int c = 0; c < 3; c++) {
+            expected[c] = (int) Math.round(
+                    (transformed[c] * weight + original[c] * (255 - weight)) / 255.0);
+          }
+          assertArrayEquals(transformation + " at " + x + "," + y,
+                  expected, soft.getPixel(x, y));
+        }
+      }
+    }
+
+    CustomImage hardMask = blankMask(width, height);
+    for (int y = 0; y < height; y += 2) {
+      for (int x = y % 3; x < width; x += 3) {
+        hardMask.setPixel(x, y, 0, 0, 0);
+      }
+    }
+    assertEquals(transformations.applyWithMask(source, hardMask, "blur", false).getContentHash(),
+            transformations.applyWithMask(source, hardMask, "blur", true).getContentHash());
+  }
+
+  /**
+   * Tests that an unknown transformation is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownTransformation() {
+    new ImageTransformations().applyWithMask(TestImages.random(4, 4, 1), blankMask(4, 4), "emboss");
+  }
+
+  private int[] expectedPixel(CustomImage source, int x, int y, String transformation) {
+    int[] pixel = source.getPixel(x, y);
+    switch (transformation) {
+      case "grayscale":
+        int gray = (int) (0.2126 * pixel[0] + 0.7152 * pixel[1] + 0.0722 * pixel[2]);
+        return new int[]{gray, gray, gray};
+      case "sepia":
+        return new int[]{
+          Math.min(255, (int) (pixel[0] * 0.393 + pixel[1] * 0.769 + pixel[2] * 0.189)),
+          Math.min(255, (int) (pixel[0] * 0.349 + pixel[1] * 0.686 + pixel[2] * 0.168)),
+          Math.min(255, (int) (pixel[0] * 0.272 + pixel[1] * 0.534 + pixel[2] * 0.131))};
+      case "red-component":
+        return new int[]{pixel[0], 0, 0};
+      case "green-component":
+        return new int[]{0, pixel[1], 0};
+      case "blue-component":
+        return new int[]{0, 0, pixel[2]};
+      case "blur":
+        return convolve(source, x, y, new float[][]{
+          {1 / 16f, 1 / 8f, 1 / 16f}, {1 / 8f, 1 / 4f, 1 / 8f}, {1 / 16f, 1 / 8f, 1 / 16f}});
+      default:
+        float e = -1 / 8f;
+        float q = 1 / 4f;
+        return convolve(source, x, y, new float[][]{
+          {e, e, e, e, e}, {e, q, q, q, e}, {e, q, 1, q, e}, {e, q, q, q, e}, {e, e, e, e, e}});
+    }
+  }
+
+  private int[] convolve(CustomImage source, int x, int y, float[][] kernel) {
+    float[] sum = new float[3];
+    int offset = kernel.length / 2;
+    for (int ky = 0; ky < kernel.length; ky++) {
+      for (int kx = 0; kx < kernel.length; kx++) {
+        int nx = Math.max(0, Math.min(x + kx - offset, source.getWidth() - 1));
+        int ny = Math.max(0, Math.min(y + ky - offset, source.getHeight() - 1));
+        int[] neighbor = source.getPixel(nx, ny);
+        for (int c = 0; c < 3; c++) {
+          sum[c] += neighbor[c] * kernel[ky][kx];
+        }
+      }
+    }
+    int[] result = new int[3];
+    for (int c = 0; c < 3; c++) {
+      result[c] = Math.max(0, Math.min(255, (int) sum[c]));
+    }
+    return result;
+  }
+}
@@ -0,0 +1,115 @@
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import model.CustomImage;
+import model.ImageTransformations;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test class for the median filter, tests it against sorting each window.
+ */
+public class MedianFilterTest {
+  private final ImageTransformations transformations = new ImageTransformations();
+
+  private CustomImage randomImage(int width, int height, int levels, long seed) {
+    Random random = new Random(seed);
+    CustomImage image = new CustomImage(width, height);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        image.setPixel(x, y, random.nextInt(levels), 255 - random.nextInt(levels),
+                random.nextInt(256));
+      }
+    }
+    return image;
+  }
+
+  /**
+   * Sorts the window around each pixel, repeating the edge pixels.
+   */
+  private CustomImage reference(CustomImage image, int radius) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int side = 2 * radius + 1;
+    CustomImage result = new CustomImage(width, height);
+    int[] window = new int[side * side];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        int[] rgb = new int[3];
+        for (int c = 0; c < 3; c++) {
+          int i = 0;
+          for (int dy = -radius; dy <= radius; dy++) {
+            for (int dx = -radius; dx <= radius; dx++) {
+              window[i++] = image.getPixel(Math.max(0, Math.min(width - 1, x + dx)),
+                      Math.max(0, Math.min(height - 1, y + dy)))[c];
+            }
+          }
+          Arrays.sort(window);
+          rgb[c] = window[window.length / 2];
+        }
+        result.setPixel(x, y, rgb);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Tests radii from one to beyond the image's size, on images with many
+   * and with few distinct values, and across the bands of rows filtered separately.
+   */
+  @Test
+  public void testMatchesSorting() {
+    CustomImage[] images = {randomImage(41, 75, 256, 1), randomImage(13, 9, 4, 2),
+        randomImage(1, 5, 256, 3), randomImage(6, 1, 256, 4)};
+    for (CustomImage image : images) {
+      for (int radius : new int[]{1, 2, 5, 9}) {
+        assertEquals(image.getWidth() + "x" + image.getHeight() + " radius " + radius,
+                reference(image, radius).getContentHash(),
+                transformations.median(image, radius).getContentHash());
+      }
+    }
+  }
+
+  /**
+   * Tests that a speck is removed and a straight edge is kept, on the
+   * multi-threaded path for large images.
+   */
+  @Test
+  public void testRemovesSpeckKeepsEdge() {
+    CustomImage image = new CustomImage(300, 260);
+    for (int y = 0; y < 260; y++) {
+      for (int x = 0; x < 300; x++) {
+        int value = x < 150 ? 20 : 220;
+        image.setPixel(x, y, value, value, value);
+      }
+    }
+    image.setPixel(40, 100, 255, 0, 255);
+    CustomImage filtered = transformations.median(image, 2);
+    assertArrayEquals(new int[]{20, 20, 20}, filtered.getPixel(40, 100));
+    assertArrayEquals(new int[]{20, 20, 20}, filtered.getPixel(149, 200));
+    assertArrayEquals(new int[]{220, 220, 220}, filtered.getPixel(150, 200));
+  }
+
+  /**
+   * Tests that radius 0 keeps the image and the source is not changed.
+   */
+  @Test
+  public void testRadiusZero() {
+    CustomImage image = randomImage(7, 7, 256, 5);
+    String hash = image.getContentHash();
+    assertEquals(hash, transformations.median(image, 0).getContentHash());
+    transformations.median(image, 3);
+    assertEquals(hash, image.getContentHash());
+  }
+
+  /**
+   * Tests that a negative radius is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeRadius() {
+    transformations.median(new CustomImage(4, 4), -2);
+  }
+}
@@ -0,0 +1,91 @@
+import org.junit.After;
+import org.junit.Test;
+
+import model.CustomImage;
+import model.MipPyramid;
+import model.Resampler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Test class for MipPyramid, tests level reuse, invalidation and memory accounting.
+ */
+public class MipPyramidTest {
+
+  /**
+   * Restores the default budget after each test.
+   */
+  @After
+  public void tearDown() {
+    MipPyramid.setMemoryBudget(MipPyramid.DEFAULT_MEMORY_BUDGET);
+  }
+
+  private CustomImage gradient(int width, int height) {
+    CustomImage image = new CustomImage(width, height);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        image.setPixel(x, y, x % 256, y % 256, (x + y) % 256);
+      }
+    }
+    return image;
+  }
+
+  /**
+   * Tests that levels are built only as far as a resize needs, reused by
+   * later resizes, and counted against the memory budget.
+   */
+  @Test
+  public void testLevelsAreBuiltLazilyAndReused() {
+    CustomImage image = gradient(256, 128);
+    long before = MipPyramid.getMemoryUsed();
+    MipPyramid pyramid = image.getPyramid();
+    assertEquals(1, pyramid.getLevelCount());
+
+    CustomImage thumbnail = pyramid.resize(60, 30, Resampler.Filter.AREA);
+    assertEquals(60, thumbnail.getWidth());
+    assertEquals(3, pyramid.getLevelCount());
+    assertEquals(4L * (128 * 64 + 64 * 32), MipPyramid.getMemoryUsed() - before);
+
+    CustomImage level = pyramid.levelFor(100, 50);
+    assertEquals(128, level.getWidth());
+    assertSame(level, pyramid.levelFor(100, 50));
+    assertSame(image, pyramid.levelFor(200, 10));
+    assertEquals(3, pyramid.getLevelCount());
+  }
+
+  /**
+   * Tests that modifying an image drops its pyramid and gives back its memory.
+   */
+  @Test
+  public void testMutationInvalidates() {
+    CustomImage image = gradient(64, 64);
+    long before = MipPyramid.getMemoryUsed();
+    MipPyramid pyramid = image.getPyramid();
+    pyramid.resize(16, 16, Resampler.Filter.AREA);
+    assertEquals(4L * (32 * 32 + 16 * 16), MipPyramid.getMemoryUsed() - before);
+
+    image.setPixel(0, 0, 255, 255, 255);
+    assertEquals(before, MipPyramid.getMemoryUsed());
+    assertNotSame(pyramid, image.getPyramid());
+    assertEquals(1, image.getPyramid().getLevelCount());
+  }
+
+  /**
+   * Tests that levels over the budget are used but not kept, and give the
+   * same result as levels that are kept.
+   */
+  @Test
+  public void testBudget() {
+    CustomImage image = gradient(64, 64);
+    CustomImage kept = image.getPyramid().resize(10, 10, Resampler.Filter.AREA);
+
+    MipPyramid.setMemoryBudget(0);
+    CustomImage other = gradient(64, 64);
+    CustomImage unkept = other.getPyramid().resize(10, 10, Resampler.Filter.AREA);
+    assertEquals(1, other.getPyramid().getLevelCount());
+    assertArrayEquals(kept.getPixel(3, 4), unkept.getPixel(3, 4));
+  }
+}
@@ -0,0 +1,156 @@
+import org.junit.Test;
+
+import java.util.Optional;
+import java.util.Random;
+
+import model.PixelKernels;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Test class for PixelKernels, tests that the SIMD kernels give the same
+ * pixels as the scalar ones. The comparisons are skipped when the JVM runs
+ * without the Vector API module or the simd sources are not compiled in.
+ */
+public class PixelKernelsTest {
+  private static final double[] GRAY = {0.2126, 0.7152, 0.0722};
+  private static final double[][] SEPIA = {
+    {0.393, 0.769, 0.189}, {0.349, 0.686, 0.168}, {0.272, 0.534, 0.131}};
+
+  private int[] randomPixels(int count, long seed) {
+    Random random = new Random(seed);
+    int[] pixels = new int[count];
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = random.nextInt(1 << 24);
+    }
+    return pixels;
+  }
+
+  /**
+   * Tests that the scalar kernels compute channel averages by whole division.
+   */
+  @Test
+  public void testScalarIntensity() {
+    int[] pixels = {0x000000, 0xFFFFFF, 0x010203, 0xFF0000, 0x0A0B0C};
+    PixelKernels.scalar().intensity(pixels, 0, pixels.length);
+    assertArrayEquals(new int[]{0x000000, 0xFFFFFF, 0x020202, 0x555555, 0x0B0B0B}, pixels);
+  }
+
+  /**
+   * Tests that the active kernels are the scalar ones unless the SIMD ones loaded.
+   */
+  @Test
+  public void testActiveKernels() {
+    Optional<PixelKernels> vector = PixelKernels.vector();
+    if (vector.isEmpty() || "false".equals(System.getProperty("imaging.simd"))) {
+      assertEquals("scalar", PixelKernels.get().getName());
+    } else {
+      assertEquals("vector", PixelKernels.get().getName());
+    }
+  }
+
+  /**
+   * Tests every kernel on ranges with and without a partial last vector,
+   * starting at different offsets, including every possible channel sum.
+   */
+  @Test
+  public void testVectorMatchesScalar() {
+    assumeTrue(PixelKernels.vector().isPresent());
+    PixelKernels scalar = PixelKernels.scalar();
+    PixelKernels vector = PixelKernels.vector().get();
+    int[] table = new int[256];
+    for (int i = 0; i < table.length; i++) {
+      table[i] = (i * 7 + 13) % 256;
+    }
+    int[] sums = new int[766];
+    for (int sum = 0; sum < sums.length; sum++) {
+      int red = Math.min(255, sum);
+      int green = Math.min(255, sum - red);
+      sums[sum] = (red << 16) | (green << 8) | (sum - red - green);
+    }
+    int[][] inputs = {randomPixels(1000, 1), randomPixels(37, 2), randomPixels(3, 3), sums};
+    for (int[] input : inputs) {
+      for (int from : new int[]{0, 1, 5}) {
+        int to = Math.max(from, input.length - from / 2);
+        for (int kernel = 0; kernel < 9; kernel++) {
+          int[] expected = input.clone();
+          int[] actual = input.clone();
+          apply(scalar, kernel, expected, from, to, table);
+          apply(vector, kernel, actual, from, to, table);
+          assertArrayEquals("kernel " + kernel + " from " + from, expected, actual);
+        }
+      }
+    }
+  }
+
+  /**
+   * Tests the convolution steps: splitting and joining channels, weighted
+   * sums of rows at different offsets, and rounding them back to 0-255.
+   */
+  @Test
+  public void testVectorConvolutionSteps() {
+    assumeTrue(PixelKernels.vector().isPresent());
+    PixelKernels scalar = PixelKernels.scalar();
+    PixelKernels vector = PixelKernels.vector().get();
+    for (int length : new int[]{1, 7, 64, 1001}) {
+      int[] pixels = randomPixels(length + 3, length);
+      int[][] expected = new int[3][length + 2];
+      int[][] actual = new int[3][length + 2];
+      scalar.unpack(pixels, 3, expected[0], expected[1], expected[2], 2, length);
+      vector.unpack(pixels, 3, actual[0], actual[1], actual[2], 2, length);
+      assertArrayEquals(expected, actual);
+
+      int[] expectedSums = new int[length];
+      int[] actualSums = new int[length];
+      for (int offset = 0; offset < 3; offset++) {
+        scalar.multiplyAdd(expectedSums, 0, expected[offset], offset, length, offset * 5 - 6);
+        vector.multiplyAdd(actualSums, 0, actual[offset], offset, length, offset * 5 - 6);
+      }
+      assertArrayEquals(expectedSums, actualSums);
+      scalar.roundShiftClamp(expectedSums, 0, length, 2);
+      vector.roundShiftClamp(actualSums, 0, length, 2);
+      assertArrayEquals(expectedSums, actualSums);
+
+      int[] expectedPixels = new int[length + 1];
+      int[] actualPixels = new int[length + 1];
+      scalar.pack(expected[0], expected[1], expected[2], 2, expectedPixels, 1, length);
+      vector.pack(actual[0], actual[1], actual[2], 2, actualPixels, 1, length);
+      assertArrayEquals(expectedPixels, actualPixels);
+    }
+  }
+
+  private void apply(PixelKernels kernels, int kernel, int[] pixels, int from, int to,
+                     int[] table) {
+    switch (kernel) {
+      case 0:
+        kernels.colorMatrix(pixels, from, to, GRAY, GRAY, GRAY);
+        break;
+      case 1:
+        kernels.colorMatrix(pixels, from, to, SEPIA[0], SEPIA[1], SEPIA[2]);
+        break;
+      case 2:
+        kernels.brighten(pixels, from, to, 45);
+        break;
+      case 3:
+        kernels.brighten(pixels, from, to, -70);
+        break;
+      case 4:
+        kernels.lookup(pixels, from, to, table);
+        break;
+      case 5:
+        kernels.channel(pixels, from, to, 0);
+        break;
+      case 6:
+        kernels.channel(pixels, from, to, 2);
+        break;
+      case 7:
+        kernels.value(pixels, from, to);
+        break;
+      default:
+        kernels.intensity(pixels, from, to);
+        break;
+    }
+  }
+}
@@ -0,0 +1,85 @@
+import org.junit.Test;
+
+import model.CustomImage;
+import model.ImageTransformations;
+import model.Resampler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test class for Resampler, tests area averaging and the other filters.
+ */
+public class ResamplerTest {
+
+  /**
+   * Tests that halving an image averages each 2x2 block exactly.
+   */
+  @Test
+  public void testAreaAveragesBlocks() {
+    CustomImage image = new CustomImage(4, 2);
+    image.setPixel(0, 0, 0, 0, 0);
+    image.setPixel(1, 0, 100, 40, 8);
+    image.setPixel(0, 1, 200, 40, 8);
+    image.setPixel(1, 1, 100, 0, 0);
+    for (int x = 2; x < 4; x++) {
+      for (int y = 0; y < 2; y++) {
+        image.setPixel(x, y, 255, 255, 255);
+      }
+    }
+    CustomImage result = Resampler.resize(image, 2, 1, Resampler.Filter.AREA);
+    assertArrayEquals(new int[]{100, 20, 4}, result.getPixel(0, 0));
+    assertArrayEquals(new int[]{255, 255, 255}, result.getPixel(1, 0));
+  }
+
+  /**
+   * Tests that every filter keeps a flat image flat, including on the
+   * multi-threaded path for large images.
+   */
+  @Test
+  public void testFlatImageStaysFlat() {
+    CustomImage image = new CustomImage(700, 500);
+    for (int y = 0; y < 500; y++) {
+      for (int x = 0; x < 700; x++) {
+        image.setPixel(x, y, 30, 120, 250);
+      }
+    }
+    for (Resampler.Filter filter : Resampler.Filter.values()) {
+      CustomImage result = Resampler.resize(image, 333, 301, filter);
+      assertEquals(333, result.getWidth());
+      assertEquals(301, result.getHeight());
+      for (int y = 0; y < 301; y += 50) {
+        for (int x = 0; x < 333; x += 50) {
+          assertArrayEquals(filter.name(), new int[]{30, 120, 250}, result.getPixel(x, y));
+        }
+      }
+    }
+  }
+
+  /**
+   * Tests that downscaling a fine checkerboard averages it to gray instead of
+   * picking single pixels as nearest-neighbour sampling would.
+   */
+  @Test
+  public void testDownscaleDoesNotAlias() {
+    CustomImage image = new CustomImage(64, 64);
+    for (int y = 0; y < 64; y++) {
+      for (int x = 0; x < 64; x++) {
+        int value = (x + y) % 2 == 0 ? 0 : 254;
+        image.setPixel(x, y, value, value, value);
+      }
+    }
+    CustomImage result = new ImageTransformations().downscale(image, 16, 16);
+    assertArrayEquals(new int[]{127, 127, 127}, result.getPixel(5, 7));
+    CustomImage lanczos = new ImageTransformations().downscale(image, 16, 16, "lanczos");
+    assertEquals(127, lanczos.getPixel(8, 8)[0], 2);
+  }
+
+  /**
+   * Tests that unknown filters are rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownFilter() {
+    new ImageTransformations().downscale(new CustomImage(4, 4), 2, 2, "cubic");
+  }
+}
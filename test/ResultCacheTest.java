@@ -0,0 +1,118 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import controller.Controller;
+import controller.ImageUtil;
+import controller.ResultCache;
+import model.CustomImage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test class for ResultCache, tests lookups, the size cap and the disk tier.
+ */
+public class ResultCacheTest {
+  private CustomImage image;
+
+  @Before
+  public void setUp() {
+    image = new CustomImage(20, 10);
+    for (int y = 0; y < 10; y++) {
+      for (int x = 0; x < 20; x++) {
+        image.setPixel(x, y, x * 10, y * 20, 50);
+      }
+    }
+  }
+
+  /**
+   * Asserts that two images hold the same pixels.
+   */
+  private void assertSameImage(CustomImage expected, CustomImage actual) {
+    assertEquals(expected.getWidth(), actual.getWidth());
+    assertEquals(expected.getHeight(), actual.getHeight());
+    for (int y = 0; y < expected.getHeight(); y++) {
+      for (int x = 0; x < expected.getWidth(); x++) {
+        assertArrayEquals(expected.getPixel(x, y), actual.getPixel(x, y));
+      }
+    }
+  }
+
+  /**
+   * Tests that the content hash follows the pixels, not the image object.
+   */
+  @Test
+  public void testContentHash() {
+    CustomImage copy = image.copy();
+    assertEquals(image.getContentHash(), copy.getContentHash());
+    copy.setPixel(0, 0, 1, 2, 3);
+    assertNotEquals(image.getContentHash(), copy.getContentHash());
+  }
+
+  /**
+   * Tests hits, misses and least recently used eviction.
+   */
+  @Test
+  public void testEvictsLeastRecentlyUsed() {
+    ResultCache cache = new ResultCache(2 * 4 * 200);
+    cache.put("a", new CustomImage[]{image});
+    cache.put("b", new CustomImage[]{image});
+    assertNotNull(cache.get("a"));
+    cache.put("c", new CustomImage[]{image});
+    assertNull(cache.get("b"));
+    assertSameImage(image, cache.get("a")[0]);
+    assertEquals(2, cache.getHits());
+    assertEquals(1, cache.getMisses());
+    assertEquals(1, cache.getEvictions());
+    assertEquals(2 * 4 * 200, cache.getMemoryUsed());
+  }
+
+  /**
+   * Tests that results written to a directory are found by a new cache.
+   */
+  @Test
+  public void testDiskTierSurvivesRestart() throws Exception {
+    File directory = Files.createTempDirectory("results").toFile();
+    new ResultCache(0, directory, ResultCache.DEFAULT_DISK_BUDGET)
+            .put("blur", new CustomImage[]{image});
+
+    ResultCache reopened = new ResultCache(0, directory, ResultCache.DEFAULT_DISK_BUDGET);
+    CustomImage[] found = reopened.get("blur");
+    assertSameImage(image, found[0]);
+    assertEquals(1, reopened.getDiskHits());
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  /**
+   * Tests that a controller reuses a result for the same image under another name.
+   */
+  @Test
+  public void testControllerReusesResult() throws Exception {
+    Map<String, CustomImage> imageMap = new HashMap<>();
+    imageMap.put("dog", image);
+    imageMap.put("other", image.copy());
+    Controller controller = new Controller(imageMap, new ImageUtil());
+    ResultCache cache = new ResultCache(ResultCache.DEFAULT_MEMORY_BUDGET);
+    controller.setResultCache(cache);
+
+    for (String line : Arrays.asList("blur dog a", "blur other b", "compress 50 dog c")) {
+      String[] parts = line.split(" ");
+      controller.processCommand(parts[0], parts);
+    }
+    assertEquals(1, cache.getHits());
+    assertEquals(2, cache.getMisses());
+    assertSameImage(imageMap.get("a"), imageMap.get("b"));
+  }
+}
@@ -0,0 +1,92 @@
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import controller.CompiledScript;
+import controller.Controller;
+import controller.ImageUtil;
+import controller.ScriptCompiler;
+import model.CustomImage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test class for ScriptCompiler, tests validation and running compiled scripts.
+ */
+public class ScriptCompilerTest {
+
+  /**
+   * Tests that every invalid command is reported with its line number.
+   */
+  @Test
+  public void testReportsAllErrors() {
+    try {
+      ScriptCompiler.compile(Arrays.asList(
+              "load dog.png dog",
+              "brighten ten dog bright",
+              "# comment",
+              "sepia dog",
+              "levels-adjust 1 2 3 dog out split 50",
+              "shrink dog small"));
+      fail("Invalid script was compiled.");
+    } catch (IllegalArgumentException e) {
+      String message = e.getMessage();
+      assertTrue(message, message.contains("line 2: brighten ten dog bright"));
+      assertTrue(message, message.contains("line 4: sepia dog"));
+      assertTrue(message, message.contains("line 6: shrink dog small: unknown command"));
+      assertTrue(message, !message.contains("line 1") && !message.contains("line 5"));
+    }
+  }
+
+  /**
+   * Tests that a compiled script can be run again on other images by
+   * binding its placeholders, and that bound integers are checked.
+   */
+  @Test
+  public void testRunWithBindings() throws Exception {
+    CompiledScript script = ScriptCompiler.compile(Arrays.asList(
+            "brighten {amount} {image} out"));
+    assertEquals(1, script.getCommands().size());
+
+    Map<String, CustomImage> imageMap = new HashMap<>();
+    imageMap.put("a", new CustomImage(2, 1));
+    imageMap.put("b", new CustomImage(1, 1));
+    Controller controller = new Controller(imageMap, new ImageUtil());
+    controller.setOutput(new PrintStream(OutputStream.nullOutputStream()));
+
+    Map<String, String> bindings = new HashMap<>();
+    bindings.put("{amount}", "10");
+    bindings.put("{image}", "a");
+    script.run(controller, bindings);
+    assertEquals(2, imageMap.get("out").getWidth());
+    assertEquals(10, imageMap.get("out").getPixel(0, 0)[0]);
+
+    bindings.put("{image}", "b");
+    script.run(controller, bindings);
+    assertEquals(1, imageMap.get("out").getWidth());
+
+    bindings.put("{amount}", "lots");
+    try {
+      script.run(controller, bindings);
+      fail("Non-integer amount was accepted.");
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("lots"));
+    }
+  }
+
+  /**
+   * Tests that an empty script compiles to no commands.
+   */
+  @Test
+  public void testEmptyScript() {
+    assertEquals(0, ScriptCompiler.compile(Collections.singletonList("# nothing"))
+            .getCommands().size());
+  }
+}
@@ -0,0 +1,98 @@
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import controller.ScriptPlan;
+import controller.ScriptStep;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Test class for ScriptPlan, tests parsing and dead-result elimination.
+ */
+public class ScriptPlanTest {
+
+  /**
+   * Returns the line numbers of the steps in a plan.
+   */
+  private int[] lineNumbers(ScriptPlan plan) {
+    return plan.getSteps().stream().mapToInt(ScriptStep::getLineNumber).toArray();
+  }
+
+  /**
+   * Tests that comments and blank lines are skipped.
+   */
+  @Test
+  public void testParseSkipsComments() {
+    ScriptPlan plan = ScriptPlan.parse(Arrays.asList(
+            "# comment", "", "load a.png a", "  save b.png a  "));
+    assertArrayEquals(new int[]{3, 4}, lineNumbers(plan));
+    assertArrayEquals(new String[]{"a"}, plan.getSteps().get(1).getReads());
+  }
+
+  /**
+   * Tests that read and written names follow the handler argument conventions.
+   */
+  @Test
+  public void testReadsAndWrites() {
+    ScriptStep masked = new ScriptStep(1, "blur dog mask out".split(" "));
+    assertArrayEquals(new String[]{"dog", "mask"}, masked.getReads());
+    assertArrayEquals(new String[]{"out"}, masked.getWrites());
+
+    ScriptStep levels = new ScriptStep(1, "levels-adjust 1 2 3 dog out split 50".split(" "));
+    assertArrayEquals(new String[]{"dog"}, levels.getReads());
+    assertArrayEquals(new String[]{"out"}, levels.getWrites());
+
+    ScriptStep split = new ScriptStep(1, "rgb-split dog r g b".split(" "));
+    assertArrayEquals(new String[]{"r", "g", "b"}, split.getWrites());
+  }
+
+  /**
+   * Tests that commands whose results are never saved are removed,
+   * and images are released after their last use.
+   */
+  @Test
+  public void testPruneRemovesUnsavedResults() {
+    List<String> lines = Arrays.asList(
+            "load dog.png dog",
+            "blur dog blurred",
+            "sepia dog unused",
+            "sharpen blurred sharp",
+            "save out.png sharp");
+    ScriptPlan plan = ScriptPlan.parse(lines).prune();
+    assertArrayEquals(new int[]{1, 2, 4, 5}, lineNumbers(plan));
+    assertEquals(Collections.emptyList(), plan.getReleases(0));
+    assertEquals(Collections.singletonList("dog"), plan.getReleases(1));
+    assertEquals(Collections.singletonList("blurred"), plan.getReleases(2));
+    assertEquals(Collections.singletonList("sharp"), plan.getReleases(3));
+  }
+
+  /**
+   * Tests that overwritten results are only kept if they are read before the overwrite.
+   */
+  @Test
+  public void testPruneOverwrite() {
+    List<String> lines = Arrays.asList(
+            "load dog.png dog",
+            "blur dog out",
+            "sepia dog out",
+            "save out.png out");
+    assertArrayEquals(new int[]{1, 3, 4}, lineNumbers(ScriptPlan.parse(lines).prune()));
+  }
+
+  /**
+   * Tests that scripts using undo are not pruned.
+   */
+  @Test
+  public void testUndoDisablesPruning() {
+    ScriptPlan plan = ScriptPlan.parse(Arrays.asList(
+            "load dog.png dog", "blur dog out", "sepia dog out", "undo out", "save o.png out"));
+    assertFalse(plan.isAnalyzable());
+    assertSame(plan, plan.prune());
+  }
+}
@@ -0,0 +1,124 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import controller.Controller;
+import controller.ImageUtil;
+import controller.ScriptPlan;
+import controller.ScriptScheduler;
+import model.CustomImage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for ScriptScheduler, tests that parallel runs match sequential runs.
+ */
+public class ScriptSchedulerTest {
+  private Map<String, CustomImage> imageMap;
+  private Controller controller;
+
+  @Before
+  public void setUp() {
+    CustomImage image = new CustomImage(30, 20);
+    for (int y = 0; y < 20; y++) {
+      for (int x = 0; x < 30; x++) {
+        image.setPixel(x, y, x * 8, y * 12, 100);
+      }
+    }
+    imageMap = new HashMap<>();
+    imageMap.put("dog", image);
+    controller = new Controller(imageMap, new ImageUtil());
+  }
+
+  /**
+   * Tests that a chain and independent branches give the same images as running in order.
+   */
+  @Test
+  public void testMatchesSequentialRun() throws Exception {
+    ScriptPlan plan = ScriptPlan.parse(Arrays.asList(
+            "brighten 20 dog a",
+            "horizontal-flip dog b",
+            "blur a c",
+            "brighten -50 c a",
+            "sepia b d"));
+    new ScriptScheduler(controller, 4).run(plan);
+
+    Map<String, CustomImage> expectedMap = new HashMap<>();
+    expectedMap.put("dog", imageMap.get("dog"));
+    Controller sequential = new Controller(expectedMap, new ImageUtil());
+    for (String line : Arrays.asList("brighten 20 dog a", "horizontal-flip dog b",
+            "blur a c", "brighten -50 c a", "sepia b d")) {
+      String[] parts = line.split(" ");
+      sequential.processCommand(parts[0], parts);
+    }
+    for (String name : Arrays.asList("a", "b", "c", "d")) {
+      CustomImage expected = expectedMap.get(name);
+      CustomImage actual = imageMap.get(name);
+      for (int y = 0; y < expected.getHeight(); y++) {
+        for (int x = 0; x < expected.getWidth(); x++) {
+          assertArrayEquals(expected.getPixel(x, y), actual.getPixel(x, y));
+        }
+      }
+    }
+  }
+
+  /**
+   * Tests that a pruned plan releases intermediate images after they are used.
+   */
+  @Test
+  public void testReleasesIntermediates() throws Exception {
+    File output = File.createTempFile("scheduler", ".png");
+    output.deleteOnExit();
+    ScriptPlan plan = ScriptPlan.parse(Arrays.asList(
+            "brighten 20 dog a",
+            "sepia a b",
+            "save " + output.getPath() + " b")).prune();
+    new ScriptScheduler(controller, 2).run(plan);
+    assertTrue(imageMap.containsKey("dog"));
+    assertFalse(imageMap.containsKey("a"));
+    assertFalse(imageMap.containsKey("b"));
+    assertTrue(output.length() > 0);
+  }
+
+  /**
+   * Tests that the memory report waits for the commands before it, so it
+   * lists the same images as running in order.
+   */
+  @Test
+  public void testMemoryReportMatchesSequentialRun() throws Exception {
+    imageMap.put("dog", new CustomImage(1200, 900));
+    List<String> lines = Arrays.asList(
+            "brighten 20 dog a",
+            "horizontal-flip dog b",
+            "blur a c",
+            "sepia b d",
+            "vertical-flip c e",
+            "memory");
+    ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+    controller.setOutput(new PrintStream(parallel, true, StandardCharsets.UTF_8));
+    new ScriptScheduler(controller, 4).run(ScriptPlan.parse(lines));
+
+    Map<String, CustomImage> expectedMap = new HashMap<>();
+    expectedMap.put("dog", imageMap.get("dog"));
+    Controller sequential = new Controller(expectedMap, new ImageUtil());
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    sequential.setOutput(new PrintStream(expected, true, StandardCharsets.UTF_8));
+    for (String line : lines) {
+      String[] parts = line.split(" ");
+      sequential.processCommand(parts[0], parts);
+    }
+    assertEquals(expected.toString(StandardCharsets.UTF_8),
+            parallel.toString(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,126 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+
+import controller.ResultCache;
+import controller.ScriptServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the ScriptServer class, over a loopback connection.
+ */
+public class ScriptServerTest {
+  private ScriptServer server;
+  private ServerSocketChannel channel;
+  private Thread serving;
+
+  @Before
+  public void setUp() throws IOException {
+    server = new ScriptServer(new ResultCache(ResultCache.DEFAULT_MEMORY_BUDGET), 1,
+            64L * 1024 * 1024);
+    channel = ScriptServer.open("tcp:0");
+    serving = new Thread(() -> {
+      try {
+        server.serve(channel);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+    serving.start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    channel.close();
+    serving.join();
+  }
+
+  /**
+   * Opens a connection to the server under test.
+   */
+  private Socket connect() throws IOException {
+    return new Socket(InetAddress.getLoopbackAddress(),
+            ((InetSocketAddress) channel.getLocalAddress()).getPort());
+  }
+
+  /**
+   * Tests that each command's messages are followed by OK, or by ERROR with
+   * the reason for commands that fail, and that quit ends the session.
+   */
+  @Test
+  public void testSessionReplies() throws Exception {
+    try (Socket socket = connect();
+         BufferedReader in = new BufferedReader(new InputStreamReader(
+                 socket.getInputStream(), StandardCharsets.UTF_8));
+         PrintStream out = new PrintStream(socket.getOutputStream(), true,
+                 StandardCharsets.UTF_8)) {
+      out.println("load test/dogs.jpg dog");
+      assertEquals("Loaded image from test/dogs.jpg as dog", in.readLine());
+      assertTrue(in.readLine().startsWith("OK "));
+
+      out.println("blur nosuch out");
+      assertEquals("Image not found: nosuch", in.readLine());
+      assertTrue(in.readLine().matches("ERROR .* ms Image not found: nosuch"));
+
+      out.println("frobnicate a b");
+      assertEquals("Unknown command: frobnicate", in.readLine());
+      assertTrue(in.readLine().matches("ERROR .* ms Unknown command: frobnicate"));
+
+      out.println("brighten x dog bright");
+      assertTrue(in.readLine().startsWith("ERROR "));
+
+      out.println("quit");
+      assertNull(in.readLine());
+    }
+    assertEquals(4, server.getRequestCount());
+  }
+
+  /**
+   * Tests that with one session running and one waiting, a further
+   * connection is refused with an ERROR line, and that the waiting session
+   * is served once the running one ends.
+   */
+  @Test
+  public void testRefusesSessionsBeyondTheQueue() throws Exception {
+    try (Socket running = connect();
+         Socket waiting = connect();
+         Socket refused = connect()) {
+      BufferedReader in = reader(refused);
+      assertTrue(in.readLine().matches("ERROR .* ms Too many sessions"));
+      assertNull(in.readLine());
+
+      writer(running).println("quit");
+      assertNull(reader(running).readLine());
+      PrintStream out = writer(waiting);
+      in = reader(waiting);
+      out.println("memory");
+      assertTrue(in.readLine().startsWith("Total: 0.0 MB in memory"));
+      assertTrue(in.readLine().startsWith("OK "));
+      out.println("quit");
+      assertNull(in.readLine());
+    }
+  }
+
+  private static BufferedReader reader(Socket socket) throws IOException {
+    return new BufferedReader(new InputStreamReader(socket.getInputStream(),
+            StandardCharsets.UTF_8));
+  }
+
+  private static PrintStream writer(Socket socket) throws IOException {
+    return new PrintStream(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+  }
+}
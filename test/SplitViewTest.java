@@ -0,0 +1,141 @@
+import org.junit.Test;
+
+import model.AdvancedImageTransformations;
+import model.CustomImage;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Test class for split views, tests that processing only the shown part gives
+ * the same image as processing all of it, for every operation.
+ */
+public class SplitViewTest {
+  private static final String[] OPERATIONS = {"grayscale", "sepia", "red-component",
+    "green-component", "blue-component", "value-component", "intensity-component",
+    "luma-component", "vertical-flip", "horizontal-flip", "blur", "sharpen", "color-correct"};
+
+  /**
+   * Splits by processing the whole image, as a reference.
+   */
+  private CustomImage expected(CustomImage image, String operation, int position, int[] args) {
+    AdvancedImageTransformations transformations = new AdvancedImageTransformations();
+    CustomImage copy = image.copy();
+    CustomImage processed;
+    switch (operation) {
+      case "grayscale":
+        processed = transformations.applyGrayscale(copy);
+        break;
+      case "sepia":
+        processed = transformations.applySepia(copy);
+        break;
+      case "red-component":
+        processed = transformations.visualizeRed(copy);
+        break;
+      case "green-component":
+        processed = transformations.visualizeGreen(copy);
+        break;
+      case "blue-component":
+        processed = transformations.visualizeBlue(copy);
+        break;
+      case "value-component":
+        processed = transformations.visualizeValue(copy);
+        break;
+      case "intensity-component":
+        processed = transformations.visualizeIntensity(copy);
+        break;
+      case "luma-component":
+        processed = transformations.visualizeLuma(copy);
+        break;
+      case "vertical-flip":
+        processed = transformations.flipVertical(copy);
+        break;
+      case "horizontal-flip":
+        processed = transformations.flipHorizontal(copy);
+        break;
+      case "blur":
+        processed = transformations.blur(copy);
+        break;
+      case "sharpen":
+        processed = transformations.sharpen(copy);
+        break;
+      case "color-correct":
+        processed = transformations.colorCorrect(copy);
+        break;
+      case "brighten":
+        processed = transformations.adjustBrightness(copy, args[0]);
+        break;
+      default:
+        processed = transformations.levelsAdjust(copy, args[0], args[1], args[2]);
+        break;
+    }
+    int splitPosition = image.getWidth() * position / 100;
+    CustomImage split = new CustomImage(image.getWidth(), image.getHeight());
+    for (int y = 0; y < image.getHeight(); y++) {
+      for (int x = 0; x < image.getWidth(); x++) {
+        split.setRGB(x, y, x < splitPosition ? image.getRGB(x, y) : processed.getRGB(x, y));
+      }
+    }
+    return split;
+  }
+
+  private void assertSameImage(String message, CustomImage expected, CustomImage actual) {
+    for (int y = 0; y < expected.getHeight(); y++) {
+      int[] expectedRow = new int[expected.getWidth()];
+      int[] actualRow = new int[actual.getWidth()];
+      for (int x = 0; x < expected.getWidth(); x++) {
+        expectedRow[x] = expected.getRGB(x, y);
+        actualRow[x] = actual.getRGB(x, y);
+      }
+      assertArrayEquals(message + " row " + y, expectedRow, actualRow);
+    }
+  }
+
+  /**
+   * Tests every operation at split positions from the left edge to the right edge.
+   */
+  @Test
+  public void testMatchesWholeImage() {
+    CustomImage image = TestImages.random(41, 13, 21);
+    AdvancedImageTransformations transformations = new AdvancedImageTransformations();
+    for (String operation : OPERATIONS) {
+      for (int position : new int[]{0, 1, 10, 50, 90, 97, 100}) {
+        assertSameImage(operation + " at " + position,
+                expected(image, operation, position, new int[0]),
+                transformations.applySplitView(image, operation, position, new int[0]));
+      }
+    }
+  }
+
+  /**
+   * Tests the operations that take arguments.
+   */
+  @Test
+  public void testOperationsWithArguments() {
+    CustomImage image = TestImages.random(20, 9, 21);
+    AdvancedImageTransformations transformations = new AdvancedImageTransformations();
+    int[] levels = {20, 100, 220};
+    assertSameImage("levels-adjust", expected(image, "levels-adjust", 35, levels),
+            transformations.applySplitView(image, "levels-adjust", 35, levels));
+    int[] increment = {-40};
+    assertSameImage("brighten", expected(image, "brighten", 60, increment),
+            transformations.applySplitView(image, "brighten", 60, increment));
+  }
+
+  /**
+   * Tests that an operation missing its arguments is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testMissingArguments() {
+    new AdvancedImageTransformations().applySplitView(TestImages.random(4, 4, 21),
+            "levels-adjust", 50, new int[0]);
+  }
+
+  /**
+   * Tests that an unknown operation is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownOperation() {
+    new AdvancedImageTransformations().applySplitView(TestImages.random(4, 4, 21),
+            "emboss", 50, new int[0]);
+  }
+}
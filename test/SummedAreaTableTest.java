@@ -0,0 +1,144 @@
+import org.junit.Test;
+
+import java.util.Random;
+
+import model.CustomImage;
+import model.ImageTransformations;
+import model.SummedAreaTable;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Test class for SummedAreaTable, tests rectangle sums and means against
+ * adding up the pixels, and the box blur built on them.
+ */
+public class SummedAreaTableTest {
+
+  private long bruteSum(CustomImage image, int channel, int left, int top, int right,
+                        int bottom) {
+    long sum = 0;
+    for (int y = Math.max(0, top); y < Math.min(image.getHeight(), bottom); y++) {
+      for (int x = Math.max(0, left); x < Math.min(image.getWidth(), right); x++) {
+        sum += image.getPixel(x, y)[channel];
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * Tests sums of random rectangles, some reaching past the edges, on an
+   * image small enough to build on one thread and one large enough for several.
+   */
+  @Test
+  public void testSumsMatchPixels() {
+    Random random = new Random(3);
+    for (CustomImage image : new CustomImage[]{TestImages.random(29, 17, 1),
+        TestImages.random(300, 260, 2)}) {
+      SummedAreaTable table = image.getSummedAreaTable();
+      int width = image.getWidth();
+      int height = image.getHeight();
+      for (int i = 0; i < 200; i++) {
+        int left = random.nextInt(width + 10) - 5;
+        int top = random.nextInt(height + 10) - 5;
+        int right = left + random.nextInt(width);
+        int bottom = top + random.nextInt(height);
+        for (int c = 0; c < 3; c++) {
+          assertEquals(bruteSum(image, c, left, top, right, bottom),
+                  table.sum(c, left, top, right, bottom));
+        }
+      }
+      assertEquals(bruteSum(image, 1, 0, 0, width, height), table.sum(1, 0, 0, width, height));
+    }
+  }
+
+  /**
+   * Tests means of a rectangle, and that rectangles outside the image are empty.
+   */
+  @Test
+  public void testMeans() {
+    CustomImage image = new CustomImage(3, 2);
+    image.setPixel(0, 0, 10, 0, 255);
+    image.setPixel(1, 0, 20, 1, 255);
+    image.setPixel(0, 1, 30, 0, 0);
+    image.setPixel(1, 1, 41, 0, 255);
+    SummedAreaTable table = image.getSummedAreaTable();
+    assertEquals(25.25, table.mean(0, 0, 0, 2, 2), 1e-9);
+    assertArrayEquals(new int[]{25, 0, 191}, table.meanColor(-4, -4, 2, 2));
+    assertEquals(0, table.sum(0, 3, 0, 9, 2));
+    assertEquals(0, table.sum(0, 1, 1, 1, 2));
+  }
+
+  /**
+   * Tests that averaging an empty rectangle is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testEmptyMean() {
+    new CustomImage(4, 4).getSummedAreaTable().meanColor(2, 2, 2, 4);
+  }
+
+  /**
+   * Tests that the table is kept until the image is modified.
+   */
+  @Test
+  public void testTableDroppedOnWrite() {
+    CustomImage image = TestImages.random(5, 5, 4);
+    SummedAreaTable table = image.getSummedAreaTable();
+    assertSame(table, image.getSummedAreaTable());
+    image.setPixel(2, 2, 0, 0, 0);
+    SummedAreaTable rebuilt = image.getSummedAreaTable();
+    assertNotSame(table, rebuilt);
+    assertEquals(bruteSum(image, 0, 0, 0, 5, 5), rebuilt.sum(0, 0, 0, 5, 5));
+  }
+
+  /**
+   * Tests that the box blur averages the square around each pixel, clipped
+   * to the image, and that radius 0 keeps the image.
+   */
+  @Test
+  public void testBoxBlur() {
+    ImageTransformations transformations = new ImageTransformations();
+    CustomImage image = TestImages.random(23, 11, 5);
+    int radius = 3;
+    CustomImage blurred = transformations.boxBlur(image, radius);
+    for (int y = 0; y < 11; y++) {
+      for (int x = 0; x < 23; x++) {
+        int left = Math.max(0, x - radius);
+        int top = Math.max(0, y - radius);
+        int right = Math.min(23, x + radius + 1);
+        int bottom = Math.min(11, y + radius + 1);
+        long area = (long) (right - left) * (bottom - top);
+        for (int c = 0; c < 3; c++) {
+          long sum = bruteSum(image, c, left, top, right, bottom);
+          assertEquals((sum + area / 2) / area, blurred.getPixel(x, y)[c]);
+        }
+      }
+    }
+    assertEquals(image.getContentHash(), transformations.boxBlur(image, 0).getContentHash());
+  }
+
+  /**
+   * Tests that a radius reaching past every edge, up to the largest there
+   * is, blurs each pixel to the mean of the whole image.
+   */
+  @Test
+  public void testBoxBlurWithHugeRadius() {
+    ImageTransformations transformations = new ImageTransformations();
+    CustomImage image = TestImages.random(9, 4, 7);
+    long area = 9 * 4;
+    int[] mean = new int[3];
+    for (int c = 0; c < 3; c++) {
+      mean[c] = (int) ((bruteSum(image, c, 0, 0, 9, 4) + area / 2) / area);
+    }
+    for (int radius : new int[]{9, 1000, Integer.MAX_VALUE}) {
+      CustomImage blurred = transformations.boxBlur(image, radius);
+      for (int y = 0; y < 4; y++) {
+        for (int x = 0; x < 9; x++) {
+          assertArrayEquals("radius " + radius, mean, blurred.getPixel(x, y));
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,31 @@
+import java.util.Random;
+
+import model.CustomImage;
+
+/**
+ * Images shared by the tests.
+ */
+final class TestImages {
+
+  private TestImages() {
+  }
+
+  /**
+   * Returns an image of random colors.
+   *
+   * @param width  the width of the image.
+   * @param height the height of the image.
+   * @param seed   the seed of the colors, so that the same image is returned each time.
+   * @return the image.
+   */
+  static CustomImage random(int width, int height, long seed) {
+    Random random = new Random(seed);
+    CustomImage image = new CustomImage(width, height);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        image.setPixel(x, y, random.nextInt(256), random.nextInt(256), random.nextInt(256));
+      }
+    }
+    return image;
+  }
+}
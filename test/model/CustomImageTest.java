@@ -0,0 +1,95 @@
+package model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Test class for CustomImage, tests that copies share pixel storage until
+ * one of them is modified and that modifying one never shows in the others.
+ */
+public class CustomImageTest {
+  private CustomImage original;
+
+  @Before
+  public void setUp() {
+    original = new CustomImage(20, 10);
+    for (int y = 0; y < 10; y++) {
+      for (int x = 0; x < 20; x++) {
+        original.setPixel(x, y, x * 12, y * 25, (x + y) * 8);
+      }
+    }
+  }
+
+  /**
+   * Tests that writing to a copy leaves the original as it was.
+   */
+  @Test
+  public void testWritingCopyLeavesOriginal() {
+    String hash = original.getContentHash();
+    CustomImage copy = original.copy();
+    copy.setPixel(3, 4, 1, 2, 3);
+    assertArrayEquals(new int[]{36, 100, 56}, original.getPixel(3, 4));
+    assertArrayEquals(new int[]{1, 2, 3}, copy.getPixel(3, 4));
+    assertEquals(hash, original.getContentHash());
+    assertNotEquals(hash, copy.getContentHash());
+  }
+
+  /**
+   * Tests that writing to the original leaves each of its copies as they were.
+   */
+  @Test
+  public void testWritingOriginalLeavesCopies() {
+    String hash = original.getContentHash();
+    CustomImage first = original.copy();
+    CustomImage second = original.copy();
+    original.setPixel(0, 0, 255, 255, 255);
+    original.setRGB(19, 9, 0x010203);
+    assertArrayEquals(new int[]{0, 0, 0}, first.getPixel(0, 0));
+    assertArrayEquals(new int[]{0, 0, 0}, second.getPixel(0, 0));
+    assertEquals(hash, first.getContentHash());
+    assertEquals(hash, second.getContentHash());
+    assertNotEquals(hash, original.getContentHash());
+  }
+
+  /**
+   * Tests that copies, and copies of copies, share the original's storage
+   * until the first write, and that only the image written takes its own.
+   */
+  @Test
+  public void testCopySharesStorageUntilFirstWrite() {
+    CustomImage copy = original.copy();
+    CustomImage copyOfCopy = copy.copy();
+    assertSame(original.readPixels(), copy.readPixels());
+    assertSame(original.readPixels(), copyOfCopy.readPixels());
+
+    copy.setPixel(5, 5, 9, 9, 9);
+    assertNotSame(original.readPixels(), copy.readPixels());
+    assertSame(original.readPixels(), copyOfCopy.readPixels());
+
+    int[] own = copy.readPixels();
+    copy.setPixel(6, 6, 9, 9, 9);
+    assertSame(own, copy.readPixels());
+  }
+
+  /**
+   * Tests that the channel values returned by getPixel are a fresh array,
+   * so changing them changes neither the image nor later results.
+   */
+  @Test
+  public void testGetPixelIsNotAliased() {
+    int[] first = original.getPixel(2, 1);
+    int[] second = original.getPixel(2, 1);
+    assertNotSame(first, second);
+    first[0] = 0;
+    first[1] = 0;
+    first[2] = 0;
+    assertArrayEquals(new int[]{24, 25, 24}, original.getPixel(2, 1));
+    assertArrayEquals(new int[]{24, 25, 24}, second);
+  }
+}